@@ -2,8 +2,10 @@ package com.example.rag.config;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -12,7 +14,10 @@ import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * 异步线程池配置
- * 为文档处理等异步任务提供自定义线程池，替代 Spring 默认的 SimpleAsyncTaskExecutor
+ * 为文档处理等异步任务提供自定义执行器，替代 Spring 默认的 SimpleAsyncTaskExecutor
+ *
+ * 任务提交后总是在执行器的线程中运行，不会退回到调用线程（上传请求的 Tomcat 线程）执行；
+ * 对下游服务的并发限制由 DownstreamLimiter 负责
  *
  * 需求：10.5 - 通过连接池和线程池管理资源使用
  */
@@ -21,27 +26,55 @@ public class AsyncConfig implements AsyncConfigurer {
 
     private static final Logger log = LoggerFactory.getLogger(AsyncConfig.class);
 
+    private static final String THREAD_NAME_PREFIX = "doc-process-";
+
+    private static final int AWAIT_TERMINATION_SECONDS = 60;
+
+    @Autowired(required = false)
+    private RagAsyncProperties asyncProperties = new RagAsyncProperties();
+
     /**
-     * 配置文档处理异步线程池
-     * - corePoolSize: 核心线程数，保持活跃处理文档
-     * - maxPoolSize: 最大线程数，应对突发上传
-     * - queueCapacity: 队列容量，缓冲待处理任务
-     * - CallerRunsPolicy: 队列满时由调用线程执行，避免任务丢失
+     * 配置文档处理异步执行器
+     * - pool：固定大小线程池，任务在无界队列中排队，不拒绝任务
+     * - virtual：每个任务一个虚拟线程；JDK 21 以下不支持虚拟线程，使用与 pool 相同的固定大小线程池，
+     *   不会退化为每个任务一个平台线程
      */
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
+        if (asyncProperties.getMode() == RagAsyncProperties.ExecutorMode.VIRTUAL) {
+            int javaVersion = Runtime.version().feature();
+            if (javaVersion >= 21) {
+                return createVirtualThreadExecutor();
+            }
+            log.warn("Virtual threads require JDK 21+, running on JDK {}; falling back to the thread pool", javaVersion);
+        }
+        return createPoolExecutor();
+    }
+
+    private Executor createPoolExecutor() {
+        int poolSize = Math.max(1, asyncProperties.getPoolSize());
+
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(5);
-        executor.setQueueCapacity(20);
-        executor.setThreadNamePrefix("doc-process-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setQueueCapacity(Integer.MAX_VALUE);
+        executor.setThreadNamePrefix(THREAD_NAME_PREFIX);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
         executor.setWaitForTasksToCompleteOnShutdown(true);
-        executor.setAwaitTerminationSeconds(60);
+        executor.setAwaitTerminationSeconds(AWAIT_TERMINATION_SECONDS);
         executor.initialize();
 
-        log.info("Async thread pool configured: corePoolSize=2, maxPoolSize=5, queueCapacity=20");
+        log.info("Async thread pool configured: poolSize={}, queue=unbounded", poolSize);
+        return executor;
+    }
+
+    private Executor createVirtualThreadExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(THREAD_NAME_PREFIX);
+        executor.setTaskTerminationTimeout(AWAIT_TERMINATION_SECONDS * 1000L);
+        executor.setVirtualThreads(true);
+        log.info("Async executor configured: virtual thread per task");
         return executor;
     }
 }
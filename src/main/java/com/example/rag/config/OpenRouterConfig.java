@@ -69,9 +69,19 @@ public class OpenRouterConfig {
                 .filter(logRequest())
                 // 添加响应日志过滤器
                 .filter(logResponse())
+                // 自适应限流：交互和批量流量分别按 AIMD 调整并发上限
+                .filter(openRouterRateLimiter())
                 .build();
     }
     
+    /**
+     * 创建 OpenRouter 客户端自适应限流器
+     */
+    @Bean
+    public OpenRouterRateLimiter openRouterRateLimiter() {
+        return new OpenRouterRateLimiter(properties);
+    }
+    
     /**
      * 请求日志过滤器
      */
@@ -56,6 +56,66 @@ public class OpenRouterProperties {
      */
     private Integer proxyPort;
     
+    /**
+     * 单次向量化请求的最大文本条数
+     * 默认: 96
+     */
+    private Integer embeddingBatchSize = 96;
+    
+    /**
+     * 单次向量化请求的最大估算 token 数
+     * 默认: 60000
+     */
+    private Integer embeddingBatchMaxTokens = 60000;
+    
+    /**
+     * 是否启用客户端自适应限流（AIMD）
+     * 默认: true
+     */
+    private Boolean limiterEnabled = true;
+    
+    /**
+     * 交互流量（查询向量化、答案生成）的初始并发上限
+     * 默认: 4
+     */
+    private Integer interactiveInitialConcurrency = 4;
+    
+    /**
+     * 交互流量的并发上限最大值，加性增长不超过此值
+     * 默认: 8
+     */
+    private Integer interactiveMaxConcurrency = 8;
+    
+    /**
+     * 批量流量（文档入库的批量向量化）的初始并发上限
+     * 默认: 2
+     */
+    private Integer bulkInitialConcurrency = 2;
+    
+    /**
+     * 批量流量的并发上限最大值
+     * 默认: 8
+     */
+    private Integer bulkMaxConcurrency = 8;
+    
+    /**
+     * 收到 429 / 503 或响应过慢时并发上限乘以此系数
+     * 默认: 0.5
+     */
+    private Double limiterDecreaseFactor = 0.5;
+    
+    /**
+     * 响应时间（到收到响应头为止）超过此值视为拥塞，按乘性减少处理
+     * 默认: 15000
+     */
+    private Long limiterLatencyThresholdMs = 15000L;
+    
+    /**
+     * 按 Retry-After 暂停发送新请求的最长时间
+     * 默认: 60000
+     */
+    private Long limiterMaxRetryAfterMs = 60000L;
+    
     // Getters and Setters
     
     public String getApiKey() {
@@ -121,4 +181,84 @@ public class OpenRouterProperties {
     public void setProxyPort(Integer proxyPort) {
         this.proxyPort = proxyPort;
     }
+    
+    public Integer getEmbeddingBatchSize() {
+        return embeddingBatchSize;
+    }
+    
+    public void setEmbeddingBatchSize(Integer embeddingBatchSize) {
+        this.embeddingBatchSize = embeddingBatchSize;
+    }
+    
+    public Integer getEmbeddingBatchMaxTokens() {
+        return embeddingBatchMaxTokens;
+    }
+    
+    public void setEmbeddingBatchMaxTokens(Integer embeddingBatchMaxTokens) {
+        this.embeddingBatchMaxTokens = embeddingBatchMaxTokens;
+    }
+    
+    public Boolean getLimiterEnabled() {
+        return limiterEnabled;
+    }
+    
+    public void setLimiterEnabled(Boolean limiterEnabled) {
+        this.limiterEnabled = limiterEnabled;
+    }
+    
+    public Integer getInteractiveInitialConcurrency() {
+        return interactiveInitialConcurrency;
+    }
+    
+    public void setInteractiveInitialConcurrency(Integer interactiveInitialConcurrency) {
+        this.interactiveInitialConcurrency = interactiveInitialConcurrency;
+    }
+    
+    public Integer getInteractiveMaxConcurrency() {
+        return interactiveMaxConcurrency;
+    }
+    
+    public void setInteractiveMaxConcurrency(Integer interactiveMaxConcurrency) {
+        this.interactiveMaxConcurrency = interactiveMaxConcurrency;
+    }
+    
+    public Integer getBulkInitialConcurrency() {
+        return bulkInitialConcurrency;
+    }
+    
+    public void setBulkInitialConcurrency(Integer bulkInitialConcurrency) {
+        this.bulkInitialConcurrency = bulkInitialConcurrency;
+    }
+    
+    public Integer getBulkMaxConcurrency() {
+        return bulkMaxConcurrency;
+    }
+    
+    public void setBulkMaxConcurrency(Integer bulkMaxConcurrency) {
+        this.bulkMaxConcurrency = bulkMaxConcurrency;
+    }
+    
+    public Double getLimiterDecreaseFactor() {
+        return limiterDecreaseFactor;
+    }
+    
+    public void setLimiterDecreaseFactor(Double limiterDecreaseFactor) {
+        this.limiterDecreaseFactor = limiterDecreaseFactor;
+    }
+    
+    public Long getLimiterLatencyThresholdMs() {
+        return limiterLatencyThresholdMs;
+    }
+    
+    public void setLimiterLatencyThresholdMs(Long limiterLatencyThresholdMs) {
+        this.limiterLatencyThresholdMs = limiterLatencyThresholdMs;
+    }
+    
+    public Long getLimiterMaxRetryAfterMs() {
+        return limiterMaxRetryAfterMs;
+    }
+    
+    public void setLimiterMaxRetryAfterMs(Long limiterMaxRetryAfterMs) {
+        this.limiterMaxRetryAfterMs = limiterMaxRetryAfterMs;
+    }
 }
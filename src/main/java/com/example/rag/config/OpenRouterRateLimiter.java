@@ -0,0 +1,349 @@
+package com.example.rag.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * OpenRouter 客户端自适应限流
+ * 作为 openRouterWebClient 的过滤器，交互流量和批量流量各有一份独立的并发上限，按 AIMD 调整：
+ * 请求正常返回时加性增长（每个请求 +1/上限，约每轮满并发 +1），
+ * 收到 429 / 503 或响应超过延迟阈值时乘性减少，响应带 Retry-After 时在指定时间内不再发送新请求。
+ * 同一轮拥塞中并发返回的多个 429 只减少一次（只有在上次减少之后发出的请求才会再次触发减少）。
+ * 交互流量被限流时批量流量同时减少，把配额让给交互请求；批量流量被限流不影响交互流量。
+ *
+ * 超出上限的请求在队列中等待许可，不占用线程；未标记流量类型的请求按交互流量处理。
+ * 许可在响应体读取完成（或被取消、出错）时归还，而不是在收到响应头时，大批量向量化的响应体传输期间仍计入并发
+ */
+public class OpenRouterRateLimiter implements ExchangeFilterFunction {
+
+    private static final Logger log = LoggerFactory.getLogger(OpenRouterRateLimiter.class);
+
+    /**
+     * 请求属性名，值为 {@link Traffic}
+     */
+    public static final String TRAFFIC_ATTRIBUTE = OpenRouterRateLimiter.class.getName() + ".traffic";
+
+    /**
+     * 流量类型
+     */
+    public enum Traffic {
+
+        /**
+         * 用户正在等待结果的请求：查询向量化、答案生成
+         */
+        INTERACTIVE,
+
+        /**
+         * 后台批量请求：文档入库的批量向量化
+         */
+        BULK
+    }
+
+    private final OpenRouterProperties properties;
+
+    private final Map<Traffic, Budget> budgets = new EnumMap<>(Traffic.class);
+
+    public OpenRouterRateLimiter(OpenRouterProperties properties) {
+        this.properties = properties;
+        budgets.put(Traffic.INTERACTIVE, new Budget(Traffic.INTERACTIVE,
+                properties.getInteractiveInitialConcurrency(), properties.getInteractiveMaxConcurrency()));
+        budgets.put(Traffic.BULK, new Budget(Traffic.BULK,
+                properties.getBulkInitialConcurrency(), properties.getBulkMaxConcurrency()));
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        if (!Boolean.TRUE.equals(properties.getLimiterEnabled())) {
+            return next.exchange(request);
+        }
+        Traffic traffic = request.attribute(TRAFFIC_ATTRIBUTE)
+                .map(Traffic.class::cast)
+                .orElse(Traffic.INTERACTIVE);
+        Budget budget = budgets.get(traffic);
+
+        return Mono.<Permit>create(sink -> acquire(budget, sink))
+                .flatMap(permit -> {
+                    if (!permit.start()) {
+                        return Mono.empty();
+                    }
+                    AtomicBoolean responded = new AtomicBoolean();
+                    Runnable releaseOnce = permit.releaser(() -> release(budget));
+                    return next.exchange(request)
+                            .doOnNext(response -> onResponse(budget, permit, response))
+                            .map(response -> {
+                                responded.set(true);
+                                // 响应体读取完成、取消或出错时归还许可
+                                return response.mutate()
+                                        .body(body -> body.doFinally(signal -> releaseOnce.run()))
+                                        .build();
+                            })
+                            .doFinally(signal -> {
+                                // 出错、取消或没有响应时立即归还；正常收到响应时等响应体读取结束
+                                if (signal != SignalType.ON_COMPLETE || !responded.get()) {
+                                    releaseOnce.run();
+                                }
+                            });
+                });
+    }
+
+    /**
+     * 当前并发上限（向下取整，至少为 1）
+     */
+    public int currentLimit(Traffic traffic) {
+        Budget budget = budgets.get(traffic);
+        synchronized (budget) {
+            return budget.effectiveLimit();
+        }
+    }
+
+    /**
+     * 当前正在进行的请求数
+     */
+    public int inFlight(Traffic traffic) {
+        Budget budget = budgets.get(traffic);
+        synchronized (budget) {
+            return budget.inFlight;
+        }
+    }
+
+    private void acquire(Budget budget, MonoSink<Permit> sink) {
+        Permit permit = new Permit(sink);
+        boolean granted = false;
+        synchronized (budget) {
+            if (budget.waiters.isEmpty() && budget.canStart(System.currentTimeMillis())) {
+                budget.inFlight++;
+                granted = true;
+            } else {
+                budget.waiters.addLast(permit);
+                scheduleDrainIfCooling(budget);
+            }
+        }
+        sink.onCancel(() -> cancel(budget, permit));
+        if (granted && !permit.grant()) {
+            release(budget);
+        }
+    }
+
+    private void cancel(Budget budget, Permit permit) {
+        if (permit.state.compareAndSet(Permit.WAITING, Permit.CANCELLED)) {
+            synchronized (budget) {
+                budget.waiters.remove(permit);
+            }
+        } else if (permit.state.compareAndSet(Permit.GRANTED, Permit.CANCELLED)) {
+            // 已分配许可但请求尚未发出
+            release(budget);
+        }
+    }
+
+    private void release(Budget budget) {
+        synchronized (budget) {
+            budget.inFlight--;
+        }
+        drain(budget);
+    }
+
+    /**
+     * 按空出的许可依次放行等待中的请求
+     */
+    private void drain(Budget budget) {
+        List<Permit> granted = new ArrayList<>();
+        synchronized (budget) {
+            long now = System.currentTimeMillis();
+            while (!budget.waiters.isEmpty() && budget.canStart(now)) {
+                Permit permit = budget.waiters.pollFirst();
+                if (permit.state.get() == Permit.CANCELLED) {
+                    continue;
+                }
+                budget.inFlight++;
+                granted.add(permit);
+            }
+            scheduleDrainIfCooling(budget);
+        }
+        for (Permit permit : granted) {
+            if (!permit.grant()) {
+                release(budget);
+            }
+        }
+    }
+
+    /**
+     * Retry-After 暂停期间有请求在等待时，在暂停结束后放行
+     */
+    private void scheduleDrainIfCooling(Budget budget) {
+        long delay = budget.cooldownUntilMillis - System.currentTimeMillis();
+        if (delay <= 0 || budget.waiters.isEmpty() || budget.drainScheduled) {
+            return;
+        }
+        budget.drainScheduled = true;
+        Schedulers.parallel().schedule(() -> {
+            synchronized (budget) {
+                budget.drainScheduled = false;
+            }
+            drain(budget);
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void onResponse(Budget budget, Permit permit, ClientResponse response) {
+        int status = response.statusCode().value();
+        if (status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value()) {
+            long retryAfterMillis = retryAfterMillis(response.headers().asHttpHeaders());
+            decrease(budget, permit.startNanos, retryAfterMillis, "HTTP " + status);
+            if (budget.traffic == Traffic.INTERACTIVE) {
+                // 批量流量让出配额
+                decrease(budgets.get(Traffic.BULK), permit.startNanos, retryAfterMillis, "interactive traffic throttled");
+            }
+        } else if (response.statusCode().is2xxSuccessful()) {
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - permit.startNanos);
+            if (latencyMillis > properties.getLimiterLatencyThresholdMs()) {
+                decrease(budget, permit.startNanos, 0, "latency " + latencyMillis + " ms");
+            } else {
+                increase(budget);
+            }
+        }
+    }
+
+    private void increase(Budget budget) {
+        synchronized (budget) {
+            budget.limit = Math.min(budget.maxLimit, budget.limit + 1.0 / budget.limit);
+        }
+        drain(budget);
+    }
+
+    private void decrease(Budget budget, long requestStartNanos, long retryAfterMillis, String reason) {
+        synchronized (budget) {
+            if (requestStartNanos - budget.lastDecreaseNanos >= 0) {
+                double previous = budget.limit;
+                budget.limit = Math.max(1.0, budget.limit * properties.getLimiterDecreaseFactor());
+                budget.lastDecreaseNanos = System.nanoTime();
+                log.warn("OpenRouter {} concurrency limit decreased {} -> {} ({})",
+                        budget.traffic, (int) previous, budget.effectiveLimit(), reason);
+            }
+            if (retryAfterMillis > 0) {
+                long pause = Math.min(retryAfterMillis, properties.getLimiterMaxRetryAfterMs());
+                budget.cooldownUntilMillis = Math.max(budget.cooldownUntilMillis, System.currentTimeMillis() + pause);
+                log.warn("OpenRouter {} requests paused for {} ms (Retry-After)", budget.traffic, pause);
+            }
+        }
+    }
+
+    /**
+     * 解析 Retry-After 头：秒数或 HTTP 日期，缺失或无法解析时返回 0
+     */
+    static long retryAfterMillis(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Duration.ofSeconds(Long.parseLong(value.trim())).toMillis());
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, at.toInstant().toEpochMilli() - System.currentTimeMillis());
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 一种流量的并发配额，所有字段在持有本对象锁时访问
+     */
+    private static final class Budget {
+        private final Traffic traffic;
+        private final int maxLimit;
+        private final Deque<Permit> waiters = new ArrayDeque<>();
+        private double limit;
+        private int inFlight;
+        private long cooldownUntilMillis;
+        private long lastDecreaseNanos = System.nanoTime();
+        private boolean drainScheduled;
+
+        private Budget(Traffic traffic, int initialLimit, int maxLimit) {
+            this.traffic = traffic;
+            this.maxLimit = Math.max(1, maxLimit);
+            this.limit = Math.max(1, Math.min(initialLimit, this.maxLimit));
+        }
+
+        private int effectiveLimit() {
+            return Math.max(1, (int) limit);
+        }
+
+        private boolean canStart(long nowMillis) {
+            return inFlight < effectiveLimit() && nowMillis >= cooldownUntilMillis;
+        }
+    }
+
+    /**
+     * 一个请求的许可：等待中 → 已分配 → 已发出，等待中或已分配时可被取消
+     */
+    private static final class Permit {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int STARTED = 2;
+        private static final int CANCELLED = 3;
+
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long startNanos;
+
+        private Permit(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * 分配许可，请求已被取消时返回 false（调用方需归还许可）
+         */
+        private boolean grant() {
+            if (!state.compareAndSet(WAITING, GRANTED)) {
+                return false;
+            }
+            sink.success(this);
+            return true;
+        }
+
+        /**
+         * 开始发送请求，许可已被取消时返回 false
+         */
+        private boolean start() {
+            startNanos = System.nanoTime();
+            return state.compareAndSet(GRANTED, STARTED);
+        }
+
+        /**
+         * 已发出的请求归还许可的操作，多次调用只归还一次
+         */
+        private Runnable releaser(Runnable release) {
+            return () -> {
+                if (released.compareAndSet(false, true)) {
+                    release.run();
+                }
+            };
+        }
+    }
+}
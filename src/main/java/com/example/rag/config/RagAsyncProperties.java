@@ -0,0 +1,96 @@
+package com.example.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 异步任务执行配置属性
+ * 从 application.yml 中读取 rag.async 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "rag.async")
+public class RagAsyncProperties {
+
+    /**
+     * 文档处理任务的执行方式
+     */
+    public enum ExecutorMode {
+
+        /**
+         * 固定大小的线程池，任务在无界队列中排队
+         */
+        POOL,
+
+        /**
+         * 每个任务一个虚拟线程（JDK 21+），并发度由各下游的许可数限制；JDK 21 以下使用 POOL 的线程池
+         */
+        VIRTUAL
+    }
+
+    /**
+     * 执行方式：pool-线程池, virtual-每任务一个虚拟线程（默认 pool）
+     */
+    private ExecutorMode mode = ExecutorMode.POOL;
+
+    /**
+     * 线程池模式（及 JDK 21 以下的 virtual 模式）下的线程数（默认 5）
+     */
+    private Integer poolSize = 5;
+
+    /**
+     * 所有文档处理任务同时访问 OpenRouter 的最大并发数（默认 4）
+     */
+    private Integer openRouterConcurrency = 4;
+
+    /**
+     * 所有文档处理任务同时访问 Qdrant 的最大并发数（默认 4）
+     */
+    private Integer qdrantConcurrency = 4;
+
+    /**
+     * 所有文档处理任务同时访问 PostgreSQL 的最大并发数（默认 4，应小于连接池大小）
+     */
+    private Integer postgresConcurrency = 4;
+
+    // Getters and Setters
+
+    public ExecutorMode getMode() {
+        return mode;
+    }
+
+    public void setMode(ExecutorMode mode) {
+        this.mode = mode;
+    }
+
+    public Integer getPoolSize() {
+        return poolSize;
+    }
+
+    public void setPoolSize(Integer poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    public Integer getOpenRouterConcurrency() {
+        return openRouterConcurrency;
+    }
+
+    public void setOpenRouterConcurrency(Integer openRouterConcurrency) {
+        this.openRouterConcurrency = openRouterConcurrency;
+    }
+
+    public Integer getQdrantConcurrency() {
+        return qdrantConcurrency;
+    }
+
+    public void setQdrantConcurrency(Integer qdrantConcurrency) {
+        this.qdrantConcurrency = qdrantConcurrency;
+    }
+
+    public Integer getPostgresConcurrency() {
+        return postgresConcurrency;
+    }
+
+    public void setPostgresConcurrency(Integer postgresConcurrency) {
+        this.postgresConcurrency = postgresConcurrency;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.rag.config;
 
+import com.example.rag.util.ChunkSizeUnit;
+import com.example.rag.util.ChunkingStrategy;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
@@ -15,19 +17,35 @@ import java.util.List;
 public class RagDocumentProperties {
     
     /**
-     * 文档片段大小（字符数）
+     * 文档片段大小（按 chunkSizeUnit 计量）
      */
     private Integer chunkSize = 800;
     
     /**
-     * 片段重叠大小（字符数）
+     * 片段重叠大小（按 chunkSizeUnit 计量）
      */
-    private Integer chunkOverlap = 150;
+    private Integer chunkOverlap = 50;
+    
+    /**
+     * 片段大小、重叠大小和边界容差的计量单位：characters-字符数, tokens-cl100k_base token 数
+     * 按 token 计量时，fixed 策略不做边界对齐，其他策略按句子与结构对齐
+     */
+    private ChunkSizeUnit chunkSizeUnit = ChunkSizeUnit.CHARACTERS;
+    
+    /**
+     * 分块策略：fixed-固定长度, sentence-句子与结构感知, content_defined-基于内容
+     */
+    private ChunkingStrategy chunkingStrategy = ChunkingStrategy.SENTENCE;
+    
+    /**
+     * 句子感知分块时向前寻找切分位置的最大距离（按 chunkSizeUnit 计量）
+     */
+    private Integer boundaryTolerance = 160;
     
     /**
      * 支持的文件格式（逗号分隔）
      */
-    private String supportedFormats = "pdf,txt,docx,md";
+    private String supportedFormats = "pdf,txt,docx,md,xlsx,csv";
     
     /**
      * 最大文件大小（字节）
@@ -39,6 +57,117 @@ public class RagDocumentProperties {
      */
     private String uploadDir = "./uploads";
     
+    /**
+     * 是否使用流式提取（边解析边分块，内存占用与文档大小无关）
+     */
+    private Boolean streamingExtraction = true;
+    
+    /**
+     * 是否对 TXT / MD 使用快速提取（内存映射读取、按文件开头判断字符集、边解码边分块），不经过 Tika
+     */
+    private Boolean plainTextFastPath = true;
+    
+    /**
+     * 是否流式读取 XLSX / CSV 并按行分组分块（每个片段以表头开头），不经过 Tika
+     */
+    private Boolean spreadsheetRowChunking = true;
+    
+    /**
+     * 是否用 PDFBox 按页并行提取 PDF（代替 Tika 单线程解析），并记录每个片段的起始页码
+     */
+    private Boolean pdfParallelExtraction = true;
+    
+    /**
+     * 按页并行提取时每个任务处理的页数
+     */
+    private Integer pdfPagesPerTask = 16;
+    
+    /**
+     * 按页并行提取的线程池并行度，0 表示使用 CPU 核数
+     */
+    private Integer pdfExtractionParallelism = 0;
+    
+    /**
+     * 是否在子进程（fork 出的 JVM）中运行 Tika 解析，畸形文档耗尽 CPU 或内存时只影响子进程。
+     * 开启后 PDF 也在子进程中解析，不再按页并行提取，片段不记录页码
+     */
+    private Boolean forkedExtraction = false;
+    
+    /**
+     * 子进程数量，即同时解析的文档数上限
+     */
+    private Integer forkPoolSize = 2;
+    
+    /**
+     * 单个文档在子进程中解析的最长时间（毫秒），超时后子进程退出，该文档处理失败
+     */
+    private Long forkParseTimeoutMs = 120000L;
+    
+    /**
+     * 子进程的最大堆内存（MB），内存耗尽时子进程退出，该文档处理失败
+     */
+    private Integer forkMaxHeapMb = 512;
+    
+    /**
+     * 每个子进程最多解析的文档数，达到后由新的子进程替换，避免解析器的内存泄漏累积
+     */
+    private Integer forkMaxDocumentsPerProcess = 100;
+    
+    /**
+     * 子进程的类路径目录（放置 tika-app 等 jar 包），为空时子进程通过管道从主进程加载类
+     */
+    private String forkTikaBin;
+    
+    /**
+     * 是否缓存流式提取出的规范化文本（按文件内容哈希），再次处理同一内容时不再解析原文件
+     */
+    private Boolean textCacheEnabled = true;
+    
+    /**
+     * 提取文本缓存目录
+     */
+    private String textCacheDir = "./text-cache";
+    
+    /**
+     * 分片上传会话的有效期（小时），创建后超过该时长的会话及其临时文件被清理
+     */
+    private Integer uploadSessionTtlHours = 24;
+    
+    /**
+     * 压缩包最大大小（字节），压缩包内每个文件仍受 maxFileSize 限制
+     */
+    private Long maxArchiveSize = 536870912L; // 512MB
+    
+    /**
+     * 压缩包内最多处理的文件数
+     */
+    private Integer maxArchiveEntries = 1000;
+    
+    /**
+     * 压缩包内未标记 UTF-8 的文件名所用的字符集（Windows 中文系统创建的压缩包通常为 GBK）
+     */
+    private String archiveEntryCharset = "UTF-8";
+    
+    /**
+     * 是否监听共享目录，自动导入放入其中的文档（多个节点共享同一目录时只在一个节点上开启）
+     */
+    private Boolean watchEnabled = false;
+    
+    /**
+     * 被监听的目录（包括子目录），不能位于上传目录之内
+     */
+    private String watchDir;
+    
+    /**
+     * 文件大小和修改时间保持不变多久后才导入（毫秒），避免导入仍在写入的文件
+     */
+    private Long watchSettleMs = 5000L;
+    
+    /**
+     * 全量对账扫描的间隔（毫秒），补上文件系统事件遗漏的变化（如网络共享目录不产生事件）
+     */
+    private Long watchReconcileIntervalMs = 600000L;
+    
     // Getters and Setters
     
     public Integer getChunkSize() {
@@ -57,6 +186,30 @@ public class RagDocumentProperties {
         this.chunkOverlap = chunkOverlap;
     }
     
+    public ChunkSizeUnit getChunkSizeUnit() {
+        return chunkSizeUnit;
+    }
+    
+    public void setChunkSizeUnit(ChunkSizeUnit chunkSizeUnit) {
+        this.chunkSizeUnit = chunkSizeUnit;
+    }
+    
+    public ChunkingStrategy getChunkingStrategy() {
+        return chunkingStrategy;
+    }
+    
+    public void setChunkingStrategy(ChunkingStrategy chunkingStrategy) {
+        this.chunkingStrategy = chunkingStrategy;
+    }
+    
+    public Integer getBoundaryTolerance() {
+        return boundaryTolerance;
+    }
+    
+    public void setBoundaryTolerance(Integer boundaryTolerance) {
+        this.boundaryTolerance = boundaryTolerance;
+    }
+    
     public String getSupportedFormats() {
         return supportedFormats;
     }
@@ -81,6 +234,182 @@ public class RagDocumentProperties {
         this.uploadDir = uploadDir;
     }
     
+    public Boolean getStreamingExtraction() {
+        return streamingExtraction;
+    }
+    
+    public void setStreamingExtraction(Boolean streamingExtraction) {
+        this.streamingExtraction = streamingExtraction;
+    }
+    
+    public Boolean getPlainTextFastPath() {
+        return plainTextFastPath;
+    }
+    
+    public void setPlainTextFastPath(Boolean plainTextFastPath) {
+        this.plainTextFastPath = plainTextFastPath;
+    }
+    
+    public Boolean getSpreadsheetRowChunking() {
+        return spreadsheetRowChunking;
+    }
+    
+    public void setSpreadsheetRowChunking(Boolean spreadsheetRowChunking) {
+        this.spreadsheetRowChunking = spreadsheetRowChunking;
+    }
+    
+    public Boolean getPdfParallelExtraction() {
+        return pdfParallelExtraction;
+    }
+    
+    public void setPdfParallelExtraction(Boolean pdfParallelExtraction) {
+        this.pdfParallelExtraction = pdfParallelExtraction;
+    }
+    
+    public Integer getPdfPagesPerTask() {
+        return pdfPagesPerTask;
+    }
+    
+    public void setPdfPagesPerTask(Integer pdfPagesPerTask) {
+        this.pdfPagesPerTask = pdfPagesPerTask;
+    }
+    
+    public Integer getPdfExtractionParallelism() {
+        return pdfExtractionParallelism;
+    }
+    
+    public void setPdfExtractionParallelism(Integer pdfExtractionParallelism) {
+        this.pdfExtractionParallelism = pdfExtractionParallelism;
+    }
+    
+    public Boolean getForkedExtraction() {
+        return forkedExtraction;
+    }
+    
+    public void setForkedExtraction(Boolean forkedExtraction) {
+        this.forkedExtraction = forkedExtraction;
+    }
+    
+    public Integer getForkPoolSize() {
+        return forkPoolSize;
+    }
+    
+    public void setForkPoolSize(Integer forkPoolSize) {
+        this.forkPoolSize = forkPoolSize;
+    }
+    
+    public Long getForkParseTimeoutMs() {
+        return forkParseTimeoutMs;
+    }
+    
+    public void setForkParseTimeoutMs(Long forkParseTimeoutMs) {
+        this.forkParseTimeoutMs = forkParseTimeoutMs;
+    }
+    
+    public Integer getForkMaxHeapMb() {
+        return forkMaxHeapMb;
+    }
+    
+    public void setForkMaxHeapMb(Integer forkMaxHeapMb) {
+        this.forkMaxHeapMb = forkMaxHeapMb;
+    }
+    
+    public Integer getForkMaxDocumentsPerProcess() {
+        return forkMaxDocumentsPerProcess;
+    }
+    
+    public void setForkMaxDocumentsPerProcess(Integer forkMaxDocumentsPerProcess) {
+        this.forkMaxDocumentsPerProcess = forkMaxDocumentsPerProcess;
+    }
+    
+    public String getForkTikaBin() {
+        return forkTikaBin;
+    }
+    
+    public void setForkTikaBin(String forkTikaBin) {
+        this.forkTikaBin = forkTikaBin;
+    }
+    
+    public Boolean getTextCacheEnabled() {
+        return textCacheEnabled;
+    }
+    
+    public void setTextCacheEnabled(Boolean textCacheEnabled) {
+        this.textCacheEnabled = textCacheEnabled;
+    }
+    
+    public String getTextCacheDir() {
+        return textCacheDir;
+    }
+    
+    public void setTextCacheDir(String textCacheDir) {
+        this.textCacheDir = textCacheDir;
+    }
+    
+    public Integer getUploadSessionTtlHours() {
+        return uploadSessionTtlHours;
+    }
+    
+    public void setUploadSessionTtlHours(Integer uploadSessionTtlHours) {
+        this.uploadSessionTtlHours = uploadSessionTtlHours;
+    }
+    
+    public Long getMaxArchiveSize() {
+        return maxArchiveSize;
+    }
+    
+    public void setMaxArchiveSize(Long maxArchiveSize) {
+        this.maxArchiveSize = maxArchiveSize;
+    }
+    
+    public Integer getMaxArchiveEntries() {
+        return maxArchiveEntries;
+    }
+    
+    public void setMaxArchiveEntries(Integer maxArchiveEntries) {
+        this.maxArchiveEntries = maxArchiveEntries;
+    }
+    
+    public String getArchiveEntryCharset() {
+        return archiveEntryCharset;
+    }
+    
+    public void setArchiveEntryCharset(String archiveEntryCharset) {
+        this.archiveEntryCharset = archiveEntryCharset;
+    }
+    
+    public Boolean getWatchEnabled() {
+        return watchEnabled;
+    }
+    
+    public void setWatchEnabled(Boolean watchEnabled) {
+        this.watchEnabled = watchEnabled;
+    }
+    
+    public String getWatchDir() {
+        return watchDir;
+    }
+    
+    public void setWatchDir(String watchDir) {
+        this.watchDir = watchDir;
+    }
+    
+    public Long getWatchSettleMs() {
+        return watchSettleMs;
+    }
+    
+    public void setWatchSettleMs(Long watchSettleMs) {
+        this.watchSettleMs = watchSettleMs;
+    }
+    
+    public Long getWatchReconcileIntervalMs() {
+        return watchReconcileIntervalMs;
+    }
+    
+    public void setWatchReconcileIntervalMs(Long watchReconcileIntervalMs) {
+        this.watchReconcileIntervalMs = watchReconcileIntervalMs;
+    }
+    
     /**
      * 获取支持的文件格式列表
      * 
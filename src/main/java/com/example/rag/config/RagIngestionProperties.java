@@ -0,0 +1,277 @@
+package com.example.rag.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * RAG 文档入库流水线配置属性
+ * 从 application.yml 中读取 rag.ingestion 配置
+ */
+@Component
+@ConfigurationProperties(prefix = "rag.ingestion")
+public class RagIngestionProperties {
+
+    /**
+     * 各阶段之间队列的容量（以批次计），队列满时上游阶段阻塞等待（默认 4）
+     */
+    private Integer queueCapacity = 4;
+
+    /**
+     * 向量化阶段并发数（默认 2）
+     */
+    private Integer embeddingConcurrency = 2;
+
+    /**
+     * Qdrant 写入阶段并发数（默认 1）
+     */
+    private Integer upsertConcurrency = 1;
+
+    /**
+     * PostgreSQL 持久化阶段并发数（默认 1）
+     */
+    private Integer persistConcurrency = 1;
+
+    /**
+     * 片段记录批量插入的每批条数（默认 2000），持久化阶段攒满一批、流水线结束或失败时写入一次；
+     * 每条记录 7 个参数，受 PostgreSQL 单条语句 65535 个参数的限制，超过 9362 时按 9362 计
+     */
+    private Integer chunkInsertBatchSize = 2000;
+
+    /**
+     * 是否启用基于内容哈希的持久化向量缓存（默认 true）
+     */
+    private Boolean embeddingCacheEnabled = true;
+
+    /**
+     * 是否把同时入库的各文档的片段合并成满批次再向量化（默认 true）
+     */
+    private Boolean sharedEmbeddingBatchEnabled = true;
+
+    /**
+     * 合并向量化时片段凑不满一批的最长等待时间（毫秒，默认 50）
+     */
+    private Long sharedEmbeddingBatchLingerMs = 50L;
+
+    /**
+     * 本节点是否认领并执行入库任务（默认 true），只提供 API 的节点可以关闭
+     */
+    private Boolean jobWorkerEnabled = true;
+
+    /**
+     * 认领入库任务的轮询间隔（毫秒，默认 2000）
+     */
+    private Long jobPollIntervalMs = 2000L;
+
+    /**
+     * 入库任务的租约时长（秒，默认 300），执行期间每隔租约的 1/3 续约一次
+     */
+    private Integer jobLeaseSeconds = 300;
+
+    /**
+     * 本节点同时执行的入库任务数上限（默认 4）
+     */
+    private Integer jobConcurrency = 4;
+
+    /**
+     * 入库任务最多认领次数（默认 3），节点反复在处理中途退出时不再重试
+     */
+    private Integer jobMaxAttempts = 3;
+
+    /**
+     * 入库任务失败后首次重试前的等待时长（秒，默认 30），之后每次重试翻倍
+     */
+    private Integer jobRetryDelaySeconds = 30;
+
+    /**
+     * 任务排队时每估算字符数折算的等待秒数的倒数（默认 20000）：
+     * 估算 2 万字符的文档排在同时提交的小文档之后约 1 秒，已等待的时间抵消这部分延后，大文档不会一直排不上
+     */
+    private Long jobCostCharsPerSecond = 20000L;
+
+    /**
+     * 高优先级任务提前、低优先级任务推后的排队时间（秒，默认 3600）
+     */
+    private Integer jobPriorityBoostSeconds = 3600;
+
+    /**
+     * 同一文档两次进度推送的最小间隔（毫秒，默认 250），提取完成和处理结束的事件不受限制
+     */
+    private Long progressPublishIntervalMs = 250L;
+
+    /**
+     * 进度推送连接的心跳间隔（毫秒，默认 15000），同时检查订阅的文档是否已在其他节点处理结束
+     */
+    private Long progressHeartbeatMs = 15000L;
+
+    /**
+     * 进度推送连接的超时时间（毫秒，默认 1800000），超时后客户端需要重新订阅
+     */
+    private Long progressStreamTimeoutMs = 1800000L;
+
+    /**
+     * 向进度推送连接写入事件的线程数（默认 2），处理线程不等待客户端接收
+     */
+    private Integer progressSendThreads = 2;
+
+    // Getters and Setters
+
+    public Integer getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(Integer queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public Integer getEmbeddingConcurrency() {
+        return embeddingConcurrency;
+    }
+
+    public void setEmbeddingConcurrency(Integer embeddingConcurrency) {
+        this.embeddingConcurrency = embeddingConcurrency;
+    }
+
+    public Integer getUpsertConcurrency() {
+        return upsertConcurrency;
+    }
+
+    public void setUpsertConcurrency(Integer upsertConcurrency) {
+        this.upsertConcurrency = upsertConcurrency;
+    }
+
+    public Integer getPersistConcurrency() {
+        return persistConcurrency;
+    }
+
+    public void setPersistConcurrency(Integer persistConcurrency) {
+        this.persistConcurrency = persistConcurrency;
+    }
+
+    public Integer getChunkInsertBatchSize() {
+        return chunkInsertBatchSize;
+    }
+
+    public void setChunkInsertBatchSize(Integer chunkInsertBatchSize) {
+        this.chunkInsertBatchSize = chunkInsertBatchSize;
+    }
+
+    public Boolean getEmbeddingCacheEnabled() {
+        return embeddingCacheEnabled;
+    }
+
+    public void setEmbeddingCacheEnabled(Boolean embeddingCacheEnabled) {
+        this.embeddingCacheEnabled = embeddingCacheEnabled;
+    }
+
+    public Boolean getSharedEmbeddingBatchEnabled() {
+        return sharedEmbeddingBatchEnabled;
+    }
+
+    public void setSharedEmbeddingBatchEnabled(Boolean sharedEmbeddingBatchEnabled) {
+        this.sharedEmbeddingBatchEnabled = sharedEmbeddingBatchEnabled;
+    }
+
+    public Long getSharedEmbeddingBatchLingerMs() {
+        return sharedEmbeddingBatchLingerMs;
+    }
+
+    public void setSharedEmbeddingBatchLingerMs(Long sharedEmbeddingBatchLingerMs) {
+        this.sharedEmbeddingBatchLingerMs = sharedEmbeddingBatchLingerMs;
+    }
+
+    public Boolean getJobWorkerEnabled() {
+        return jobWorkerEnabled;
+    }
+
+    public void setJobWorkerEnabled(Boolean jobWorkerEnabled) {
+        this.jobWorkerEnabled = jobWorkerEnabled;
+    }
+
+    public Long getJobPollIntervalMs() {
+        return jobPollIntervalMs;
+    }
+
+    public void setJobPollIntervalMs(Long jobPollIntervalMs) {
+        this.jobPollIntervalMs = jobPollIntervalMs;
+    }
+
+    public Integer getJobLeaseSeconds() {
+        return jobLeaseSeconds;
+    }
+
+    public void setJobLeaseSeconds(Integer jobLeaseSeconds) {
+        this.jobLeaseSeconds = jobLeaseSeconds;
+    }
+
+    public Integer getJobConcurrency() {
+        return jobConcurrency;
+    }
+
+    public void setJobConcurrency(Integer jobConcurrency) {
+        this.jobConcurrency = jobConcurrency;
+    }
+
+    public Integer getJobMaxAttempts() {
+        return jobMaxAttempts;
+    }
+
+    public void setJobMaxAttempts(Integer jobMaxAttempts) {
+        this.jobMaxAttempts = jobMaxAttempts;
+    }
+
+    public Integer getJobRetryDelaySeconds() {
+        return jobRetryDelaySeconds;
+    }
+
+    public void setJobRetryDelaySeconds(Integer jobRetryDelaySeconds) {
+        this.jobRetryDelaySeconds = jobRetryDelaySeconds;
+    }
+
+    public Long getJobCostCharsPerSecond() {
+        return jobCostCharsPerSecond;
+    }
+
+    public void setJobCostCharsPerSecond(Long jobCostCharsPerSecond) {
+        this.jobCostCharsPerSecond = jobCostCharsPerSecond;
+    }
+
+    public Integer getJobPriorityBoostSeconds() {
+        return jobPriorityBoostSeconds;
+    }
+
+    public void setJobPriorityBoostSeconds(Integer jobPriorityBoostSeconds) {
+        this.jobPriorityBoostSeconds = jobPriorityBoostSeconds;
+    }
+
+    public Long getProgressPublishIntervalMs() {
+        return progressPublishIntervalMs;
+    }
+
+    public void setProgressPublishIntervalMs(Long progressPublishIntervalMs) {
+        this.progressPublishIntervalMs = progressPublishIntervalMs;
+    }
+
+    public Long getProgressHeartbeatMs() {
+        return progressHeartbeatMs;
+    }
+
+    public void setProgressHeartbeatMs(Long progressHeartbeatMs) {
+        this.progressHeartbeatMs = progressHeartbeatMs;
+    }
+
+    public Long getProgressStreamTimeoutMs() {
+        return progressStreamTimeoutMs;
+    }
+
+    public void setProgressStreamTimeoutMs(Long progressStreamTimeoutMs) {
+        this.progressStreamTimeoutMs = progressStreamTimeoutMs;
+    }
+
+    public Integer getProgressSendThreads() {
+        return progressSendThreads;
+    }
+
+    public void setProgressSendThreads(Integer progressSendThreads) {
+        this.progressSendThreads = progressSendThreads;
+    }
+}
@@ -21,6 +21,21 @@ public class RagRetrievalProperties {
      */
     private Double minScore = 0.7;
 
+    /**
+     * 是否合并并发查询的向量化请求（默认 true）
+     */
+    private Boolean queryBatchEnabled = true;
+
+    /**
+     * 合并窗口：第一个查询等待其他查询加入的最长时间（毫秒，默认 5）
+     */
+    private Long queryBatchWindowMs = 5L;
+
+    /**
+     * 每次合并请求最多包含的查询数，凑满后立即发送（默认 32）
+     */
+    private Integer queryBatchMaxSize = 32;
+
     // Getters and Setters
 
     public Integer getTopK() {
@@ -38,4 +53,28 @@ public class RagRetrievalProperties {
     public void setMinScore(Double minScore) {
         this.minScore = minScore;
     }
+
+    public Boolean getQueryBatchEnabled() {
+        return queryBatchEnabled;
+    }
+
+    public void setQueryBatchEnabled(Boolean queryBatchEnabled) {
+        this.queryBatchEnabled = queryBatchEnabled;
+    }
+
+    public Long getQueryBatchWindowMs() {
+        return queryBatchWindowMs;
+    }
+
+    public void setQueryBatchWindowMs(Long queryBatchWindowMs) {
+        this.queryBatchWindowMs = queryBatchWindowMs;
+    }
+
+    public Integer getQueryBatchMaxSize() {
+        return queryBatchMaxSize;
+    }
+
+    public void setQueryBatchMaxSize(Integer queryBatchMaxSize) {
+        this.queryBatchMaxSize = queryBatchMaxSize;
+    }
 }
@@ -0,0 +1,62 @@
+package com.example.rag.controller;
+
+import com.example.rag.service.ArchiveIngestionService;
+import com.example.rag.vo.ApiResponse;
+import com.example.rag.vo.IngestionBatchVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * 压缩包导入控制器
+ * 上传一个 ZIP 压缩包批量导入文档，返回批次ID，之后按批次ID查询整体处理进度
+ */
+@RestController
+@RequestMapping("/api/documents/archives")
+public class ArchiveController {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveController.class);
+
+    @Autowired
+    private ArchiveIngestionService archiveIngestionService;
+
+    /**
+     * 上传压缩包
+     * POST /api/documents/archives
+     *
+     * @param file ZIP 压缩包
+     * @return 批次信息
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<IngestionBatchVO>> uploadArchive(
+            @RequestParam("file") MultipartFile file) {
+        log.info("接收压缩包导入请求，文件名：{}", file.getOriginalFilename());
+
+        try {
+            IngestionBatchVO batchVO = archiveIngestionService.ingestArchive(file);
+            log.info("压缩包导入成功，批次ID：{}，文档数：{}", batchVO.getBatchId(), batchVO.getTotalCount());
+            return ResponseEntity.ok(ApiResponse.success(batchVO));
+        } catch (IOException e) {
+            log.error("压缩包导入失败，IO异常", e);
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "文件保存失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 查询批次进度
+     * GET /api/documents/archives/{batchId}
+     *
+     * @param batchId 批次ID
+     * @return 批次信息
+     */
+    @GetMapping("/{batchId}")
+    public ResponseEntity<ApiResponse<IngestionBatchVO>> getBatch(@PathVariable Long batchId) {
+        return ResponseEntity.ok(ApiResponse.success(archiveIngestionService.getBatch(batchId)));
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.rag.controller;
 
+import com.example.rag.exception.BusinessException;
 import com.example.rag.service.DocumentService;
+import com.example.rag.service.IngestionProgressService;
 import com.example.rag.vo.ApiResponse;
 import com.example.rag.vo.DocumentDetailVO;
 import com.example.rag.vo.DocumentVO;
@@ -11,6 +13,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 
@@ -29,20 +32,25 @@ public class DocumentController {
     @Autowired
     private DocumentService documentService;
     
+    @Autowired
+    private IngestionProgressService ingestionProgressService;
+    
     /**
      * 上传文档
      * POST /api/documents
      * 
      * @param file 上传的文件
+     * @param priority 处理优先级：high / normal / low，默认 normal
      * @return 文档信息
      */
     @PostMapping
     public ResponseEntity<ApiResponse<DocumentVO>> uploadDocument(
-            @RequestParam("file") MultipartFile file) {
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "priority", required = false) String priority) {
         log.info("接收文档上传请求，文件名：{}", file.getOriginalFilename());
         
         try {
-            DocumentVO documentVO = documentService.uploadDocument(file);
+            DocumentVO documentVO = documentService.uploadDocument(file, priority);
             log.info("文档上传成功，文档ID：{}", documentVO.getId());
             return ResponseEntity.ok(ApiResponse.success(documentVO));
         } catch (IOException e) {
@@ -52,6 +60,61 @@ public class DocumentController {
         }
     }
     
+    /**
+     * 替换文档内容
+     * PUT /api/documents/{id}
+     * 
+     * @param id 文档ID
+     * @param file 新版本文件
+     * @return 文档信息
+     */
+    @PutMapping("/{id}")
+    public ResponseEntity<ApiResponse<DocumentVO>> replaceDocument(
+            @PathVariable Long id,
+            @RequestParam("file") MultipartFile file) {
+        log.info("接收文档替换请求，文档ID：{}，文件名：{}", id, file.getOriginalFilename());
+        
+        // 参数验证
+        if (id == null || id <= 0) {
+            log.warn("文档ID参数无效：{}", id);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(400, "文档ID无效"));
+        }
+        
+        try {
+            DocumentVO documentVO = documentService.replaceDocument(id, file);
+            log.info("文档替换成功，文档ID：{}", id);
+            return ResponseEntity.ok(ApiResponse.success(documentVO));
+        } catch (IOException e) {
+            log.error("文档替换失败，IO异常", e);
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "文件保存失败：" + e.getMessage()));
+        }
+    }
+    
+    /**
+     * 重试处理失败的文档
+     * POST /api/documents/{id}/retry
+     * 
+     * @param id 文档ID
+     * @return 文档信息
+     */
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<ApiResponse<DocumentVO>> retryDocument(@PathVariable Long id) {
+        log.info("接收文档重试请求，文档ID：{}", id);
+        
+        // 参数验证
+        if (id == null || id <= 0) {
+            log.warn("文档ID参数无效：{}", id);
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(400, "文档ID无效"));
+        }
+        
+        DocumentVO documentVO = documentService.retryDocument(id);
+        log.info("文档已重新提交处理，文档ID：{}", id);
+        return ResponseEntity.ok(ApiResponse.success(documentVO));
+    }
+    
     /**
      * 获取文档列表（分页）
      * GET /api/documents?page=1&size=10
@@ -128,4 +191,38 @@ public class DocumentController {
         log.info("文档详情查询成功，文档ID：{}，片段数量：{}", id, detailVO.getChunkCount());
         return ResponseEntity.ok(ApiResponse.success(detailVO));
     }
+    
+    /**
+     * 订阅文档处理进度（Server-Sent Events）
+     * GET /api/documents/{id}/progress
+     * 推送 progress 事件（IngestionProgressVO），文档处理完成或失败后推送最终状态并关闭连接
+     * 
+     * @param id 文档ID
+     * @return SSE 连接
+     */
+    @GetMapping("/{id}/progress")
+    public SseEmitter streamProgress(@PathVariable Long id) {
+        log.info("接收处理进度订阅请求，文档ID：{}", id);
+        
+        // 参数验证
+        if (id == null || id <= 0) {
+            log.warn("文档ID参数无效：{}", id);
+            throw new BusinessException(400, "文档ID无效");
+        }
+        
+        return ingestionProgressService.subscribe(id);
+    }
+    
+    /**
+     * 订阅所有文档的处理进度（Server-Sent Events）
+     * GET /api/documents/progress
+     * 推送本节点正在处理的各文档的 progress 事件，代替反复轮询文档列表
+     * 
+     * @return SSE 连接
+     */
+    @GetMapping("/progress")
+    public SseEmitter streamAllProgress() {
+        log.info("接收全部文档处理进度订阅请求");
+        return ingestionProgressService.subscribeAll();
+    }
 }
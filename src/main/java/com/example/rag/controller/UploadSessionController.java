@@ -0,0 +1,121 @@
+package com.example.rag.controller;
+
+import com.example.rag.service.UploadSessionService;
+import com.example.rag.vo.ApiResponse;
+import com.example.rag.vo.DocumentVO;
+import com.example.rag.vo.UploadSessionRequest;
+import com.example.rag.vo.UploadSessionVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 分片上传控制器
+ * 提供可恢复的上传接口：创建会话 → 按偏移量并行上传分片 → 完成会话，
+ * 网络中断后只需重传未到达的字节区间，不必从头上传
+ */
+@RestController
+@RequestMapping("/api/documents/uploads")
+public class UploadSessionController {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionController.class);
+
+    @Autowired
+    private UploadSessionService uploadSessionService;
+
+    /**
+     * 创建上传会话
+     * POST /api/documents/uploads
+     *
+     * @param request 文件名、文件大小和文件类型
+     * @return 上传会话
+     */
+    @PostMapping
+    public ResponseEntity<ApiResponse<UploadSessionVO>> createSession(@RequestBody UploadSessionRequest request) {
+        log.info("接收上传会话创建请求，文件名：{}，大小：{}", request.getFileName(), request.getFileSize());
+
+        try {
+            return ResponseEntity.ok(ApiResponse.success(uploadSessionService.createSession(request)));
+        } catch (IOException e) {
+            log.error("上传会话创建失败，IO异常", e);
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "临时文件创建失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 上传分片，请求体为分片的原始字节
+     * PUT /api/documents/uploads/{sessionId}/parts?offset=0
+     *
+     * @param sessionId 上传会话ID
+     * @param offset 分片在文件中的起始偏移量
+     * @param data 分片内容
+     * @return 写入后的上传会话
+     */
+    @PutMapping("/{sessionId}/parts")
+    public ResponseEntity<ApiResponse<UploadSessionVO>> uploadPart(
+            @PathVariable String sessionId,
+            @RequestParam("offset") long offset,
+            InputStream data) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(uploadSessionService.writePart(sessionId, offset, data)));
+        } catch (IOException e) {
+            log.warn("分片写入失败，会话ID：{}，偏移量：{}，原因：{}", sessionId, offset, e.getMessage());
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "分片写入失败，请重传：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 查询上传会话及已接收的字节区间
+     * GET /api/documents/uploads/{sessionId}
+     *
+     * @param sessionId 上传会话ID
+     * @return 上传会话
+     */
+    @GetMapping("/{sessionId}")
+    public ResponseEntity<ApiResponse<UploadSessionVO>> getSession(@PathVariable String sessionId) {
+        return ResponseEntity.ok(ApiResponse.success(uploadSessionService.getSession(sessionId)));
+    }
+
+    /**
+     * 完成上传，创建文档记录并提交处理
+     * POST /api/documents/uploads/{sessionId}/complete
+     *
+     * @param sessionId 上传会话ID
+     * @return 文档信息
+     */
+    @PostMapping("/{sessionId}/complete")
+    public ResponseEntity<ApiResponse<DocumentVO>> completeSession(@PathVariable String sessionId) {
+        log.info("接收上传完成请求，会话ID：{}", sessionId);
+
+        try {
+            DocumentVO documentVO = uploadSessionService.completeSession(sessionId);
+            log.info("分片上传完成，会话ID：{}，文档ID：{}", sessionId, documentVO.getId());
+            return ResponseEntity.ok(ApiResponse.success(documentVO));
+        } catch (IOException e) {
+            log.error("分片上传完成失败，IO异常，会话ID：{}", sessionId, e);
+            return ResponseEntity.status(500)
+                    .body(ApiResponse.error(500, "文件保存失败：" + e.getMessage()));
+        }
+    }
+
+    /**
+     * 放弃上传，删除会话及临时文件
+     * DELETE /api/documents/uploads/{sessionId}
+     *
+     * @param sessionId 上传会话ID
+     * @return 删除结果
+     */
+    @DeleteMapping("/{sessionId}")
+    public ResponseEntity<ApiResponse<Void>> abortSession(@PathVariable String sessionId) {
+        log.info("接收上传放弃请求，会话ID：{}", sessionId);
+        uploadSessionService.abortSession(sessionId);
+        return ResponseEntity.ok(ApiResponse.success());
+    }
+}
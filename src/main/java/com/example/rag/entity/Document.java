@@ -62,6 +62,21 @@ public class Document {
      */
     private Integer chunkCount;
     
+    /**
+     * 文件内容的 SHA-256 哈希（十六进制），用于识别重复上传
+     */
+    private String contentHash;
+    
+    /**
+     * 生成已保存片段时使用的分块与向量化配置，中断后继续处理时据此判断已保存的片段能否沿用
+     */
+    private String chunkingSignature;
+    
+    /**
+     * 所属的压缩包导入批次ID，单独上传的文档为 null
+     */
+    private Long batchId;
+    
     /**
      * 创建时间（自动填充）
      */
@@ -156,6 +171,30 @@ public class Document {
         this.chunkCount = chunkCount;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public String getChunkingSignature() {
+        return chunkingSignature;
+    }
+    
+    public void setChunkingSignature(String chunkingSignature) {
+        this.chunkingSignature = chunkingSignature;
+    }
+    
+    public Long getBatchId() {
+        return batchId;
+    }
+    
+    public void setBatchId(Long batchId) {
+        this.batchId = batchId;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -42,6 +42,16 @@ public class DocumentChunk {
      */
     private Integer charCount;
     
+    /**
+     * 片段内容的 SHA-256 哈希（十六进制），用于文档更新时比对未变化的片段
+     */
+    private String contentHash;
+    
+    /**
+     * 片段起始页码（从 1 开始），只有按页提取的 PDF 记录
+     */
+    private Integer pageNumber;
+    
     /**
      * 创建时间（自动填充）
      */
@@ -98,6 +108,22 @@ public class DocumentChunk {
         this.charCount = charCount;
     }
     
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public Integer getPageNumber() {
+        return pageNumber;
+    }
+    
+    public void setPageNumber(Integer pageNumber) {
+        this.pageNumber = pageNumber;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
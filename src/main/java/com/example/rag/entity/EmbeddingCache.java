@@ -0,0 +1,81 @@
+package com.example.rag.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 向量缓存实体类
+ * 以（向量化模型, 片段文本 SHA-256）为键持久化向量，避免重复调用向量化服务
+ */
+@TableName("embedding_cache")
+public class EmbeddingCache {
+    
+    /**
+     * 向量化模型名称
+     */
+    private String model;
+    
+    /**
+     * 片段文本的 SHA-256（十六进制）
+     */
+    private String contentHash;
+    
+    /**
+     * 向量维度
+     */
+    private Integer dimension;
+    
+    /**
+     * 向量数据（float32 小端序）
+     */
+    private byte[] embedding;
+    
+    /**
+     * 创建时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+    
+    // Getters and Setters
+    
+    public String getModel() {
+        return model;
+    }
+    
+    public void setModel(String model) {
+        this.model = model;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
+    public Integer getDimension() {
+        return dimension;
+    }
+    
+    public void setDimension(Integer dimension) {
+        this.dimension = dimension;
+    }
+    
+    public byte[] getEmbedding() {
+        return embedding;
+    }
+    
+    public void setEmbedding(byte[] embedding) {
+        this.embedding = embedding;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.rag.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.example.rag.config.JsonbTypeHandler;
+
+import java.time.LocalDateTime;
+
+/**
+ * 压缩包导入批次实体类
+ * 一次压缩包上传对应一个批次，包内每个文件是一条带 batch_id 的文档记录，批次进度由这些文档的状态汇总得到
+ */
+@TableName(value = "ingestion_batch", autoResultMap = true)
+public class IngestionBatch {
+
+    /**
+     * 批次ID（主键，自增）
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 压缩包文件名
+     */
+    private String fileName;
+
+    /**
+     * 创建的文档数
+     */
+    private Integer totalCount;
+
+    /**
+     * 跳过的文件数（格式不支持、过大或为空）
+     */
+    private Integer skippedCount;
+
+    /**
+     * 跳过的文件及原因（JSON 数组）
+     */
+    @TableField(typeHandler = JsonbTypeHandler.class)
+    private String skippedEntries;
+
+    /**
+     * 创建时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Integer getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Integer totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public Integer getSkippedCount() {
+        return skippedCount;
+    }
+
+    public void setSkippedCount(Integer skippedCount) {
+        this.skippedCount = skippedCount;
+    }
+
+    public String getSkippedEntries() {
+        return skippedEntries;
+    }
+
+    public void setSkippedEntries(String skippedEntries) {
+        this.skippedEntries = skippedEntries;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.rag.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 文档入库任务实体类
+ * 持久化的处理队列：任务由任意节点的工作线程以租约方式认领，租约过期的任务可被其他节点重新认领
+ */
+@TableName("ingestion_job")
+public class IngestionJob {
+
+    /**
+     * 任务类型：完整处理
+     */
+    public static final String TYPE_PROCESS = "PROCESS";
+
+    /**
+     * 任务类型：文档替换后的增量处理
+     */
+    public static final String TYPE_REPROCESS = "REPROCESS";
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_DONE = "DONE";
+    public static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * 优先级：高 / 普通 / 低
+     */
+    public static final int PRIORITY_HIGH = 1;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_LOW = -1;
+
+    /**
+     * 任务ID（主键，自增）
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 文档ID（外键）
+     */
+    private Long documentId;
+
+    /**
+     * 任务类型：PROCESS, REPROCESS
+     */
+    private String jobType;
+
+    /**
+     * 任务状态：PENDING, RUNNING, DONE, FAILED
+     */
+    private String status;
+
+    /**
+     * 优先级：1 高，0 普通，-1 低
+     */
+    private Integer priority;
+
+    /**
+     * 估算的处理成本（文本字符数）
+     */
+    private Long estimatedCost;
+
+    /**
+     * 排队时间：提交时间按处理成本推后、按优先级提前，认领时按此排序
+     */
+    private LocalDateTime effectiveAt;
+
+    /**
+     * 已认领次数（每次认领加 1，包括租约过期后的重新认领）
+     */
+    private Integer attempts;
+
+    /**
+     * 持有租约的工作节点标识
+     */
+    private String leaseOwner;
+
+    /**
+     * 租约到期时间，到期后任务可被重新认领
+     */
+    private LocalDateTime leaseExpiresAt;
+
+    /**
+     * 失败后等待重试的任务在此时间之前不会被认领
+     */
+    private LocalDateTime availableAt;
+
+    /**
+     * 最近一次失败的原因
+     */
+    private String lastError;
+
+    /**
+     * 创建时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getJobType() {
+        return jobType;
+    }
+
+    public void setJobType(String jobType) {
+        this.jobType = jobType;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    public Long getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public void setEstimatedCost(Long estimatedCost) {
+        this.estimatedCost = estimatedCost;
+    }
+
+    public LocalDateTime getEffectiveAt() {
+        return effectiveAt;
+    }
+
+    public void setEffectiveAt(LocalDateTime effectiveAt) {
+        this.effectiveAt = effectiveAt;
+    }
+
+    public Integer getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(Integer attempts) {
+        this.attempts = attempts;
+    }
+
+    public String getLeaseOwner() {
+        return leaseOwner;
+    }
+
+    public void setLeaseOwner(String leaseOwner) {
+        this.leaseOwner = leaseOwner;
+    }
+
+    public LocalDateTime getLeaseExpiresAt() {
+        return leaseExpiresAt;
+    }
+
+    public void setLeaseExpiresAt(LocalDateTime leaseExpiresAt) {
+        this.leaseExpiresAt = leaseExpiresAt;
+    }
+
+    public LocalDateTime getAvailableAt() {
+        return availableAt;
+    }
+
+    public void setAvailableAt(LocalDateTime availableAt) {
+        this.availableAt = availableAt;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.rag.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 上传分片实体类
+ * 记录已写入临时文件的字节区间，同一偏移量重复上传时覆盖
+ */
+@TableName("upload_part")
+public class UploadPart {
+
+    /**
+     * 分片ID（主键，自增）
+     */
+    @TableId(type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 上传会话ID（外键）
+     */
+    private String sessionId;
+
+    /**
+     * 分片在文件中的起始偏移量（字节）
+     */
+    private Long partOffset;
+
+    /**
+     * 分片长度（字节）
+     */
+    private Long partLength;
+
+    /**
+     * 创建时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    // Getters and Setters
+
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public Long getPartOffset() {
+        return partOffset;
+    }
+
+    public void setPartOffset(Long partOffset) {
+        this.partOffset = partOffset;
+    }
+
+    public Long getPartLength() {
+        return partLength;
+    }
+
+    public void setPartLength(Long partLength) {
+        this.partLength = partLength;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.rag.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 分片上传会话实体类
+ * 客户端按偏移量并行上传各分片，全部到齐后完成会话，生成文档记录
+ */
+@TableName("upload_session")
+public class UploadSession {
+
+    public static final String STATUS_UPLOADING = "UPLOADING";
+    public static final String STATUS_COMPLETING = "COMPLETING";
+    public static final String STATUS_COMPLETED = "COMPLETED";
+
+    /**
+     * 会话ID（UUID）
+     */
+    @TableId(type = IdType.INPUT)
+    private String id;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节），创建会话时声明
+     */
+    private Long fileSize;
+
+    /**
+     * 文件类型（MIME类型）
+     */
+    private String fileType;
+
+    /**
+     * 预分配的临时文件路径
+     */
+    private String tempPath;
+
+    /**
+     * 会话状态：UPLOADING, COMPLETING, COMPLETED
+     */
+    private String status;
+
+    /**
+     * 完成后生成的文档ID
+     */
+    private Long documentId;
+
+    /**
+     * 创建时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间（自动填充）
+     */
+    @TableField(fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+
+    public String getTempPath() {
+        return tempPath;
+    }
+
+    public void setTempPath(String tempPath) {
+        this.tempPath = tempPath;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
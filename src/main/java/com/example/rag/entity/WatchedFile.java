@@ -0,0 +1,95 @@
+package com.example.rag.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 监听目录文件指纹实体类
+ * 记录监听目录中每个文件最近一次导入时的大小和修改时间，
+ * 大小和修改时间都没有变化的文件不再读取内容，重启后也无需重新计算哈希
+ */
+@TableName("watched_file")
+public class WatchedFile {
+
+    /**
+     * 文件的绝对路径（主键）
+     */
+    @TableId(value = "path", type = IdType.INPUT)
+    private String path;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 文件修改时间（毫秒时间戳）
+     */
+    private Long lastModified;
+
+    /**
+     * 文件内容的 SHA-256 哈希，未导入的文件（格式不支持、过大等）为 null
+     */
+    private String contentHash;
+
+    /**
+     * 由该文件创建的文档ID；内容与已入库文档相同而被跳过时为 null
+     */
+    private Long documentId;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updatedAt;
+
+    // Getters and Setters
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public Long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -3,6 +3,9 @@ package com.example.rag.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.rag.entity.DocumentChunk;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 文档片段Mapper接口
@@ -10,6 +13,18 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface DocumentChunkMapper extends BaseMapper<DocumentChunk> {
-    // BaseMapper已提供基础的CRUD方法
-    // 如需自定义SQL，可在此添加方法并在对应的XML文件中实现
+    
+    /**
+     * insertBatch 每批最多条数：每条记录 7 个参数，PostgreSQL 单条语句最多 65535 个参数
+     */
+    int MAX_INSERT_BATCH_SIZE = 65535 / 7;
+    
+    /**
+     * 批量插入文档片段（单条多行 INSERT 语句，一次往返）
+     * 每条记录 7 个参数，调用方需控制每批条数不超过 MAX_INSERT_BATCH_SIZE（9362）
+     * 
+     * @param chunks 文档片段列表
+     * @return 插入的行数
+     */
+    int insertBatch(@Param("chunks") List<DocumentChunk> chunks);
 }
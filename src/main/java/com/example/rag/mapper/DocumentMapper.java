@@ -3,6 +3,9 @@ package com.example.rag.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.example.rag.entity.Document;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * 文档Mapper接口
@@ -12,4 +15,13 @@ import org.apache.ibatis.annotations.Mapper;
 public interface DocumentMapper extends BaseMapper<Document> {
     // BaseMapper已提供基础的CRUD方法
     // 如需自定义SQL，可在此添加方法并在对应的XML文件中实现
+    
+    /**
+     * 批量插入文档记录（单条多行 INSERT 语句），生成的ID回填到各文档
+     * 每条记录 10 个参数，调用方需控制每批条数
+     * 
+     * @param documents 文档列表
+     * @return 插入的行数
+     */
+    int insertBatch(@Param("documents") List<Document> documents);
 }
@@ -0,0 +1,24 @@
+package com.example.rag.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.rag.entity.EmbeddingCache;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
+
+/**
+ * 向量缓存Mapper接口
+ * 提供向量缓存的批量查询与写入
+ */
+@Mapper
+public interface EmbeddingCacheMapper extends BaseMapper<EmbeddingCache> {
+    
+    /**
+     * 批量写入向量缓存，已存在的键保持不变
+     * 
+     * @param entries 缓存条目
+     * @return 实际写入的行数
+     */
+    int insertBatchIgnoreExisting(@Param("entries") List<EmbeddingCache> entries);
+}
@@ -0,0 +1,13 @@
+package com.example.rag.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.rag.entity.IngestionBatch;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 压缩包导入批次Mapper接口
+ * 提供导入批次数据的CRUD操作
+ */
+@Mapper
+public interface IngestionBatchMapper extends BaseMapper<IngestionBatch> {
+}
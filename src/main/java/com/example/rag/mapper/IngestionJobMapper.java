@@ -0,0 +1,79 @@
+package com.example.rag.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.rag.entity.IngestionJob;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 文档入库任务Mapper接口
+ * 认领与续约均为单条 SQL，依靠行锁保证同一任务同一时刻只被一个节点持有
+ */
+@Mapper
+public interface IngestionJobMapper extends BaseMapper<IngestionJob> {
+
+    /**
+     * 批量提交任务（单条多行 INSERT 语句）
+     *
+     * @param jobs 待提交的任务
+     * @return 插入的行数
+     */
+    int insertBatch(@Param("jobs") List<IngestionJob> jobs);
+
+    /**
+     * 认领待处理的任务：已到重试时间的等待中任务，以及租约已过期的运行中任务
+     * 按排队时间（effective_at）从早到晚认领，处理成本低、优先级高的任务排在前面；
+     * 使用 FOR UPDATE SKIP LOCKED，多个节点同时认领时互不阻塞、不会认领到同一任务
+     *
+     * @param owner 工作节点标识
+     * @param leaseSeconds 租约时长（秒）
+     * @param limit 最多认领的任务数
+     * @return 已认领的任务（attempts 已加 1）
+     */
+    List<IngestionJob> claimJobs(@Param("owner") String owner,
+                                 @Param("leaseSeconds") int leaseSeconds,
+                                 @Param("limit") int limit);
+
+    /**
+     * 延长本节点仍持有的任务租约
+     *
+     * @param owner 工作节点标识
+     * @param ids 任务ID
+     * @param leaseSeconds 租约时长（秒）
+     * @return 续约成功的任务数（租约已被其他节点接管的任务不会续约）
+     */
+    int renewLeases(@Param("owner") String owner,
+                    @Param("ids") Collection<Long> ids,
+                    @Param("leaseSeconds") int leaseSeconds);
+
+    /**
+     * 把本节点持有的失败任务放回队列，延迟一段时间后再被认领
+     *
+     * @param id 任务ID
+     * @param owner 工作节点标识
+     * @param lastError 失败原因
+     * @param delaySeconds 重试前等待的时长（秒）
+     * @return 更新的行数，租约已被其他节点接管时为 0
+     */
+    int retryJob(@Param("id") Long id,
+                 @Param("owner") String owner,
+                 @Param("lastError") String lastError,
+                 @Param("delaySeconds") int delaySeconds);
+
+    /**
+     * 结束本节点持有的任务
+     *
+     * @param id 任务ID
+     * @param owner 工作节点标识
+     * @param status 最终状态：DONE 或 FAILED
+     * @param lastError 失败原因，成功时为 null
+     * @return 更新的行数，租约已被其他节点接管时为 0
+     */
+    int finishJob(@Param("id") Long id,
+                  @Param("owner") String owner,
+                  @Param("status") String status,
+                  @Param("lastError") String lastError);
+}
@@ -0,0 +1,26 @@
+package com.example.rag.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.rag.entity.UploadPart;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * 上传分片Mapper接口
+ * 提供上传分片记录的CRUD操作
+ */
+@Mapper
+public interface UploadPartMapper extends BaseMapper<UploadPart> {
+
+    /**
+     * 记录已写入的分片，同一会话同一偏移量已存在时更新长度（客户端重传分片）
+     *
+     * @param sessionId 上传会话ID
+     * @param partOffset 分片起始偏移量
+     * @param partLength 分片长度
+     * @return 影响的行数
+     */
+    int upsertPart(@Param("sessionId") String sessionId,
+                   @Param("partOffset") long partOffset,
+                   @Param("partLength") long partLength);
+}
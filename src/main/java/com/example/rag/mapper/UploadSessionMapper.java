@@ -0,0 +1,13 @@
+package com.example.rag.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.rag.entity.UploadSession;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 分片上传会话Mapper接口
+ * 提供上传会话数据的CRUD操作
+ */
+@Mapper
+public interface UploadSessionMapper extends BaseMapper<UploadSession> {
+}
@@ -0,0 +1,21 @@
+package com.example.rag.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.example.rag.entity.WatchedFile;
+import org.apache.ibatis.annotations.Mapper;
+
+/**
+ * 监听目录文件指纹Mapper接口
+ * 提供文件指纹数据的CRUD操作
+ */
+@Mapper
+public interface WatchedFileMapper extends BaseMapper<WatchedFile> {
+
+    /**
+     * 写入文件指纹，同一路径已有记录时覆盖
+     *
+     * @param watchedFile 文件指纹
+     * @return 影响的行数
+     */
+    int upsert(WatchedFile watchedFile);
+}
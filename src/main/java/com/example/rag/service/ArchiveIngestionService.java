@@ -0,0 +1,32 @@
+package com.example.rag.service;
+
+import com.example.rag.vo.IngestionBatchVO;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+/**
+ * 压缩包批量导入服务接口
+ * 一次上传一个 ZIP 压缩包，包内每个受支持的文件成为一篇文档，整体作为一个批次跟踪进度
+ */
+public interface ArchiveIngestionService {
+
+    /**
+     * 导入压缩包
+     * 逐个读取压缩包条目并直接写入上传目录（不先把整个压缩包解压到磁盘），
+     * 文档记录和入库任务按批创建，由入库任务队列按并发上限逐步处理
+     *
+     * @param file 上传的 ZIP 压缩包
+     * @return 批次信息
+     * @throws IOException 文件操作异常
+     */
+    IngestionBatchVO ingestArchive(MultipartFile file) throws IOException;
+
+    /**
+     * 查询批次及其汇总进度
+     *
+     * @param batchId 批次ID
+     * @return 批次信息
+     */
+    IngestionBatchVO getBatch(Long batchId);
+}
@@ -0,0 +1,17 @@
+package com.example.rag.service;
+
+/**
+ * 目录监听导入服务接口
+ * 监听共享目录（包括子目录），把其他系统放入的新文件或修改过的文件导入为文档；
+ * 文件系统事件负责及时发现变化，定期的全量对账扫描补上事件遗漏的部分
+ */
+public interface DirectoryWatchService {
+
+    /**
+     * 全量扫描监听目录，把新增或大小、修改时间发生变化的文件加入待导入队列
+     * 只比较文件元数据，不读取文件内容
+     *
+     * @return 新加入队列的文件数
+     */
+    int reconcile();
+}
@@ -1,25 +1,51 @@
 package com.example.rag.service;
 
+import com.example.rag.entity.Document;
+
 /**
  * 文档处理服务接口
- * 负责文档的异步处理流程：提取文本 → 分割片段 → 向量化 → 存储向量 → 更新文档状态
+ * 负责文档的处理流程：提取文本 → 分割片段 → 向量化 → 存储向量 → 更新文档状态
+ * 处理方法同步执行，由入库任务工作线程（IngestionJobService）调用
  * 
  * 验证需求：2.1, 2.2, 2.3, 2.4, 3.1, 3.4, 10.2
  */
 public interface DocumentProcessingService {
 
     /**
-     * 异步处理文档
+     * 处理文档
      * 流程：
      * 1. 从数据库加载文档信息
      * 2. 提取文档文本内容
      * 3. 将文本分割为片段
-     * 4. 对每个片段进行向量化
+     * 4. 按条数和 token 数分批对片段进行向量化
      * 5. 将向量存储到 Qdrant
      * 6. 将片段记录保存到数据库
      * 7. 更新文档状态为 COMPLETED 或 FAILED
      *
+     * 已保存的片段记录作为检查点，失败或中断后再次调用时从检查点继续，
+     * 分块或向量化配置变化时从头处理
+     *
      * @param documentId 文档ID
      */
     void processDocument(Long documentId);
+
+    /**
+     * 增量处理已更新的文档
+     * 使用基于内容的分块对新版本分块，按内容哈希与已有片段比对：
+     * 未变化的片段沿用原有向量，只更新索引；新增片段向量化后写入；
+     * 不再存在的片段从 Qdrant 和数据库中删除
+     *
+     * @param documentId 文档ID
+     */
+    void reprocessDocument(Long documentId);
+
+    /**
+     * 从内容相同且已处理完成的文档复制片段记录和向量，跳过文本提取和向量化
+     * 同步执行；复制失败时清理已写入的部分数据并返回 false，由调用方改为完整处理
+     *
+     * @param source 已处理完成的源文档
+     * @param target 新上传的目标文档，成功时状态更新为 COMPLETED
+     * @return 是否复制成功
+     */
+    boolean cloneDocument(Document source, Document target);
 }
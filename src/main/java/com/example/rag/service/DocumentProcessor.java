@@ -1,7 +1,11 @@
 package com.example.rag.service;
 
+import com.example.rag.util.TextChunker;
+
 import java.io.File;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * 文档处理器接口
@@ -13,7 +17,7 @@ public interface DocumentProcessor {
     
     /**
      * 提取文档的文本内容
-     * 支持 PDF、TXT、DOCX、MD 格式
+     * 支持 PDF、TXT、DOCX、MD、XLSX、CSV 格式
      * 
      * @param file 文档文件
      * @return 提取的文本内容
@@ -31,6 +35,57 @@ public interface DocumentProcessor {
      */
     List<String> splitDocument(String text, int chunkSize, int overlap);
     
+    /**
+     * 流式提取文档文本并直接分割为片段
+     * 解析过程中即时清理空白并分块，内存占用只与片段大小相关，与文档大小无关；
+     * 输出与 splitDocument(extractText(file), chunkSize, overlap) 一致（按行分组的表格除外）
+     * 
+     * @param file 文档文件
+     * @param chunkSize 片段大小（字符数）
+     * @param overlap 片段之间的重叠大小（字符数）
+     * @param chunkConsumer 片段接收者，按顺序接收每个片段
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    int extractChunks(File file, int chunkSize, int overlap, Consumer<String> chunkConsumer) throws Exception;
+    
+    /**
+     * 流式提取文档文本，清理空白后写入指定的分块器
+     * 按行分组的 XLSX / CSV 不经过清理，每组行（以表头开头）通过 emitChunk 作为完整片段写入
+     * 
+     * @param file 文档文件
+     * @param chunker 分块器，提取结束时由本方法调用 finish
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    int extractChunks(File file, TextChunker chunker) throws Exception;
+    
+    /**
+     * 流式提取文档文本，清理空白后写入指定的分块器，并报告文本所在的页
+     * 按页提取的 PDF 在写入每个有文本的页之前以页码（从 1 开始）通知 pageListener；
+     * 其他格式不通知
+     * 
+     * @param file 文档文件
+     * @param chunker 分块器，提取结束时由本方法调用 finish
+     * @param pageListener 页码接收者
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    int extractChunks(File file, TextChunker chunker, IntConsumer pageListener) throws Exception;
+    
+    /**
+     * 流式提取文档文本并报告文本所在的页，提取结果按文件内容哈希缓存
+     * 同一内容再次提取时从缓存读取规范化后的文本，不再解析原文件；contentHash 为空时不使用缓存
+     * 
+     * @param file 文档文件
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @param chunker 分块器，提取结束时由本方法调用 finish
+     * @param pageListener 页码接收者
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    int extractChunks(File file, String contentHash, TextChunker chunker, IntConsumer pageListener) throws Exception;
+    
     /**
      * 检查文件类型是否支持
      * 
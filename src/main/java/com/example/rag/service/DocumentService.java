@@ -1,11 +1,13 @@
 package com.example.rag.service;
 
+import com.example.rag.entity.Document;
 import com.example.rag.vo.DocumentDetailVO;
 import com.example.rag.vo.DocumentVO;
 import com.example.rag.vo.PageResult;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * 文档服务接口
@@ -17,10 +19,81 @@ public interface DocumentService {
      * 处理文档上传
      * 
      * @param file 上传的文件
+     * @param priority 处理优先级：high / normal / low，为空时为 normal
      * @return 文档视图对象
      * @throws IOException 文件操作异常
      */
-    DocumentVO uploadDocument(MultipartFile file) throws IOException;
+    DocumentVO uploadDocument(MultipartFile file, String priority) throws IOException;
+    
+    /**
+     * 为已保存到上传目录的文件创建文档记录并提交处理
+     * 内容相同的文档已处理完成时直接复用其片段和向量
+     * 
+     * @param fileName 原始文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @return 文档视图对象
+     */
+    DocumentVO createDocument(String fileName, long fileSize, String fileType, String filePath, String contentHash);
+    
+    /**
+     * 为已保存到上传目录的文件创建文档记录，并以指定优先级提交处理
+     * 
+     * @param fileName 原始文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @param priority 优先级：IngestionJob.PRIORITY_HIGH / PRIORITY_NORMAL / PRIORITY_LOW
+     * @return 文档视图对象
+     */
+    DocumentVO createDocument(String fileName, long fileSize, String fileType, String filePath,
+                              String contentHash, int priority);
+    
+    /**
+     * 为一批已保存到上传目录的文件批量创建文档记录并批量提交处理
+     * 文档记录和入库任务均按批插入，内容相同的文档已处理完成时直接复用其片段和向量
+     * 
+     * @param documents 待创建的文档（需设置文件名、大小、类型、路径和内容哈希），生成的ID回填到各文档
+     */
+    void createDocuments(List<Document> documents);
+    
+    /**
+     * 替换文档内容
+     * 对新版本增量处理，只重新向量化内容发生变化的片段
+     * 
+     * @param id 文档ID
+     * @param file 新版本文件
+     * @return 文档视图对象
+     * @throws IOException 文件操作异常
+     */
+    DocumentVO replaceDocument(Long id, MultipartFile file) throws IOException;
+    
+    /**
+     * 用已保存到上传目录的文件替换文档内容
+     * 文档不存在或正在处理中时拒绝替换，并删除已保存的文件
+     * 
+     * @param id 文档ID
+     * @param fileName 新版本文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @return 文档视图对象
+     */
+    DocumentVO replaceDocumentFile(Long id, String fileName, long fileSize, String fileType,
+                                   String filePath, String contentHash);
+    
+    /**
+     * 重试处理失败的文档
+     * 重新提交处理任务，从上次已保存的片段继续处理
+     * 
+     * @param id 文档ID
+     * @return 文档视图对象
+     */
+    DocumentVO retryDocument(Long id);
     
     /**
      * 获取文档列表（分页）
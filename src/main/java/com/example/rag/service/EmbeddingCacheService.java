@@ -0,0 +1,36 @@
+package com.example.rag.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * 向量缓存服务接口
+ * 以（向量化模型, 片段文本 SHA-256）为键持久化向量，
+ * 内容未变化的片段重新入库时无需再次调用向量化服务
+ */
+public interface EmbeddingCacheService {
+    
+    /**
+     * 缓存是否启用
+     * 
+     * @return 启用返回 true
+     */
+    boolean isEnabled();
+    
+    /**
+     * 批量查询缓存
+     * 
+     * @param model 向量化模型
+     * @param contentHashes 片段文本的 SHA-256 列表
+     * @return 命中的条目（内容哈希 → 向量），未命中的键不包含在结果中
+     */
+    Map<String, float[]> getAll(String model, Collection<String> contentHashes);
+    
+    /**
+     * 批量写入缓存，已存在的键保持不变
+     * 
+     * @param model 向量化模型
+     * @param embeddings 内容哈希 → 向量
+     */
+    void putAll(String model, Map<String, float[]> embeddings);
+}
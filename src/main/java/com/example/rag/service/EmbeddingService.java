@@ -10,6 +10,7 @@ public interface EmbeddingService {
     
     /**
      * 向量化单个文本
+     * 用于查询，按交互流量限流
      * 
      * @param text 要向量化的文本
      * @return 向量数组（固定维度，例如 1536 维）
@@ -19,6 +20,7 @@ public interface EmbeddingService {
     
     /**
      * 批量向量化
+     * 用于文档入库，按批量流量限流
      * 
      * @param texts 要向量化的文本列表
      * @return 向量数组列表
@@ -26,6 +28,26 @@ public interface EmbeddingService {
      */
     List<float[]> embedBatch(List<String> texts) throws Exception;
     
+    /**
+     * 批量向量化查询文本
+     * 与 embedBatch 相同的一次请求，但按交互流量限流，用于合并并发查询
+     * 
+     * @param texts 要向量化的查询文本列表
+     * @return 与输入顺序一致的向量数组列表
+     * @throws Exception 向量化失败时抛出异常
+     */
+    List<float[]> embedQueries(List<String> texts) throws Exception;
+    
+    /**
+     * 分批向量化任意数量的文本
+     * 按条数和估算 token 数将文本打包为多个请求，请求体超限时自动拆分重试
+     * 
+     * @param texts 要向量化的文本列表
+     * @return 与输入顺序一致的向量数组列表
+     * @throws Exception 向量化失败时抛出异常
+     */
+    List<float[]> embedAll(List<String> texts) throws Exception;
+    
     /**
      * 获取向量维度
      * 
@@ -0,0 +1,37 @@
+package com.example.rag.service;
+
+import java.util.List;
+
+/**
+ * 文档入库任务服务接口
+ * 上传和替换文档时提交任务，由各节点的工作线程从 ingestion_job 表中认领执行；
+ * 节点在处理中途退出时，任务在租约到期后由其他节点重新认领
+ */
+public interface IngestionJobService {
+
+    /**
+     * 提交入库任务，任务以 PENDING 状态持久化，等待工作线程认领
+     *
+     * @param documentId 文档ID
+     * @param jobType 任务类型：PROCESS 或 REPROCESS
+     */
+    void enqueue(Long documentId, String jobType);
+
+    /**
+     * 以指定优先级提交入库任务
+     * 任务的排队时间按文档的估算处理成本推后、按优先级提前或推后，认领时排队时间早的任务先执行
+     *
+     * @param documentId 文档ID
+     * @param jobType 任务类型：PROCESS 或 REPROCESS
+     * @param priority 优先级：IngestionJob.PRIORITY_HIGH / PRIORITY_NORMAL / PRIORITY_LOW
+     */
+    void enqueue(Long documentId, String jobType, int priority);
+
+    /**
+     * 批量提交同一类型的入库任务，由各节点按 job-concurrency 的并发上限逐步认领
+     *
+     * @param documentIds 文档ID
+     * @param jobType 任务类型：PROCESS 或 REPROCESS
+     */
+    void enqueueAll(List<Long> documentIds, String jobType);
+}
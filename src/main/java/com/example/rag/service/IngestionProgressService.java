@@ -0,0 +1,110 @@
+package com.example.rag.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 文档处理进度服务接口
+ * 文档处理过程中维护每个文档的片段计数（已提取、已向量化、已保存），
+ * 以 SSE 推送给订阅的客户端，客户端不必反复轮询文档列表。
+ * 计数只保存在执行处理的节点内存中，处理结束或转为等待重试后即释放
+ */
+public interface IngestionProgressService {
+
+    /** 处理中 */
+    String STATUS_PROCESSING = "PROCESSING";
+
+    /** 处理失败，等待重试 */
+    String STATUS_RETRYING = "RETRYING";
+
+    /** 处理完成 */
+    String STATUS_COMPLETED = "COMPLETED";
+
+    /** 处理失败，不再重试 */
+    String STATUS_FAILED = "FAILED";
+
+    /**
+     * 开始处理文档，计数从零开始
+     *
+     * @param documentId 文档ID
+     */
+    void start(Long documentId);
+
+    /**
+     * 累加已提取的片段数
+     *
+     * @param documentId 文档ID
+     * @param count 新提取的片段数
+     */
+    void chunksExtracted(Long documentId, int count);
+
+    /**
+     * 累加已向量化的片段数
+     *
+     * @param documentId 文档ID
+     * @param count 新向量化的片段数
+     */
+    void chunksEmbedded(Long documentId, int count);
+
+    /**
+     * 累加已保存的片段数
+     *
+     * @param documentId 文档ID
+     * @param count 新保存的片段数
+     */
+    void chunksStored(Long documentId, int count);
+
+    /**
+     * 累加沿用已有向量和记录的片段数，同时计入已向量化和已保存
+     *
+     * @param documentId 文档ID
+     * @param count 沿用的片段数
+     */
+    void chunksResumed(Long documentId, int count);
+
+    /**
+     * 文本提取结束，此后已提取的片段数即为片段总数
+     *
+     * @param documentId 文档ID
+     */
+    void extractionFinished(Long documentId);
+
+    /**
+     * 处理失败、任务已放回队列等待重试
+     *
+     * @param documentId 文档ID
+     * @param errorMessage 本次失败的原因
+     */
+    void retrying(Long documentId, String errorMessage);
+
+    /**
+     * 处理结束
+     *
+     * @param documentId 文档ID
+     * @param status STATUS_COMPLETED 或 STATUS_FAILED
+     * @param errorMessage 失败原因，成功时为 null
+     */
+    void finish(Long documentId, String status, String errorMessage);
+
+    /**
+     * 丢弃本节点的计数但不推送事件（任务已被其他节点接管），订阅者改为按数据库状态获知结果
+     *
+     * @param documentId 文档ID
+     */
+    void discard(Long documentId);
+
+    /**
+     * 订阅单个文档的处理进度
+     * 订阅时先推送一次当前进度；文档处理结束后推送最终状态并关闭连接
+     *
+     * @param documentId 文档ID
+     * @return SSE 连接
+     */
+    SseEmitter subscribe(Long documentId);
+
+    /**
+     * 订阅本节点所有文档的处理进度，连接在超时前保持打开
+     *
+     * @return SSE 连接
+     */
+    SseEmitter subscribeAll();
+}
@@ -0,0 +1,60 @@
+package com.example.rag.service;
+
+import com.example.rag.vo.DocumentVO;
+import com.example.rag.vo.UploadSessionRequest;
+import com.example.rag.vo.UploadSessionVO;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 分片上传服务接口
+ * 可恢复的上传协议：创建会话 → 按偏移量并行上传分片 → 完成会话。
+ * 连接中断后客户端查询会话，只需重传尚未到达的字节区间
+ */
+public interface UploadSessionService {
+
+    /**
+     * 创建上传会话，按声明的文件大小预分配临时文件
+     *
+     * @param request 文件名、文件大小和文件类型
+     * @return 上传会话
+     * @throws IOException 临时文件创建失败
+     */
+    UploadSessionVO createSession(UploadSessionRequest request) throws IOException;
+
+    /**
+     * 把分片写入临时文件的指定偏移量处，同一会话的分片可以并行上传
+     *
+     * @param sessionId 上传会话ID
+     * @param offset 分片在文件中的起始偏移量
+     * @param data 分片内容
+     * @return 写入后的上传会话
+     * @throws IOException 读取请求体或写入文件失败，分片需要重传
+     */
+    UploadSessionVO writePart(String sessionId, long offset, InputStream data) throws IOException;
+
+    /**
+     * 查询上传会话及已接收的字节区间
+     *
+     * @param sessionId 上传会话ID
+     * @return 上传会话
+     */
+    UploadSessionVO getSession(String sessionId);
+
+    /**
+     * 完成上传：校验所有字节都已到达，创建文档记录并提交处理
+     *
+     * @param sessionId 上传会话ID
+     * @return 文档视图对象
+     * @throws IOException 文件操作异常
+     */
+    DocumentVO completeSession(String sessionId) throws IOException;
+
+    /**
+     * 放弃上传，删除会话及临时文件
+     *
+     * @param sessionId 上传会话ID
+     */
+    void abortSession(String sessionId);
+}
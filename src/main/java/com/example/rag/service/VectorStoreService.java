@@ -45,10 +45,32 @@ public interface VectorStoreService {
      */
     void deleteVector(String id);
 
+    /**
+     * 批量删除向量
+     *
+     * @param ids 向量点ID列表
+     */
+    void deleteVectors(List<String> ids);
+
+    /**
+     * 批量更新向量点的 payload（只覆盖给出的字段，向量不变）
+     *
+     * @param payloads 向量点ID到待更新字段的映射
+     */
+    void updatePayloads(Map<String, Map<String, Object>> payloads);
+
     /**
      * 删除指定文档的所有向量
      *
      * @param documentId 文档ID
      */
     void deleteByDocumentId(Long documentId);
+
+    /**
+     * 按ID批量读取已存储的向量
+     *
+     * @param ids 向量点ID列表
+     * @return 向量点ID到向量数据的映射，不存在的ID不会出现在结果中
+     */
+    Map<String, float[]> getVectors(List<String> ids);
 }
@@ -0,0 +1,294 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.IngestionBatch;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.IngestionBatchMapper;
+import com.example.rag.service.ArchiveIngestionService;
+import com.example.rag.service.DocumentService;
+import com.example.rag.service.impl.UploadStorage.StoredFile;
+import com.example.rag.vo.IngestionBatchVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 压缩包批量导入服务实现类
+ * 使用 ZipInputStream 顺序读取上传流中的条目，每个条目边读边写入上传目录并计算内容哈希，
+ * 整个压缩包不会被解压到临时目录。包内文件全部保存后，文档记录和入库任务各用一条多行 INSERT 批量创建；
+ * 处理并发由入库任务队列控制（每个节点最多同时处理 rag.ingestion.job-concurrency 个任务），
+ * 包内文件再多也不会一次性占满处理线程和下游服务
+ */
+@Service
+public class ArchiveIngestionServiceImpl implements ArchiveIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveIngestionServiceImpl.class);
+
+    private static final String STATUS_PROCESSING = "PROCESSING";
+    private static final String STATUS_COMPLETED = "COMPLETED";
+    private static final String STATUS_COMPLETED_WITH_ERRORS = "COMPLETED_WITH_ERRORS";
+
+    private static final String DEFAULT_FILE_TYPE = "application/octet-stream";
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    private IngestionBatchMapper ingestionBatchMapper;
+
+    @Autowired
+    private RagDocumentProperties ragDocumentProperties;
+
+    @Autowired
+    private UploadStorage uploadStorage;
+
+    @Override
+    public IngestionBatchVO ingestArchive(MultipartFile file) throws IOException {
+        log.info("开始导入压缩包，文件名：{}，大小：{}", file.getOriginalFilename(), file.getSize());
+
+        // 1. 验证压缩包
+        validateArchive(file);
+
+        // 2. 逐个条目写入上传目录，不受支持或过大的条目记录原因后跳过
+        List<Document> documents = new ArrayList<>();
+        List<String> skippedEntries = new ArrayList<>();
+        try {
+            extractEntries(file, documents, skippedEntries);
+        } catch (ZipException | IllegalArgumentException e) {
+            // IllegalArgumentException：条目名无法按配置的字符集解码
+            deleteFiles(documents);
+            log.warn("压缩包读取失败，文件名：{}，原因：{}", file.getOriginalFilename(), e.getMessage());
+            throw new BusinessException(400, "压缩包已损坏或格式不正确：" + e.getMessage());
+        } catch (IOException | RuntimeException e) {
+            deleteFiles(documents);
+            throw e;
+        }
+
+        if (documents.isEmpty()) {
+            log.warn("压缩包内没有可导入的文件，文件名：{}，跳过：{}", file.getOriginalFilename(), skippedEntries.size());
+            throw new BusinessException(400, "压缩包内没有可导入的文件，支持的格式：" + ragDocumentProperties.getSupportedFormats());
+        }
+
+        // 3. 创建批次，再批量创建文档记录并提交入库任务
+        IngestionBatch batch = new IngestionBatch();
+        batch.setFileName(file.getOriginalFilename());
+        batch.setTotalCount(documents.size());
+        batch.setSkippedCount(skippedEntries.size());
+        batch.setSkippedEntries(JSONUtil.toJsonStr(skippedEntries));
+        if (ingestionBatchMapper.insert(batch) <= 0) {
+            deleteFiles(documents);
+            throw new BusinessException(500, "导入批次保存失败");
+        }
+        for (Document document : documents) {
+            document.setBatchId(batch.getId());
+        }
+        try {
+            documentService.createDocuments(documents);
+        } catch (RuntimeException e) {
+            ingestionBatchMapper.deleteById(batch.getId());
+            deleteFiles(documents);
+            throw e;
+        }
+
+        log.info("压缩包导入成功，批次ID：{}，文档数：{}，跳过：{}", batch.getId(), documents.size(), skippedEntries.size());
+        return convertToVO(batch, Map.of(STATUS_PROCESSING, (long) documents.size()));
+    }
+
+    @Override
+    public IngestionBatchVO getBatch(Long batchId) {
+        IngestionBatch batch = ingestionBatchMapper.selectById(batchId);
+        if (batch == null) {
+            log.warn("导入批次不存在，批次ID：{}", batchId);
+            throw new BusinessException(404, "导入批次不存在");
+        }
+        return convertToVO(batch, countByStatus(batchId));
+    }
+
+    /**
+     * 验证压缩包：不能为空、必须是 ZIP 文件、大小不超过上限
+     *
+     * @param file 上传的压缩包
+     */
+    private void validateArchive(MultipartFile file) {
+        if (file.isEmpty()) {
+            log.warn("上传压缩包为空");
+            throw new BusinessException(400, "上传文件不能为空");
+        }
+
+        String originalFilename = file.getOriginalFilename();
+        if (originalFilename == null || !"zip".equalsIgnoreCase(FileNameUtil.extName(originalFilename))) {
+            log.warn("不支持的压缩包格式：{}", originalFilename);
+            throw new BusinessException(400, "只支持 ZIP 格式的压缩包");
+        }
+
+        if (file.getSize() > ragDocumentProperties.getMaxArchiveSize()) {
+            log.warn("压缩包过大：{} 字节，最大允许：{} 字节", file.getSize(), ragDocumentProperties.getMaxArchiveSize());
+            throw new BusinessException(413,
+                String.format("压缩包过大，最大允许 %d MB", ragDocumentProperties.getMaxArchiveSize() / 1024 / 1024));
+        }
+    }
+
+    /**
+     * 顺序读取压缩包条目，受支持的文件写入上传目录
+     *
+     * @param file 上传的压缩包
+     * @param documents 已保存的文件对应的文档（尚未入库）
+     * @param skippedEntries 跳过的条目及原因
+     * @throws IOException 读取或写入失败
+     */
+    private void extractEntries(MultipartFile file, List<Document> documents,
+                                List<String> skippedEntries) throws IOException {
+        Charset charset = Charset.forName(ragDocumentProperties.getArchiveEntryCharset());
+        int maxEntries = ragDocumentProperties.getMaxArchiveEntries();
+        int fileEntries = 0;
+
+        try (ZipInputStream zip = new ZipInputStream(new BufferedInputStream(file.getInputStream(), IO_BUFFER_SIZE), charset)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String entryName = entry.getName();
+                // 目录、macOS 资源分支和隐藏文件不算作文档
+                if (entry.isDirectory() || entryName.startsWith("__MACOSX/")) {
+                    continue;
+                }
+                // 只取最后一段文件名，条目名中的 ../ 或绝对路径不会影响写入位置
+                String fileName = FileNameUtil.getName(entryName);
+                if (fileName == null || fileName.isEmpty() || fileName.startsWith(".")) {
+                    continue;
+                }
+
+                if (++fileEntries > maxEntries) {
+                    log.warn("压缩包内文件过多，最多允许：{}", maxEntries);
+                    throw new BusinessException(400, String.format("压缩包内文件过多，最多允许 %d 个", maxEntries));
+                }
+
+                String extension = FileNameUtil.extName(fileName);
+                if (!ragDocumentProperties.isSupportedFormat(extension)) {
+                    skippedEntries.add(entryName + ": 不支持的文件格式");
+                    continue;
+                }
+
+                Document document = storeEntry(zip, fileName);
+                if (document == null) {
+                    skippedEntries.add(entryName + ": 文件过大，最大允许 "
+                        + ragDocumentProperties.getMaxFileSize() / 1024 / 1024 + " MB");
+                } else if (document.getFileSize() == 0) {
+                    FileUtil.del(document.getFilePath());
+                    skippedEntries.add(entryName + ": 文件为空");
+                } else {
+                    documents.add(document);
+                }
+            }
+        }
+    }
+
+    /**
+     * 把当前条目写入上传目录，写入的同时计算内容哈希
+     * 写入字节数按实际读到的数据计算（不信任条目头中声明的大小），超过单文件上限即停止
+     *
+     * @param zip 定位在当前条目的压缩包流
+     * @param fileName 条目文件名
+     * @return 文档（尚未入库），超过单文件上限时返回 null
+     * @throws IOException 读取或写入失败
+     */
+    private Document storeEntry(InputStream zip, String fileName) throws IOException {
+        StoredFile storedFile = uploadStorage.store(zip, fileName, ragDocumentProperties.getMaxFileSize());
+        if (storedFile == null) {
+            return null;
+        }
+
+        String fileType = FileUtil.getMimeType(fileName);
+        Document document = new Document();
+        document.setFileName(fileName);
+        document.setFileSize(storedFile.getSize());
+        document.setFileType(fileType != null ? fileType : DEFAULT_FILE_TYPE);
+        document.setFilePath(storedFile.getPath());
+        document.setContentHash(storedFile.getContentHash());
+        return document;
+    }
+
+    /**
+     * 删除已保存的文件（导入失败时清理）
+     *
+     * @param documents 已保存的文件对应的文档
+     */
+    private void deleteFiles(List<Document> documents) {
+        for (Document document : documents) {
+            FileUtil.del(document.getFilePath());
+        }
+    }
+
+    /**
+     * 按状态统计批次内的文档数
+     *
+     * @param batchId 批次ID
+     * @return 状态到文档数的映射
+     */
+    private Map<String, Long> countByStatus(Long batchId) {
+        QueryWrapper<Document> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("status", "COUNT(*) AS count");
+        queryWrapper.eq("batch_id", batchId);
+        queryWrapper.groupBy("status");
+        Map<String, Long> counts = new HashMap<>();
+        for (Map<String, Object> row : documentMapper.selectMaps(queryWrapper)) {
+            counts.put((String) row.get("status"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    /**
+     * 将批次和状态统计转换为视图对象
+     *
+     * @param batch 批次
+     * @param counts 状态到文档数的映射
+     * @return 批次视图对象
+     */
+    private IngestionBatchVO convertToVO(IngestionBatch batch, Map<String, Long> counts) {
+        int processing = counts.getOrDefault(STATUS_PROCESSING, 0L).intValue();
+        int completed = counts.getOrDefault(STATUS_COMPLETED, 0L).intValue();
+        int failed = counts.getOrDefault("FAILED", 0L).intValue();
+
+        IngestionBatchVO vo = new IngestionBatchVO();
+        vo.setBatchId(batch.getId());
+        vo.setFileName(batch.getFileName());
+        if (processing > 0) {
+            vo.setStatus(STATUS_PROCESSING);
+        } else {
+            vo.setStatus(failed > 0 ? STATUS_COMPLETED_WITH_ERRORS : STATUS_COMPLETED);
+        }
+        vo.setTotalCount(batch.getTotalCount());
+        vo.setProcessingCount(processing);
+        vo.setCompletedCount(completed);
+        vo.setFailedCount(failed);
+        vo.setSkippedCount(batch.getSkippedCount());
+        vo.setSkippedEntries(batch.getSkippedEntries() != null
+            ? JSONUtil.toList(batch.getSkippedEntries(), String.class)
+            : List.of());
+        vo.setCreatedAt(batch.getCreatedAt());
+        return vo;
+    }
+}
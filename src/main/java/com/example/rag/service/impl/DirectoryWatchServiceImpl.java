@@ -0,0 +1,478 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.util.StrUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.WatchedFile;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.WatchedFileMapper;
+import com.example.rag.service.DirectoryWatchService;
+import com.example.rag.service.DocumentService;
+import com.example.rag.service.impl.UploadStorage.StoredFile;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 目录监听导入服务实现类
+ * 由单个后台线程完成全部工作：接收 WatchService 事件、定期对账扫描、导入已稳定的文件。
+ *
+ * 去抖：发现变化的文件先进入待导入队列，大小和修改时间连续 watch-settle-ms 不变后才读取，
+ * 其他系统仍在写入的文件不会被导入半截。
+ * 导入：先原地计算内容哈希，内容未变或已入库的文件直接跳过，不复制；需要创建或替换文档时才复制到上传目录，
+ * 之后与 uploadDocument 走同一流程（createDocument → 入库任务），同一路径的文件被修改时按新版本替换原文档。
+ * 指纹：每个文件导入时的大小和修改时间保存在 watched_file 表中，对账扫描只比较元数据，
+ * 未变化的文件（包括重启后）不会再次读取内容，大目录也可以持续同步
+ */
+@Service
+public class DirectoryWatchServiceImpl implements DirectoryWatchService {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectoryWatchServiceImpl.class);
+
+    private static final String DEFAULT_FILE_TYPE = "application/octet-stream";
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    private WatchedFileMapper watchedFileMapper;
+
+    @Autowired
+    private RagDocumentProperties ragDocumentProperties;
+
+    @Autowired
+    private UploadStorage uploadStorage;
+
+    /**
+     * 已处理文件的指纹，键为文件的绝对路径
+     */
+    private final Map<String, WatchedFile> fingerprints = new ConcurrentHashMap<>();
+
+    /**
+     * 等待大小和修改时间稳定后导入的文件
+     */
+    private final Map<Path, Observation> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 已注册事件监听的目录
+     */
+    private final Set<Path> registeredDirs = ConcurrentHashMap.newKeySet();
+
+    private volatile WatchService watchService;
+
+    private volatile Thread watchThread;
+
+    private volatile boolean stopped;
+
+    private volatile long nextReconcileMillis;
+
+    /**
+     * 开启监听时启动后台线程；指纹加载和首次对账扫描在后台线程中进行，不阻塞应用启动
+     */
+    @PostConstruct
+    public void start() {
+        if (!Boolean.TRUE.equals(ragDocumentProperties.getWatchEnabled())) {
+            return;
+        }
+        if (StrUtil.isBlank(ragDocumentProperties.getWatchDir())) {
+            log.error("已开启目录监听，但未配置 rag.document.watch-dir");
+            return;
+        }
+        Path root = watchRoot();
+        Path uploadDir = Paths.get(ragDocumentProperties.getUploadDir()).toAbsolutePath().normalize();
+        if (uploadDir.startsWith(root) || root.startsWith(uploadDir)) {
+            log.error("监听目录与上传目录不能相互包含，目录监听未启动，监听目录：{}，上传目录：{}", root, uploadDir);
+            return;
+        }
+        try {
+            watchService = root.getFileSystem().newWatchService();
+        } catch (IOException e) {
+            log.error("目录监听启动失败：{}", root, e);
+            return;
+        }
+
+        watchThread = new Thread(this::watchLoop, "dir-watch");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        log.info("目录监听已启动：{}", root);
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("关闭目录监听失败：{}", e.getMessage());
+            }
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+        }
+    }
+
+    @Override
+    public int reconcile() {
+        Path root = watchRoot();
+        if (!Files.isDirectory(root)) {
+            log.warn("监听目录不存在：{}", root);
+            return 0;
+        }
+        try {
+            int queued = scanTree(root);
+            if (queued > 0) {
+                log.info("监听目录对账完成：{}，待导入文件：{}", root, queued);
+            }
+            return queued;
+        } catch (IOException e) {
+            log.error("监听目录对账扫描失败：{}", root, e);
+            return 0;
+        }
+    }
+
+    /**
+     * 后台线程主循环
+     */
+    private void watchLoop() {
+        loadFingerprints();
+        long tick = Math.max(100L, ragDocumentProperties.getWatchSettleMs() / 2);
+        while (!stopped) {
+            try {
+                if (System.currentTimeMillis() >= nextReconcileMillis) {
+                    reconcile();
+                    nextReconcileMillis = System.currentTimeMillis() + ragDocumentProperties.getWatchReconcileIntervalMs();
+                }
+                WatchKey key = watchService.poll(tick, TimeUnit.MILLISECONDS);
+                while (key != null) {
+                    handleEvents(key);
+                    key = watchService.poll();
+                }
+                processSettled(System.currentTimeMillis());
+            } catch (ClosedWatchServiceException e) {
+                break;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("目录监听处理失败", e);
+            }
+        }
+        log.info("目录监听已停止");
+    }
+
+    /**
+     * 加载监听目录下已处理文件的指纹
+     */
+    private void loadFingerprints() {
+        QueryWrapper<WatchedFile> queryWrapper = new QueryWrapper<>();
+        // 带上路径分隔符，避免匹配到名称以监听目录名开头的同级目录（如 inbox2）
+        queryWrapper.likeRight("path", watchRoot().toString() + File.separator);
+        for (WatchedFile watchedFile : watchedFileMapper.selectList(queryWrapper)) {
+            fingerprints.put(watchedFile.getPath(), watchedFile);
+        }
+        log.info("已加载监听目录文件指纹：{} 个", fingerprints.size());
+    }
+
+    /**
+     * 处理一个目录的文件系统事件：新建的子目录整棵扫描，新建或修改的文件加入待导入队列
+     *
+     * @param key 有事件的目录
+     */
+    private void handleEvents(WatchKey key) throws IOException {
+        Path dir = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                log.warn("文件系统事件溢出，提前执行对账扫描：{}", dir);
+                nextReconcileMillis = 0;
+                continue;
+            }
+            Path path = dir.resolve((Path) event.context());
+            if (Files.isDirectory(path)) {
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    scanTree(path);
+                }
+            } else if (isCandidate(path)) {
+                pending.putIfAbsent(path, new Observation());
+            }
+        }
+        if (!key.reset()) {
+            // 目录已被删除
+            registeredDirs.remove(dir);
+        }
+    }
+
+    /**
+     * 遍历目录树：注册尚未监听的目录，把指纹发生变化的文件加入待导入队列
+     *
+     * @param start 起始目录
+     * @return 新加入队列的文件数
+     */
+    private int scanTree(Path start) throws IOException {
+        int[] queued = {0};
+        Files.walkFileTree(start, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                if (!dir.equals(start) && dir.getFileName().toString().startsWith(".")) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                register(dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && isCandidate(file)
+                        && isChanged(file, attrs.size(), attrs.lastModifiedTime().toMillis())
+                        && pending.putIfAbsent(file, new Observation()) == null) {
+                    queued[0]++;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                log.warn("监听目录文件无法访问：{}，原因：{}", file, e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return queued[0];
+    }
+
+    private void register(Path dir) {
+        if (watchService == null || registeredDirs.contains(dir)) {
+            return;
+        }
+        try {
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            registeredDirs.add(dir);
+        } catch (IOException e) {
+            // 无法注册事件（如达到 inotify 上限）时仍由对账扫描覆盖
+            log.warn("目录事件注册失败，仅依靠对账扫描：{}，原因：{}", dir, e.getMessage());
+        }
+    }
+
+    /**
+     * 检查待导入队列：大小或修改时间变化的文件重新计时，连续稳定 watch-settle-ms 的文件导入
+     *
+     * @param now 当前时间（毫秒）
+     */
+    void processSettled(long now) {
+        long settleMs = ragDocumentProperties.getWatchSettleMs();
+        Iterator<Map.Entry<Path, Observation>> iterator = pending.entrySet().iterator();
+        while (iterator.hasNext() && !stopped) {
+            Map.Entry<Path, Observation> entry = iterator.next();
+            Path path = entry.getKey();
+            Observation observation = entry.getValue();
+
+            BasicFileAttributes attrs;
+            try {
+                attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // 文件已被删除或移走
+                iterator.remove();
+                continue;
+            }
+            long size = attrs.size();
+            long lastModified = attrs.lastModifiedTime().toMillis();
+            if (!observation.matches(size, lastModified)) {
+                observation.observe(size, lastModified, now);
+                continue;
+            }
+            if (now - observation.stableSince < settleMs) {
+                continue;
+            }
+
+            iterator.remove();
+            ingest(path, size, lastModified);
+        }
+    }
+
+    /**
+     * 导入已稳定的文件
+     *
+     * @param path 文件路径
+     * @param size 文件大小
+     * @param lastModified 文件修改时间（毫秒）
+     */
+    private void ingest(Path path, long size, long lastModified) {
+        String key = path.toString();
+        if (!isChanged(path, size, lastModified)) {
+            return;
+        }
+        if (size == 0 || size > ragDocumentProperties.getMaxFileSize()) {
+            log.warn("跳过监听目录中为空或超过大小上限的文件：{}，大小：{} 字节", path, size);
+            remember(key, size, lastModified, null, null);
+            return;
+        }
+
+        // 1. 原地计算内容哈希，读取期间文件又被修改时放回队列重新计时
+        String contentHash;
+        try {
+            contentHash = uploadStorage.hash(path);
+            if (!isUnchanged(path, size, lastModified)) {
+                pending.putIfAbsent(path, new Observation());
+                return;
+            }
+        } catch (IOException e) {
+            log.warn("监听目录文件读取失败，等待下次对账扫描重试：{}，原因：{}", path, e.getMessage());
+            return;
+        }
+
+        // 2. 内容未变（只改了修改时间）或已入库时跳过，否则复制到上传目录，创建文档或替换该路径此前导入的文档
+        WatchedFile known = fingerprints.get(key);
+        String fileName = path.getFileName().toString();
+        String fileType = StrUtil.blankToDefault(FileUtil.getMimeType(fileName), DEFAULT_FILE_TYPE);
+        try {
+            Long documentId = known != null ? known.getDocumentId() : null;
+            if (known != null && contentHash.equals(known.getContentHash())) {
+                log.debug("监听目录文件内容未变：{}", path);
+            } else if (documentId != null && documentMapper.selectById(documentId) != null) {
+                StoredFile storedFile = copyToUploadDir(path, contentHash);
+                if (storedFile == null) {
+                    return;
+                }
+                documentService.replaceDocumentFile(documentId, fileName, size, fileType,
+                        storedFile.getPath(), contentHash);
+                log.info("监听目录文件已修改，替换文档：{}，文档ID：{}", path, documentId);
+            } else if (isIndexed(contentHash)) {
+                documentId = null;
+                log.info("监听目录文件内容已入库，跳过：{}", path);
+            } else {
+                StoredFile storedFile = copyToUploadDir(path, contentHash);
+                if (storedFile == null) {
+                    return;
+                }
+                documentId = documentService.createDocument(fileName, size, fileType,
+                        storedFile.getPath(), contentHash).getId();
+                log.info("监听目录文件已导入：{}，文档ID：{}", path, documentId);
+            }
+            remember(key, size, lastModified, contentHash, documentId);
+        } catch (IOException e) {
+            log.warn("监听目录文件复制失败，等待下次对账扫描重试：{}，原因：{}", path, e.getMessage());
+        } catch (BusinessException e) {
+            // 如文档正在处理中不能替换：不记录指纹，下次对账扫描时重试
+            log.warn("监听目录文件导入失败，等待下次对账扫描重试：{}，原因：{}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * 把文件复制到上传目录；复制的内容与先前计算的哈希不同（期间文件又被修改）时删除副本，
+     * 把文件放回队列重新计时并返回 null
+     *
+     * @param source 源文件
+     * @param contentHash 先前原地计算的内容哈希
+     * @return 保存后的文件
+     */
+    private StoredFile copyToUploadDir(Path source, String contentHash) throws IOException {
+        StoredFile storedFile;
+        try (InputStream in = Files.newInputStream(source)) {
+            storedFile = uploadStorage.store(in, source.getFileName().toString());
+        }
+        if (!contentHash.equals(storedFile.getContentHash())) {
+            FileUtil.del(storedFile.getPath());
+            pending.putIfAbsent(source, new Observation());
+            return null;
+        }
+        return storedFile;
+    }
+
+    /**
+     * 文件的大小和修改时间仍与稳定时观察到的一致
+     */
+    private boolean isUnchanged(Path path, long size, long lastModified) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        return attrs.size() == size && attrs.lastModifiedTime().toMillis() == lastModified;
+    }
+
+    /**
+     * 文件的大小或修改时间与上次处理时不同（或从未处理过）
+     */
+    private boolean isChanged(Path path, long size, long lastModified) {
+        WatchedFile known = fingerprints.get(path.toString());
+        return known == null || known.getFileSize() != size || known.getLastModified() != lastModified;
+    }
+
+    /**
+     * 是否需要导入：格式受支持，且不是隐藏文件或 Office 锁文件
+     */
+    private boolean isCandidate(Path path) {
+        String name = path.getFileName().toString();
+        return !name.startsWith(".") && !name.startsWith("~$")
+            && ragDocumentProperties.isSupportedFormat(FileNameUtil.extName(name));
+    }
+
+    /**
+     * 内容哈希相同的文档已入库或正在处理
+     */
+    private boolean isIndexed(String contentHash) {
+        QueryWrapper<Document> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("content_hash", contentHash);
+        queryWrapper.in("status", "PROCESSING", "COMPLETED");
+        return documentMapper.selectCount(queryWrapper) > 0;
+    }
+
+    private void remember(String path, long size, long lastModified, String contentHash, Long documentId) {
+        WatchedFile watchedFile = new WatchedFile();
+        watchedFile.setPath(path);
+        watchedFile.setFileSize(size);
+        watchedFile.setLastModified(lastModified);
+        watchedFile.setContentHash(contentHash);
+        watchedFile.setDocumentId(documentId);
+        watchedFileMapper.upsert(watchedFile);
+        fingerprints.put(path, watchedFile);
+    }
+
+    private Path watchRoot() {
+        return Paths.get(ragDocumentProperties.getWatchDir()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 待导入文件最近一次观察到的大小和修改时间，以及从何时起保持不变
+     */
+    private static final class Observation {
+        private long size = -1;
+        private long lastModified = -1;
+        private long stableSince;
+
+        private boolean matches(long size, long lastModified) {
+            return this.size == size && this.lastModified == lastModified;
+        }
+
+        private void observe(long size, long lastModified, long now) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.stableSince = now;
+        }
+    }
+}
@@ -0,0 +1,517 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.OpenRouterProperties;
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.DocumentChunk;
+import com.example.rag.mapper.DocumentChunkMapper;
+import com.example.rag.service.VectorStoreService;
+import com.example.rag.service.impl.DownstreamLimiter.Downstream;
+import com.example.rag.util.TokenEstimator;
+import com.example.rag.vo.VectorPoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 单个文档的分阶段入库流水线
+ * 各阶段通过有界队列连接，并发度独立配置：
+ * 提取与分块（调用线程） → 向量化 → Qdrant 写入 → PostgreSQL 持久化
+ *
+ * 队列满时上游阶段阻塞等待（背压），因此同时驻留内存的批次数
+ * 不超过各队列容量与各阶段并发数之和（另有至多一批待写入的片段记录），与文档大小无关；
+ * 向量化第 N+1 批的同时可以写入第 N 批。
+ * 任一阶段失败时其余阶段尽快停止，run 抛出最先发生的异常。
+ * 向量化阶段经 IngestionEmbeddingBatcher 发送，与同时入库的其他文档的片段合并成满批次。
+ *
+ * 片段记录在向量写入 Qdrant 之后才持久化，因此已保存的片段记录即为处理进度的检查点；
+ * 任一阶段失败时，各阶段退出后仍在攒批的片段记录先写入再抛出异常，已写入 Qdrant 的批次不会丢失检查点；
+ * 启用确定性向量ID时，中断前已写入 Qdrant 但尚未持久化的向量在重新处理时被覆盖，不会残留。
+ */
+public class DocumentIngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentIngestionPipeline.class);
+
+    /**
+     * 阶段线程轮询队列及检查失败标记的间隔
+     */
+    private static final long POLL_INTERVAL_MS = 100;
+
+    /**
+     * 队列结束标记
+     */
+    private static final Object END = new Object();
+
+    /**
+     * 片段来源：提取文档文本并分块，按顺序把片段交给 sink
+     */
+    @FunctionalInterface
+    public interface ChunkSource {
+        void produce(Consumer<String> sink) throws Exception;
+    }
+
+    /**
+     * 带片段索引的片段来源：只需要处理部分片段（如文档更新时新增的片段）时使用
+     */
+    @FunctionalInterface
+    public interface IndexedChunkSource {
+        void produce(IndexedChunkSink sink) throws Exception;
+    }
+
+    /**
+     * 接收指定索引的片段
+     */
+    @FunctionalInterface
+    public interface IndexedChunkSink {
+
+        /**
+         * @param chunkIndex 片段索引
+         * @param content 片段内容
+         * @param pageNumber 片段起始页码，来源没有页的概念时为 null
+         */
+        void accept(int chunkIndex, String content, Integer pageNumber);
+
+        default void accept(int chunkIndex, String content) {
+            accept(chunkIndex, content, null);
+        }
+    }
+
+    /**
+     * 处理进度回调，在提取线程和各阶段线程中调用
+     */
+    public interface ProgressListener {
+
+        /**
+         * 一批片段已向量化
+         */
+        default void onEmbedded(int count) {
+        }
+
+        /**
+         * 一批片段记录已保存，此时对应的向量已写入 Qdrant
+         */
+        default void onStored(int count) {
+        }
+
+        /**
+         * 所有片段都已生成并交给向量化阶段
+         */
+        default void onExtractionFinished() {
+        }
+    }
+
+    /**
+     * 流水线阶段的处理逻辑
+     */
+    @FunctionalInterface
+    private interface Stage {
+        ChunkBatch process(ChunkBatch batch) throws Exception;
+    }
+
+    /**
+     * 阶段全部批次处理完成后的收尾逻辑
+     */
+    @FunctionalInterface
+    private interface StageCompletion {
+        void complete() throws Exception;
+    }
+
+    private final Document document;
+    private final IngestionEmbeddingBatcher embeddingBatcher;
+    private final VectorStoreService vectorStoreService;
+    private final DocumentChunkMapper documentChunkMapper;
+    private final RagIngestionProperties ingestionProperties;
+    private final OpenRouterProperties openRouterProperties;
+    private final DownstreamLimiter downstreamLimiter;
+
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+
+    private boolean deterministicVectorIds;
+
+    private ProgressListener progressListener = new ProgressListener() { };
+
+    /**
+     * 持久化阶段待批量写入的片段记录
+     */
+    private final List<DocumentChunk> pendingChunks = new ArrayList<>();
+
+    public DocumentIngestionPipeline(Document document,
+                                     IngestionEmbeddingBatcher embeddingBatcher,
+                                     VectorStoreService vectorStoreService,
+                                     DocumentChunkMapper documentChunkMapper,
+                                     RagIngestionProperties ingestionProperties,
+                                     OpenRouterProperties openRouterProperties,
+                                     DownstreamLimiter downstreamLimiter) {
+        this.document = document;
+        this.embeddingBatcher = embeddingBatcher;
+        this.vectorStoreService = vectorStoreService;
+        this.documentChunkMapper = documentChunkMapper;
+        this.ingestionProperties = ingestionProperties;
+        this.openRouterProperties = openRouterProperties;
+        this.downstreamLimiter = downstreamLimiter;
+    }
+
+    /**
+     * 按（文档ID, 片段索引, 内容哈希）生成向量ID，代替随机ID
+     * 同一文档重新处理时相同片段得到相同的向量ID，重复写入 Qdrant 是幂等的
+     *
+     * @param deterministicVectorIds 是否使用确定性向量ID
+     */
+    public void setDeterministicVectorIds(boolean deterministicVectorIds) {
+        this.deterministicVectorIds = deterministicVectorIds;
+    }
+
+    /**
+     * 设置处理进度回调
+     *
+     * @param progressListener 进度回调
+     */
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * 运行流水线，直到所有片段都已向量化、写入 Qdrant 并持久化
+     *
+     * @param source 片段来源，在调用线程中执行
+     * @return 片段数量
+     * @throws Exception 任一阶段失败时抛出最先发生的异常
+     */
+    public int run(ChunkSource source) throws Exception {
+        AtomicInteger chunkIndex = new AtomicInteger();
+        return runIndexed(sink -> source.produce(chunk -> sink.accept(chunkIndex.getAndIncrement(), chunk)));
+    }
+
+    /**
+     * 运行流水线，片段索引由来源指定
+     *
+     * @param source 片段来源，在调用线程中执行
+     * @return 经过流水线处理的片段数量
+     * @throws Exception 任一阶段失败时抛出最先发生的异常
+     */
+    public int runIndexed(IndexedChunkSource source) throws Exception {
+        int embedWorkers = Math.max(1, ingestionProperties.getEmbeddingConcurrency());
+        int upsertWorkers = Math.max(1, ingestionProperties.getUpsertConcurrency());
+        int persistWorkers = Math.max(1, ingestionProperties.getPersistConcurrency());
+        int capacity = Math.max(1, ingestionProperties.getQueueCapacity());
+
+        BlockingQueue<Object> embedQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Object> upsertQueue = new ArrayBlockingQueue<>(capacity);
+        BlockingQueue<Object> persistQueue = new ArrayBlockingQueue<>(capacity);
+
+        int totalWorkers = embedWorkers + upsertWorkers + persistWorkers;
+        CountDownLatch finished = new CountDownLatch(totalWorkers);
+        ExecutorService executor = Executors.newFixedThreadPool(totalWorkers,
+                new CustomizableThreadFactory("ingest-" + document.getId() + "-"));
+
+        try {
+            startStage(executor, finished, embedWorkers, embedQueue, upsertQueue, upsertWorkers, this::embed, null);
+            startStage(executor, finished, upsertWorkers, upsertQueue, persistQueue, persistWorkers, this::upsert, null);
+            startStage(executor, finished, persistWorkers, persistQueue, null, 0, this::persist, this::flushPendingChunks);
+
+            int chunkCount = produce(source, embedQueue);
+            try {
+                for (int i = 0; i < embedWorkers && failure.get() == null; i++) {
+                    put(embedQueue, END);
+                }
+            } catch (PipelineAbortedException e) {
+                // 其他阶段已失败，等待各阶段退出后统一处理
+            }
+
+            finished.await();
+
+            Exception e = failure.get();
+            if (e != null) {
+                savePendingChunks(e);
+                throw e;
+            }
+            return chunkCount;
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 提取与分块阶段：把片段按向量化请求的条数和 token 上限打包成批次
+     */
+    private int produce(IndexedChunkSource source, BlockingQueue<Object> embedQueue) {
+        int maxItems = Math.max(1, openRouterProperties.getEmbeddingBatchSize());
+        int maxTokens = openRouterProperties.getEmbeddingBatchMaxTokens();
+
+        AtomicInteger chunkCount = new AtomicInteger();
+        ChunkBatch[] current = {new ChunkBatch()};
+        int[] tokens = {0};
+
+        try {
+            source.produce((chunkIndex, chunk, pageNumber) -> {
+                int estimated = TokenEstimator.estimate(chunk);
+                ChunkBatch batch = current[0];
+                if (!batch.isEmpty() && (batch.size() >= maxItems || tokens[0] + estimated > maxTokens)) {
+                    put(embedQueue, batch);
+                    batch = new ChunkBatch();
+                    current[0] = batch;
+                    tokens[0] = 0;
+                }
+                String contentHash = DigestUtil.sha256Hex(chunk);
+                batch.add(chunkIndex, chunk, contentHash, vectorIdFor(chunkIndex, contentHash), pageNumber);
+                chunkCount.incrementAndGet();
+                tokens[0] += estimated;
+            });
+
+            if (!current[0].isEmpty()) {
+                put(embedQueue, current[0]);
+            }
+            progressListener.onExtractionFinished();
+        } catch (Exception e) {
+            // 下游失败导致的中止以下游异常为准
+            fail(e);
+        }
+
+        log.debug("片段生成完成，文档ID：{}，片段数量：{}", document.getId(), chunkCount.get());
+        return chunkCount.get();
+    }
+
+    private String vectorIdFor(int chunkIndex, String contentHash) {
+        if (!deterministicVectorIds) {
+            return UUID.randomUUID().toString();
+        }
+        String name = document.getId() + ":" + chunkIndex + ":" + contentHash;
+        return UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * 向量化阶段
+     */
+    private ChunkBatch embed(ChunkBatch batch) throws Exception {
+        batch.vectors = embeddingBatcher.embed(document.getId(), batch.contents);
+        progressListener.onEmbedded(batch.size());
+        log.debug("批次向量化完成，文档ID：{}，起始片段：{}，数量：{}",
+                document.getId(), batch.chunkIndexes.get(0), batch.size());
+        return batch;
+    }
+
+    /**
+     * Qdrant 写入阶段
+     */
+    private ChunkBatch upsert(ChunkBatch batch) throws Exception {
+        List<VectorPoint> points = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("document_id", document.getId());
+            metadata.put("chunk_index", batch.chunkIndexes.get(i));
+            metadata.put("content", batch.contents.get(i));
+            metadata.put("document_name", document.getFileName());
+            if (batch.pageNumbers.get(i) != null) {
+                metadata.put("page_number", batch.pageNumbers.get(i));
+            }
+
+            points.add(new VectorPoint(batch.vectorIds.get(i), batch.vectors.get(i), metadata));
+        }
+        downstreamLimiter.run(Downstream.QDRANT, () -> vectorStoreService.storeVectorBatch(points));
+        return batch;
+    }
+
+    /**
+     * PostgreSQL 持久化阶段
+     * 片段记录先攒批，达到批量插入条数时以一条多行 INSERT 写入
+     */
+    private ChunkBatch persist(ChunkBatch batch) throws Exception {
+        List<DocumentChunk> rows = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            String content = batch.contents.get(i);
+
+            DocumentChunk documentChunk = new DocumentChunk();
+            documentChunk.setDocumentId(document.getId());
+            documentChunk.setChunkIndex(batch.chunkIndexes.get(i));
+            documentChunk.setContent(content);
+            documentChunk.setVectorId(batch.vectorIds.get(i));
+            documentChunk.setCharCount(content.length());
+            documentChunk.setContentHash(batch.contentHashes.get(i));
+            documentChunk.setPageNumber(batch.pageNumbers.get(i));
+            rows.add(documentChunk);
+        }
+
+        List<DocumentChunk> toInsert = null;
+        synchronized (pendingChunks) {
+            pendingChunks.addAll(rows);
+            if (pendingChunks.size() >= insertBatchSize()) {
+                toInsert = new ArrayList<>(pendingChunks);
+                pendingChunks.clear();
+            }
+        }
+        if (toInsert != null) {
+            insertChunks(toInsert);
+        }
+        return batch;
+    }
+
+    /**
+     * 持久化阶段结束时写入剩余的片段记录
+     */
+    private void flushPendingChunks() throws Exception {
+        List<DocumentChunk> toInsert;
+        synchronized (pendingChunks) {
+            toInsert = new ArrayList<>(pendingChunks);
+            pendingChunks.clear();
+        }
+        insertChunks(toInsert);
+    }
+
+    /**
+     * 流水线失败时写入仍在攒批的片段记录
+     * 这些片段的向量已写入 Qdrant，保存后重新处理时可以从检查点沿用；
+     * 写入失败只记录日志并附加到原异常上，不掩盖导致中止的异常
+     */
+    private void savePendingChunks(Exception failure) {
+        try {
+            flushPendingChunks();
+        } catch (Exception e) {
+            log.warn("中止前保存片段记录失败，文档ID：{}，原因：{}", document.getId(), e.getMessage());
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void insertChunks(List<DocumentChunk> rows) throws Exception {
+        int batchSize = insertBatchSize();
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            List<DocumentChunk> slice = rows.subList(from, Math.min(from + batchSize, rows.size()));
+            downstreamLimiter.call(Downstream.POSTGRES, () -> documentChunkMapper.insertBatch(slice));
+            progressListener.onStored(slice.size());
+            log.debug("片段记录批量写入完成，文档ID：{}，数量：{}", document.getId(), slice.size());
+        }
+    }
+
+    private int insertBatchSize() {
+        return Math.min(DocumentChunkMapper.MAX_INSERT_BATCH_SIZE,
+                Math.max(1, ingestionProperties.getChunkInsertBatchSize()));
+    }
+
+    private void startStage(ExecutorService executor, CountDownLatch finished, int workers,
+                            BlockingQueue<Object> input, BlockingQueue<Object> output,
+                            int downstreamWorkers, Stage stage, StageCompletion completion) {
+        AtomicInteger running = new AtomicInteger(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> {
+                try {
+                    Object item;
+                    while ((item = take(input)) != END) {
+                        ChunkBatch result = stage.process((ChunkBatch) item);
+                        if (output != null) {
+                            put(output, result);
+                        }
+                    }
+                    // 本阶段最后一个退出的线程负责收尾并通知下游结束
+                    if (running.decrementAndGet() == 0) {
+                        if (completion != null) {
+                            completion.complete();
+                        }
+                        for (int j = 0; output != null && j < downstreamWorkers; j++) {
+                            put(output, END);
+                        }
+                    }
+                } catch (PipelineAbortedException e) {
+                    // 其他阶段已失败，直接退出
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+    }
+
+    private void put(BlockingQueue<Object> queue, Object item) {
+        try {
+            while (!queue.offer(item, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+                checkNotFailed();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            throw new PipelineAbortedException();
+        }
+    }
+
+    private Object take(BlockingQueue<Object> queue) {
+        try {
+            Object item;
+            while ((item = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS)) == null) {
+                checkNotFailed();
+            }
+            return item;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+            throw new PipelineAbortedException();
+        }
+    }
+
+    private void checkNotFailed() {
+        if (failure.get() != null) {
+            throw new PipelineAbortedException();
+        }
+    }
+
+    private void fail(Exception e) {
+        if (failure.compareAndSet(null, e)) {
+            log.warn("入库流水线中止，文档ID：{}，原因：{}", document.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 其他阶段失败后用于快速退出的内部异常
+     */
+    private static class PipelineAbortedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        PipelineAbortedException() {
+            super("ingestion pipeline aborted", null, false, false);
+        }
+    }
+
+    /**
+     * 在阶段之间流转的一批片段
+     */
+    private static class ChunkBatch {
+        private final List<Integer> chunkIndexes = new ArrayList<>();
+        private final List<String> contents = new ArrayList<>();
+        private final List<String> contentHashes = new ArrayList<>();
+        private final List<String> vectorIds = new ArrayList<>();
+        private final List<Integer> pageNumbers = new ArrayList<>();
+        private List<float[]> vectors;
+
+        void add(int chunkIndex, String content, String contentHash, String vectorId, Integer pageNumber) {
+            chunkIndexes.add(chunkIndex);
+            contents.add(content);
+            contentHashes.add(contentHash);
+            vectorIds.add(vectorId);
+            pageNumbers.add(pageNumber);
+        }
+
+        int size() {
+            return contents.size();
+        }
+
+        boolean isEmpty() {
+            return contents.isEmpty();
+        }
+    }
+}
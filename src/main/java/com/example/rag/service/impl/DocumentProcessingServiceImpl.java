@@ -1,33 +1,49 @@
 package com.example.rag.service.impl;
 
+import cn.hutool.crypto.digest.DigestUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.example.rag.config.OpenRouterProperties;
 import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.config.RagIngestionProperties;
 import com.example.rag.entity.Document;
 import com.example.rag.entity.DocumentChunk;
 import com.example.rag.mapper.DocumentChunkMapper;
 import com.example.rag.mapper.DocumentMapper;
 import com.example.rag.service.DocumentProcessingService;
 import com.example.rag.service.DocumentProcessor;
-import com.example.rag.service.EmbeddingService;
+import com.example.rag.service.IngestionProgressService;
 import com.example.rag.service.VectorStoreService;
+import com.example.rag.util.BpeTokenizer;
+import com.example.rag.util.ChunkSizeUnit;
+import com.example.rag.util.ChunkingStrategy;
+import com.example.rag.util.ContentDefinedChunker;
+import com.example.rag.util.TextChunker;
+import com.example.rag.util.TokenBudgetChunker;
 import com.example.rag.vo.VectorPoint;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * 文档处理服务实现类
- * 使用 @Async 实现异步文档处理
+ * 由入库任务工作线程调用，在调用线程中同步执行
  * 流程：提取文本 → 分割片段 → 向量化 → 存储向量 → 更新文档状态
+ * 其中提取分块、向量化、存储向量、保存片段记录由 DocumentIngestionPipeline 分阶段并行执行，
+ * 各阶段完成的片段数记入 IngestionProgressService，推送给订阅处理进度的客户端
  *
  * 验证需求：2.1, 2.2, 2.3, 2.4, 3.1, 3.4, 10.2
  */
@@ -46,7 +62,7 @@ public class DocumentProcessingServiceImpl implements DocumentProcessingService
     private DocumentProcessor documentProcessor;
 
     @Autowired
-    private EmbeddingService embeddingService;
+    private IngestionEmbeddingBatcher ingestionEmbeddingBatcher;
 
     @Autowired
     private VectorStoreService vectorStoreService;
@@ -54,16 +70,28 @@ public class DocumentProcessingServiceImpl implements DocumentProcessingService
     @Autowired
     private RagDocumentProperties ragDocumentProperties;
 
+    @Autowired
+    private RagIngestionProperties ragIngestionProperties;
+
+    @Autowired
+    private OpenRouterProperties openRouterProperties;
+
+    @Autowired
+    private DownstreamLimiter downstreamLimiter;
+
+    @Autowired
+    private IngestionProgressService ingestionProgressService;
+
     /**
-     * 异步处理文档
-     * 使用 @Async 注解确保在独立线程中执行，不阻塞上传请求
+     * 处理文档
+     * 在入库任务工作线程中执行，不阻塞上传请求。
+     * 已保存的片段记录作为检查点：重新处理时内容一致的片段直接跳过，只处理剩余片段
      *
      * @param documentId 文档ID
      */
     @Override
-    @Async
     public void processDocument(Long documentId) {
-        log.info("开始异步处理文档，文档ID：{}", documentId);
+        log.info("开始处理文档，文档ID：{}", documentId);
 
         try {
             // 1. 从数据库加载文档信息
@@ -74,88 +102,511 @@ public class DocumentProcessingServiceImpl implements DocumentProcessingService
             }
 
             log.info("加载文档成功：{}，文件路径：{}", document.getFileName(), document.getFilePath());
+            ingestionProgressService.start(documentId);
 
-            // 2. 提取文档文本内容
-            String text = documentProcessor.extractText(new File(document.getFilePath()));
-            log.info("文本提取完成，文档ID：{}，文本长度：{} 字符", documentId, text.length());
-
-            // 3. 将文本分割为片段
-            int chunkSize = ragDocumentProperties.getChunkSize();
-            int chunkOverlap = ragDocumentProperties.getChunkOverlap();
-            List<String> chunks = documentProcessor.splitDocument(text, chunkSize, chunkOverlap);
-            log.info("文档分割完成，文档ID：{}，片段数量：{}", documentId, chunks.size());
-
-            // 4. 为每个片段生成向量并准备存储数据
-            List<VectorPoint> vectorPoints = new ArrayList<>();
-            List<DocumentChunk> documentChunks = new ArrayList<>();
-
-            for (int i = 0; i < chunks.size(); i++) {
-                String chunkContent = chunks.get(i);
-                String vectorId = UUID.randomUUID().toString();
-
-                // 向量化片段
-                float[] vector = embeddingService.embed(chunkContent);
-
-                // 构建向量点的元数据
-                Map<String, Object> metadata = new HashMap<>();
-                metadata.put("document_id", documentId);
-                metadata.put("chunk_index", i);
-                metadata.put("content", chunkContent);
-                metadata.put("document_name", document.getFileName());
-
-                // 创建 VectorPoint
-                VectorPoint vectorPoint = new VectorPoint(vectorId, vector, metadata);
-                vectorPoints.add(vectorPoint);
-
-                // 创建 DocumentChunk 记录
-                DocumentChunk documentChunk = new DocumentChunk();
-                documentChunk.setDocumentId(documentId);
-                documentChunk.setChunkIndex(i);
-                documentChunk.setContent(chunkContent);
-                documentChunk.setVectorId(vectorId);
-                documentChunk.setCharCount(chunkContent.length());
-                documentChunks.add(documentChunk);
-
-                log.debug("片段 {} 向量化完成，vectorId：{}", i, vectorId);
-            }
+            // 2. 加载上次中断前已保存的片段
+            Map<Integer, DocumentChunk> checkpoint = loadCheckpoint(document, chunkingSignature());
 
-            // 5. 批量存储向量到 Qdrant
-            if (!vectorPoints.isEmpty()) {
-                vectorStoreService.storeVectorBatch(vectorPoints);
-                log.info("向量批量存储完成，文档ID：{}，向量数量：{}", documentId, vectorPoints.size());
-            }
+            // 3-6. 通过分阶段流水线完成：提取分块 → 向量化 → 写入 Qdrant → 保存片段记录
+            // 检查点中内容一致的片段不再进入流水线
+            File file = new File(document.getFilePath());
+            DocumentIngestionPipeline pipeline = new DocumentIngestionPipeline(document,
+                    ingestionEmbeddingBatcher, vectorStoreService, documentChunkMapper,
+                    ragIngestionProperties, openRouterProperties, downstreamLimiter);
+            pipeline.setDeterministicVectorIds(true);
+            pipeline.setProgressListener(progressListener(documentId));
 
-            // 6. 保存 DocumentChunk 记录到数据库
-            for (DocumentChunk chunk : documentChunks) {
-                documentChunkMapper.insert(chunk);
-            }
-            log.info("片段记录保存完成，文档ID：{}，片段数量：{}", documentId, documentChunks.size());
+            int[] chunkCount = {0};
+            int[] resumedCount = {0};
+            PageCursor pages = new PageCursor();
+            int processedCount = pipeline.runIndexed(sink -> produceChunks(documentId, file, document.getContentHash(), pages, chunk -> {
+                int chunkIndex = chunkCount[0]++;
+                Integer pageNumber = pages.nextChunk();
+                ingestionProgressService.chunksExtracted(documentId, 1);
+                DocumentChunk saved = checkpoint.remove(chunkIndex);
+                if (saved != null) {
+                    if (DigestUtil.sha256Hex(chunk).equals(saved.getContentHash())) {
+                        resumedCount[0]++;
+                        ingestionProgressService.chunksResumed(documentId, 1);
+                        return;
+                    }
+                    removeChunks(List.of(saved));
+                }
+                sink.accept(chunkIndex, chunk, pageNumber);
+            }));
+
+            // 检查点中超出片段数量的记录不再对应任何片段
+            removeChunks(new ArrayList<>(checkpoint.values()));
+            log.info("片段向量化与存储完成，文档ID：{}，片段数量：{}，沿用检查点：{}，本次处理：{}",
+                    documentId, chunkCount[0], resumedCount[0], processedCount);
 
             // 7. 更新文档状态为 COMPLETED
             document.setStatus("COMPLETED");
-            document.setChunkCount(chunks.size());
+            document.setChunkCount(chunkCount[0]);
             document.setProcessTime(LocalDateTime.now());
             documentMapper.updateById(document);
+            ingestionProgressService.finish(documentId, IngestionProgressService.STATUS_COMPLETED, null);
 
             log.info("文档处理完成，文档ID：{}，文件名：{}，片段数量：{}",
-                    documentId, document.getFileName(), chunks.size());
+                    documentId, document.getFileName(), chunkCount[0]);
 
         } catch (Exception e) {
             log.error("文档处理失败，文档ID：{}", documentId, e);
+            markFailed(documentId, e);
+        }
+    }
+
+    /**
+     * 增量处理已更新的文档
+     * 已有片段先整体移到负索引区间，为新版本片段腾出索引；
+     * 新版本分块过程中按内容哈希逐个认领已有片段，未被认领的片段最后删除。
+     * 上次中断遗留的负索引片段在开始时清理（其内容可通过向量缓存快速恢复）。
+     * 片段按内容定义分块生成，与配置的分块方式不同，因此清除文档的分块配置签名，
+     * 之后的完整处理不会把这些片段当作检查点沿用
+     *
+     * @param documentId 文档ID
+     */
+    @Override
+    public void reprocessDocument(Long documentId) {
+        log.info("开始增量处理文档，文档ID：{}", documentId);
 
-            // 更新文档状态为 FAILED，记录错误信息
-            try {
-                Document document = documentMapper.selectById(documentId);
-                if (document != null) {
-                    document.setStatus("FAILED");
-                    document.setErrorMessage(e.getMessage());
-                    document.setProcessTime(LocalDateTime.now());
-                    documentMapper.updateById(document);
-                    log.info("文档状态已更新为 FAILED，文档ID：{}", documentId);
+        try {
+            // 1. 从数据库加载文档信息和已有片段
+            Document document = documentMapper.selectById(documentId);
+            if (document == null) {
+                log.error("文档不存在，文档ID：{}", documentId);
+                return;
+            }
+
+            ingestionProgressService.start(documentId);
+            updateChunkingSignature(document, null);
+
+            QueryWrapper<DocumentChunk> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("document_id", documentId);
+            queryWrapper.orderByAsc("chunk_index");
+            List<DocumentChunk> existingChunks = documentChunkMapper.selectList(queryWrapper);
+
+            // 2. 清理上次中断遗留的片段，其余片段移到负索引区间
+            List<DocumentChunk> staleChunks = new ArrayList<>();
+            Map<String, Deque<DocumentChunk>> chunksByHash = new HashMap<>();
+            for (DocumentChunk chunk : existingChunks) {
+                if (chunk.getChunkIndex() < 0) {
+                    staleChunks.add(chunk);
+                } else {
+                    chunksByHash.computeIfAbsent(contentHashOf(chunk), k -> new ArrayDeque<>()).add(chunk);
                 }
-            } catch (Exception updateException) {
-                log.error("更新文档失败状态时发生异常，文档ID：{}", documentId, updateException);
             }
+            removeChunks(staleChunks);
+
+            UpdateWrapper<DocumentChunk> shiftWrapper = new UpdateWrapper<>();
+            shiftWrapper.setSql("chunk_index = -chunk_index - 1");
+            shiftWrapper.eq("document_id", documentId);
+            shiftWrapper.ge("chunk_index", 0);
+            documentChunkMapper.update(null, shiftWrapper);
+
+            // 3. 对新版本分块，按内容哈希认领已有片段，只有新增片段进入流水线
+            File file = new File(document.getFilePath());
+            List<DocumentChunk> keptChunks = new ArrayList<>();
+            int[] chunkCount = {0};
+            PageCursor pages = new PageCursor();
+
+            DocumentIngestionPipeline pipeline = new DocumentIngestionPipeline(document,
+                    ingestionEmbeddingBatcher, vectorStoreService, documentChunkMapper,
+                    ragIngestionProperties, openRouterProperties, downstreamLimiter);
+            pipeline.setProgressListener(progressListener(documentId));
+
+            int addedCount = pipeline.runIndexed(sink -> documentProcessor.extractChunks(file, document.getContentHash(),
+                    createContentDefinedChunker(chunk -> {
+                        int chunkIndex = chunkCount[0]++;
+                        Integer pageNumber = pages.nextChunk();
+                        ingestionProgressService.chunksExtracted(documentId, 1);
+                        Deque<DocumentChunk> candidates = chunksByHash.get(DigestUtil.sha256Hex(chunk));
+                        if (candidates != null && !candidates.isEmpty()) {
+                            DocumentChunk kept = candidates.poll();
+                            kept.setChunkIndex(chunkIndex);
+                            kept.setPageNumber(pageNumber);
+                            keptChunks.add(kept);
+                            ingestionProgressService.chunksResumed(documentId, 1);
+                        } else {
+                            sink.accept(chunkIndex, chunk, pageNumber);
+                        }
+                    }), pages));
+
+            // 4. 删除新版本中不再存在的片段
+            List<DocumentChunk> removedChunks = new ArrayList<>();
+            chunksByHash.values().forEach(removedChunks::addAll);
+            removeChunks(removedChunks);
+
+            // 5. 未变化的片段更新索引和向量元数据
+            updateKeptChunks(document, keptChunks);
+
+            // 6. 更新文档状态为 COMPLETED
+            document.setStatus("COMPLETED");
+            document.setChunkCount(chunkCount[0]);
+            document.setProcessTime(LocalDateTime.now());
+            documentMapper.updateById(document);
+            ingestionProgressService.finish(documentId, IngestionProgressService.STATUS_COMPLETED, null);
+
+            log.info("文档增量处理完成，文档ID：{}，片段数量：{}，沿用：{}，新增：{}，删除：{}",
+                    documentId, chunkCount[0], keptChunks.size(), addedCount, removedChunks.size());
+
+        } catch (Exception e) {
+            log.error("文档增量处理失败，文档ID：{}", documentId, e);
+            markFailed(documentId, e);
+        }
+    }
+
+    /**
+     * 把流水线各阶段完成的片段数记入处理进度
+     * 失败时不在这里结束进度，由入库任务决定重试还是以失败结束
+     */
+    private DocumentIngestionPipeline.ProgressListener progressListener(Long documentId) {
+        return new DocumentIngestionPipeline.ProgressListener() {
+            @Override
+            public void onEmbedded(int count) {
+                ingestionProgressService.chunksEmbedded(documentId, count);
+            }
+
+            @Override
+            public void onStored(int count) {
+                ingestionProgressService.chunksStored(documentId, count);
+            }
+
+            @Override
+            public void onExtractionFinished() {
+                ingestionProgressService.extractionFinished(documentId);
+            }
+        };
+    }
+
+    /**
+     * 提取文档文本并按配置分块，按顺序把片段交给 sink
+     * 流式提取时文本所在的页报告给 pages，并按 contentHash 读写提取文本缓存；一次性提取时不记录页码
+     */
+    private void produceChunks(Long documentId, File file, String contentHash, PageCursor pages,
+                               Consumer<String> sink) throws Exception {
+        if (Boolean.TRUE.equals(ragDocumentProperties.getStreamingExtraction())) {
+            // 流式提取：解析过程中直接分块，不保留完整文本
+            documentProcessor.extractChunks(file, contentHash, createChunker(sink), pages);
+            return;
+        }
+
+        String text = documentProcessor.extractText(file);
+        log.info("文本提取完成，文档ID：{}，文本长度：{} 字符", documentId, text.length());
+        if (ragDocumentProperties.getChunkingStrategy() == ChunkingStrategy.FIXED
+                && ragDocumentProperties.getChunkSizeUnit() == ChunkSizeUnit.CHARACTERS) {
+            documentProcessor.splitDocument(text, ragDocumentProperties.getChunkSize(),
+                    ragDocumentProperties.getChunkOverlap()).forEach(sink);
+        } else {
+            TextChunker chunker = createChunker(sink);
+            chunker.append(text.toCharArray(), 0, text.length());
+            chunker.finish();
+        }
+    }
+
+    /**
+     * 分块与向量化配置签名，配置相同时同一文件的分块结果和向量保持一致
+     */
+    private String chunkingSignature() {
+        return String.join("|",
+                ragDocumentProperties.getChunkingStrategy().name(),
+                ragDocumentProperties.getChunkSizeUnit().name(),
+                String.valueOf(ragDocumentProperties.getChunkSize()),
+                String.valueOf(ragDocumentProperties.getChunkOverlap()),
+                String.valueOf(ragDocumentProperties.getBoundaryTolerance()),
+                Boolean.TRUE.equals(ragDocumentProperties.getStreamingExtraction()) ? "streaming" : "full-text",
+                Boolean.TRUE.equals(ragDocumentProperties.getPdfParallelExtraction())
+                        && !Boolean.TRUE.equals(ragDocumentProperties.getForkedExtraction()) ? "pdf-pages" : "pdf-tika",
+                Boolean.TRUE.equals(ragDocumentProperties.getSpreadsheetRowChunking())
+                        && !Boolean.TRUE.equals(ragDocumentProperties.getForkedExtraction()) ? "sheet-rows" : "sheet-tika",
+                openRouterProperties.getEmbeddingModel());
+    }
+
+    /**
+     * 加载上次处理中断前已保存的片段（只查询索引、内容哈希和向量ID），按片段索引返回
+     * 保存这些片段时的分块配置与当前不同时不能沿用，清空文档的向量和片段后从头处理；
+     * 负索引片段是增量处理中断遗留的，直接删除
+     */
+    private Map<Integer, DocumentChunk> loadCheckpoint(Document document, String signature) {
+        QueryWrapper<DocumentChunk> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("id", "chunk_index", "vector_id", "content_hash");
+        queryWrapper.eq("document_id", document.getId());
+        List<DocumentChunk> savedChunks = documentChunkMapper.selectList(queryWrapper);
+
+        Map<Integer, DocumentChunk> checkpoint = new HashMap<>();
+        boolean signatureChanged = !signature.equals(document.getChunkingSignature());
+        if (signatureChanged && (document.getChunkingSignature() != null || !savedChunks.isEmpty())) {
+            // 未持久化的向量也可能以旧配置的向量ID留在 Qdrant 中，按文档整体清理
+            log.info("分块配置已变化，清空已保存的片段后重新处理，文档ID：{}", document.getId());
+            clearDocumentChunks(document.getId());
+        } else if (!savedChunks.isEmpty()) {
+            List<DocumentChunk> staleChunks = new ArrayList<>();
+            for (DocumentChunk chunk : savedChunks) {
+                if (chunk.getChunkIndex() < 0) {
+                    staleChunks.add(chunk);
+                } else {
+                    checkpoint.put(chunk.getChunkIndex(), chunk);
+                }
+            }
+            removeChunks(staleChunks);
+            log.info("从检查点继续处理，文档ID：{}，已保存片段：{}", document.getId(), checkpoint.size());
+        }
+
+        if (signatureChanged) {
+            updateChunkingSignature(document, signature);
+        }
+        return checkpoint;
+    }
+
+    private void updateChunkingSignature(Document document, String signature) {
+        UpdateWrapper<Document> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.eq("id", document.getId());
+        updateWrapper.set("chunking_signature", signature);
+        documentMapper.update(null, updateWrapper);
+        document.setChunkingSignature(signature);
+    }
+
+    /**
+     * 按配置创建分块器
+     * 按 token 计量时使用 cl100k_base 分词器计数，fixed 策略不做边界对齐
+     */
+    private TextChunker createChunker(Consumer<String> sink) {
+        int chunkSize = ragDocumentProperties.getChunkSize();
+        int chunkOverlap = ragDocumentProperties.getChunkOverlap();
+        int tolerance = ragDocumentProperties.getBoundaryTolerance();
+        ChunkingStrategy strategy = ragDocumentProperties.getChunkingStrategy();
+        if (ragDocumentProperties.getChunkSizeUnit() == ChunkSizeUnit.TOKENS) {
+            return new TokenBudgetChunker(BpeTokenizer.cl100kBase(), chunkSize, chunkOverlap,
+                    strategy == ChunkingStrategy.FIXED ? 0 : tolerance, sink);
+        }
+        return strategy.create(chunkSize, chunkOverlap, tolerance, sink);
+    }
+
+    /**
+     * 创建增量处理使用的基于内容的分块器
+     * 基于内容的分块按字符切分：按字符计量时以 chunk-size 为目标长度（最长为其 2 倍）；
+     * 按 token 计量时以 chunk-size 为最大字符数、其一半为目标长度，
+     * 按 TokenEstimator 的估算（中日韩文字每字 1 个 token，其他字符更少）片段不超过 chunk-size 个 token
+     */
+    private TextChunker createContentDefinedChunker(Consumer<String> sink) {
+        int chunkSize = ragDocumentProperties.getChunkSize();
+        if (ragDocumentProperties.getChunkSizeUnit() == ChunkSizeUnit.TOKENS) {
+            int maxSize = Math.max(2, chunkSize);
+            return new ContentDefinedChunker(Math.max(1, maxSize / 8), Math.max(2, maxSize / 2), maxSize, sink);
+        }
+        return ChunkingStrategy.CONTENT_DEFINED.create(chunkSize, 0, 0, sink);
+    }
+
+    /**
+     * 删除片段记录及其向量
+     */
+    private void removeChunks(List<DocumentChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+
+        List<String> vectorIds = new ArrayList<>(chunks.size());
+        List<Long> chunkIds = new ArrayList<>(chunks.size());
+        for (DocumentChunk chunk : chunks) {
+            vectorIds.add(chunk.getVectorId());
+            chunkIds.add(chunk.getId());
+        }
+        vectorStoreService.deleteVectors(vectorIds);
+        documentChunkMapper.deleteByIds(chunkIds);
+    }
+
+    /**
+     * 把沿用的片段写回新的索引，并同步 Qdrant 中的 chunk_index 和 document_name
+     */
+    private void updateKeptChunks(Document document, List<DocumentChunk> keptChunks) {
+        if (keptChunks.isEmpty()) {
+            return;
+        }
+
+        List<DocumentChunk> updates = new ArrayList<>(keptChunks.size());
+        Map<String, Map<String, Object>> payloads = new HashMap<>();
+        for (DocumentChunk chunk : keptChunks) {
+            DocumentChunk update = new DocumentChunk();
+            update.setId(chunk.getId());
+            update.setChunkIndex(chunk.getChunkIndex());
+            update.setPageNumber(chunk.getPageNumber());
+            if (chunk.getContentHash() == null) {
+                update.setContentHash(contentHashOf(chunk));
+            }
+            updates.add(update);
+
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("chunk_index", chunk.getChunkIndex());
+            payload.put("document_name", document.getFileName());
+            if (chunk.getPageNumber() != null) {
+                payload.put("page_number", chunk.getPageNumber());
+            }
+            payloads.put(chunk.getVectorId(), payload);
+        }
+        documentChunkMapper.updateById(updates);
+        vectorStoreService.updatePayloads(payloads);
+    }
+
+    /**
+     * 片段内容哈希，早期写入的片段没有保存哈希时按内容计算
+     */
+    private String contentHashOf(DocumentChunk chunk) {
+        return chunk.getContentHash() != null ? chunk.getContentHash() : DigestUtil.sha256Hex(chunk.getContent());
+    }
+
+    /**
+     * 更新文档状态为 FAILED，记录错误信息
+     */
+    private void markFailed(Long documentId, Exception e) {
+        try {
+            Document document = documentMapper.selectById(documentId);
+            if (document != null) {
+                document.setStatus("FAILED");
+                document.setErrorMessage(e.getMessage());
+                document.setProcessTime(LocalDateTime.now());
+                documentMapper.updateById(document);
+                log.info("文档状态已更新为 FAILED，文档ID：{}", documentId);
+            }
+        } catch (Exception updateException) {
+            log.error("更新文档失败状态时发生异常，文档ID：{}", documentId, updateException);
+        }
+    }
+
+    /**
+     * 复制重复文档的片段记录和向量
+     * 向量按批从 Qdrant 读取后以新的点ID写回，payload 指向目标文档，
+     * 因此两个文档互不影响，删除其中一个不会影响另一个的检索。
+     * 源文档的分块配置签名一并复制，目标文档重新处理时复制来的片段同样可以作为检查点沿用
+     *
+     * @param source 已处理完成的源文档
+     * @param target 新上传的目标文档
+     * @return 是否复制成功
+     */
+    @Override
+    public boolean cloneDocument(Document source, Document target) {
+        log.info("检测到重复文档，复制片段与向量，源文档ID：{}，目标文档ID：{}", source.getId(), target.getId());
+
+        try {
+            QueryWrapper<DocumentChunk> queryWrapper = new QueryWrapper<>();
+            queryWrapper.eq("document_id", source.getId());
+            queryWrapper.orderByAsc("chunk_index");
+            List<DocumentChunk> sourceChunks = documentChunkMapper.selectList(queryWrapper);
+
+            if (source.getChunkCount() != null && sourceChunks.size() != source.getChunkCount()) {
+                throw new IllegalStateException(String.format("源文档片段数不一致，期望 %d，实际 %d",
+                        source.getChunkCount(), sourceChunks.size()));
+            }
+
+            int batchSize = Math.max(1, openRouterProperties.getEmbeddingBatchSize());
+            for (int from = 0; from < sourceChunks.size(); from += batchSize) {
+                List<DocumentChunk> batch = sourceChunks.subList(from, Math.min(from + batchSize, sourceChunks.size()));
+                cloneChunkBatch(batch, target);
+            }
+
+            target.setStatus("COMPLETED");
+            target.setChunkCount(sourceChunks.size());
+            target.setChunkingSignature(source.getChunkingSignature());
+            target.setProcessTime(LocalDateTime.now());
+            documentMapper.updateById(target);
+
+            log.info("重复文档复制完成，目标文档ID：{}，片段数量：{}", target.getId(), sourceChunks.size());
+            return true;
+
+        } catch (Exception e) {
+            log.warn("重复文档复制失败，将改为完整处理，目标文档ID：{}，原因：{}", target.getId(), e.getMessage());
+            cleanUpClone(target.getId());
+            return false;
+        }
+    }
+
+    private void cloneChunkBatch(List<DocumentChunk> batch, Document target) {
+        List<String> sourceVectorIds = new ArrayList<>(batch.size());
+        for (DocumentChunk chunk : batch) {
+            sourceVectorIds.add(chunk.getVectorId());
+        }
+        Map<String, float[]> vectors = vectorStoreService.getVectors(sourceVectorIds);
+
+        List<VectorPoint> points = new ArrayList<>(batch.size());
+        List<DocumentChunk> clonedChunks = new ArrayList<>(batch.size());
+        for (DocumentChunk chunk : batch) {
+            float[] vector = vectors.get(chunk.getVectorId());
+            if (vector == null) {
+                throw new IllegalStateException("源文档向量缺失：" + chunk.getVectorId());
+            }
+
+            String vectorId = UUID.randomUUID().toString();
+            Map<String, Object> metadata = new HashMap<>();
+            metadata.put("document_id", target.getId());
+            metadata.put("chunk_index", chunk.getChunkIndex());
+            metadata.put("content", chunk.getContent());
+            metadata.put("document_name", target.getFileName());
+            if (chunk.getPageNumber() != null) {
+                metadata.put("page_number", chunk.getPageNumber());
+            }
+            points.add(new VectorPoint(vectorId, vector, metadata));
+
+            DocumentChunk cloned = new DocumentChunk();
+            cloned.setDocumentId(target.getId());
+            cloned.setChunkIndex(chunk.getChunkIndex());
+            cloned.setContent(chunk.getContent());
+            cloned.setVectorId(vectorId);
+            cloned.setCharCount(chunk.getCharCount());
+            cloned.setContentHash(chunk.getContentHash());
+            cloned.setPageNumber(chunk.getPageNumber());
+            clonedChunks.add(cloned);
+        }
+
+        vectorStoreService.storeVectorBatch(points);
+        documentChunkMapper.insertBatch(clonedChunks);
+    }
+
+    /**
+     * 删除文档已写入的全部向量和片段记录
+     */
+    private void clearDocumentChunks(Long documentId) {
+        vectorStoreService.deleteByDocumentId(documentId);
+        QueryWrapper<DocumentChunk> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("document_id", documentId);
+        documentChunkMapper.delete(queryWrapper);
+        log.info("已清理文档的向量和片段记录，文档ID：{}", documentId);
+    }
+
+    /**
+     * 清理复制失败时已写入的向量和片段记录
+     */
+    private void cleanUpClone(Long documentId) {
+        try {
+            clearDocumentChunks(documentId);
+        } catch (Exception e) {
+            log.error("清理复制数据时发生异常，文档ID：{}", documentId, e);
+        }
+    }
+
+    /**
+     * 跟踪片段的起始页码
+     * 分块器在写入某页文本的过程中输出片段，输出时正在写入的页即该片段结束所在的页；
+     * 下一个片段从上一个片段的末尾（减去重叠部分）开始，因此以上一个片段输出时的页作为它的起始页。
+     * 提取器不报告页码时始终为 null
+     */
+    private static final class PageCursor implements IntConsumer {
+        private Integer currentPage;
+        private Integer chunkStartPage;
+
+        @Override
+        public void accept(int pageNumber) {
+            currentPage = pageNumber;
+            if (chunkStartPage == null) {
+                chunkStartPage = pageNumber;
+            }
+        }
+
+        /**
+         * 返回正在输出的片段的起始页，并把当前页记为下一个片段的起始页
+         */
+        Integer nextChunk() {
+            Integer pageNumber = chunkStartPage;
+            chunkStartPage = currentPage;
+            return pageNumber;
         }
     }
 }
@@ -1,12 +1,24 @@
 package com.example.rag.service.impl;
 
+import cn.hutool.core.util.CharUtil;
 import cn.hutool.core.util.StrUtil;
 import com.example.rag.service.DocumentProcessor;
+import com.example.rag.util.ChunkingContentHandler;
+import com.example.rag.util.IncrementalChunker;
+import com.example.rag.util.TextChunker;
 import org.apache.tika.Tika;
 import org.apache.tika.exception.TikaException;
+import org.apache.tika.exception.WriteLimitReachedException;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.xml.sax.SAXException;
 
 import java.io.File;
 import java.io.IOException;
@@ -14,10 +26,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * 文档处理器实现类
- * 使用 Apache Tika 提取文本内容
+ * 使用 Apache Tika 提取文本内容；TXT / MD 默认由 PlainTextExtractor 直接解码，PDF 默认由 PdfPageExtractor 按页并行提取，
+ * 流式提取时 XLSX / CSV 默认由 SpreadsheetExtractor 逐行读取并按行分组分块，
+ * 开启子进程解析时除纯文本外的格式都由 ForkedTikaParser 在子进程中解析
  * 
  * 验证需求：2.1
  */
@@ -28,6 +44,21 @@ public class DocumentProcessorImpl implements DocumentProcessor {
     
     private final Tika tika;
     
+    @Autowired
+    private PlainTextExtractor plainTextExtractor;
+    
+    @Autowired
+    private PdfPageExtractor pdfPageExtractor;
+    
+    @Autowired
+    private SpreadsheetExtractor spreadsheetExtractor;
+    
+    @Autowired
+    private ForkedTikaParser forkedTikaParser;
+    
+    @Autowired
+    private ExtractedTextCache extractedTextCache;
+    
     /**
      * 支持的 MIME 类型
      */
@@ -36,7 +67,9 @@ public class DocumentProcessorImpl implements DocumentProcessor {
         "text/plain",                // TXT
         "text/markdown",             // MD
         "application/vnd.openxmlformats-officedocument.wordprocessingml.document", // DOCX
-        "application/msword"         // DOC (旧版 Word)
+        "application/msword",        // DOC (旧版 Word)
+        "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", // XLSX
+        "text/csv"                   // CSV
     );
     
     public DocumentProcessorImpl() {
@@ -64,11 +97,17 @@ public class DocumentProcessorImpl implements DocumentProcessor {
         try {
             log.debug("开始提取文本，文件: {}", file.getName());
             
-            // 使用 Tika 提取文本
-            String text = tika.parseToString(file);
-            
-            // 清理文本（移除多余空白）
-            text = StrUtil.cleanBlank(text);
+            String text;
+            if (plainTextExtractor.supports(file)) {
+                // 纯文本解码时直接去除空白，不再复制完整文本做清理
+                text = extractPlainText(file);
+            } else {
+                // PDF 按页并行提取，其他格式使用 Tika 提取文本
+                text = pdfPageExtractor.supports(file) ? extractPdfText(file) : parseToString(file);
+                
+                // 清理文本（移除多余空白）
+                text = StrUtil.cleanBlank(text);
+            }
             
             log.debug("文本提取成功，文件: {}, 文本长度: {}", file.getName(), text.length());
             
@@ -86,6 +125,193 @@ public class DocumentProcessorImpl implements DocumentProcessor {
         }
     }
     
+    /**
+     * 流式提取文档文本并直接分割为片段
+     * Tika 解析出的字符经 ChunkingContentHandler 清理空白后写入增量分块器，
+     * 不受 Tika 默认写入上限限制，也不会在内存中保留完整文本
+     * 
+     * @param file 文档文件
+     * @param chunkSize 片段大小（字符数）
+     * @param overlap 片段之间的重叠大小（字符数）
+     * @param chunkConsumer 片段接收者
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    @Override
+    public int extractChunks(File file, int chunkSize, int overlap, Consumer<String> chunkConsumer) throws Exception {
+        return extractChunks(file, new IncrementalChunker(chunkSize, overlap, chunkConsumer));
+    }
+    
+    /**
+     * 流式提取文档文本并交给指定的分块器
+     * 
+     * @param file 文档文件
+     * @param chunker 分块器
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    @Override
+    public int extractChunks(File file, TextChunker chunker) throws Exception {
+        return extractChunks(file, chunker, page -> { });
+    }
+    
+    /**
+     * 流式提取文档文本并交给指定的分块器，PDF 按页并行提取并报告页码
+     * 
+     * @param file 文档文件
+     * @param chunker 分块器
+     * @param pageListener 页码接收者
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    @Override
+    public int extractChunks(File file, TextChunker chunker, IntConsumer pageListener) throws Exception {
+        if (file == null || !file.exists()) {
+            throw new IllegalArgumentException("文件不存在");
+        }
+        
+        if (!file.isFile()) {
+            throw new IllegalArgumentException("不是有效的文件");
+        }
+        
+        ChunkingContentHandler chunkingHandler = new ChunkingContentHandler(chunker);
+        
+        try {
+            log.debug("开始流式提取文本，文件: {}", file.getName());
+            
+            if (plainTextExtractor.supports(file)) {
+                plainTextExtractor.extract(file, chunkingHandler::characters);
+            } else if (spreadsheetExtractor.supports(file)) {
+                spreadsheetExtractor.extract(file, chunker);
+            } else if (pdfPageExtractor.supports(file)) {
+                pdfPageExtractor.extractPages(file, (pageNumber, text) -> {
+                    if (StrUtil.isBlank(text)) {
+                        return;
+                    }
+                    pageListener.accept(pageNumber);
+                    char[] chars = text.toCharArray();
+                    chunkingHandler.characters(chars, 0, chars.length);
+                    chunker.lineBreak();
+                });
+            } else {
+                parseWithTika(file, chunkingHandler);
+            }
+            chunker.finish();
+            
+            log.debug("流式提取完成，文件: {}, 文本长度: {}, 片段数量: {}", 
+                    file.getName(), chunkingHandler.getCharCount(), chunker.getChunkCount());
+            
+            return chunker.getChunkCount();
+            
+        } catch (IOException e) {
+            log.error("文件读取失败: {}", file.getName(), e);
+            throw new Exception("文件读取失败: " + e.getMessage(), e);
+        } catch (TikaException e) {
+            log.error("文本提取失败: {}", file.getName(), e);
+            throw new Exception("文本提取失败: " + e.getMessage(), e);
+        } catch (Exception e) {
+            log.error("文档处理失败: {}", file.getName(), e);
+            throw new Exception("文档处理失败: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * 流式提取文档文本，优先从提取文本缓存回放；未命中时从原文件提取并写入缓存
+     * 
+     * @param file 文档文件
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @param chunker 分块器
+     * @param pageListener 页码接收者
+     * @return 片段数量
+     * @throws Exception 提取失败时抛出异常
+     */
+    @Override
+    public int extractChunks(File file, String contentHash, TextChunker chunker, IntConsumer pageListener)
+            throws Exception {
+        // 纯文本直接解码与读取缓存的开销相当，不缓存；表格按行分组的片段边界不在缓存格式中，不缓存
+        if (!extractedTextCache.isEnabled() || StrUtil.isBlank(contentHash) || plainTextExtractor.supports(file)
+                || spreadsheetExtractor.supports(file)) {
+            return extractChunks(file, chunker, pageListener);
+        }
+        
+        // PDF 按页提取与 Tika 提取的文本不同，分别缓存
+        String variant = pdfPageExtractor.supports(file) ? "pdf-pages" : "tika";
+        if (extractedTextCache.replay(contentHash, variant, chunker, pageListener)) {
+            chunker.finish();
+            log.debug("从提取文本缓存读取完成，文件: {}, 片段数量: {}", file.getName(), chunker.getChunkCount());
+            return chunker.getChunkCount();
+        }
+        
+        extractedTextCache.record(contentHash, variant, chunker, pageListener,
+                (recordingChunker, recordingPages) -> extractChunks(file, recordingChunker, recordingPages));
+        return chunker.getChunkCount();
+    }
+    
+    /**
+     * 使用 Tika 提取完整文本，开启子进程解析时在子进程中解析，文本长度受 Tika 默认写入上限限制
+     */
+    private String parseToString(File file) throws Exception {
+        if (!forkedTikaParser.isEnabled()) {
+            return tika.parseToString(file);
+        }
+        
+        BodyContentHandler handler = new BodyContentHandler(tika.getMaxStringLength());
+        try {
+            forkedTikaParser.parse(file, handler);
+        } catch (SAXException | TikaException e) {
+            // 与 Tika.parseToString 一致：达到写入上限时返回已提取的部分
+            if (!WriteLimitReachedException.isWriteLimitReached(e)) {
+                throw e;
+            }
+        }
+        return handler.toString();
+    }
+    
+    /**
+     * 使用 Tika 自动检测类型并解析，解析出的字符交给 handler
+     */
+    private void parseWithTika(File file, ChunkingContentHandler handler) throws Exception {
+        if (forkedTikaParser.isEnabled()) {
+            forkedTikaParser.parse(file, new BodyContentHandler(handler));
+            return;
+        }
+        
+        // 文件名写入元数据，辅助 Tika 按扩展名检测类型
+        Metadata metadata = new Metadata();
+        try (TikaInputStream stream = TikaInputStream.get(file.toPath(), metadata)) {
+            Parser parser = tika.getParser();
+            ParseContext context = new ParseContext();
+            context.set(Parser.class, parser);
+            
+            // BodyContentHandler 包装自定义处理器时不设置写入上限
+            parser.parse(stream, new BodyContentHandler(handler), metadata, context);
+        }
+    }
+    
+    /**
+     * 直接解码纯文本文件，解码时去除空白字符（与 StrUtil.cleanBlank 规则一致）
+     */
+    private String extractPlainText(File file) throws Exception {
+        StringBuilder text = new StringBuilder();
+        plainTextExtractor.extract(file, (chars, start, length) -> {
+            for (int i = start; i < start + length; i++) {
+                if (!CharUtil.isBlankChar(chars[i])) {
+                    text.append(chars[i]);
+                }
+            }
+        });
+        return text.toString();
+    }
+    
+    /**
+     * 按页并行提取 PDF 的完整文本，页之间以换行分隔
+     */
+    private String extractPdfText(File file) throws Exception {
+        StringBuilder text = new StringBuilder();
+        pdfPageExtractor.extractPages(file, (pageNumber, pageText) -> text.append(pageText).append('\n'));
+        return text.toString();
+    }
+    
     /**
      * 将文本分割成固定大小的片段
      * 保留片段之间的重叠以保持上下文连贯性
@@ -2,19 +2,23 @@ package com.example.rag.service.impl;
 
 import cn.hutool.core.io.FileUtil;
 import cn.hutool.core.io.file.FileNameUtil;
-import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.example.rag.config.QdrantProperties;
 import com.example.rag.config.RagDocumentProperties;
 import com.example.rag.entity.Document;
 import com.example.rag.entity.DocumentChunk;
+import com.example.rag.entity.IngestionJob;
 import com.example.rag.exception.BusinessException;
 import com.example.rag.mapper.DocumentChunkMapper;
 import com.example.rag.mapper.DocumentMapper;
 import com.example.rag.service.DocumentProcessingService;
 import com.example.rag.service.DocumentService;
+import com.example.rag.service.IngestionJobService;
 import com.example.rag.service.QdrantClient;
+import com.example.rag.service.impl.UploadStorage.StoredFile;
 import com.example.rag.vo.ChunkVO;
 import com.example.rag.vo.DocumentDetailVO;
 import com.example.rag.vo.DocumentVO;
@@ -24,12 +28,15 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
@@ -41,6 +48,11 @@ public class DocumentServiceImpl implements DocumentService {
     
     private static final Logger log = LoggerFactory.getLogger(DocumentServiceImpl.class);
     
+    /**
+     * 批量创建文档时每条 INSERT 语句的行数（每行 10 个参数，远低于 PostgreSQL 的 65535 个参数上限）
+     */
+    private static final int INSERT_BATCH_SIZE = 500;
+    
     @Autowired
     private DocumentMapper documentMapper;
     
@@ -59,17 +71,343 @@ public class DocumentServiceImpl implements DocumentService {
     @Autowired
     private DocumentProcessingService documentProcessingService;
     
+    @Autowired
+    private IngestionJobService ingestionJobService;
+    
+    @Autowired
+    private ExtractedTextCache extractedTextCache;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private UploadStorage uploadStorage;
+    
     /**
      * 处理文档上传
      * 
      * @param file 上传的文件
+     * @param priority 处理优先级：high / normal / low，为空时为 normal
      * @return 文档视图对象
      * @throws IOException 文件操作异常
      */
     @Override
-    public DocumentVO uploadDocument(MultipartFile file) throws IOException {
+    public DocumentVO uploadDocument(MultipartFile file, String priority) throws IOException {
         log.info("开始处理文档上传，文件名：{}", file.getOriginalFilename());
         
+        // 1-3. 验证文件是否为空、文件格式和文件大小，以及优先级参数
+        validateUpload(file);
+        int jobPriority = parsePriority(priority);
+        String originalFilename = file.getOriginalFilename();
+        long fileSize = file.getSize();
+        
+        // 4. 保存文件到本地，同时计算内容哈希
+        StoredFile storedFile = storeUpload(file);
+        
+        // 5-7. 创建文档记录并提交处理
+        return createDocument(originalFilename, fileSize, file.getContentType(),
+            storedFile.getPath(), storedFile.getContentHash(), jobPriority);
+    }
+    
+    /**
+     * 解析上传时指定的优先级
+     * 
+     * @param priority high / normal / low（不区分大小写），为空时为 normal
+     * @return IngestionJob 中的优先级常量
+     */
+    private int parsePriority(String priority) {
+        if (priority == null || priority.isBlank()) {
+            return IngestionJob.PRIORITY_NORMAL;
+        }
+        switch (priority.trim().toLowerCase()) {
+            case "high":
+                return IngestionJob.PRIORITY_HIGH;
+            case "normal":
+                return IngestionJob.PRIORITY_NORMAL;
+            case "low":
+                return IngestionJob.PRIORITY_LOW;
+            default:
+                throw new BusinessException(400, "不支持的优先级：" + priority + "，可选值：high, normal, low");
+        }
+    }
+    
+    /**
+     * 为已保存到上传目录的文件创建文档记录并提交处理
+     * 
+     * @param fileName 原始文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @return 文档视图对象
+     */
+    @Override
+    public DocumentVO createDocument(String fileName, long fileSize, String fileType,
+                                     String filePath, String contentHash) {
+        return createDocument(fileName, fileSize, fileType, filePath, contentHash, IngestionJob.PRIORITY_NORMAL);
+    }
+    
+    /**
+     * 为已保存到上传目录的文件创建文档记录，并以指定优先级提交处理
+     * 
+     * @param fileName 原始文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @param priority 优先级
+     * @return 文档视图对象
+     */
+    @Override
+    public DocumentVO createDocument(String fileName, long fileSize, String fileType,
+                                     String filePath, String contentHash, int priority) {
+        // 5. 创建 Document 记录，状态设为 PROCESSING
+        Document document = new Document();
+        document.setFileName(fileName);
+        document.setFileSize(fileSize);
+        document.setFileType(fileType);
+        document.setFilePath(filePath);
+        document.setStatus("PROCESSING");
+        document.setUploadTime(LocalDateTime.now());
+        document.setChunkCount(0);
+        document.setContentHash(contentHash);
+        
+        // 保存到数据库
+        int result = documentMapper.insert(document);
+        if (result <= 0) {
+            log.error("文档记录保存失败");
+            // 删除已保存的文件
+            FileUtil.del(filePath);
+            throw new BusinessException(500, "文档记录保存失败");
+        }
+        
+        log.info("文档上传成功，文档ID：{}，文件名：{}", document.getId(), fileName);
+        
+        // 6. 内容相同的文档已处理完成时直接复制其片段和向量，否则提交入库任务
+        Document duplicate = findCompletedDuplicate(contentHash);
+        if (duplicate != null && documentProcessingService.cloneDocument(duplicate, document)) {
+            log.info("重复文档已复用处理结果，文档ID：{}，源文档ID：{}", document.getId(), duplicate.getId());
+        } else {
+            ingestionJobService.enqueue(document.getId(), IngestionJob.TYPE_PROCESS, priority);
+            log.info("已提交文档处理任务，文档ID：{}", document.getId());
+        }
+        
+        // 7. 返回 DocumentVO
+        return convertToVO(document);
+    }
+    
+    /**
+     * 为一批已保存到上传目录的文件批量创建文档记录并批量提交处理
+     * 只有文档记录的插入在同一事务中；复用重复文档（读写 Qdrant）和提交入库任务在事务提交之后执行，
+     * 事务回滚时不会留下没有文档记录的向量
+     * 
+     * @param documents 待创建的文档，生成的ID回填到各文档
+     */
+    @Override
+    public void createDocuments(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        
+        // 1. 按批插入 Document 记录，状态设为 PROCESSING
+        LocalDateTime now = LocalDateTime.now();
+        for (Document document : documents) {
+            document.setStatus("PROCESSING");
+            document.setUploadTime(now);
+            document.setChunkCount(0);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int from = 0; from < documents.size(); from += INSERT_BATCH_SIZE) {
+                List<Document> slice = documents.subList(from, Math.min(from + INSERT_BATCH_SIZE, documents.size()));
+                if (documentMapper.insertBatch(slice) != slice.size()) {
+                    log.error("文档记录批量保存失败");
+                    throw new BusinessException(500, "文档记录保存失败");
+                }
+            }
+        });
+        
+        // 2. 事务已提交，一次查询出已处理完成的重复文档，可复用的直接复制，其余批量提交入库任务
+        Map<String, Document> duplicates = findCompletedDuplicates(documents);
+        List<Long> pending = new ArrayList<>();
+        for (Document document : documents) {
+            Document duplicate = duplicates.get(document.getContentHash());
+            if (duplicate != null && documentProcessingService.cloneDocument(duplicate, document)) {
+                log.info("重复文档已复用处理结果，文档ID：{}，源文档ID：{}", document.getId(), duplicate.getId());
+            } else {
+                pending.add(document.getId());
+            }
+        }
+        if (!pending.isEmpty()) {
+            ingestionJobService.enqueueAll(pending, IngestionJob.TYPE_PROCESS);
+        }
+        log.info("文档批量创建成功，数量：{}，提交处理：{}", documents.size(), pending.size());
+    }
+    
+    /**
+     * 替换文档内容
+     * 保存新版本文件后触发增量处理，只有内容变化的片段需要重新向量化；
+     * 新版本与当前版本内容完全相同时不做任何处理
+     * 
+     * @param id 文档ID
+     * @param file 新版本文件
+     * @return 文档视图对象
+     * @throws IOException 文件操作异常
+     */
+    @Override
+    public DocumentVO replaceDocument(Long id, MultipartFile file) throws IOException {
+        log.info("开始替换文档，文档ID：{}，新文件名：{}", id, file.getOriginalFilename());
+        
+        // 1. 查询文档是否存在，处理中的文档不允许替换
+        Document document = findReplaceableDocument(id);
+        
+        // 2. 验证并保存新版本文件
+        validateUpload(file);
+        StoredFile storedFile = storeUpload(file);
+        
+        // 3-5. 更新文档记录并提交增量处理
+        return applyReplacement(document, file.getOriginalFilename(), file.getSize(), file.getContentType(),
+            storedFile.getPath(), storedFile.getContentHash());
+    }
+    
+    /**
+     * 用已保存到上传目录的文件替换文档内容
+     * 
+     * @param id 文档ID
+     * @param fileName 新版本文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径，替换被拒绝时删除
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @return 文档视图对象
+     */
+    @Override
+    public DocumentVO replaceDocumentFile(Long id, String fileName, long fileSize, String fileType,
+                                          String filePath, String contentHash) {
+        log.info("开始替换文档，文档ID：{}，新文件名：{}", id, fileName);
+        
+        Document document;
+        try {
+            document = findReplaceableDocument(id);
+        } catch (BusinessException e) {
+            FileUtil.del(filePath);
+            throw e;
+        }
+        return applyReplacement(document, fileName, fileSize, fileType, filePath, contentHash);
+    }
+    
+    /**
+     * 查询可替换的文档：文档必须存在且不在处理中
+     * 
+     * @param id 文档ID
+     * @return 文档
+     */
+    private Document findReplaceableDocument(Long id) {
+        Document document = documentMapper.selectById(id);
+        if (document == null) {
+            log.warn("文档不存在，文档ID：{}", id);
+            throw new BusinessException(404, "文档不存在");
+        }
+        if ("PROCESSING".equals(document.getStatus())) {
+            log.warn("文档正在处理中，不能替换，文档ID：{}", id);
+            throw new BusinessException(409, "文档正在处理中，请稍后再试");
+        }
+        return document;
+    }
+    
+    /**
+     * 更新文档记录指向新版本文件，删除旧版本文件后提交增量处理；
+     * 新版本与当前版本内容完全相同时只删除新保存的文件
+     * 
+     * @param document 被替换的文档
+     * @param fileName 新版本文件名
+     * @param fileSize 文件大小（字节）
+     * @param fileType 文件类型（MIME类型）
+     * @param filePath 已保存文件的路径
+     * @param contentHash 文件内容的 SHA-256 哈希
+     * @return 文档视图对象
+     */
+    private DocumentVO applyReplacement(Document document, String fileName, long fileSize, String fileType,
+                                        String filePath, String contentHash) {
+        Long id = document.getId();
+        if (contentHash.equals(document.getContentHash()) && "COMPLETED".equals(document.getStatus())) {
+            log.info("新版本内容与当前版本相同，无需处理，文档ID：{}", id);
+            FileUtil.del(filePath);
+            return convertToVO(document);
+        }
+        
+        // 3. 更新 Document 记录，状态设为 PROCESSING
+        String oldFilePath = document.getFilePath();
+        String oldContentHash = document.getContentHash();
+        document.setFileName(fileName);
+        document.setFileSize(fileSize);
+        document.setFileType(fileType);
+        document.setFilePath(filePath);
+        document.setContentHash(contentHash);
+        document.setStatus("PROCESSING");
+        document.setUploadTime(LocalDateTime.now());
+        
+        int result = documentMapper.updateById(document);
+        if (result <= 0) {
+            log.error("文档记录更新失败，文档ID：{}", id);
+            FileUtil.del(filePath);
+            throw new BusinessException(500, "文档记录更新失败");
+        }
+        
+        // 4. 删除旧版本文件（片段内容已保存在数据库中）
+        if (oldFilePath != null && !oldFilePath.isEmpty() && !FileUtil.del(oldFilePath)) {
+            log.warn("旧版本文件删除失败或文件不存在：{}", oldFilePath);
+        }
+        evictExtractedText(oldContentHash);
+        
+        // 5. 提交增量处理任务
+        ingestionJobService.enqueue(id, IngestionJob.TYPE_REPROCESS);
+        log.info("已提交增量处理任务，文档ID：{}", id);
+        
+        return convertToVO(document);
+    }
+    
+    /**
+     * 重试处理失败的文档
+     * 状态从 FAILED 改回 PROCESSING 后提交处理任务，已保存的片段作为检查点沿用
+     * 
+     * @param id 文档ID
+     * @return 文档视图对象
+     */
+    @Override
+    public DocumentVO retryDocument(Long id) {
+        log.info("开始重试处理文档，文档ID：{}", id);
+        
+        Document document = documentMapper.selectById(id);
+        if (document == null) {
+            log.warn("文档不存在，文档ID：{}", id);
+            throw new BusinessException(404, "文档不存在");
+        }
+        
+        // 按状态条件更新，并发的重试请求只有一个能成功
+        UpdateWrapper<Document> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.eq("id", id);
+        updateWrapper.eq("status", "FAILED");
+        updateWrapper.set("status", "PROCESSING");
+        updateWrapper.set("error_message", null);
+        if (!"FAILED".equals(document.getStatus()) || documentMapper.update(null, updateWrapper) <= 0) {
+            log.warn("文档未处于失败状态，不能重试，文档ID：{}，状态：{}", id, document.getStatus());
+            throw new BusinessException(409, "只有处理失败的文档可以重试");
+        }
+        
+        ingestionJobService.enqueue(id, IngestionJob.TYPE_PROCESS);
+        log.info("已提交文档重试任务，文档ID：{}", id);
+        
+        document.setStatus("PROCESSING");
+        document.setErrorMessage(null);
+        return convertToVO(document);
+    }
+    
+    /**
+     * 验证上传文件：不能为空、格式受支持、大小不超过上限
+     * 
+     * @param file 上传的文件
+     */
+    private void validateUpload(MultipartFile file) {
         // 1. 验证文件是否为空
         if (file.isEmpty()) {
             log.warn("上传文件为空");
@@ -101,58 +439,72 @@ public class DocumentServiceImpl implements DocumentService {
                 String.format("文件过大，最大允许 %d MB", 
                     ragDocumentProperties.getMaxFileSize() / 1024 / 1024));
         }
-        
-        // 4. 使用 Hutool FileUtil 保存文件到本地
-        // 将相对路径转为绝对路径，避免 Tomcat 临时目录问题
-        File uploadDirFile = new File(ragDocumentProperties.getUploadDir()).getAbsoluteFile();
-        // 确保上传目录存在
-        FileUtil.mkdir(uploadDirFile);
-        
-        // 生成唯一文件名：UUID_原始文件名
-        String uniqueFileName = UUID.randomUUID().toString(true) + "_" + originalFilename;
-        String filePath = FileUtil.normalize(uploadDirFile.getPath() + File.separator + uniqueFileName);
-        
-        // 保存文件
-        File destFile = new File(filePath);
-        file.transferTo(destFile.getAbsoluteFile());
-        log.info("文件保存成功：{}", filePath);
-        
-        // 5. 创建 Document 记录，状态设为 PROCESSING
-        Document document = new Document();
-        document.setFileName(originalFilename);
-        document.setFileSize(fileSize);
-        document.setFileType(file.getContentType());
-        document.setFilePath(filePath);
-        document.setStatus("PROCESSING");
-        document.setUploadTime(LocalDateTime.now());
-        document.setChunkCount(0);
-        
-        // 保存到数据库
-        int result = documentMapper.insert(document);
-        if (result <= 0) {
-            log.error("文档记录保存失败");
-            // 删除已保存的文件
-            FileUtil.del(destFile);
-            throw new BusinessException(500, "文档记录保存失败");
+    }
+    
+    /**
+     * 保存上传文件到上传目录，写入磁盘的同时计算内容哈希，避免再次读取文件
+     * 
+     * @param file 上传的文件
+     * @return 保存后的文件路径和内容哈希
+     * @throws IOException 文件操作异常
+     */
+    private StoredFile storeUpload(MultipartFile file) throws IOException {
+        StoredFile storedFile;
+        try (InputStream in = file.getInputStream()) {
+            storedFile = uploadStorage.store(in, file.getOriginalFilename());
         }
-        
-        log.info("文档上传成功，文档ID：{}，文件名：{}", document.getId(), originalFilename);
-        
-        // 6. 触发异步文档处理
-        documentProcessingService.processDocument(document.getId());
-        log.info("已触发异步文档处理，文档ID：{}", document.getId());
-        
-        // 7. 返回 DocumentVO
-        DocumentVO vo = new DocumentVO();
-        vo.setId(document.getId());
-        vo.setFileName(document.getFileName());
-        vo.setFileSize(document.getFileSize());
-        vo.setFileType(document.getFileType());
-        vo.setStatus(document.getStatus());
-        vo.setUploadTime(document.getUploadTime());
-        vo.setChunkCount(document.getChunkCount());
-        
-        return vo;
+        log.info("文件保存成功：{}，内容哈希：{}", storedFile.getPath(), storedFile.getContentHash());
+        return storedFile;
+    }
+    
+    /**
+     * 内容哈希不再被任何文档使用时删除对应的提取文本缓存
+     * 
+     * @param contentHash 文件内容哈希
+     */
+    private void evictExtractedText(String contentHash) {
+        if (StrUtil.isBlank(contentHash)) {
+            return;
+        }
+        QueryWrapper<Document> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("content_hash", contentHash);
+        if (documentMapper.selectCount(queryWrapper) == 0) {
+            extractedTextCache.evict(contentHash);
+        }
+    }
+    
+    /**
+     * 查找内容哈希相同且已处理完成的文档
+     * 
+     * @param contentHash 文件内容哈希
+     * @return 已处理完成的重复文档，不存在时返回 null
+     */
+    private Document findCompletedDuplicate(String contentHash) {
+        QueryWrapper<Document> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("content_hash", contentHash);
+        queryWrapper.eq("status", "COMPLETED");
+        queryWrapper.orderByAsc("id");
+        queryWrapper.last("LIMIT 1");
+        return documentMapper.selectOne(queryWrapper);
+    }
+    
+    /**
+     * 批量查找内容哈希相同且已处理完成的文档
+     * 
+     * @param documents 新建的文档
+     * @return 内容哈希到已处理完成文档（ID最小者）的映射
+     */
+    private Map<String, Document> findCompletedDuplicates(List<Document> documents) {
+        List<String> hashes = documents.stream()
+            .map(Document::getContentHash)
+            .distinct()
+            .collect(Collectors.toList());
+        QueryWrapper<Document> queryWrapper = new QueryWrapper<>();
+        queryWrapper.in("content_hash", hashes);
+        queryWrapper.eq("status", "COMPLETED");
+        queryWrapper.orderByAsc("id");
+        return documentMapper.selectList(queryWrapper).stream()
+            .collect(Collectors.toMap(Document::getContentHash, d -> d, (first, second) -> first));
     }
     
     /**
@@ -268,6 +620,9 @@ public class DocumentServiceImpl implements DocumentService {
             throw new BusinessException(500, "文档记录删除失败");
         }
         
+        // 5. 没有其他文档使用相同内容时删除提取文本缓存
+        evictExtractedText(document.getContentHash());
+        
         log.info("文档删除完成，文档ID：{}", id);
     }
     
@@ -329,6 +684,7 @@ public class DocumentServiceImpl implements DocumentService {
         vo.setChunkIndex(chunk.getChunkIndex());
         vo.setContent(chunk.getContent());
         vo.setCharCount(chunk.getCharCount());
+        vo.setPageNumber(chunk.getPageNumber());
         return vo;
     }
 }
@@ -0,0 +1,74 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagAsyncProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 下游服务并发限制
+ * 文档处理任务不再受线程数限制（虚拟线程模式下每个任务一个线程），
+ * 改为对每个下游服务分别用信号量限制同时进行的调用数，超出时在当前任务线程中等待
+ */
+@Component
+public class DownstreamLimiter {
+
+    /**
+     * 受限的下游服务
+     */
+    public enum Downstream {
+        OPENROUTER,
+        QDRANT,
+        POSTGRES
+    }
+
+    private final Map<Downstream, Semaphore> permits = new EnumMap<>(Downstream.class);
+
+    public DownstreamLimiter(RagAsyncProperties asyncProperties) {
+        permits.put(Downstream.OPENROUTER, new Semaphore(Math.max(1, asyncProperties.getOpenRouterConcurrency()), true));
+        permits.put(Downstream.QDRANT, new Semaphore(Math.max(1, asyncProperties.getQdrantConcurrency()), true));
+        permits.put(Downstream.POSTGRES, new Semaphore(Math.max(1, asyncProperties.getPostgresConcurrency()), true));
+    }
+
+    /**
+     * 在许可范围内调用下游服务
+     *
+     * @param downstream 下游服务
+     * @param action     调用逻辑
+     * @return 调用结果
+     * @throws Exception 调用失败，或等待许可时线程被中断
+     */
+    public <T> T call(Downstream downstream, Callable<T> action) throws Exception {
+        Semaphore semaphore = permits.get(downstream);
+        semaphore.acquire();
+        try {
+            return action.call();
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * 在许可范围内调用无返回值的下游服务
+     *
+     * @param downstream 下游服务
+     * @param action     调用逻辑
+     * @throws Exception 调用失败，或等待许可时线程被中断
+     */
+    public void run(Downstream downstream, Runnable action) throws Exception {
+        call(downstream, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * 当前可用的许可数
+     */
+    public int availablePermits(Downstream downstream) {
+        return permits.get(downstream).availablePermits();
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.rag.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.EmbeddingCache;
+import com.example.rag.mapper.EmbeddingCacheMapper;
+import com.example.rag.service.EmbeddingCacheService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 向量缓存服务实现类
+ * 缓存存储在 PostgreSQL embedding_cache 表中，向量以 float32 小端序字节存储。
+ * 缓存只是加速手段：读写失败时记录警告并按未命中处理，不影响向量化流程
+ */
+@Service
+public class EmbeddingCacheServiceImpl implements EmbeddingCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingCacheServiceImpl.class);
+
+    /**
+     * 单条 SQL 中最多包含的键数量
+     */
+    private static final int SQL_BATCH_SIZE = 500;
+
+    private final EmbeddingCacheMapper embeddingCacheMapper;
+    private final RagIngestionProperties ragIngestionProperties;
+
+    public EmbeddingCacheServiceImpl(EmbeddingCacheMapper embeddingCacheMapper,
+                                     RagIngestionProperties ragIngestionProperties) {
+        this.embeddingCacheMapper = embeddingCacheMapper;
+        this.ragIngestionProperties = ragIngestionProperties;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(ragIngestionProperties.getEmbeddingCacheEnabled());
+    }
+
+    @Override
+    public Map<String, float[]> getAll(String model, Collection<String> contentHashes) {
+        Map<String, float[]> result = new HashMap<>();
+        if (contentHashes == null || contentHashes.isEmpty()) {
+            return result;
+        }
+
+        List<String> hashes = new ArrayList<>(contentHashes);
+        try {
+            for (int start = 0; start < hashes.size(); start += SQL_BATCH_SIZE) {
+                List<String> slice = hashes.subList(start, Math.min(start + SQL_BATCH_SIZE, hashes.size()));
+
+                QueryWrapper<EmbeddingCache> queryWrapper = new QueryWrapper<>();
+                queryWrapper.select("content_hash", "embedding")
+                        .eq("model", model)
+                        .in("content_hash", slice);
+
+                for (EmbeddingCache entry : embeddingCacheMapper.selectList(queryWrapper)) {
+                    result.put(entry.getContentHash(), toFloats(entry.getEmbedding()));
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Embedding cache lookup failed, treating {} keys as misses: {}", hashes.size(), e.getMessage());
+            return new HashMap<>();
+        }
+
+        log.debug("Embedding cache lookup: model={}, requested={}, hits={}", model, hashes.size(), result.size());
+        return result;
+    }
+
+    @Override
+    public void putAll(String model, Map<String, float[]> embeddings) {
+        if (embeddings == null || embeddings.isEmpty()) {
+            return;
+        }
+
+        List<EmbeddingCache> entries = new ArrayList<>(embeddings.size());
+        for (Map.Entry<String, float[]> e : embeddings.entrySet()) {
+            EmbeddingCache entry = new EmbeddingCache();
+            entry.setModel(model);
+            entry.setContentHash(e.getKey());
+            entry.setDimension(e.getValue().length);
+            entry.setEmbedding(toBytes(e.getValue()));
+            entries.add(entry);
+        }
+
+        try {
+            int inserted = 0;
+            for (int start = 0; start < entries.size(); start += SQL_BATCH_SIZE) {
+                inserted += embeddingCacheMapper.insertBatchIgnoreExisting(
+                        entries.subList(start, Math.min(start + SQL_BATCH_SIZE, entries.size())));
+            }
+            log.debug("Embedding cache stored {} of {} entries for model={}", inserted, entries.size(), model);
+        } catch (Exception e) {
+            log.warn("Failed to store {} embeddings in cache: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * 向量编码为 float32 小端序字节
+     */
+    static byte[] toBytes(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    /**
+     * float32 小端序字节解码为向量
+     */
+    static float[] toFloats(byte[] bytes) {
+        float[] vector = new float[bytes.length / Float.BYTES];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+}
@@ -1,13 +1,19 @@
 package com.example.rag.service.impl;
 
+import cn.hutool.crypto.digest.DigestUtil;
 import com.example.rag.config.OpenRouterProperties;
+import com.example.rag.config.OpenRouterRateLimiter;
+import com.example.rag.config.OpenRouterRateLimiter.Traffic;
 import com.example.rag.exception.BusinessException;
+import com.example.rag.service.EmbeddingCacheService;
 import com.example.rag.service.EmbeddingService;
+import com.example.rag.util.TokenEstimator;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -18,7 +24,9 @@ import reactor.util.retry.Retry;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 /**
@@ -33,19 +41,34 @@ public class EmbeddingServiceImpl implements EmbeddingService {
     private final WebClient webClient;
     private final OpenRouterProperties properties;
     private final Retry retrySpec;
+    private final EmbeddingCacheService embeddingCacheService;
     private final ObjectMapper objectMapper = new ObjectMapper();
     
     // OpenAI text-embedding-3-small 的向量维度
     private static final int EMBEDDING_DIMENSION = 1536;
     
+    // HTTP 400 响应体中表示输入超出上下文长度的错误信息（小写匹配）
+    private static final List<String> CONTEXT_LENGTH_ERRORS = List.of(
+            "context_length_exceeded", "context length", "maximum context", "too many tokens");
+    
     public EmbeddingServiceImpl(WebClient openRouterWebClient, 
                                 OpenRouterProperties properties) {
+        this(openRouterWebClient, properties, null);
+    }
+    
+    @Autowired
+    public EmbeddingServiceImpl(WebClient openRouterWebClient, 
+                                OpenRouterProperties properties,
+                                EmbeddingCacheService embeddingCacheService) {
         this.webClient = openRouterWebClient;
         this.properties = properties;
+        this.embeddingCacheService = embeddingCacheService;
         
         // 配置重试策略：最多 3 次，指数退避
+        // 4xx（429 除外）属于请求本身的问题，重试无意义
         this.retrySpec = Retry.backoff(properties.getMaxRetries(), Duration.ofSeconds(1))
                 .maxBackoff(Duration.ofSeconds(10))
+                .filter(EmbeddingServiceImpl::isRetryable)
                 .doBeforeRetry(retrySignal -> {
                     log.warn("Retrying embedding API call, attempt: {}, error: {}", 
                             retrySignal.totalRetries() + 1, 
@@ -90,6 +113,7 @@ public class EmbeddingServiceImpl implements EmbeddingService {
             
             String responseBody = webClient.post()
                     .uri("/embeddings")
+                    .attribute(OpenRouterRateLimiter.TRAFFIC_ATTRIBUTE, Traffic.INTERACTIVE)
                     .bodyValue(requestBody)
                     .retrieve()
                     .bodyToMono(String.class)
@@ -149,6 +173,30 @@ public class EmbeddingServiceImpl implements EmbeddingService {
      */
     @Override
     public List<float[]> embedBatch(List<String> texts) throws Exception {
+        return requestBatch(texts, Traffic.BULK);
+    }
+    
+    /**
+     * 批量向量化查询文本
+     * 
+     * @param texts 要向量化的查询文本列表
+     * @return 向量数组列表
+     * @throws Exception 向量化失败时抛出异常
+     */
+    @Override
+    public List<float[]> embedQueries(List<String> texts) throws Exception {
+        return requestBatch(texts, Traffic.INTERACTIVE);
+    }
+    
+    /**
+     * 一次请求向量化多条文本
+     * 
+     * @param texts 要向量化的文本列表
+     * @param traffic 限流时计入的流量类型
+     * @return 向量数组列表
+     * @throws Exception 向量化失败时抛出异常
+     */
+    private List<float[]> requestBatch(List<String> texts, Traffic traffic) throws Exception {
         if (texts == null || texts.isEmpty()) {
             throw new BusinessException(HttpStatus.BAD_REQUEST.value(), "文本列表不能为空");
         }
@@ -164,6 +212,7 @@ public class EmbeddingServiceImpl implements EmbeddingService {
             // 调用 OpenRouter Embeddings API
             String responseBody = webClient.post()
                     .uri("/embeddings")
+                    .attribute(OpenRouterRateLimiter.TRAFFIC_ATTRIBUTE, traffic)
                     .bodyValue(requestBody)
                     .retrieve()
                     .bodyToMono(String.class)
@@ -225,6 +274,155 @@ public class EmbeddingServiceImpl implements EmbeddingService {
         }
     }
     
+    /**
+     * 分批向量化任意数量的文本
+     * 启用向量缓存时先按（模型, 文本 SHA-256）查询缓存，只对未命中且去重后的文本调用向量化服务，
+     * 新生成的向量写回缓存
+     * 
+     * @param texts 要向量化的文本列表
+     * @return 与输入顺序一致的向量数组列表
+     * @throws Exception 向量化失败时抛出异常
+     */
+    @Override
+    public List<float[]> embedAll(List<String> texts) throws Exception {
+        if (texts == null || texts.isEmpty()) {
+            throw new BusinessException(HttpStatus.BAD_REQUEST.value(), "文本列表不能为空");
+        }
+        
+        if (embeddingCacheService == null || !embeddingCacheService.isEnabled()) {
+            return embedAllUncached(texts);
+        }
+        
+        String model = properties.getEmbeddingModel();
+        List<String> hashes = new ArrayList<>(texts.size());
+        Map<String, String> misses = new LinkedHashMap<>();
+        for (String text : texts) {
+            hashes.add(DigestUtil.sha256Hex(text));
+        }
+        
+        Map<String, float[]> embeddingsByHash = new HashMap<>(embeddingCacheService.getAll(model, hashes));
+        int hits = 0;
+        for (int i = 0; i < texts.size(); i++) {
+            if (embeddingsByHash.containsKey(hashes.get(i))) {
+                hits++;
+            } else {
+                misses.putIfAbsent(hashes.get(i), texts.get(i));
+            }
+        }
+        log.debug("Embedding cache: {} texts, {} hits, {} distinct misses", texts.size(), hits, misses.size());
+        
+        if (!misses.isEmpty()) {
+            List<String> missHashes = new ArrayList<>(misses.keySet());
+            List<float[]> fresh = embedAllUncached(new ArrayList<>(misses.values()));
+            
+            Map<String, float[]> freshByHash = new LinkedHashMap<>();
+            for (int i = 0; i < missHashes.size(); i++) {
+                freshByHash.put(missHashes.get(i), fresh.get(i));
+            }
+            embeddingCacheService.putAll(model, freshByHash);
+            embeddingsByHash.putAll(freshByHash);
+        }
+        
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        for (String hash : hashes) {
+            embeddings.add(embeddingsByHash.get(hash));
+        }
+        return embeddings;
+    }
+    
+    /**
+     * 不经过缓存分批向量化
+     * 每批不超过 embeddingBatchSize 条、embeddingBatchMaxTokens 个估算 token；
+     * 单条文本超过 token 上限时独占一批
+     */
+    private List<float[]> embedAllUncached(List<String> texts) throws Exception {
+        List<float[]> embeddings = new ArrayList<>(texts.size());
+        int requests = 0;
+        int start = 0;
+        while (start < texts.size()) {
+            int end = nextBatchEnd(texts, start);
+            embeddings.addAll(embedWithSplit(texts.subList(start, end)));
+            requests++;
+            start = end;
+        }
+        
+        log.debug("Embedded {} texts in {} planned batches", texts.size(), requests);
+        return embeddings;
+    }
+    
+    /**
+     * 计算从 start 开始的一批文本的结束位置（不含）
+     */
+    private int nextBatchEnd(List<String> texts, int start) {
+        int maxItems = Math.max(1, properties.getEmbeddingBatchSize());
+        int maxTokens = properties.getEmbeddingBatchMaxTokens();
+        
+        int end = start;
+        int tokens = 0;
+        while (end < texts.size() && end - start < maxItems) {
+            int estimated = TokenEstimator.estimate(texts.get(end));
+            if (end > start && tokens + estimated > maxTokens) {
+                break;
+            }
+            tokens += estimated;
+            end++;
+        }
+        return end;
+    }
+    
+    /**
+     * 向量化一批文本，若服务端因请求体过大拒绝则对半拆分后递归重试
+     */
+    private List<float[]> embedWithSplit(List<String> batch) throws Exception {
+        try {
+            return embedBatch(batch);
+        } catch (BusinessException e) {
+            if (batch.size() <= 1 || !isPayloadTooLarge(e)) {
+                throw e;
+            }
+            
+            int mid = batch.size() / 2;
+            log.warn("Embedding batch of {} texts rejected as too large, splitting into {} + {}",
+                    batch.size(), mid, batch.size() - mid);
+            
+            List<float[]> embeddings = new ArrayList<>(embedWithSplit(batch.subList(0, mid)));
+            embeddings.addAll(embedWithSplit(batch.subList(mid, batch.size())));
+            return embeddings;
+        }
+    }
+    
+    /**
+     * 判断异常是否由请求体过大导致：HTTP 413，或响应体为超出上下文长度错误的 HTTP 400；
+     * 其他 400（参数错误、模型不存在等）拆分后仍会失败，不拆分
+     */
+    private static boolean isPayloadTooLarge(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof WebClientResponseException responseException) {
+                int status = responseException.getStatusCode().value();
+                if (status == HttpStatus.PAYLOAD_TOO_LARGE.value()) {
+                    return true;
+                }
+                if (status != HttpStatus.BAD_REQUEST.value()) {
+                    return false;
+                }
+                String body = responseException.getResponseBodyAsString().toLowerCase(Locale.ROOT);
+                return CONTEXT_LENGTH_ERRORS.stream().anyMatch(body::contains);
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 判断异常是否值得重试：网络异常、5xx 和 429 重试，其余 4xx 不重试
+     */
+    private static boolean isRetryable(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            return status >= 500 || status == HttpStatus.TOO_MANY_REQUESTS.value();
+        }
+        return true;
+    }
+    
     /**
      * 获取向量维度
      * 
@@ -0,0 +1,376 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.util.TextChunker;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream;
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * 提取文本缓存
+ * 文档第一次流式提取时，把写入分块器的规范化文本（已去除空白）连同换行和页码位置以 LZ4 压缩保存，
+ * 按文件内容哈希命名；再次提取同一内容（修改分块配置后重新处理、失败重试）时直接从缓存回放，
+ * 不再用 Tika 解析原文件。缓存文件以内存映射方式读取，边解压边写入分块器。
+ *
+ * 缓存文本格式（UTF-8）：普通字符原样保存；'\n' 表示换行；'\f' 页码 '\f' 表示此后的文本属于该页。
+ * 规范化文本中不含空白字符，这两个控制字符不会与正文冲突
+ */
+@Component
+public class ExtractedTextCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ExtractedTextCache.class);
+
+    /**
+     * 缓存格式版本，格式或规范化规则变化时递增，旧版本的缓存文件不再被读取
+     */
+    private static final String FORMAT_VERSION = "v1";
+
+    private static final char LINE_BREAK = '\n';
+
+    private static final char PAGE_MARK = '\f';
+
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * 从原文件提取文本，写入给定的分块器和页码接收者
+     */
+    @FunctionalInterface
+    public interface Extraction {
+        void extract(TextChunker chunker, IntConsumer pageListener) throws Exception;
+    }
+
+    private final RagDocumentProperties documentProperties;
+
+    public ExtractedTextCache(RagDocumentProperties documentProperties) {
+        this.documentProperties = documentProperties;
+    }
+
+    /**
+     * 是否开启了提取文本缓存
+     *
+     * @return 是否开启
+     */
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(documentProperties.getTextCacheEnabled());
+    }
+
+    /**
+     * 从缓存回放文本：文本写入分块器，页码交给 pageListener，不调用分块器的 finish
+     * 先完整解压一遍校验缓存文件（LZ4 帧带内容校验和），确认完好后才写入分块器；
+     * 损坏的缓存文件被删除并按未命中处理，调用方直接从原文件提取，分块器不会收到部分文本
+     *
+     * @param contentHash 文件内容哈希
+     * @param variant 提取方式（同一文件不同提取方式得到的文本不同）
+     * @param chunker 分块器
+     * @param pageListener 页码接收者
+     * @return 缓存是否命中（缓存文件损坏时为 false）
+     * @throws IOException 校验通过后读取缓存文件失败
+     */
+    public boolean replay(String contentHash, String variant, TextChunker chunker,
+                          IntConsumer pageListener) throws IOException {
+        Path path = pathOf(contentHash, variant);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                decode(mapped.duplicate(), new DiscardingChunker(), page -> { });
+            } catch (IOException e) {
+                log.warn("提取文本缓存已损坏，删除后重新提取：{}，原因：{}", path, e.getMessage());
+                Files.deleteIfExists(path);
+                return false;
+            }
+            decode(mapped, chunker, pageListener);
+        }
+        log.debug("提取文本缓存命中：{}", path);
+        return true;
+    }
+
+    /**
+     * 执行提取，同时把写入分块器的文本保存到缓存
+     * 提取成功后缓存文件才以原子方式出现；写缓存失败时只记录日志，不影响提取
+     *
+     * @param contentHash 文件内容哈希
+     * @param variant 提取方式
+     * @param chunker 分块器
+     * @param pageListener 页码接收者
+     * @param extraction 从原文件提取
+     * @throws Exception 提取失败
+     */
+    public void record(String contentHash, String variant, TextChunker chunker, IntConsumer pageListener,
+                       Extraction extraction) throws Exception {
+        Path path = pathOf(contentHash, variant);
+        Path temp;
+        Writer writer;
+        try {
+            Files.createDirectories(path.getParent());
+            temp = Files.createTempFile(path.getParent(), contentHash, ".tmp");
+            writer = new OutputStreamWriter(new FramedLZ4CompressorOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp))), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("无法创建提取文本缓存：{}，原因：{}", path, e.getMessage());
+            extraction.extract(chunker, pageListener);
+            return;
+        }
+
+        RecordingChunker recorder = new RecordingChunker(chunker, pageListener, writer);
+        boolean extracted = false;
+        try {
+            extraction.extract(recorder, recorder::page);
+            extracted = true;
+        } finally {
+            boolean written = recorder.close();
+            if (extracted && written) {
+                try {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    log.debug("提取文本已缓存：{}，压缩后大小：{} 字节", path, Files.size(path));
+                } catch (IOException e) {
+                    log.warn("保存提取文本缓存失败：{}，原因：{}", path, e.getMessage());
+                }
+            }
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 删除某个内容哈希的全部缓存（所有提取方式）
+     *
+     * @param contentHash 文件内容哈希
+     */
+    public void evict(String contentHash) {
+        File[] files = directoryOf(contentHash).toFile()
+                .listFiles((dir, name) -> name.startsWith(contentHash + "."));
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (FileUtil.del(file)) {
+                log.debug("已删除提取文本缓存：{}", file);
+            }
+        }
+    }
+
+    /**
+     * 缓存文件路径：按哈希前两位分目录，避免单个目录下文件过多
+     */
+    private Path pathOf(String contentHash, String variant) {
+        return directoryOf(contentHash).resolve(contentHash + "." + variant + "." + FORMAT_VERSION + ".lz4");
+    }
+
+    private Path directoryOf(String contentHash) {
+        return Paths.get(documentProperties.getTextCacheDir(), contentHash.substring(0, 2));
+    }
+
+    /**
+     * 解压并解码缓存文件
+     */
+    private static void decode(ByteBuffer compressed, TextChunker chunker, IntConsumer pageListener)
+            throws IOException {
+        try (Reader reader = new InputStreamReader(
+                new FramedLZ4CompressorInputStream(new MappedInputStream(compressed)), StandardCharsets.UTF_8)) {
+            decode(reader, chunker, pageListener);
+        }
+    }
+
+    /**
+     * 解码缓存文本，普通字符成段写入分块器
+     */
+    private static void decode(Reader reader, TextChunker chunker, IntConsumer pageListener) throws IOException {
+        char[] buffer = new char[BUFFER_SIZE];
+        // 正在读取的页码，-1 表示不在页码标记内（页码标记可能跨越两次读取）
+        int page = -1;
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            int runStart = 0;
+            for (int i = 0; i < read; i++) {
+                char c = buffer[i];
+                if (page >= 0) {
+                    if (c == PAGE_MARK) {
+                        pageListener.accept(page);
+                        page = -1;
+                        runStart = i + 1;
+                    } else {
+                        page = page * 10 + (c - '0');
+                    }
+                } else if (c == LINE_BREAK || c == PAGE_MARK) {
+                    if (i > runStart) {
+                        chunker.append(buffer, runStart, i - runStart);
+                    }
+                    if (c == LINE_BREAK) {
+                        chunker.lineBreak();
+                        runStart = i + 1;
+                    } else {
+                        page = 0;
+                    }
+                }
+            }
+            if (page < 0 && read > runStart) {
+                chunker.append(buffer, runStart, read - runStart);
+            }
+        }
+        if (page >= 0) {
+            throw new IOException("页码标记不完整");
+        }
+    }
+
+    /**
+     * 把写入分块器的文本同时写入缓存文件
+     */
+    private static final class RecordingChunker implements TextChunker {
+        private final TextChunker delegate;
+        private final IntConsumer pageListener;
+        private final Writer writer;
+        private boolean failed;
+
+        private RecordingChunker(TextChunker delegate, IntConsumer pageListener, Writer writer) {
+            this.delegate = delegate;
+            this.pageListener = pageListener;
+            this.writer = writer;
+        }
+
+        @Override
+        public void append(char[] chars, int start, int length) {
+            write(chars, start, length);
+            delegate.append(chars, start, length);
+        }
+
+        @Override
+        public void lineBreak() {
+            write(new char[]{LINE_BREAK}, 0, 1);
+            delegate.lineBreak();
+        }
+
+        /**
+         * 缓存格式不记录片段边界，输入中途划定片段边界时本次不缓存
+         */
+        @Override
+        public void emitChunk(String chunk) {
+            failed = true;
+            delegate.emitChunk(chunk);
+        }
+
+        private void page(int pageNumber) {
+            char[] mark = (PAGE_MARK + Integer.toString(pageNumber) + PAGE_MARK).toCharArray();
+            write(mark, 0, mark.length);
+            pageListener.accept(pageNumber);
+        }
+
+        @Override
+        public void flush() {
+            failed = true;
+            delegate.flush();
+        }
+
+        @Override
+        public void finish() {
+            delegate.finish();
+        }
+
+        @Override
+        public int getChunkCount() {
+            return delegate.getChunkCount();
+        }
+
+        private void write(char[] chars, int start, int length) {
+            if (failed) {
+                return;
+            }
+            try {
+                writer.write(chars, start, length);
+            } catch (IOException e) {
+                failed = true;
+                log.warn("写入提取文本缓存失败，本次不缓存：{}", e.getMessage());
+            }
+        }
+
+        /**
+         * @return 缓存文件是否完整写入
+         */
+        private boolean close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                failed = true;
+                log.warn("写入提取文本缓存失败，本次不缓存：{}", e.getMessage());
+            }
+            return !failed;
+        }
+    }
+
+    /**
+     * 校验缓存文件时使用，丢弃解码出的文本
+     */
+    private static final class DiscardingChunker implements TextChunker {
+        @Override
+        public void append(char[] chars, int start, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void emitChunk(String chunk) {
+        }
+
+        @Override
+        public int getChunkCount() {
+            return 0;
+        }
+    }
+
+    /**
+     * 以内存映射的缓冲区作为输入流，直接从映射的页面读取，不经过逐次的 read 系统调用
+     */
+    private static final class MappedInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private MappedInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.rag.config.RagDocumentProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.fork.ForkParser;
+import org.apache.tika.fork.ParserFactoryFactory;
+import org.apache.tika.io.TikaInputStream;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.ParseContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 子进程 Tika 解析池
+ * 使用 Tika 的 ForkParser 在 fork 出的 JVM 中解析文档，SAX 事件经管道回传给主进程的 ContentHandler。
+ * 子进程堆内存受 forkMaxHeapMb 限制，单个文档解析超过 forkParseTimeoutMs 时子进程自行退出，
+ * 这两种情况下该文档解析失败、下一个文档使用新的子进程，主进程（包括查询接口）不受影响。
+ * 每个子进程解析 forkMaxDocumentsPerProcess 个文档后被替换，
+ * 同时解析的文档数不超过 forkPoolSize，超出的调用等待空闲的子进程
+ */
+@Component
+public class ForkedTikaParser {
+
+    private static final Logger log = LoggerFactory.getLogger(ForkedTikaParser.class);
+
+    /**
+     * 子进程心跳间隔（毫秒），子进程据此检查解析是否超时
+     */
+    private static final long SERVER_PULSE_MS = 1000L;
+
+    /**
+     * 子进程空闲多久后退出（毫秒）
+     */
+    private static final long SERVER_IDLE_TIMEOUT_MS = 300000L;
+
+    private final RagDocumentProperties documentProperties;
+
+    private ForkParser forkParser;
+
+    public ForkedTikaParser(RagDocumentProperties documentProperties) {
+        this.documentProperties = documentProperties;
+    }
+
+    /**
+     * 是否开启了子进程解析
+     *
+     * @return 是否由本类解析 Tika 支持的文档
+     */
+    public boolean isEnabled() {
+        return Boolean.TRUE.equals(documentProperties.getForkedExtraction());
+    }
+
+    /**
+     * 在子进程中自动检测类型并解析文档，解析出的 SAX 事件交给 handler（在调用线程中执行）
+     *
+     * @param file 文档文件
+     * @param handler 内容处理器
+     * @throws IOException 读取文件失败
+     * @throws SAXException handler 抛出异常
+     * @throws TikaException 解析失败，或子进程超时、内存耗尽后退出
+     */
+    public void parse(File file, ContentHandler handler) throws IOException, SAXException, TikaException {
+        // 文件名写入元数据，辅助 Tika 按扩展名检测类型
+        Metadata metadata = new Metadata();
+        try (TikaInputStream stream = TikaInputStream.get(file.toPath(), metadata)) {
+            parser().parse(stream, handler, metadata, new ParseContext());
+        } catch (TikaException e) {
+            log.warn("子进程解析失败，文件: {}, 解析时限: {}ms, 堆内存上限: {}MB, 原因: {}", file.getName(),
+                    documentProperties.getForkParseTimeoutMs(), documentProperties.getForkMaxHeapMb(), e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * 首次解析时创建 ForkParser，子进程按需启动
+     */
+    private synchronized ForkParser parser() {
+        if (forkParser == null) {
+            ForkParser parser;
+            if (StrUtil.isNotBlank(documentProperties.getForkTikaBin())) {
+                // 子进程从目录中的 jar 包加载解析器，启动更快
+                Path tikaBin = Paths.get(documentProperties.getForkTikaBin());
+                parser = new ForkParser(tikaBin, new ParserFactoryFactory(
+                        "org.apache.tika.parser.AutoDetectParserFactory", Collections.emptyMap()));
+            } else {
+                parser = new ForkParser(ForkedTikaParser.class.getClassLoader());
+            }
+            parser.setJavaCommand(javaCommand());
+            parser.setPoolSize(Math.max(1, documentProperties.getForkPoolSize()));
+            parser.setServerPulseMillis(SERVER_PULSE_MS);
+            parser.setServerParseTimeoutMillis(documentProperties.getForkParseTimeoutMs());
+            parser.setServerWaitTimeoutMillis(SERVER_IDLE_TIMEOUT_MS);
+            parser.setMaxFilesProcessedPerServer(Math.max(1, documentProperties.getForkMaxDocumentsPerProcess()));
+            forkParser = parser;
+            log.info("子进程解析池已创建，子进程数: {}, 解析时限: {}ms, 堆内存上限: {}MB",
+                    documentProperties.getForkPoolSize(), documentProperties.getForkParseTimeoutMs(),
+                    documentProperties.getForkMaxHeapMb());
+        }
+        return forkParser;
+    }
+
+    /**
+     * 子进程启动命令：使用与主进程相同的 java，内存耗尽时立即退出而不是继续缓慢运行
+     */
+    List<String> javaCommand() {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return List.of(java,
+                "-Xmx" + documentProperties.getForkMaxHeapMb() + "m",
+                "-XX:+ExitOnOutOfMemoryError",
+                "-Djava.awt.headless=true");
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (forkParser != null) {
+            forkParser.close();
+            forkParser = null;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.file.FileNameUtil;
+import com.example.rag.entity.Document;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 入库任务处理成本估算
+ * 以文档包含的文本字符数近似处理成本（分块、向量化、写入的工作量都与之成正比）：
+ * PDF 按页数估算，无法读取页数时按文件大小的 1/10 估算；
+ * 其他格式按文件大小估算（TXT/MD 的字节数即文本长度的上限，DOCX 为压缩后的 XML）
+ */
+@Component
+public class IngestionCostEstimator {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionCostEstimator.class);
+
+    /**
+     * PDF 每页的估算字符数
+     */
+    static final long CHARS_PER_PDF_PAGE = 2000;
+
+    /**
+     * 无法读取页数时，PDF 每字节对应的字符数的倒数
+     */
+    static final long PDF_BYTES_PER_CHAR = 10;
+
+    /**
+     * 估算文档的处理成本
+     *
+     * @param document 文档
+     * @return 估算的文本字符数
+     */
+    public long estimate(Document document) {
+        long fileSize = document.getFileSize() != null ? Math.max(0, document.getFileSize()) : 0;
+        if (!isPdf(document)) {
+            return fileSize;
+        }
+
+        int pages = countPdfPages(document.getFilePath());
+        return pages > 0 ? pages * CHARS_PER_PDF_PAGE : fileSize / PDF_BYTES_PER_CHAR;
+    }
+
+    private static boolean isPdf(Document document) {
+        return "application/pdf".equalsIgnoreCase(document.getFileType())
+                || "pdf".equalsIgnoreCase(FileNameUtil.extName(document.getFileName()));
+    }
+
+    /**
+     * 读取 PDF 页数：只解析文件末尾的交叉引用表和 trailer，再按偏移单独读取文档目录（/Root）
+     * 和页面树根节点（/Pages）两个对象，取其 /Count；其余对象（页面、内容流、字体等）不读取，
+     * 耗时与文件大小无关。交叉引用表损坏时不扫描整个文件重建，与文件缺失、加密等情况一样返回 0
+     */
+    private static int countPdfPages(String filePath) {
+        if (filePath == null || !new File(filePath).isFile()) {
+            return 0;
+        }
+        try (RandomAccessBufferedFileInputStream source = new RandomAccessBufferedFileInputStream(new File(filePath))) {
+            PageCountParser parser = new PageCountParser(source);
+            try {
+                return parser.readPageCount();
+            } finally {
+                parser.getDocument().close();
+            }
+        } catch (Exception e) {
+            log.debug("读取 PDF 页数失败，按文件大小估算：{}，原因：{}", filePath, e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 只读取页面树根节点的 PDF 解析器
+     * PDFParser.parse() 会在读取 trailer 后解析文档目录可达的全部对象，这里只用其按需读取单个对象的能力
+     */
+    private static final class PageCountParser extends PDFParser {
+
+        PageCountParser(RandomAccessRead source) throws IOException {
+            super(source);
+            setLenient(false);
+        }
+
+        int readPageCount() throws IOException {
+            COSDictionary trailer = retrieveTrailer();
+            if (trailer == null || trailer.containsKey(COSName.ENCRYPT)) {
+                return 0;
+            }
+            COSBase root = resolve(trailer.getItem(COSName.ROOT));
+            COSBase pages = root instanceof COSDictionary ? resolve(((COSDictionary) root).getItem(COSName.PAGES)) : null;
+            return pages instanceof COSDictionary ? Math.max(0, ((COSDictionary) pages).getInt(COSName.COUNT, 0)) : 0;
+        }
+
+        private COSBase resolve(COSBase base) throws IOException {
+            return base instanceof COSObject ? parseObjectDynamically((COSObject) base, false) : base;
+        }
+    }
+}
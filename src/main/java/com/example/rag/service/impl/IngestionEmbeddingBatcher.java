@@ -0,0 +1,298 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.OpenRouterProperties;
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.service.EmbeddingService;
+import com.example.rag.service.impl.DownstreamLimiter.Downstream;
+import com.example.rag.util.TokenEstimator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 入库向量化请求合并器
+ * 所有文档入库流水线的向量化阶段共用一个待发送队列，不同文档的片段按
+ * embeddingBatchSize 条、embeddingBatchMaxTokens 个估算 token 打包成满批次发送，
+ * 避免同时入库的多个小文档各自发出未装满的请求。
+ *
+ * 发送由提交片段的线程自己完成：积压片段凑满一批时立即取出发送；
+ * 凑不满时等待最早的片段滞留满 sharedEmbeddingBatchLingerMs 后按现有片段发送。
+ * 每个片段记录所属的提交和在提交中的位置，向量按此送回对应文档的对应片段。
+ * 一批失败时批内片段所属的提交都以该异常结束。
+ */
+@Component
+public class IngestionEmbeddingBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionEmbeddingBatcher.class);
+
+    private final EmbeddingService embeddingService;
+    private final OpenRouterProperties openRouterProperties;
+    private final RagIngestionProperties ingestionProperties;
+    private final DownstreamLimiter downstreamLimiter;
+
+    private final Object lock = new Object();
+
+    /**
+     * 待发送的片段（按提交顺序），在持有 lock 时访问
+     */
+    private final Deque<Entry> pending = new ArrayDeque<>();
+
+    /**
+     * 待发送片段的估算 token 总数，在持有 lock 时访问
+     */
+    private int pendingTokens;
+
+    public IngestionEmbeddingBatcher(EmbeddingService embeddingService,
+                                     OpenRouterProperties openRouterProperties,
+                                     RagIngestionProperties ingestionProperties,
+                                     DownstreamLimiter downstreamLimiter) {
+        this.embeddingService = embeddingService;
+        this.openRouterProperties = openRouterProperties;
+        this.ingestionProperties = ingestionProperties;
+        this.downstreamLimiter = downstreamLimiter;
+    }
+
+    /**
+     * 向量化一个文档的一批片段，必要时与其他文档的片段合并发送
+     *
+     * @param documentId 文档ID
+     * @param texts 片段内容
+     * @return 与输入顺序一致的向量数组列表
+     * @throws Exception 片段所在的任一请求失败时抛出该异常
+     */
+    public List<float[]> embed(Long documentId, List<String> texts) throws Exception {
+        if (!Boolean.TRUE.equals(ingestionProperties.getSharedEmbeddingBatchEnabled())) {
+            return downstreamLimiter.call(Downstream.OPENROUTER, () -> embeddingService.embedAll(texts));
+        }
+        if (texts.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        Submission submission = new Submission(documentId, texts.size());
+        List<Entry> entries = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            entries.add(new Entry(submission, i, texts.get(i)));
+        }
+        synchronized (lock) {
+            long now = System.nanoTime();
+            for (Entry entry : entries) {
+                entry.enqueuedNanos = now;
+                pending.addLast(entry);
+                pendingTokens += entry.tokens;
+            }
+            submission.queued = entries.size();
+            lock.notifyAll();
+        }
+
+        try {
+            List<Entry> batch;
+            while ((batch = nextBatch(submission)) != null) {
+                send(batch);
+            }
+        } finally {
+            // 已失败或被中断的提交不再发送剩余片段
+            withdraw(submission);
+        }
+        return await(submission.result);
+    }
+
+    /**
+     * 取出下一批待发送的片段，本次提交已结束时返回 null
+     * 本次提交的片段已全部被其他线程取走时等待它们发送完成（片段被放回队列时重新参与发送）
+     */
+    private List<Entry> nextBatch(Submission submission) throws InterruptedException {
+        long lingerNanos = Math.max(1, TimeUnit.MILLISECONDS.toNanos(ingestionProperties.getSharedEmbeddingBatchLingerMs()));
+        synchronized (lock) {
+            while (!submission.result.isDone()) {
+                if (submission.queued == 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, lingerNanos);
+                    continue;
+                }
+                if (pending.size() >= maxItems() || pendingTokens >= maxTokens()) {
+                    return takeBatch();
+                }
+                long remaining = lingerNanos - (System.nanoTime() - pending.peekFirst().enqueuedNanos);
+                if (remaining <= 0) {
+                    return takeBatch();
+                }
+                TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 从队首取出一批片段，调用方需持有 lock；单个片段超过 token 上限时独占一批
+     */
+    private List<Entry> takeBatch() {
+        int maxItems = maxItems();
+        int maxTokens = maxTokens();
+        List<Entry> batch = new ArrayList<>();
+        int tokens = 0;
+        while (!pending.isEmpty() && batch.size() < maxItems) {
+            Entry entry = pending.peekFirst();
+            if (!batch.isEmpty() && tokens + entry.tokens > maxTokens) {
+                break;
+            }
+            pending.pollFirst();
+            pendingTokens -= entry.tokens;
+            entry.submission.queued--;
+            tokens += entry.tokens;
+            batch.add(entry);
+        }
+        return batch;
+    }
+
+    private void send(List<Entry> batch) throws Exception {
+        List<String> texts = new ArrayList<>(batch.size());
+        Set<Long> documentIds = new HashSet<>();
+        for (Entry entry : batch) {
+            texts.add(entry.text);
+            documentIds.add(entry.submission.documentId);
+        }
+        log.debug("合并向量化批次，片段数量：{}，文档数量：{}", batch.size(), documentIds.size());
+
+        List<float[]> vectors;
+        try {
+            vectors = downstreamLimiter.call(Downstream.OPENROUTER, () -> embeddingService.embedAll(texts));
+        } catch (InterruptedException e) {
+            // 当前线程所属的流水线已中止，其他文档的片段放回队首由它们自己的线程发送
+            requeue(batch);
+            throw e;
+        } catch (Exception e) {
+            for (Entry entry : batch) {
+                entry.submission.result.completeExceptionally(e);
+            }
+            signal();
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            entry.submission.complete(entry.index, vectors.get(i));
+        }
+        signal();
+    }
+
+    /**
+     * 唤醒等待中的线程重新检查自己的提交是否已结束
+     */
+    private void signal() {
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+    }
+
+    private void requeue(List<Entry> batch) {
+        synchronized (lock) {
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                Entry entry = batch.get(i);
+                pending.addFirst(entry);
+                pendingTokens += entry.tokens;
+                entry.submission.queued++;
+            }
+            lock.notifyAll();
+        }
+    }
+
+    private void withdraw(Submission submission) {
+        synchronized (lock) {
+            Iterator<Entry> iterator = pending.iterator();
+            while (submission.queued > 0 && iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.submission == submission) {
+                    iterator.remove();
+                    pendingTokens -= entry.tokens;
+                    submission.queued--;
+                }
+            }
+        }
+    }
+
+    private int maxItems() {
+        return Math.max(1, openRouterProperties.getEmbeddingBatchSize());
+    }
+
+    private int maxTokens() {
+        return openRouterProperties.getEmbeddingBatchMaxTokens();
+    }
+
+    private static List<float[]> await(CompletableFuture<List<float[]>> result) throws Exception {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 一个文档的一次提交，所有片段都拿到向量后结束
+     */
+    private static final class Submission {
+        private final Long documentId;
+        private final float[][] vectors;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<List<float[]>> result = new CompletableFuture<>();
+
+        /**
+         * 仍在待发送队列中的片段数，在持有 lock 时访问
+         */
+        private int queued;
+
+        private Submission(Long documentId, int size) {
+            this.documentId = documentId;
+            this.vectors = new float[size][];
+            this.remaining = new AtomicInteger(size);
+        }
+
+        private void complete(int index, float[] vector) {
+            vectors[index] = vector;
+            if (remaining.decrementAndGet() == 0) {
+                result.complete(Arrays.asList(vectors));
+            }
+        }
+    }
+
+    /**
+     * 待发送的片段：所属提交及在提交中的位置
+     */
+    private static final class Entry {
+        private final Submission submission;
+        private final int index;
+        private final String text;
+        private final int tokens;
+
+        /**
+         * 进入待发送队列的时间，在持有 lock 时访问
+         */
+        private long enqueuedNanos;
+
+        private Entry(Submission submission, int index, String text) {
+            this.submission = submission;
+            this.index = index;
+            this.text = text;
+            this.tokens = TokenEstimator.estimate(text);
+        }
+    }
+}
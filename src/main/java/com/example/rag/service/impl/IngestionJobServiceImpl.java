@@ -0,0 +1,281 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.IngestionJob;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.IngestionJobMapper;
+import com.example.rag.service.DocumentProcessingService;
+import com.example.rag.service.IngestionJobService;
+import com.example.rag.service.IngestionProgressService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 文档入库任务服务实现类
+ * 定时轮询 ingestion_job 表，以 FOR UPDATE SKIP LOCKED 认领任务并提交到文档处理线程池执行；
+ * 认领按排队时间排序：估算处理成本低、优先级高的任务先执行，等待时间抵消成本带来的延后；
+ * 执行期间定期续约，节点退出后未完成的任务在租约到期后由其他节点重新认领；
+ * 处理失败的任务按指数退避放回队列重试。重新执行时文档处理从已保存的片段继续，不会从头开始；
+ * 文档处理失败后由这里决定推送等待重试还是最终失败的进度事件
+ */
+@Service
+public class IngestionJobServiceImpl implements IngestionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobServiceImpl.class);
+
+    /**
+     * 批量提交任务时每条 INSERT 语句的行数
+     */
+    private static final int ENQUEUE_BATCH_SIZE = 1000;
+
+    @Autowired
+    private IngestionJobMapper ingestionJobMapper;
+
+    @Autowired
+    private DocumentMapper documentMapper;
+
+    @Autowired
+    private DocumentProcessingService documentProcessingService;
+
+    @Autowired
+    private RagIngestionProperties ragIngestionProperties;
+
+    @Autowired
+    private IngestionCostEstimator ingestionCostEstimator;
+
+    @Autowired
+    private IngestionProgressService ingestionProgressService;
+
+    @Autowired
+    @Qualifier("taskExecutor")
+    private Executor taskExecutor;
+
+    /**
+     * 工作节点标识：进程名（pid@host）加随机后缀，同一主机上重启后不会与旧租约混淆
+     */
+    private final String workerId = ManagementFactory.getRuntimeMXBean().getName()
+            + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    /**
+     * 本节点正在执行的任务
+     */
+    private final Map<Long, IngestionJob> runningJobs = new ConcurrentHashMap<>();
+
+    private volatile long lastRenewalMillis = System.currentTimeMillis();
+
+    private volatile boolean stopped;
+
+    @Override
+    public void enqueue(Long documentId, String jobType) {
+        enqueue(documentId, jobType, IngestionJob.PRIORITY_NORMAL);
+    }
+
+    @Override
+    public void enqueue(Long documentId, String jobType, int priority) {
+        IngestionJob job = newJob(documentMapper.selectById(documentId), documentId, jobType, priority, LocalDateTime.now());
+        job.setStatus(IngestionJob.STATUS_PENDING);
+        job.setAttempts(0);
+        ingestionJobMapper.insert(job);
+        log.info("入库任务已提交，任务ID：{}，文档ID：{}，类型：{}，估算成本：{}", job.getId(), documentId, jobType, job.getEstimatedCost());
+    }
+
+    @Override
+    public void enqueueAll(List<Long> documentIds, String jobType) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int from = 0; from < documentIds.size(); from += ENQUEUE_BATCH_SIZE) {
+            List<Long> slice = documentIds.subList(from, Math.min(from + ENQUEUE_BATCH_SIZE, documentIds.size()));
+            Map<Long, Document> documents = new HashMap<>();
+            for (Document document : documentMapper.selectByIds(slice)) {
+                documents.put(document.getId(), document);
+            }
+
+            List<IngestionJob> jobs = new ArrayList<>(slice.size());
+            for (Long documentId : slice) {
+                jobs.add(newJob(documents.get(documentId), documentId, jobType, IngestionJob.PRIORITY_NORMAL, now));
+            }
+            ingestionJobMapper.insertBatch(jobs);
+        }
+        log.info("入库任务已批量提交，数量：{}，类型：{}", documentIds.size(), jobType);
+    }
+
+    /**
+     * 创建任务并计算排队时间：提交时间按估算成本推后（每 jobCostCharsPerSecond 个字符推后 1 秒），
+     * 按优先级提前或推后 jobPriorityBoostSeconds 秒。
+     * 排队时间在提交时确定，已等待的时间自然抵消成本带来的延后，大文档不会被持续到来的小文档饿死
+     */
+    private IngestionJob newJob(Document document, Long documentId, String jobType, int priority, LocalDateTime now) {
+        long cost = document != null ? ingestionCostEstimator.estimate(document) : 0;
+        long costMillis = cost * 1000 / Math.max(1, ragIngestionProperties.getJobCostCharsPerSecond());
+        long boostSeconds = (long) priority * ragIngestionProperties.getJobPriorityBoostSeconds();
+
+        IngestionJob job = new IngestionJob();
+        job.setDocumentId(documentId);
+        job.setJobType(jobType);
+        job.setPriority(priority);
+        job.setEstimatedCost(cost);
+        job.setEffectiveAt(now.plus(Duration.ofMillis(costMillis)).minusSeconds(boostSeconds));
+        return job;
+    }
+
+    /**
+     * 续约本节点持有的任务，并按空闲的执行槽位认领新任务
+     */
+    @Scheduled(fixedDelayString = "${rag.ingestion.job-poll-interval-ms:2000}")
+    public void pollJobs() {
+        if (stopped || !Boolean.TRUE.equals(ragIngestionProperties.getJobWorkerEnabled())) {
+            return;
+        }
+        try {
+            renewLeasesIfDue();
+
+            int freeSlots = ragIngestionProperties.getJobConcurrency() - runningJobs.size();
+            if (freeSlots <= 0) {
+                return;
+            }
+            List<IngestionJob> jobs = ingestionJobMapper.claimJobs(workerId,
+                    ragIngestionProperties.getJobLeaseSeconds(), freeSlots);
+            for (IngestionJob job : jobs) {
+                runningJobs.put(job.getId(), job);
+                try {
+                    taskExecutor.execute(() -> runJob(job));
+                } catch (RejectedExecutionException e) {
+                    // 线程池已关闭，任务保持 RUNNING，租约到期后由其他节点重新认领
+                    runningJobs.remove(job.getId());
+                    log.warn("入库任务提交到线程池失败，等待租约到期后重新认领，任务ID：{}", job.getId());
+                }
+            }
+        } catch (Exception e) {
+            log.error("轮询入库任务失败", e);
+        }
+    }
+
+    /**
+     * 停止认领新任务；已开始的任务由线程池在关闭前等待执行完成
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * 距上次续约超过租约时长的 1/3 时续约，保证处理较慢的任务不会被其他节点重复认领
+     */
+    private void renewLeasesIfDue() {
+        long now = System.currentTimeMillis();
+        int leaseSeconds = ragIngestionProperties.getJobLeaseSeconds();
+        if (runningJobs.isEmpty() || now - lastRenewalMillis < leaseSeconds * 1000L / 3) {
+            return;
+        }
+        int renewed = ingestionJobMapper.renewLeases(workerId, runningJobs.keySet(), leaseSeconds);
+        lastRenewalMillis = now;
+        if (renewed < runningJobs.size()) {
+            log.warn("部分入库任务续约失败（租约已被其他节点接管），持有：{}，续约：{}", runningJobs.size(), renewed);
+        }
+    }
+
+    private void runJob(IngestionJob job) {
+        Long documentId = job.getDocumentId();
+        try {
+            if (job.getAttempts() > ragIngestionProperties.getJobMaxAttempts()) {
+                String message = "文档处理多次中断，已放弃（认领次数：" + (job.getAttempts() - 1) + "）";
+                log.error("{}，任务ID：{}，文档ID：{}", message, job.getId(), documentId);
+                markDocumentFailed(documentId, message);
+                finish(job, IngestionJob.STATUS_FAILED, message);
+                ingestionProgressService.finish(documentId, IngestionProgressService.STATUS_FAILED, message);
+                return;
+            }
+
+            if (job.getAttempts() > 1) {
+                log.info("重新执行入库任务，任务ID：{}，文档ID：{}，认领次数：{}",
+                        job.getId(), documentId, job.getAttempts());
+            }
+            if (IngestionJob.TYPE_REPROCESS.equals(job.getJobType())) {
+                documentProcessingService.reprocessDocument(documentId);
+            } else {
+                documentProcessingService.processDocument(documentId);
+            }
+
+            // 处理方法内部捕获异常并将文档标记为 FAILED，这里以文档状态判断任务结果
+            Document document = documentMapper.selectById(documentId);
+            if (document != null && "FAILED".equals(document.getStatus())) {
+                retryOrFail(job, document.getErrorMessage());
+            } else {
+                finish(job, IngestionJob.STATUS_DONE, null);
+            }
+        } catch (Exception e) {
+            log.error("入库任务执行失败，任务ID：{}，文档ID：{}", job.getId(), documentId, e);
+            retryOrFail(job, e.getMessage());
+        } finally {
+            runningJobs.remove(job.getId());
+        }
+    }
+
+    /**
+     * 未达到最大认领次数时把任务放回队列，文档恢复为 PROCESSING；否则任务以 FAILED 结束
+     */
+    private void retryOrFail(IngestionJob job, String lastError) {
+        if (job.getAttempts() >= ragIngestionProperties.getJobMaxAttempts()) {
+            finish(job, IngestionJob.STATUS_FAILED, lastError);
+            ingestionProgressService.finish(job.getDocumentId(), IngestionProgressService.STATUS_FAILED, lastError);
+            return;
+        }
+
+        int delaySeconds = ragIngestionProperties.getJobRetryDelaySeconds() << Math.min(job.getAttempts() - 1, 10);
+        try {
+            if (ingestionJobMapper.retryJob(job.getId(), workerId, lastError, delaySeconds) == 0) {
+                log.warn("入库任务的租约已被其他节点接管，任务ID：{}", job.getId());
+                ingestionProgressService.discard(job.getDocumentId());
+                return;
+            }
+            Document document = new Document();
+            document.setId(job.getDocumentId());
+            document.setStatus("PROCESSING");
+            documentMapper.updateById(document);
+            log.info("入库任务将在 {} 秒后重试，任务ID：{}，文档ID：{}，原因：{}",
+                    delaySeconds, job.getId(), job.getDocumentId(), lastError);
+            ingestionProgressService.retrying(job.getDocumentId(), lastError);
+        } catch (Exception e) {
+            log.error("更新入库任务状态失败，任务ID：{}", job.getId(), e);
+            ingestionProgressService.discard(job.getDocumentId());
+        }
+    }
+
+    private void finish(IngestionJob job, String status, String lastError) {
+        try {
+            if (ingestionJobMapper.finishJob(job.getId(), workerId, status, lastError) == 0) {
+                log.warn("入库任务的租约已被其他节点接管，任务ID：{}", job.getId());
+            } else {
+                log.info("入库任务结束，任务ID：{}，文档ID：{}，状态：{}", job.getId(), job.getDocumentId(), status);
+            }
+        } catch (Exception e) {
+            log.error("更新入库任务状态失败，任务ID：{}", job.getId(), e);
+        }
+    }
+
+    private void markDocumentFailed(Long documentId, String message) {
+        Document document = new Document();
+        document.setId(documentId);
+        document.setStatus("FAILED");
+        document.setErrorMessage(message);
+        document.setProcessTime(LocalDateTime.now());
+        documentMapper.updateById(document);
+    }
+}
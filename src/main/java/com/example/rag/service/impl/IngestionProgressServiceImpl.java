@@ -0,0 +1,467 @@
+package com.example.rag.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.IngestionJob;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.IngestionJobMapper;
+import com.example.rag.service.IngestionProgressService;
+import com.example.rag.vo.IngestionProgressVO;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 文档处理进度服务实现类
+ * 片段计数由处理线程（流水线各阶段线程）累加，同一文档的推送间隔不小于 progressPublishIntervalMs；
+ * 提取结束、等待重试和处理结束的事件总是推送。同一文档的推送串行执行，处理结束后不再推送该文档的进度。
+ *
+ * 处理线程只把事件放入各连接的待发送队列，由专用的发送线程池写入连接，客户端接收缓慢或停止接收时不会阻塞处理；
+ * 同一连接的事件由一个发送线程按顺序发送，来不及发送时同一文档只保留最新的事件。
+ *
+ * 计数只存在于执行处理的节点上。订阅的文档不在本节点处理时（排队中、在其他节点处理、复制重复文档），
+ * 订阅时按数据库中的文档状态推送一次快照，之后每次心跳检查文档是否已经结束
+ */
+@Service
+public class IngestionProgressServiceImpl implements IngestionProgressService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionProgressServiceImpl.class);
+
+    /**
+     * SSE 事件名
+     */
+    static final String EVENT_NAME = "progress";
+
+    private final DocumentMapper documentMapper;
+    private final IngestionJobMapper ingestionJobMapper;
+    private final RagIngestionProperties ingestionProperties;
+
+    /**
+     * 本节点正在处理的文档的进度
+     */
+    private final Map<Long, Progress> progressByDocument = new ConcurrentHashMap<>();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private ExecutorService sendExecutor;
+
+    public IngestionProgressServiceImpl(DocumentMapper documentMapper,
+                                        IngestionJobMapper ingestionJobMapper,
+                                        RagIngestionProperties ingestionProperties) {
+        this.documentMapper = documentMapper;
+        this.ingestionJobMapper = ingestionJobMapper;
+        this.ingestionProperties = ingestionProperties;
+    }
+
+    @Override
+    public void start(Long documentId) {
+        Progress progress = new Progress(documentId);
+        progressByDocument.put(documentId, progress);
+        publish(progress, STATUS_PROCESSING, null, false);
+    }
+
+    @Override
+    public void chunksExtracted(Long documentId, int count) {
+        Progress progress = progressByDocument.get(documentId);
+        if (progress != null) {
+            progress.extracted.addAndGet(count);
+            publishIfDue(progress);
+        }
+    }
+
+    @Override
+    public void chunksEmbedded(Long documentId, int count) {
+        Progress progress = progressByDocument.get(documentId);
+        if (progress != null) {
+            progress.embedded.addAndGet(count);
+            publishIfDue(progress);
+        }
+    }
+
+    @Override
+    public void chunksStored(Long documentId, int count) {
+        Progress progress = progressByDocument.get(documentId);
+        if (progress != null) {
+            progress.stored.addAndGet(count);
+            publishIfDue(progress);
+        }
+    }
+
+    @Override
+    public void chunksResumed(Long documentId, int count) {
+        Progress progress = progressByDocument.get(documentId);
+        if (progress != null) {
+            progress.embedded.addAndGet(count);
+            progress.stored.addAndGet(count);
+            publishIfDue(progress);
+        }
+    }
+
+    @Override
+    public void extractionFinished(Long documentId) {
+        Progress progress = progressByDocument.get(documentId);
+        if (progress != null) {
+            progress.extractionFinished = true;
+            publish(progress, STATUS_PROCESSING, null, false);
+        }
+    }
+
+    @Override
+    public void retrying(Long documentId, String errorMessage) {
+        // 重试可能由其他节点认领，本节点不再保留计数，订阅者之后按数据库状态获知结果
+        Progress progress = progressByDocument.remove(documentId);
+        publish(progress != null ? progress : new Progress(documentId), STATUS_RETRYING, errorMessage, true);
+    }
+
+    @Override
+    public void finish(Long documentId, String status, String errorMessage) {
+        Progress progress = progressByDocument.remove(documentId);
+        publish(progress != null ? progress : new Progress(documentId), status, errorMessage, true);
+    }
+
+    @Override
+    public void discard(Long documentId) {
+        progressByDocument.remove(documentId);
+    }
+
+    @Override
+    public SseEmitter subscribe(Long documentId) {
+        Document document = documentMapper.selectById(documentId);
+        if (document == null) {
+            log.warn("文档不存在，文档ID：{}", documentId);
+            throw new BusinessException(404, "文档不存在");
+        }
+
+        // 先登记再推送快照，期间发生的进度变化不会遗漏
+        Subscriber subscriber = register(documentId);
+        Progress progress = progressByDocument.get(documentId);
+        if (progress != null) {
+            enqueue(subscriber, progress.toVO(STATUS_PROCESSING, null), false);
+        } else {
+            IngestionProgressVO snapshot = snapshotOf(document);
+            enqueue(subscriber, snapshot, isFinal(snapshot.getStatus()));
+        }
+        return subscriber.emitter;
+    }
+
+    @Override
+    public SseEmitter subscribeAll() {
+        Subscriber subscriber = register(null);
+        for (Progress progress : progressByDocument.values()) {
+            enqueue(subscriber, progress.toVO(STATUS_PROCESSING, null), false);
+        }
+        return subscriber.emitter;
+    }
+
+    /**
+     * 向所有连接发送心跳注释，防止代理因空闲断开连接；
+     * 订阅的文档不在本节点处理时检查其数据库状态，已结束的推送最终状态并关闭连接
+     */
+    @Scheduled(fixedDelayString = "${rag.ingestion.progress-heartbeat-ms:15000}")
+    public void heartbeat() {
+        Map<Long, IngestionProgressVO> snapshots = new HashMap<>();
+        for (Subscriber subscriber : subscribers) {
+            Long documentId = subscriber.documentId;
+            if (documentId != null && !progressByDocument.containsKey(documentId)) {
+                try {
+                    IngestionProgressVO snapshot = snapshots.computeIfAbsent(documentId, this::snapshotOf);
+                    if (snapshot == null) {
+                        // 文档已被删除
+                        close(subscriber);
+                        continue;
+                    }
+                    if (isFinal(snapshot.getStatus())) {
+                        enqueue(subscriber, snapshot, true);
+                        continue;
+                    }
+                } catch (Exception e) {
+                    log.warn("查询文档处理状态失败，文档ID：{}，原因：{}", documentId, e.getMessage());
+                }
+            }
+
+            enqueue(subscriber, null, false);
+        }
+    }
+
+    /**
+     * 距上次推送超过推送间隔时推送当前进度，同一时刻只有一个线程推送
+     */
+    private void publishIfDue(Progress progress) {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(ingestionProperties.getProgressPublishIntervalMs());
+        long now = System.nanoTime();
+        long last = progress.lastPublishedNanos.get();
+        if (now - last < intervalNanos || !progress.lastPublishedNanos.compareAndSet(last, now)) {
+            return;
+        }
+        publish(progress, STATUS_PROCESSING, null, false);
+    }
+
+    /**
+     * 推送进度，last 为 true 时该文档此后不再推送，单个文档的订阅者收到最终状态后关闭连接
+     */
+    private void publish(Progress progress, String status, String errorMessage, boolean last) {
+        synchronized (progress) {
+            if (progress.ended) {
+                return;
+            }
+            progress.ended = last;
+            progress.lastPublishedNanos.set(System.nanoTime());
+
+            IngestionProgressVO progressVO = progress.toVO(status, errorMessage);
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.documentId != null && !subscriber.documentId.equals(progress.documentId)) {
+                    continue;
+                }
+                enqueue(subscriber, progressVO, isFinal(status) && subscriber.documentId != null);
+            }
+        }
+    }
+
+    private Subscriber register(Long documentId) {
+        Subscriber subscriber = new Subscriber(documentId, createEmitter(ingestionProperties.getProgressStreamTimeoutMs()));
+        subscriber.emitter.onCompletion(() -> subscribers.remove(subscriber));
+        subscriber.emitter.onTimeout(() -> close(subscriber));
+        subscriber.emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        log.debug("进度订阅已建立，文档ID：{}，当前订阅数：{}", documentId, subscribers.size());
+        return subscriber;
+    }
+
+    SseEmitter createEmitter(long timeoutMs) {
+        return new SseEmitter(timeoutMs);
+    }
+
+    /**
+     * 把事件放入连接的待发送队列并确保有发送线程在处理，调用线程不等待客户端；
+     * progressVO 为 null 时发送心跳，closeAfter 为 true 时发送完已排队的事件后关闭连接
+     */
+    private void enqueue(Subscriber subscriber, IngestionProgressVO progressVO, boolean closeAfter) {
+        synchronized (subscriber) {
+            if (subscriber.closing || subscriber.closed) {
+                return;
+            }
+            if (progressVO != null) {
+                // 同一文档只保留最新的事件，排到队尾
+                subscriber.pending.remove(progressVO.getDocumentId());
+                subscriber.pending.put(progressVO.getDocumentId(), progressVO);
+            } else {
+                subscriber.keepalive = true;
+            }
+            subscriber.closing = closeAfter;
+            if (subscriber.draining) {
+                return;
+            }
+            subscriber.draining = true;
+        }
+        try {
+            sendExecutor().execute(() -> drain(subscriber));
+        } catch (RejectedExecutionException e) {
+            // 应用正在关闭
+            subscriber.closed = true;
+            subscribers.remove(subscriber);
+        }
+    }
+
+    /**
+     * 在发送线程中依次发送连接的待发送事件，直到队列为空；连接断开时移除订阅
+     */
+    private void drain(Subscriber subscriber) {
+        while (true) {
+            List<IngestionProgressVO> events;
+            boolean keepalive;
+            boolean closing;
+            synchronized (subscriber) {
+                if (subscriber.closed || (subscriber.pending.isEmpty() && !subscriber.keepalive && !subscriber.closing)) {
+                    subscriber.draining = false;
+                    return;
+                }
+                events = new ArrayList<>(subscriber.pending.values());
+                subscriber.pending.clear();
+                keepalive = subscriber.keepalive && events.isEmpty();
+                subscriber.keepalive = false;
+                closing = subscriber.closing;
+            }
+
+            try {
+                for (IngestionProgressVO progressVO : events) {
+                    subscriber.emitter.send(SseEmitter.event()
+                            .name(EVENT_NAME)
+                            .data(progressVO, MediaType.APPLICATION_JSON));
+                }
+                if (keepalive) {
+                    subscriber.emitter.send(SseEmitter.event().comment("keepalive"));
+                }
+            } catch (Exception e) {
+                synchronized (subscriber) {
+                    subscriber.closed = true;
+                    subscriber.pending.clear();
+                }
+                subscribers.remove(subscriber);
+                log.debug("进度推送失败，移除订阅，文档ID：{}，原因：{}", subscriber.documentId, e.getMessage());
+                return;
+            }
+
+            if (closing) {
+                close(subscriber);
+                return;
+            }
+        }
+    }
+
+    private void close(Subscriber subscriber) {
+        synchronized (subscriber) {
+            subscriber.closed = true;
+            subscriber.pending.clear();
+        }
+        subscribers.remove(subscriber);
+        subscriber.emitter.complete();
+    }
+
+    /**
+     * 首次推送时创建发送线程池，线程数取自 progressSendThreads
+     */
+    synchronized Executor sendExecutor() {
+        if (sendExecutor == null) {
+            sendExecutor = Executors.newFixedThreadPool(ingestionProperties.getProgressSendThreads(),
+                    new CustomizableThreadFactory("progress-send-"));
+        }
+        return sendExecutor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (sendExecutor != null) {
+            sendExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 按数据库中的文档状态生成进度快照，文档不存在时返回 null
+     * FAILED 的文档仍有待执行或执行中的任务时表示等待重试
+     */
+    private IngestionProgressVO snapshotOf(Long documentId) {
+        Document document = documentMapper.selectById(documentId);
+        return document != null ? snapshotOf(document) : null;
+    }
+
+    private IngestionProgressVO snapshotOf(Document document) {
+        Progress progress = new Progress(document.getId());
+        String status = STATUS_PROCESSING;
+        if (STATUS_COMPLETED.equals(document.getStatus())) {
+            int chunkCount = document.getChunkCount() != null ? document.getChunkCount() : 0;
+            progress.extracted.set(chunkCount);
+            progress.embedded.set(chunkCount);
+            progress.stored.set(chunkCount);
+            progress.extractionFinished = true;
+            status = STATUS_COMPLETED;
+        } else if (STATUS_FAILED.equals(document.getStatus())) {
+            status = hasActiveJob(document.getId()) ? STATUS_RETRYING : STATUS_FAILED;
+        }
+        return progress.toVO(status, STATUS_PROCESSING.equals(status) ? null : document.getErrorMessage());
+    }
+
+    private boolean hasActiveJob(Long documentId) {
+        QueryWrapper<IngestionJob> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("document_id", documentId);
+        queryWrapper.in("status", IngestionJob.STATUS_PENDING, IngestionJob.STATUS_RUNNING);
+        return ingestionJobMapper.selectCount(queryWrapper) > 0;
+    }
+
+    private static boolean isFinal(String status) {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status);
+    }
+
+    /**
+     * 一个文档的处理进度
+     */
+    private static final class Progress {
+        private final Long documentId;
+        private final AtomicInteger extracted = new AtomicInteger();
+        private final AtomicInteger embedded = new AtomicInteger();
+        private final AtomicInteger stored = new AtomicInteger();
+        private final AtomicLong lastPublishedNanos = new AtomicLong(System.nanoTime());
+        private volatile boolean extractionFinished;
+
+        /**
+         * 已推送最后一个事件，在持有本对象锁时访问
+         */
+        private boolean ended;
+
+        private Progress(Long documentId) {
+            this.documentId = documentId;
+        }
+
+        private IngestionProgressVO toVO(String status, String errorMessage) {
+            IngestionProgressVO progressVO = new IngestionProgressVO();
+            progressVO.setDocumentId(documentId);
+            progressVO.setStatus(status);
+            progressVO.setChunksExtracted(extracted.get());
+            progressVO.setChunksEmbedded(embedded.get());
+            progressVO.setChunksStored(stored.get());
+            progressVO.setExtractionFinished(extractionFinished);
+            progressVO.setErrorMessage(errorMessage);
+            return progressVO;
+        }
+    }
+
+    /**
+     * 一个 SSE 连接，documentId 为 null 时订阅所有文档
+     * 待发送队列和各标记在持有本对象锁时访问
+     */
+    private static final class Subscriber {
+        private final Long documentId;
+        private final SseEmitter emitter;
+
+        /**
+         * 待发送的进度事件，按文档ID保留最新的一个
+         */
+        private final Map<Long, IngestionProgressVO> pending = new LinkedHashMap<>();
+
+        /**
+         * 待发送心跳
+         */
+        private boolean keepalive;
+
+        /**
+         * 发送完待发送事件后关闭连接，之后不再接受事件
+         */
+        private boolean closing;
+
+        /**
+         * 已提交发送任务，发送线程清空队列后复位
+         */
+        private boolean draining;
+
+        /**
+         * 连接已关闭或已断开
+         */
+        private volatile boolean closed;
+
+        private Subscriber(Long documentId, SseEmitter emitter) {
+            this.documentId = documentId;
+            this.emitter = emitter;
+        }
+    }
+}
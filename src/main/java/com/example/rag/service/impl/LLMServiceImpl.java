@@ -1,6 +1,8 @@
 package com.example.rag.service.impl;
 
 import com.example.rag.config.OpenRouterProperties;
+import com.example.rag.config.OpenRouterRateLimiter;
+import com.example.rag.config.OpenRouterRateLimiter.Traffic;
 import com.example.rag.entity.DocumentChunk;
 import com.example.rag.exception.BusinessException;
 import com.example.rag.service.LLMService;
@@ -131,6 +133,7 @@ public class LLMServiceImpl implements LLMService {
             // 调用 OpenRouter Chat Completions API
             ChatCompletionResponse response = webClient.post()
                     .uri("/chat/completions")
+                    .attribute(OpenRouterRateLimiter.TRAFFIC_ATTRIBUTE, Traffic.INTERACTIVE)
                     .bodyValue(requestBody)
                     .retrieve()
                     .bodyToMono(ChatCompletionResponse.class)
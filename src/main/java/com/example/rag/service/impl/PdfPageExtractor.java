@@ -0,0 +1,237 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.file.FileNameUtil;
+import com.example.rag.config.RagDocumentProperties;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * PDF 按页并行提取
+ * 用 PDFBox（Tika 解析 PDF 时使用的同一个库）把文档按 pdfPagesPerTask 页切分成页区间，
+ * 提交到专用的 fork-join 线程池并行提取文本，再按页码顺序交给调用方，多核机器上大文档的提取时间随核数缩短。
+ *
+ * PDDocument 不是线程安全的，每个工作线程在首次处理该文档时各自加载一份，提取结束后统一关闭；
+ * 同时在途的页区间不超过并行度的两倍，已提取但尚未交出的文本量有上限，与文档页数无关。
+ * 页数不超过一个页区间时直接在调用线程中提取
+ */
+@Component
+public class PdfPageExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(PdfPageExtractor.class);
+
+    /**
+     * 接收一页提取出的文本
+     */
+    @FunctionalInterface
+    public interface PageConsumer {
+
+        /**
+         * @param pageNumber 页码，从 1 开始
+         * @param text 该页的文本，行之间以 \n 分隔
+         */
+        void accept(int pageNumber, String text) throws Exception;
+    }
+
+    private final RagDocumentProperties documentProperties;
+
+    private ForkJoinPool pool;
+
+    public PdfPageExtractor(RagDocumentProperties documentProperties) {
+        this.documentProperties = documentProperties;
+    }
+
+    /**
+     * 是否按页并行提取该文件：开启了 pdfParallelExtraction、未开启子进程解析且扩展名为 pdf
+     *
+     * @param file 文档文件
+     * @return 是否由本类提取
+     */
+    public boolean supports(File file) {
+        return Boolean.TRUE.equals(documentProperties.getPdfParallelExtraction())
+                && !Boolean.TRUE.equals(documentProperties.getForkedExtraction())
+                && "pdf".equalsIgnoreCase(FileNameUtil.extName(file.getName()));
+    }
+
+    /**
+     * 提取 PDF 每页的文本，按页码顺序交给 consumer（在调用线程中执行）
+     *
+     * @param file PDF 文件
+     * @param consumer 页文本接收者
+     * @return 页数
+     * @throws Exception 加载或提取失败，或 consumer 抛出异常
+     */
+    public int extractPages(File file, PageConsumer consumer) throws Exception {
+        int pagesPerTask = Math.max(1, documentProperties.getPdfPagesPerTask());
+        int pageCount;
+        try (PDDocument document = load(file)) {
+            pageCount = document.getNumberOfPages();
+            if (pageCount <= pagesPerTask || parallelism() <= 1) {
+                PDFTextStripper stripper = newStripper();
+                for (int page = 1; page <= pageCount; page++) {
+                    consumer.accept(page, extractPage(stripper, document, page));
+                }
+                return pageCount;
+            }
+        }
+
+        log.debug("按页并行提取 PDF，文件: {}, 页数: {}, 每个任务页数: {}", file.getName(), pageCount, pagesPerTask);
+        Map<Thread, PDDocument> copies = new ConcurrentHashMap<>();
+        Deque<ForkJoinTask<List<String>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = parallelism() * 2;
+        int nextPage = 1;
+        int deliveredPage = 1;
+        try {
+            while (deliveredPage <= pageCount) {
+                while (nextPage <= pageCount && inFlight.size() < maxInFlight) {
+                    int startPage = nextPage;
+                    int endPage = Math.min(startPage + pagesPerTask - 1, pageCount);
+                    inFlight.addLast(pool().submit(new PageRangeTask(file, copies, startPage, endPage)));
+                    nextPage = endPage + 1;
+                }
+
+                for (String text : await(inFlight.pollFirst())) {
+                    consumer.accept(deliveredPage++, text);
+                }
+            }
+            return pageCount;
+        } finally {
+            // 出错时未开始的任务取消，已开始的任务执行完后才能关闭它们使用的文档副本
+            for (ForkJoinTask<List<String>> task : inFlight) {
+                task.cancel(false);
+            }
+            for (ForkJoinTask<List<String>> task : inFlight) {
+                task.quietlyJoin();
+            }
+            for (PDDocument copy : copies.values()) {
+                closeQuietly(copy);
+            }
+        }
+    }
+
+    /**
+     * 提取一个页区间的任务，在工作线程中使用该线程自己的文档副本
+     */
+    private static final class PageRangeTask extends RecursiveTask<List<String>> {
+        private static final long serialVersionUID = 1L;
+
+        private final File file;
+        private final Map<Thread, PDDocument> copies;
+        private final int startPage;
+        private final int endPage;
+
+        private PageRangeTask(File file, Map<Thread, PDDocument> copies, int startPage, int endPage) {
+            this.file = file;
+            this.copies = copies;
+            this.startPage = startPage;
+            this.endPage = endPage;
+        }
+
+        @Override
+        protected List<String> compute() {
+            try {
+                PDDocument document = copies.get(Thread.currentThread());
+                if (document == null) {
+                    document = load(file);
+                    copies.put(Thread.currentThread(), document);
+                }
+
+                PDFTextStripper stripper = newStripper();
+                List<String> texts = new ArrayList<>(endPage - startPage + 1);
+                for (int page = startPage; page <= endPage; page++) {
+                    texts.add(extractPage(stripper, document, page));
+                }
+                return texts;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static String extractPage(PDFTextStripper stripper, PDDocument document, int page) throws IOException {
+        stripper.setStartPage(page);
+        stripper.setEndPage(page);
+        return stripper.getText(document);
+    }
+
+    private static PDFTextStripper newStripper() throws IOException {
+        PDFTextStripper stripper = new PDFTextStripper();
+        stripper.setLineSeparator("\n");
+        return stripper;
+    }
+
+    private static PDDocument load(File file) throws IOException {
+        return PDDocument.load(file, MemoryUsageSetting.setupTempFileOnly());
+    }
+
+    private static List<String> await(ForkJoinTask<List<String>> task) throws Exception {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException unchecked) {
+                throw unchecked.getCause();
+            }
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private static void closeQuietly(PDDocument document) {
+        try {
+            document.close();
+        } catch (IOException e) {
+            log.debug("关闭 PDF 文档副本失败：{}", e.getMessage());
+        }
+    }
+
+    private int parallelism() {
+        int configured = documentProperties.getPdfExtractionParallelism();
+        return configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * 首次需要并行提取时创建线程池，并行度取自 pdfExtractionParallelism
+     */
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism(), forkJoinPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("pdf-extract-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+
+    @PreDestroy
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.file.FileNameUtil;
+import com.example.rag.config.RagDocumentProperties;
+import org.apache.tika.exception.ZeroByteFileException;
+import org.apache.tika.parser.txt.CharsetDetector;
+import org.apache.tika.parser.txt.CharsetMatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+
+/**
+ * 纯文本与 Markdown 快速提取
+ * TXT / MD 不经过 Tika 的类型检测和解析：文件以内存映射方式分段读取，
+ * 根据文件开头的字节判断字符集，边解码边把字符交给调用方（通常是 ChunkingContentHandler），
+ * 不在内存中保留完整文本，大文件的提取速度接近磁盘读取速度。
+ *
+ * 字符集判断：有 BOM 时按 BOM；文件开头 64KB 是合法 UTF-8 时为 UTF-8；
+ * 否则使用 Tika 的字符集检测器（可识别 GB18030 等中文编码）。无法解码的字节替换为 U+FFFD
+ */
+@Component
+public class PlainTextExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(PlainTextExtractor.class);
+
+    private static final Set<String> EXTENSIONS = Set.of("txt", "md", "markdown");
+
+    /**
+     * 用于判断字符集的文件开头字节数
+     */
+    static final int DETECTION_PREFIX_BYTES = 64 * 1024;
+
+    /**
+     * 每次映射的文件区间大小
+     */
+    private static final long MAP_WINDOW_BYTES = 64L * 1024 * 1024;
+
+    private static final int CHAR_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 接收解码出的字符，数组在调用返回后被复用
+     */
+    @FunctionalInterface
+    public interface CharSink {
+        void accept(char[] chars, int start, int length);
+    }
+
+    private final RagDocumentProperties documentProperties;
+
+    public PlainTextExtractor(RagDocumentProperties documentProperties) {
+        this.documentProperties = documentProperties;
+    }
+
+    /**
+     * 是否由本类提取该文件：开启了 plainTextFastPath 且扩展名为 txt、md 或 markdown
+     *
+     * @param file 文档文件
+     * @return 是否由本类提取
+     */
+    public boolean supports(File file) {
+        return Boolean.TRUE.equals(documentProperties.getPlainTextFastPath())
+                && EXTENSIONS.contains(FileNameUtil.extName(file.getName()).toLowerCase());
+    }
+
+    /**
+     * 解码文件内容，按顺序把字符交给 sink（在调用线程中执行）
+     *
+     * @param file 文本文件
+     * @param sink 字符接收者
+     * @return 判断出的字符集
+     * @throws IOException 读取失败
+     * @throws ZeroByteFileException 文件为空（与 Tika 解析空文件时一致）
+     */
+    public Charset extract(File file, CharSink sink) throws IOException, ZeroByteFileException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                throw new ZeroByteFileException("文件为空");
+            }
+
+            long windowStart = 0;
+            MappedByteBuffer window = map(channel, windowStart, size);
+            Charset charset = detectCharset(window, size);
+            log.debug("纯文本快速提取，文件: {}, 大小: {} 字节, 字符集: {}", file.getName(), size, charset);
+
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            CharBuffer out = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+            while (true) {
+                boolean last = windowStart + window.limit() >= size;
+                CoderResult result;
+                do {
+                    result = decoder.decode(window, out, last);
+                    drain(out, sink);
+                } while (result.isOverflow());
+                if (last) {
+                    break;
+                }
+                // 区间末尾不完整的多字节字符留到下一个区间开头
+                windowStart += window.position();
+                window = map(channel, windowStart, size);
+            }
+            while (decoder.flush(out).isOverflow()) {
+                drain(out, sink);
+            }
+            drain(out, sink);
+            return charset;
+        }
+    }
+
+    private MappedByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mapWindowBytes(), size - position));
+    }
+
+    /**
+     * 每次映射的文件区间大小，测试中覆盖为较小的值以验证跨区间解码
+     */
+    long mapWindowBytes() {
+        return MAP_WINDOW_BYTES;
+    }
+
+    private static void drain(CharBuffer out, CharSink sink) {
+        out.flip();
+        if (out.hasRemaining()) {
+            sink.accept(out.array(), out.arrayOffset() + out.position(), out.remaining());
+        }
+        out.clear();
+    }
+
+    /**
+     * 根据文件开头的字节判断字符集，有 BOM 时把 buffer 的位置移到 BOM 之后
+     */
+    static Charset detectCharset(ByteBuffer buffer, long fileSize) {
+        byte[] prefix = new byte[Math.min(buffer.remaining(), DETECTION_PREFIX_BYTES)];
+        buffer.duplicate().get(prefix);
+
+        if (startsWith(prefix, 0xEF, 0xBB, 0xBF)) {
+            buffer.position(buffer.position() + 3);
+            return StandardCharsets.UTF_8;
+        }
+        if (startsWith(prefix, 0xFE, 0xFF)) {
+            buffer.position(buffer.position() + 2);
+            return StandardCharsets.UTF_16BE;
+        }
+        if (startsWith(prefix, 0xFF, 0xFE)) {
+            buffer.position(buffer.position() + 2);
+            return StandardCharsets.UTF_16LE;
+        }
+        if (isUtf8(prefix, prefix.length < fileSize)) {
+            return StandardCharsets.UTF_8;
+        }
+
+        CharsetMatch match = new CharsetDetector().setText(prefix).detect();
+        if (match != null && Charset.isSupported(match.getName())) {
+            return Charset.forName(match.getName());
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static boolean startsWith(byte[] bytes, int... marker) {
+        if (bytes.length < marker.length) {
+            return false;
+        }
+        for (int i = 0; i < marker.length; i++) {
+            if ((bytes[i] & 0xFF) != marker[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 是否为合法 UTF-8；前缀截断在多字节字符中间时，末尾不完整的字节不算错误
+     */
+    private static boolean isUtf8(byte[] prefix, boolean truncated) {
+        CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+        ByteBuffer in = ByteBuffer.wrap(prefix);
+        CoderResult result = decoder.decode(in, CharBuffer.allocate(prefix.length), !truncated);
+        return !result.isError() && (truncated || !in.hasRemaining());
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagRetrievalProperties;
+import com.example.rag.service.EmbeddingService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询向量化请求合并器
+ * 并发到达的查询合并为一次 embeddings 请求：第一个到达的查询成为本批的发送者，
+ * 最多等待合并窗口（或凑满 queryBatchMaxSize 条）后由它发出请求，结果按顺序分发回各个查询。
+ * 与正在向量化的查询文本相同的请求直接等待已有结果，不重复调用向量化服务。
+ *
+ * 批内只有一条查询时按单条接口发送；合并请求按交互流量限流
+ */
+@Component
+public class QueryEmbeddingBatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(QueryEmbeddingBatcher.class);
+
+    private final EmbeddingService embeddingService;
+    private final RagRetrievalProperties properties;
+
+    /**
+     * 正在向量化的查询文本（尚未分发结果），用于合并相同的查询
+     */
+    private final Map<String, CompletableFuture<float[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    /**
+     * 仍在接收查询的批次，在持有 lock 时访问
+     */
+    private Batch open;
+
+    public QueryEmbeddingBatcher(EmbeddingService embeddingService, RagRetrievalProperties properties) {
+        this.embeddingService = embeddingService;
+        this.properties = properties;
+    }
+
+    /**
+     * 向量化查询文本，必要时与并发的其他查询合并发送
+     *
+     * @param text 查询文本
+     * @return 向量数组
+     * @throws Exception 向量化失败时抛出异常（同批的所有查询收到相同的异常）
+     */
+    public float[] embed(String text) throws Exception {
+        if (!Boolean.TRUE.equals(properties.getQueryBatchEnabled()) || text == null || text.isBlank()) {
+            return embeddingService.embed(text);
+        }
+
+        CompletableFuture<float[]> future = new CompletableFuture<>();
+        CompletableFuture<float[]> existing = inFlight.putIfAbsent(text, future);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        Batch batch;
+        boolean sender = false;
+        synchronized (lock) {
+            if (open == null) {
+                open = new Batch();
+                sender = true;
+            }
+            batch = open;
+            batch.texts.add(text);
+            batch.futures.add(future);
+            if (batch.texts.size() >= Math.max(1, properties.getQueryBatchMaxSize())) {
+                close(batch);
+            }
+        }
+
+        if (sender) {
+            awaitClose(batch);
+            send(batch);
+        }
+        return await(future);
+    }
+
+    /**
+     * 等待合并窗口结束或批次凑满
+     */
+    private void awaitClose(Batch batch) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getQueryBatchWindowMs());
+        synchronized (lock) {
+            try {
+                long remaining;
+                while (!batch.closed && (remaining = deadline - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                }
+            } catch (InterruptedException e) {
+                // 同批的其他查询仍在等待，照常发送
+                Thread.currentThread().interrupt();
+            }
+            close(batch);
+        }
+    }
+
+    /**
+     * 停止接收新查询并唤醒等待中的发送者，调用方需持有 lock
+     */
+    private void close(Batch batch) {
+        batch.closed = true;
+        if (open == batch) {
+            open = null;
+        }
+        lock.notifyAll();
+    }
+
+    private void send(Batch batch) {
+        List<String> texts = batch.texts;
+        try {
+            List<float[]> embeddings;
+            if (texts.size() == 1) {
+                embeddings = List.of(embeddingService.embed(texts.get(0)));
+            } else {
+                log.debug("合并 {} 条查询向量化请求", texts.size());
+                embeddings = embeddingService.embedQueries(texts);
+            }
+            for (int i = 0; i < texts.size(); i++) {
+                batch.futures.get(i).complete(embeddings.get(i));
+            }
+        } catch (Throwable e) {
+            for (CompletableFuture<float[]> future : batch.futures) {
+                future.completeExceptionally(e);
+            }
+        } finally {
+            for (int i = 0; i < texts.size(); i++) {
+                inFlight.remove(texts.get(i), batch.futures.get(i));
+            }
+        }
+    }
+
+    private static float[] await(CompletableFuture<float[]> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception exception) {
+                throw exception;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 一次合并请求，texts 与 futures 一一对应
+     */
+    private static final class Batch {
+        private final List<String> texts = new ArrayList<>();
+        private final List<CompletableFuture<float[]>> futures = new ArrayList<>();
+        private boolean closed;
+    }
+}
@@ -4,7 +4,6 @@ import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.example.rag.config.RagRetrievalProperties;
 import com.example.rag.entity.DocumentChunk;
 import com.example.rag.mapper.DocumentChunkMapper;
-import com.example.rag.service.EmbeddingService;
 import com.example.rag.service.RetrievalService;
 import com.example.rag.service.VectorStoreService;
 import com.example.rag.vo.RetrievalResult;
@@ -32,16 +31,16 @@ public class RetrievalServiceImpl implements RetrievalService {
 
     private static final Logger log = LoggerFactory.getLogger(RetrievalServiceImpl.class);
 
-    private final EmbeddingService embeddingService;
+    private final QueryEmbeddingBatcher queryEmbeddingBatcher;
     private final VectorStoreService vectorStoreService;
     private final DocumentChunkMapper documentChunkMapper;
     private final RagRetrievalProperties ragRetrievalProperties;
 
-    public RetrievalServiceImpl(EmbeddingService embeddingService,
+    public RetrievalServiceImpl(QueryEmbeddingBatcher queryEmbeddingBatcher,
                                 VectorStoreService vectorStoreService,
                                 DocumentChunkMapper documentChunkMapper,
                                 RagRetrievalProperties ragRetrievalProperties) {
-        this.embeddingService = embeddingService;
+        this.queryEmbeddingBatcher = queryEmbeddingBatcher;
         this.vectorStoreService = vectorStoreService;
         this.documentChunkMapper = documentChunkMapper;
         this.ragRetrievalProperties = ragRetrievalProperties;
@@ -58,9 +57,9 @@ public class RetrievalServiceImpl implements RetrievalService {
         int effectiveTopK = topK > 0 ? topK : ragRetrievalProperties.getTopK();
         log.info("Retrieving documents for query: '{}', topK={}", query, effectiveTopK);
 
-        // Step 1: Vectorize the query (Requirement 4.1)
+        // Step 1: Vectorize the query (Requirement 4.1), merged with concurrent queries
         log.debug("Step 1: Vectorizing query text");
-        float[] queryVector = embeddingService.embed(query);
+        float[] queryVector = queryEmbeddingBatcher.embed(query);
         log.debug("Query vectorized successfully, dimension={}", queryVector.length);
 
         // Step 2: Search in Qdrant (Requirement 4.2)
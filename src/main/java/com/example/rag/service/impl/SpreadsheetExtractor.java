@@ -0,0 +1,325 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.util.CharUtil;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.util.BpeTokenizer;
+import com.example.rag.util.ChunkSizeUnit;
+import com.example.rag.util.TextChunker;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
+import org.apache.tika.exception.ZeroByteFileException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * XLSX / CSV 流式提取与按行分组分块
+ * 表格不经过 Tika 转成一整段文本：XLSX 用 POI 的 SAX 事件接口逐行读取工作表，CSV 用 commons-csv 逐条读取记录，
+ * 连续的若干行组成一个片段，每个片段以表头（每个工作表的第一个非空行）开头，片段大小不超过 chunkSize
+ * （按 token 分块时以 token 计）。内存中只保留表头和正在凑的一组行，与行数无关；
+ * XLSX 的共享字符串表（各单元格去重后的文本）需要整体加载，与行数无关但随不同文本的数量增长。
+ *
+ * 每行的单元格去除首尾空白后以 " | " 连接，行末的空单元格省略，空行跳过；
+ * 单独一行加表头就超过片段大小时，这一行交给分块器按常规规则切分
+ */
+@Component
+public class SpreadsheetExtractor {
+
+    private static final Logger log = LoggerFactory.getLogger(SpreadsheetExtractor.class);
+
+    private static final Set<String> EXTENSIONS = Set.of("xlsx", "csv");
+
+    private static final String CELL_SEPARATOR = " | ";
+
+    private static final CSVFormat CSV_FORMAT = CSVFormat.DEFAULT;
+
+    private final RagDocumentProperties documentProperties;
+
+    public SpreadsheetExtractor(RagDocumentProperties documentProperties) {
+        this.documentProperties = documentProperties;
+    }
+
+    /**
+     * 是否由本类提取该文件：开启了 spreadsheetRowChunking、未开启子进程解析，且扩展名为 xlsx 或 csv
+     *
+     * @param file 文档文件
+     * @return 是否由本类提取
+     */
+    public boolean supports(File file) {
+        return Boolean.TRUE.equals(documentProperties.getSpreadsheetRowChunking())
+                && !Boolean.TRUE.equals(documentProperties.getForkedExtraction())
+                && EXTENSIONS.contains(FileNameUtil.extName(file.getName()).toLowerCase());
+    }
+
+    /**
+     * 逐行读取表格，按行分组后作为完整片段交给分块器（在调用线程中执行，不调用分块器的 finish）
+     *
+     * @param file 表格文件
+     * @param chunker 分块器
+     * @return 读取的数据行数（不含表头）
+     * @throws Exception 读取或解析失败
+     */
+    public long extract(File file, TextChunker chunker) throws Exception {
+        RowGrouper grouper = new RowGrouper(chunker, documentProperties.getChunkSize(), sizeMeasure());
+        if ("csv".equalsIgnoreCase(FileNameUtil.extName(file.getName()))) {
+            extractCsv(file, grouper);
+        } else {
+            extractWorkbook(file, grouper);
+        }
+        log.debug("表格按行分组提取完成，文件: {}, 数据行数: {}", file.getName(), grouper.dataRows);
+        return grouper.dataRows;
+    }
+
+    /**
+     * 与分块配置一致的文本大小计算方式
+     */
+    private ToIntFunction<CharSequence> sizeMeasure() {
+        if (documentProperties.getChunkSizeUnit() == ChunkSizeUnit.TOKENS) {
+            return tokenizer()::countTokens;
+        }
+        return CharSequence::length;
+    }
+
+    /**
+     * 按 token 分块时使用的分词器（与 TokenBudgetChunker 相同），测试中覆盖为小型词表
+     */
+    BpeTokenizer tokenizer() {
+        return BpeTokenizer.cl100kBase();
+    }
+
+    private void extractCsv(File file, RowGrouper grouper) throws IOException, ZeroByteFileException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) {
+                throw new ZeroByteFileException("文件为空");
+            }
+
+            // 与纯文本相同的字符集判断，有 BOM 时从 BOM 之后开始读取
+            ByteBuffer prefix = ByteBuffer.allocate((int) Math.min(size, PlainTextExtractor.DETECTION_PREFIX_BYTES));
+            while (prefix.hasRemaining() && channel.read(prefix) > 0) {
+                // 读满文件开头
+            }
+            prefix.flip();
+            Charset charset = PlainTextExtractor.detectCharset(prefix, size);
+            channel.position(prefix.position());
+
+            CharsetDecoder decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            try (CSVParser parser = CSV_FORMAT.parse(Channels.newReader(channel, decoder, -1))) {
+                grouper.startTable(null);
+                for (CSVRecord record : parser) {
+                    grouper.row(record.toList());
+                }
+                grouper.endTable();
+            }
+        }
+    }
+
+    private void extractWorkbook(File file, RowGrouper grouper) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            XSSFReader reader = new XSSFReader(pkg);
+            StylesTable styles = reader.getStylesTable();
+            DataFormatter formatter = new DataFormatter();
+
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    grouper.startTable(sheets.getSheetName());
+                    XMLReader xmlReader = XMLHelper.newXMLReader();
+                    xmlReader.setContentHandler(new XSSFSheetXMLHandler(
+                            styles, null, strings, new SheetRows(grouper), formatter, false));
+                    xmlReader.parse(new InputSource(sheet));
+                    grouper.endTable();
+                }
+            }
+        } finally {
+            // 只读打开的包用 revert 关闭，close 会尝试保存
+            pkg.revert();
+        }
+    }
+
+    /**
+     * 把工作表的单元格事件拼成行，缺失的单元格补为空
+     */
+    private static final class SheetRows implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final RowGrouper grouper;
+        private final List<String> cells = new ArrayList<>();
+
+        private SheetRows(RowGrouper grouper) {
+            this.grouper = grouper;
+        }
+
+        @Override
+        public void startRow(int rowNum) {
+            cells.clear();
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            grouper.row(cells);
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            int column = cellReference != null ? new CellReference(cellReference).getCol() : cells.size();
+            while (cells.size() < column) {
+                cells.add("");
+            }
+            cells.add(formattedValue);
+        }
+    }
+
+    /**
+     * 按表头 + 若干行凑片段，凑满后作为完整片段交给分块器
+     */
+    private static final class RowGrouper {
+        private final TextChunker chunker;
+        private final int budget;
+        private final ToIntFunction<CharSequence> measure;
+
+        private final StringBuilder group = new StringBuilder();
+        private int groupSize;
+
+        private String title;
+        private String header;
+        private int headerSize;
+        private long tableRows;
+        private long dataRows;
+
+        private RowGrouper(TextChunker chunker, int budget, ToIntFunction<CharSequence> measure) {
+            this.chunker = chunker;
+            this.budget = budget;
+            this.measure = measure;
+        }
+
+        /**
+         * 开始一个新表格（工作表），title 为工作表名称，CSV 为 null
+         */
+        private void startTable(String title) {
+            this.title = title;
+            this.header = null;
+            this.tableRows = 0;
+        }
+
+        private void row(List<String> cells) {
+            String line = formatRow(cells);
+            if (line.isEmpty()) {
+                return;
+            }
+            if (header == null) {
+                header = title != null ? "工作表：" + title + "\n" + line : line;
+                headerSize = measure.applyAsInt(header);
+                return;
+            }
+
+            tableRows++;
+            dataRows++;
+            // 换行符计入大小
+            int rowSize = measure.applyAsInt(line) + 1;
+            if (group.length() > 0 && groupSize + rowSize > budget) {
+                flush();
+            }
+            if (group.length() == 0) {
+                if (headerSize + rowSize > budget) {
+                    String oversized = header + "\n" + line;
+                    chunker.append(oversized.toCharArray(), 0, oversized.length());
+                    chunker.flush();
+                    return;
+                }
+                group.append(header);
+                groupSize = headerSize;
+            }
+            group.append('\n').append(line);
+            groupSize += rowSize;
+        }
+
+        /**
+         * 表格结束：输出最后一组行；只有表头的表格把表头作为一个片段输出
+         */
+        private void endTable() {
+            flush();
+            if (header != null && tableRows == 0) {
+                chunker.emitChunk(header);
+            }
+        }
+
+        private void flush() {
+            if (group.length() > 0) {
+                chunker.emitChunk(group.toString());
+                group.setLength(0);
+                groupSize = 0;
+            }
+        }
+
+        /**
+         * 单元格去除首尾空白、内部连续空白合并为一个空格后以分隔符连接，行末的空单元格省略
+         */
+        private static String formatRow(List<String> cells) {
+            int last = cells.size() - 1;
+            while (last >= 0 && normalize(cells.get(last)).isEmpty()) {
+                last--;
+            }
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i <= last; i++) {
+                if (i > 0) {
+                    line.append(CELL_SEPARATOR);
+                }
+                line.append(normalize(cells.get(i)));
+            }
+            return line.toString();
+        }
+
+        private static String normalize(String cell) {
+            if (cell == null) {
+                return "";
+            }
+            StringBuilder text = new StringBuilder(cell.length());
+            boolean pendingSpace = false;
+            for (int i = 0; i < cell.length(); i++) {
+                char c = cell.charAt(i);
+                if (CharUtil.isBlankChar(c)) {
+                    pendingSpace = text.length() > 0;
+                } else {
+                    if (pendingSpace) {
+                        text.append(' ');
+                        pendingSpace = false;
+                    }
+                    text.append(c);
+                }
+            }
+            return text.toString();
+        }
+    }
+}
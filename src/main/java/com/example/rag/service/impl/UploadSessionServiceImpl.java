@@ -0,0 +1,413 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.file.FileNameUtil;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.entity.UploadPart;
+import com.example.rag.entity.UploadSession;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.UploadPartMapper;
+import com.example.rag.mapper.UploadSessionMapper;
+import com.example.rag.service.DocumentService;
+import com.example.rag.service.UploadSessionService;
+import com.example.rag.vo.DocumentVO;
+import com.example.rag.vo.UploadSessionRequest;
+import com.example.rag.vo.UploadSessionVO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 分片上传服务实现类
+ * 创建会话时按声明的大小预分配临时文件，各分片通过 FileChannel 按偏移量直接写入，不需要合并；
+ * 已写入的区间记录在 upload_part 表中，任一节点都能据此判断上传进度（上传目录需在各节点间共享，
+ * 与文档处理任务的要求相同）。
+ *
+ * 内容哈希增量计算：从文件开头起已连续到达的字节在分片写入后随即计入 SHA-256，
+ * 完成会话时通常只需处理最后到达的部分；本节点没有哈希进度时（如重启后）从临时文件补算
+ */
+@Service
+public class UploadSessionServiceImpl implements UploadSessionService {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadSessionServiceImpl.class);
+
+    /**
+     * 临时文件所在的子目录（位于上传目录下）
+     */
+    private static final String PARTS_DIR = ".parts";
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    private UploadSessionMapper uploadSessionMapper;
+
+    @Autowired
+    private UploadPartMapper uploadPartMapper;
+
+    @Autowired
+    private DocumentService documentService;
+
+    @Autowired
+    private RagDocumentProperties ragDocumentProperties;
+
+    @Autowired
+    private UploadStorage uploadStorage;
+
+    /**
+     * 本节点各会话的增量哈希进度
+     */
+    private final Map<String, HashProgress> hashProgress = new ConcurrentHashMap<>();
+
+    @Override
+    public UploadSessionVO createSession(UploadSessionRequest request) throws IOException {
+        validateRequest(request);
+
+        String sessionId = UUID.randomUUID().toString();
+        File partsDir = new File(ragDocumentProperties.getUploadDir(), PARTS_DIR).getAbsoluteFile();
+        FileUtil.mkdir(partsDir);
+        File tempFile = new File(partsDir, sessionId + ".part");
+        try (RandomAccessFile file = new RandomAccessFile(tempFile, "rw")) {
+            file.setLength(request.getFileSize());
+        }
+
+        UploadSession session = new UploadSession();
+        session.setId(sessionId);
+        session.setFileName(request.getFileName());
+        session.setFileSize(request.getFileSize());
+        session.setFileType(request.getFileType());
+        session.setTempPath(tempFile.getPath());
+        session.setStatus(UploadSession.STATUS_UPLOADING);
+        uploadSessionMapper.insert(session);
+
+        log.info("上传会话已创建，会话ID：{}，文件名：{}，大小：{} 字节",
+                sessionId, request.getFileName(), request.getFileSize());
+        return toVO(session, new TreeMap<>());
+    }
+
+    @Override
+    public UploadSessionVO writePart(String sessionId, long offset, InputStream data) throws IOException {
+        UploadSession session = requireSession(sessionId);
+        if (!UploadSession.STATUS_UPLOADING.equals(session.getStatus())) {
+            throw new BusinessException(409, "上传会话已完成或正在完成，不能继续上传");
+        }
+        long fileSize = session.getFileSize();
+        if (offset < 0 || offset >= fileSize) {
+            throw new BusinessException(400, String.format("分片偏移量无效：%d，文件大小：%d", offset, fileSize));
+        }
+
+        // 按偏移量直接写入预分配的临时文件，各分片互不影响
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(Path.of(session.getTempPath()), StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+            int read;
+            while ((read = data.read(buffer.array())) != -1) {
+                if (offset + written + read > fileSize) {
+                    throw new BusinessException(400, "分片超出文件大小");
+                }
+                buffer.clear().limit(read);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer, offset + written);
+                }
+            }
+        }
+        if (written == 0) {
+            throw new BusinessException(400, "分片内容不能为空");
+        }
+
+        uploadPartMapper.upsertPart(sessionId, offset, written);
+        log.debug("分片写入完成，会话ID：{}，偏移量：{}，长度：{}", sessionId, offset, written);
+
+        updateHash(session, offset, offset + written);
+        return toVO(session, receivedRanges(sessionId));
+    }
+
+    @Override
+    public UploadSessionVO getSession(String sessionId) {
+        UploadSession session = requireSession(sessionId);
+        return toVO(session, receivedRanges(sessionId));
+    }
+
+    @Override
+    public DocumentVO completeSession(String sessionId) throws IOException {
+        UploadSession session = requireSession(sessionId);
+        if (!UploadSession.STATUS_UPLOADING.equals(session.getStatus())) {
+            throw new BusinessException(409, "上传会话已完成或正在完成");
+        }
+
+        // 1. 校验所有字节都已到达
+        TreeMap<Long, Long> ranges = receivedRanges(sessionId);
+        long receivedBytes = totalLength(ranges);
+        if (receivedBytes < session.getFileSize()) {
+            log.warn("文件尚未上传完整，会话ID：{}，已接收：{} / {} 字节", sessionId, receivedBytes, session.getFileSize());
+            throw new BusinessException(409, String.format("文件尚未上传完整，已接收 %d / %d 字节",
+                    receivedBytes, session.getFileSize()));
+        }
+
+        // 2. 按状态条件更新，并发的完成请求只有一个能继续
+        UpdateWrapper<UploadSession> updateWrapper = new UpdateWrapper<>();
+        updateWrapper.eq("id", sessionId);
+        updateWrapper.eq("status", UploadSession.STATUS_UPLOADING);
+        updateWrapper.set("status", UploadSession.STATUS_COMPLETING);
+        if (uploadSessionMapper.update(null, updateWrapper) <= 0) {
+            throw new BusinessException(409, "上传会话已完成或正在完成");
+        }
+
+        Path tempPath = Path.of(session.getTempPath());
+        Path filePath = null;
+        try {
+            // 3. 补算尚未计入的哈希，把临时文件移动到上传目录
+            String contentHash = finishHash(session, ranges);
+            filePath = uploadStorage.newFilePath(session.getFileName());
+            Files.move(tempPath, filePath);
+            log.info("分片上传完成，会话ID：{}，文件：{}，内容哈希：{}", sessionId, filePath, contentHash);
+
+            // 4. 与普通上传相同：创建文档记录并提交处理
+            DocumentVO documentVO = documentService.createDocument(session.getFileName(), session.getFileSize(),
+                    session.getFileType(), filePath.toString(), contentHash);
+
+            session.setStatus(UploadSession.STATUS_COMPLETED);
+            session.setDocumentId(documentVO.getId());
+            uploadSessionMapper.updateById(session);
+            return documentVO;
+
+        } catch (IOException | RuntimeException e) {
+            // 恢复为上传中，客户端可以重试完成请求
+            if (filePath != null && Files.exists(filePath) && !Files.exists(tempPath)) {
+                Files.move(filePath, tempPath);
+            }
+            UpdateWrapper<UploadSession> revertWrapper = new UpdateWrapper<>();
+            revertWrapper.eq("id", sessionId);
+            revertWrapper.set("status", UploadSession.STATUS_UPLOADING);
+            uploadSessionMapper.update(null, revertWrapper);
+            throw e;
+
+        } finally {
+            hashProgress.remove(sessionId);
+        }
+    }
+
+    @Override
+    public void abortSession(String sessionId) {
+        UploadSession session = requireSession(sessionId);
+        if (UploadSession.STATUS_COMPLETING.equals(session.getStatus())) {
+            throw new BusinessException(409, "上传会话正在完成，不能放弃");
+        }
+        deleteSession(session);
+        log.info("上传会话已放弃，会话ID：{}", sessionId);
+    }
+
+    /**
+     * 清理过期的上传会话及其临时文件
+     */
+    @Scheduled(fixedDelay = 3600000, initialDelay = 3600000)
+    public void cleanUpExpiredSessions() {
+        try {
+            QueryWrapper<UploadSession> queryWrapper = new QueryWrapper<>();
+            queryWrapper.lt("created_at",
+                    LocalDateTime.now().minusHours(ragDocumentProperties.getUploadSessionTtlHours()));
+            List<UploadSession> expired = uploadSessionMapper.selectList(queryWrapper);
+            for (UploadSession session : expired) {
+                deleteSession(session);
+            }
+            if (!expired.isEmpty()) {
+                log.info("已清理过期的上传会话：{} 个", expired.size());
+            }
+        } catch (Exception e) {
+            log.error("清理过期的上传会话失败", e);
+        }
+    }
+
+    private void validateRequest(UploadSessionRequest request) {
+        String fileName = request.getFileName();
+        if (fileName == null || fileName.isEmpty()) {
+            throw new BusinessException(400, "文件名不能为空");
+        }
+
+        String fileExtension = FileNameUtil.extName(fileName);
+        if (!ragDocumentProperties.isSupportedFormat(fileExtension)) {
+            throw new BusinessException(400, String.format("不支持的文件格式：%s，支持的格式：%s",
+                    fileExtension, ragDocumentProperties.getSupportedFormats()));
+        }
+
+        Long fileSize = request.getFileSize();
+        if (fileSize == null || fileSize <= 0) {
+            throw new BusinessException(400, "文件大小无效");
+        }
+        if (fileSize > ragDocumentProperties.getMaxFileSize()) {
+            throw new BusinessException(413, String.format("文件过大，最大允许 %d MB",
+                    ragDocumentProperties.getMaxFileSize() / 1024 / 1024));
+        }
+    }
+
+    private UploadSession requireSession(String sessionId) {
+        UploadSession session = uploadSessionMapper.selectById(sessionId);
+        if (session == null) {
+            throw new BusinessException(404, "上传会话不存在或已过期");
+        }
+        return session;
+    }
+
+    private void deleteSession(UploadSession session) {
+        FileUtil.del(session.getTempPath());
+        uploadSessionMapper.deleteById(session.getId());
+        hashProgress.remove(session.getId());
+    }
+
+    /**
+     * 查询已接收的字节区间，合并为互不重叠、互不相邻的区间（起始偏移量 → 结束偏移量）
+     */
+    private TreeMap<Long, Long> receivedRanges(String sessionId) {
+        QueryWrapper<UploadPart> queryWrapper = new QueryWrapper<>();
+        queryWrapper.eq("session_id", sessionId);
+        TreeMap<Long, Long> ranges = new TreeMap<>();
+        for (UploadPart part : uploadPartMapper.selectList(queryWrapper)) {
+            addRange(ranges, part.getPartOffset(), part.getPartOffset() + part.getPartLength());
+        }
+        return ranges;
+    }
+
+    private static void addRange(TreeMap<Long, Long> ranges, long start, long end) {
+        Map.Entry<Long, Long> before = ranges.floorEntry(start);
+        if (before != null && before.getValue() >= start) {
+            start = before.getKey();
+            end = Math.max(end, before.getValue());
+        }
+        Map.Entry<Long, Long> next;
+        while ((next = ranges.ceilingEntry(start)) != null && next.getKey() <= end) {
+            end = Math.max(end, next.getValue());
+            ranges.remove(next.getKey());
+        }
+        ranges.put(start, end);
+    }
+
+    private static long totalLength(TreeMap<Long, Long> ranges) {
+        long total = 0;
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            total += range.getValue() - range.getKey();
+        }
+        return total;
+    }
+
+    /**
+     * 分片写入后推进本节点的哈希进度
+     * 哈希失败不影响分片上传，完成会话时会从临时文件补算
+     */
+    private void updateHash(UploadSession session, long start, long end) {
+        HashProgress progress = hashProgress.computeIfAbsent(session.getId(), id -> new HashProgress());
+        synchronized (progress) {
+            try {
+                if (start < progress.hashedUpTo) {
+                    // 已计入哈希的字节被重新写入，从头计算
+                    progress.reset();
+                }
+                addRange(progress.ranges, start, end);
+                progress.advance(Path.of(session.getTempPath()));
+            } catch (IOException e) {
+                log.warn("增量计算内容哈希失败，完成上传时重新计算，会话ID：{}", session.getId(), e);
+                progress.reset();
+            }
+        }
+    }
+
+    /**
+     * 以数据库中记录的全部区间为准补算剩余部分，返回文件内容的 SHA-256
+     */
+    private String finishHash(UploadSession session, TreeMap<Long, Long> ranges) throws IOException {
+        HashProgress progress = hashProgress.computeIfAbsent(session.getId(), id -> new HashProgress());
+        synchronized (progress) {
+            progress.ranges.clear();
+            progress.ranges.putAll(ranges);
+            long resumedFrom = progress.hashedUpTo;
+            progress.advance(Path.of(session.getTempPath()));
+            if (progress.hashedUpTo != session.getFileSize()) {
+                throw new IllegalStateException("内容哈希未覆盖整个文件，会话ID：" + session.getId());
+            }
+            log.debug("内容哈希补算完成，会话ID：{}，增量部分：{} 字节，补算部分：{} 字节",
+                    session.getId(), resumedFrom, session.getFileSize() - resumedFrom);
+            return HexUtil.encodeHexStr(progress.digest.digest());
+        }
+    }
+
+    private static UploadSessionVO toVO(UploadSession session, TreeMap<Long, Long> ranges) {
+        List<long[]> receivedRanges = new ArrayList<>(ranges.size());
+        for (Map.Entry<Long, Long> range : ranges.entrySet()) {
+            receivedRanges.add(new long[]{range.getKey(), range.getValue()});
+        }
+
+        UploadSessionVO vo = new UploadSessionVO();
+        vo.setSessionId(session.getId());
+        vo.setFileName(session.getFileName());
+        vo.setFileSize(session.getFileSize());
+        vo.setStatus(session.getStatus());
+        vo.setReceivedBytes(totalLength(ranges));
+        vo.setReceivedRanges(receivedRanges);
+        vo.setDocumentId(session.getDocumentId());
+        return vo;
+    }
+
+    /**
+     * 单个会话的增量哈希进度：文件开头起连续到达的字节按顺序计入摘要
+     */
+    private static final class HashProgress {
+        private MessageDigest digest = newDigest();
+        private long hashedUpTo;
+        private final TreeMap<Long, Long> ranges = new TreeMap<>();
+
+        void reset() {
+            digest = newDigest();
+            hashedUpTo = 0;
+        }
+
+        /**
+         * 把从 hashedUpTo 起已连续到达的字节读入摘要
+         */
+        void advance(Path file) throws IOException {
+            Map.Entry<Long, Long> range = ranges.floorEntry(hashedUpTo);
+            if (range == null || range.getValue() <= hashedUpTo) {
+                return;
+            }
+            long end = range.getValue();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                ByteBuffer buffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+                while (hashedUpTo < end) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), end - hashedUpTo));
+                    int read = channel.read(buffer, hashedUpTo);
+                    if (read < 0) {
+                        throw new IOException("临时文件长度小于已接收的字节数");
+                    }
+                    digest.update(buffer.array(), 0, read);
+                    hashedUpTo += read;
+                }
+            }
+        }
+
+        private static MessageDigest newDigest() {
+            return DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.lang.UUID;
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.crypto.digest.DigestAlgorithm;
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.RagDocumentProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+/**
+ * 上传目录中的文件存储
+ * 普通上传、压缩包条目、分片上传和目录监听导入的文件都以 "UUID_原始文件名" 保存到上传目录；
+ * 写入的同时计算内容的 SHA-256，不需要再次读取文件
+ */
+@Component
+public class UploadStorage {
+
+    private static final Logger log = LoggerFactory.getLogger(UploadStorage.class);
+
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    private final RagDocumentProperties ragDocumentProperties;
+
+    public UploadStorage(RagDocumentProperties ragDocumentProperties) {
+        this.ragDocumentProperties = ragDocumentProperties;
+    }
+
+    /**
+     * 在上传目录中为文件分配唯一的保存路径，上传目录不存在时创建
+     *
+     * @param fileName 原始文件名
+     * @return 保存路径（绝对路径）
+     */
+    public Path newFilePath(String fileName) {
+        // 将相对路径转为绝对路径，避免 Tomcat 临时目录问题
+        File uploadDir = new File(ragDocumentProperties.getUploadDir()).getAbsoluteFile();
+        FileUtil.mkdir(uploadDir);
+        String uniqueFileName = UUID.randomUUID().toString(true) + "_" + fileName;
+        return Path.of(FileUtil.normalize(uploadDir.getPath() + File.separator + uniqueFileName));
+    }
+
+    /**
+     * 把输入流写入上传目录，写入的同时计算内容哈希（不关闭输入流）
+     *
+     * @param in 文件内容
+     * @param fileName 原始文件名
+     * @return 保存后的文件
+     * @throws IOException 读取或写入失败，已写入的部分被删除
+     */
+    public StoredFile store(InputStream in, String fileName) throws IOException {
+        return store(in, fileName, Long.MAX_VALUE);
+    }
+
+    /**
+     * 把输入流写入上传目录，写入的同时计算内容哈希（不关闭输入流）
+     * 写入字节数按实际读到的数据计算，超过 maxBytes 即停止
+     *
+     * @param in 文件内容
+     * @param fileName 原始文件名
+     * @param maxBytes 最大字节数
+     * @return 保存后的文件，超过 maxBytes 时删除已写入的部分并返回 null
+     * @throws IOException 读取或写入失败，已写入的部分被删除
+     */
+    public StoredFile store(InputStream in, String fileName, long maxBytes) throws IOException {
+        Path filePath = newFilePath(fileName);
+        MessageDigest digest = newDigest();
+        long written;
+        try (OutputStream out = Files.newOutputStream(filePath)) {
+            written = copy(in, out, digest, maxBytes);
+        } catch (IOException e) {
+            FileUtil.del(filePath);
+            throw e;
+        }
+        if (written > maxBytes) {
+            FileUtil.del(filePath);
+            return null;
+        }
+
+        String contentHash = HexUtil.encodeHexStr(digest.digest());
+        log.debug("文件保存成功：{}，内容哈希：{}", filePath, contentHash);
+        return new StoredFile(filePath.toString(), contentHash, written);
+    }
+
+    /**
+     * 计算文件内容哈希，不复制文件
+     *
+     * @param file 文件
+     * @return 内容的 SHA-256（十六进制）
+     * @throws IOException 读取失败
+     */
+    public String hash(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = Files.newInputStream(file)) {
+            copy(in, OutputStream.nullOutputStream(), digest, Long.MAX_VALUE);
+        }
+        return HexUtil.encodeHexStr(digest.digest());
+    }
+
+    /**
+     * 复制并计入摘要，超过 maxBytes 时停止（超出的那一段不写入）
+     *
+     * @return 读到的字节数，超过 maxBytes 时为大于 maxBytes 的值
+     */
+    private static long copy(InputStream in, OutputStream out, MessageDigest digest, long maxBytes) throws IOException {
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        long total = 0;
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            total += read;
+            if (total > maxBytes) {
+                break;
+            }
+            digest.update(buffer, 0, read);
+            out.write(buffer, 0, read);
+        }
+        return total;
+    }
+
+    private static MessageDigest newDigest() {
+        return DigestUtil.digester(DigestAlgorithm.SHA256).getDigest();
+    }
+
+    /**
+     * 已保存到上传目录的文件
+     */
+    public static final class StoredFile {
+        private final String path;
+        private final String contentHash;
+        private final long size;
+
+        private StoredFile(String path, String contentHash, long size) {
+            this.path = path;
+            this.contentHash = contentHash;
+            this.size = size;
+        }
+
+        /**
+         * 保存路径
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * 内容的 SHA-256（十六进制）
+         */
+        public String getContentHash() {
+            return contentHash;
+        }
+
+        /**
+         * 文件大小（字节）
+         */
+        public long getSize() {
+            return size;
+        }
+    }
+}
@@ -238,6 +238,93 @@ public class VectorStoreServiceImpl implements VectorStoreService {
         }
     }
 
+    @Override
+    public void deleteVectors(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return;
+        }
+
+        String collectionName = qdrantProperties.getCollectionName();
+        log.info("Deleting {} vector points from collection '{}'", ids.size(), collectionName);
+
+        try {
+            // POST /collections/{collection_name}/points/delete
+            // Body: {"points": ["uuid", ...]}
+            JSONObject requestBody = new JSONObject();
+            requestBody.set("points", ids);
+
+            String response = qdrantWebClient.post()
+                    .uri("/collections/{collection_name}/points/delete", collectionName)
+                    .bodyValue(requestBody.toString())
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+
+            log.info("Successfully deleted {} vector points from collection '{}'. Response: {}",
+                    ids.size(), collectionName, response);
+
+        } catch (WebClientResponseException e) {
+            log.error("Qdrant API error while deleting vectors: status={}, body={}",
+                    e.getStatusCode(), e.getResponseBodyAsString(), e);
+            throw new BusinessException(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "向量删除失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to delete {} vector points from collection '{}': {}",
+                    ids.size(), collectionName, e.getMessage(), e);
+            throw new BusinessException(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "向量删除失败: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void updatePayloads(Map<String, Map<String, Object>> payloads) {
+        if (payloads == null || payloads.isEmpty()) {
+            return;
+        }
+
+        String collectionName = qdrantProperties.getCollectionName();
+        log.info("Updating payload of {} vector points in collection '{}'", payloads.size(), collectionName);
+
+        try {
+            // POST /collections/{collection_name}/points/batch
+            // Body: {"operations": [{"set_payload": {"payload": {...}, "points": ["uuid"]}}, ...]}
+            JSONArray operations = new JSONArray();
+            for (Map.Entry<String, Map<String, Object>> entry : payloads.entrySet()) {
+                JSONObject setPayload = new JSONObject();
+                setPayload.set("payload", new JSONObject(entry.getValue()));
+                setPayload.set("points", new String[]{entry.getKey()});
+
+                JSONObject operation = new JSONObject();
+                operation.set("set_payload", setPayload);
+                operations.add(operation);
+            }
+
+            JSONObject requestBody = new JSONObject();
+            requestBody.set("operations", operations);
+
+            String response = qdrantWebClient.post()
+                    .uri("/collections/{collection_name}/points/batch", collectionName)
+                    .bodyValue(requestBody.toString())
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+
+            log.info("Successfully updated payload of {} vector points in collection '{}'. Response: {}",
+                    payloads.size(), collectionName, response);
+
+        } catch (WebClientResponseException e) {
+            log.error("Qdrant API error while updating payloads: status={}, body={}",
+                    e.getStatusCode(), e.getResponseBodyAsString(), e);
+            throw new BusinessException(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "向量元数据更新失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to update payload of {} vector points in collection '{}': {}",
+                    payloads.size(), collectionName, e.getMessage(), e);
+            throw new BusinessException(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "向量元数据更新失败: " + e.getMessage());
+        }
+    }
+
     @Override
     public void deleteByDocumentId(Long documentId) {
         if (documentId == null) {
@@ -290,4 +377,70 @@ public class VectorStoreServiceImpl implements VectorStoreService {
                     "按文档ID删除向量失败: " + e.getMessage());
         }
     }
+
+    @Override
+    public Map<String, float[]> getVectors(List<String> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        String collectionName = qdrantProperties.getCollectionName();
+        log.info("Retrieving {} vector points from collection '{}'", ids.size(), collectionName);
+
+        try {
+            // POST /collections/{collection_name}/points
+            // Body: {"ids": ["uuid", ...], "with_vector": true, "with_payload": false}
+            JSONObject requestBody = new JSONObject();
+            requestBody.set("ids", ids);
+            requestBody.set("with_vector", true);
+            requestBody.set("with_payload", false);
+
+            String response = qdrantWebClient.post()
+                    .uri("/collections/{collection_name}/points", collectionName)
+                    .bodyValue(requestBody.toString())
+                    .retrieve()
+                    .bodyToMono(String.class)
+                    .block();
+
+            if (response == null) {
+                log.warn("Empty response from Qdrant retrieve");
+                return Collections.emptyMap();
+            }
+
+            JSONArray resultArray = JSONUtil.parseObj(response).getJSONArray("result");
+            if (resultArray == null) {
+                return Collections.emptyMap();
+            }
+
+            Map<String, float[]> vectors = new HashMap<>(resultArray.size() * 2);
+            for (int i = 0; i < resultArray.size(); i++) {
+                JSONObject pointObj = resultArray.getJSONObject(i);
+                JSONArray vectorArray = pointObj.getJSONArray("vector");
+                if (vectorArray == null) {
+                    continue;
+                }
+
+                float[] vector = new float[vectorArray.size()];
+                for (int j = 0; j < vector.length; j++) {
+                    vector[j] = vectorArray.getFloat(j);
+                }
+                vectors.put(pointObj.getObj("id").toString(), vector);
+            }
+
+            log.info("Retrieved {} of {} vector points from collection '{}'",
+                    vectors.size(), ids.size(), collectionName);
+            return vectors;
+
+        } catch (WebClientResponseException e) {
+            log.error("Qdrant API error while retrieving vectors: status={}, body={}",
+                    e.getStatusCode(), e.getResponseBodyAsString(), e);
+            throw new BusinessException(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "向量读取失败: " + e.getMessage());
+        } catch (Exception e) {
+            log.error("Failed to retrieve vector points from collection '{}': {}",
+                    collectionName, e.getMessage(), e);
+            throw new BusinessException(HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    "向量读取失败: " + e.getMessage());
+        }
+    }
 }
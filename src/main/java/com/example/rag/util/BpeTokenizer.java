@@ -0,0 +1,512 @@
+package com.example.rag.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 进程内 BPE 分词器，与 OpenAI cl100k_base 编码兼容
+ * 词表为 tiktoken 格式（每行 "base64 编码的字节序列 rank"），从 classpath 的
+ * tokenizer/cl100k_base.tiktoken 加载
+ *
+ * 编码过程：
+ * 1. 按 cl100k_base 的预分词正则把文本切成片段
+ * 2. 每个片段转为 UTF-8 字节，反复合并 rank 最小的相邻字节对（rank 相同时取最左侧）；
+ *    短片段线性扫描缓存的 rank，长片段用最小堆维护合并顺序（O(n log n)）
+ *
+ * 实例不可变，可在多线程间共享
+ */
+public final class BpeTokenizer {
+
+    /**
+     * cl100k_base 词表在 classpath 中的位置
+     */
+    public static final String CL100K_BASE_RESOURCE = "tokenizer/cl100k_base.tiktoken";
+
+    /**
+     * cl100k_base 的预分词正则
+     */
+    private static final Pattern CL100K_BASE_PATTERN = Pattern.compile(
+            "(?i:'s|'t|'re|'ve|'m|'ll|'d)|[^\\r\\n\\p{L}\\p{N}]?\\p{L}+|\\p{N}{1,3}"
+                    + "| ?[^\\s\\p{L}\\p{N}]+[\\r\\n]*|\\s*[\\r\\n]+|\\s+(?!\\S)|\\s+",
+            Pattern.UNICODE_CHARACTER_CLASS);
+
+    /**
+     * 不超过该字节数的片段使用线性扫描合并，更长的片段使用最小堆
+     */
+    private static final int LINEAR_MERGE_LIMIT = 16;
+
+    private static volatile BpeTokenizer cl100kBase;
+
+    private final Pattern pattern;
+
+    /**
+     * 按 rank 索引的字节序列，用于解码
+     */
+    private final byte[][] tokensByRank;
+
+    /**
+     * 字节序列到 rank 的开放寻址哈希表，查找时直接比较字节数组的区间，不创建临时对象
+     */
+    private final byte[][] keys;
+    private final int[] keyHashes;
+    private final int[] ranks;
+    private final int tableMask;
+
+    /**
+     * 两字节 token 的 rank 直接按下标查找，不存在时为 -1
+     */
+    private final int[] twoByteRanks = new int[1 << 16];
+
+    private BpeTokenizer(byte[][] tokensByRank, Pattern pattern) {
+        this.pattern = pattern;
+        this.tokensByRank = tokensByRank;
+
+        int capacity = Integer.highestOneBit(Math.max(tokensByRank.length, 1) * 2 - 1) << 1;
+        this.keys = new byte[capacity][];
+        this.keyHashes = new int[capacity];
+        this.ranks = new int[capacity];
+        this.tableMask = capacity - 1;
+        for (int rank = 0; rank < tokensByRank.length; rank++) {
+            byte[] token = tokensByRank[rank];
+            if (token == null) {
+                continue;
+            }
+            int hash = hash(token, 0, token.length);
+            int slot = hash & tableMask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & tableMask;
+            }
+            keys[slot] = token;
+            keyHashes[slot] = hash;
+            ranks[slot] = rank;
+        }
+
+        Arrays.fill(twoByteRanks, -1);
+        for (int rank = 0; rank < tokensByRank.length; rank++) {
+            byte[] token = tokensByRank[rank];
+            if (token != null && token.length == 2) {
+                twoByteRanks[((token[0] & 0xFF) << 8) | (token[1] & 0xFF)] = rank;
+            }
+        }
+
+        for (int b = 0; b < 256; b++) {
+            if (rank(new byte[]{(byte) b}, 0, 1) < 0) {
+                throw new IllegalArgumentException("词表缺少单字节 token：" + b);
+            }
+        }
+    }
+
+    /**
+     * 获取 cl100k_base 分词器，首次调用时从 classpath 加载词表
+     *
+     * @return 分词器
+     * @throws IllegalStateException 词表文件不存在或格式错误
+     */
+    public static BpeTokenizer cl100kBase() {
+        BpeTokenizer tokenizer = cl100kBase;
+        if (tokenizer == null) {
+            synchronized (BpeTokenizer.class) {
+                tokenizer = cl100kBase;
+                if (tokenizer == null) {
+                    tokenizer = loadResource(CL100K_BASE_RESOURCE);
+                    cl100kBase = tokenizer;
+                }
+            }
+        }
+        return tokenizer;
+    }
+
+    private static BpeTokenizer loadResource(String resource) {
+        try (InputStream in = BpeTokenizer.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("未找到分词词表：classpath:" + resource);
+            }
+            return load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载分词词表失败：" + resource, e);
+        }
+    }
+
+    /**
+     * 从 tiktoken 格式的词表加载分词器，使用 cl100k_base 的预分词规则
+     *
+     * @param vocabulary 词表输入流（调用方负责关闭）
+     * @return 分词器
+     */
+    public static BpeTokenizer load(InputStream vocabulary) throws IOException {
+        List<byte[]> tokens = new ArrayList<>(100_000);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(vocabulary, StandardCharsets.US_ASCII));
+        Base64.Decoder decoder = Base64.getDecoder();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            int space = line.indexOf(' ');
+            if (space <= 0) {
+                throw new IllegalArgumentException("词表格式错误：" + line);
+            }
+            int rank = Integer.parseInt(line.substring(space + 1).trim());
+            while (tokens.size() <= rank) {
+                tokens.add(null);
+            }
+            tokens.set(rank, decoder.decode(line.substring(0, space)));
+        }
+        return new BpeTokenizer(tokens.toArray(new byte[0][]), CL100K_BASE_PATTERN);
+    }
+
+    /**
+     * 计算文本的 token 数
+     *
+     * @param text 文本内容
+     * @return token 数，空文本返回 0
+     */
+    public int countTokens(CharSequence text) {
+        return text == null ? 0 : countTokens(text, 0, text.length());
+    }
+
+    /**
+     * 计算文本指定区间的 token 数
+     *
+     * @param text  文本内容
+     * @param start 起始下标（包含）
+     * @param end   结束下标（不包含）
+     * @return token 数
+     */
+    public int countTokens(CharSequence text, int start, int end) {
+        Workspace workspace = new Workspace();
+        int count = 0;
+        Matcher matcher = pattern.matcher(text).region(start, end);
+        while (matcher.find()) {
+            int length = workspace.encodeUtf8(text, matcher.start(), matcher.end());
+            count += bytePairMerge(workspace, length);
+        }
+        return count;
+    }
+
+    /**
+     * 编码文本
+     *
+     * @param text 文本内容
+     * @return token rank 序列
+     */
+    public int[] encode(CharSequence text) {
+        int[] result = new int[Math.max(16, text.length())];
+        int size = 0;
+        Workspace workspace = new Workspace();
+        Matcher matcher = pattern.matcher(text);
+        while (matcher.find()) {
+            int length = workspace.encodeUtf8(text, matcher.start(), matcher.end());
+            int parts = bytePairMerge(workspace, length);
+            for (int i = 0; i < parts; i++) {
+                if (size == result.length) {
+                    result = Arrays.copyOf(result, size * 2);
+                }
+                result[size++] = rank(workspace.bytes, workspace.starts[i], workspace.starts[i + 1]);
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * 解码 token 序列
+     *
+     * @param tokens token rank 序列
+     * @return 文本内容
+     */
+    public String decode(int[] tokens) {
+        int length = 0;
+        for (int token : tokens) {
+            length += tokenBytes(token).length;
+        }
+        byte[] bytes = new byte[length];
+        int offset = 0;
+        for (int token : tokens) {
+            byte[] piece = tokenBytes(token);
+            System.arraycopy(piece, 0, bytes, offset, piece.length);
+            offset += piece.length;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 预分词正则，供按小段计数的分块器使用
+     */
+    Pattern pattern() {
+        return pattern;
+    }
+
+    /**
+     * 对一个片段的字节执行 BPE 合并，合并结果写入 workspace.starts：
+     * 第 i 个 token 为 [starts[i], starts[i + 1])
+     *
+     * @return token 数
+     */
+    private int bytePairMerge(Workspace workspace, int length) {
+        int[] starts = workspace.starts;
+        if (length == 1 || rank(workspace.bytes, 0, length) >= 0) {
+            starts[0] = 0;
+            starts[1] = length;
+            return 1;
+        }
+        return length <= LINEAR_MERGE_LIMIT
+                ? linearMerge(workspace, length)
+                : heapMerge(workspace, length);
+    }
+
+    /**
+     * 短片段：缓存相邻 token 对的 rank，每轮线性扫描最小值，合并后只重算两侧的 rank
+     */
+    private int linearMerge(Workspace workspace, int length) {
+        byte[] bytes = workspace.bytes;
+        int[] starts = workspace.starts;
+        int[] pairRanks = workspace.pairRanks;
+        for (int i = 0; i <= length; i++) {
+            starts[i] = i;
+        }
+        for (int i = 0; i + 1 < length; i++) {
+            pairRanks[i] = rankOrMax(bytes, i, i + 2);
+        }
+
+        int parts = length;
+        while (parts > 1) {
+            int best = Integer.MAX_VALUE;
+            int at = -1;
+            for (int i = 0; i + 1 < parts; i++) {
+                if (pairRanks[i] < best) {
+                    best = pairRanks[i];
+                    at = i;
+                }
+            }
+            if (at < 0) {
+                break;
+            }
+
+            // 删除第 at + 1 个 token 的起点，其后的 token 对整体前移
+            System.arraycopy(starts, at + 2, starts, at + 1, parts - at - 1);
+            if (parts - at - 3 > 0) {
+                System.arraycopy(pairRanks, at + 2, pairRanks, at + 1, parts - at - 3);
+            }
+            parts--;
+            if (at + 1 < parts) {
+                pairRanks[at] = rankOrMax(bytes, starts[at], starts[at + 2]);
+            }
+            if (at > 0) {
+                pairRanks[at - 1] = rankOrMax(bytes, starts[at - 1], starts[at + 1]);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * 长片段：相邻 token 对按 rank 放入最小堆，失效的元素在出堆时跳过
+     */
+    private int heapMerge(Workspace workspace, int length) {
+        byte[] bytes = workspace.bytes;
+        int[] end = workspace.ends;
+        int[] prev = workspace.prevs;
+        // 堆元素为 (rank << 32 | 左侧 token 起点)，rank 相同时左侧优先
+        long[] heap = workspace.heap;
+        int heapSize = 0;
+        for (int i = 0; i < length; i++) {
+            end[i] = i + 1;
+            prev[i] = i - 1;
+        }
+        for (int i = 0; i + 1 < length; i++) {
+            int rank = rank(bytes, i, i + 2);
+            if (rank >= 0) {
+                heapSize = push(heap, heapSize, pair(rank, i));
+            }
+        }
+
+        while (heapSize > 0) {
+            long top = heap[0];
+            heapSize = pop(heap, heapSize);
+            int rank = (int) (top >>> 32);
+            int left = (int) top;
+
+            // 跳过已失效的元素：左侧 token 已被合并，或相邻 token 已发生变化
+            if (end[left] < 0 || end[left] >= length) {
+                continue;
+            }
+            int right = end[left];
+            int merged = end[right];
+            if (rank(bytes, left, merged) != rank) {
+                continue;
+            }
+
+            end[left] = merged;
+            end[right] = -1;
+            if (merged < length) {
+                prev[merged] = left;
+                int next = rank(bytes, left, end[merged]);
+                if (next >= 0) {
+                    heapSize = push(heap, heapSize, pair(next, left));
+                }
+            }
+            int before = prev[left];
+            if (before >= 0) {
+                int next = rank(bytes, before, merged);
+                if (next >= 0) {
+                    heapSize = push(heap, heapSize, pair(next, before));
+                }
+            }
+        }
+
+        int[] starts = workspace.starts;
+        int parts = 0;
+        for (int i = 0; i < length; i = end[i]) {
+            starts[parts++] = i;
+        }
+        starts[parts] = length;
+        return parts;
+    }
+
+    private int rankOrMax(byte[] bytes, int from, int to) {
+        int rank = rank(bytes, from, to);
+        return rank >= 0 ? rank : Integer.MAX_VALUE;
+    }
+
+    private int rank(byte[] bytes, int from, int to) {
+        int length = to - from;
+        if (length == 2) {
+            return twoByteRanks[((bytes[from] & 0xFF) << 8) | (bytes[from + 1] & 0xFF)];
+        }
+        int hash = hash(bytes, from, to);
+        int slot = hash & tableMask;
+        byte[] key;
+        while ((key = keys[slot]) != null) {
+            if (keyHashes[slot] == hash && key.length == length && Arrays.equals(key, 0, length, bytes, from, to)) {
+                return ranks[slot];
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        return -1;
+    }
+
+    private byte[] tokenBytes(int token) {
+        if (token < 0 || token >= tokensByRank.length || tokensByRank[token] == null) {
+            throw new IllegalArgumentException("未知的 token：" + token);
+        }
+        return tokensByRank[token];
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int h = 0x811C9DC5;
+        for (int i = from; i < to; i++) {
+            h = (h ^ (bytes[i] & 0xFF)) * 0x01000193;
+        }
+        // 混合高位，避免线性探测时形成长聚集
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private static long pair(int rank, int left) {
+        return ((long) rank << 32) | left;
+    }
+
+    private static int push(long[] heap, int size, long value) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = value;
+        return size + 1;
+    }
+
+    private static int pop(long[] heap, int size) {
+        long last = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= last) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return size;
+    }
+
+    /**
+     * 单次编码过程复用的缓冲区
+     */
+    private static final class Workspace {
+
+        private static final int INITIAL_CAPACITY = 256;
+
+        private byte[] bytes = new byte[INITIAL_CAPACITY];
+        private int[] starts = new int[INITIAL_CAPACITY + 1];
+        private final int[] pairRanks = new int[LINEAR_MERGE_LIMIT];
+        private int[] ends = new int[INITIAL_CAPACITY];
+        private int[] prevs = new int[INITIAL_CAPACITY];
+        private long[] heap = new long[INITIAL_CAPACITY * 3];
+
+        /**
+         * 把文本区间按 UTF-8 编码写入 bytes，不成对的代理字符写为 '?'（与 String#getBytes 一致）
+         *
+         * @return 字节数
+         */
+        private int encodeUtf8(CharSequence text, int start, int end) {
+            int capacity = (end - start) * 3;
+            if (bytes.length < capacity) {
+                bytes = new byte[capacity];
+                starts = new int[capacity + 1];
+                ends = new int[capacity];
+                prevs = new int[capacity];
+                heap = new long[capacity * 3];
+            }
+            byte[] out = bytes;
+            int n = 0;
+            for (int i = start; i < end; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    out[n++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[n++] = (byte) (0xC0 | (c >> 6));
+                    out[n++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                        out[n++] = (byte) (0xF0 | (codePoint >> 18));
+                        out[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                        out[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                        out[n++] = (byte) (0x80 | (codePoint & 0x3F));
+                    } else {
+                        out[n++] = '?';
+                    }
+                } else {
+                    out[n++] = (byte) (0xE0 | (c >> 12));
+                    out[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[n++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.rag.util;
+
+/**
+ * 片段大小的计量单位
+ * 通过 rag.document.chunk-size-unit 配置（characters / tokens）
+ */
+public enum ChunkSizeUnit {
+
+    /**
+     * 按字符数计量
+     */
+    CHARACTERS,
+
+    /**
+     * 按 cl100k_base 编码的 token 数计量，需要 classpath 中存在分词词表
+     */
+    TOKENS
+}
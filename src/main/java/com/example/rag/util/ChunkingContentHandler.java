@@ -0,0 +1,71 @@
+package com.example.rag.util;
+
+import cn.hutool.core.util.CharUtil;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * 边解析边分块的 SAX 内容处理器
+ * 接收 Tika 解析出的字符流，就地去除空白字符（与 StrUtil.cleanBlank 规则一致），
+ * 并直接写入分块器，避免在内存中拼接完整文档文本；换行位置通过 lineBreak 告知分块器
+ */
+public class ChunkingContentHandler extends DefaultHandler {
+
+    private final TextChunker chunker;
+
+    /**
+     * 复用的缓冲区，存放去除空白后的字符
+     */
+    private char[] buffer = new char[1024];
+
+    private long charCount;
+
+    public ChunkingContentHandler(TextChunker chunker) {
+        this.chunker = chunker;
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (buffer.length < length) {
+            buffer = new char[length];
+        }
+
+        int kept = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = ch[i];
+            if (c == '\n') {
+                // 换行处先写入已缓存的字符，再通知分块器
+                flush(kept);
+                kept = 0;
+                chunker.lineBreak();
+            } else if (!CharUtil.isBlankChar(c)) {
+                buffer[kept++] = c;
+            }
+        }
+        flush(kept);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) {
+        // 空白字符全部丢弃，只保留换行位置
+        for (int i = start; i < start + length; i++) {
+            if (ch[i] == '\n') {
+                chunker.lineBreak();
+                return;
+            }
+        }
+    }
+
+    private void flush(int kept) {
+        if (kept > 0) {
+            chunker.append(buffer, 0, kept);
+            charCount += kept;
+        }
+    }
+
+    /**
+     * 已写入分块器的字符数（去除空白后）
+     */
+    public long getCharCount() {
+        return charCount;
+    }
+}
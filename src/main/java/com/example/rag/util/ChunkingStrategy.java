@@ -0,0 +1,51 @@
+package com.example.rag.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 分块策略
+ * 通过 rag.document.chunking-strategy 配置（fixed / sentence / content_defined）
+ */
+public enum ChunkingStrategy {
+
+    /**
+     * 固定长度分块，与 DocumentProcessor#splitDocument 结果一致
+     */
+    FIXED {
+        @Override
+        public TextChunker create(int chunkSize, int overlap, int boundaryTolerance, Consumer<String> chunkConsumer) {
+            return new IncrementalChunker(chunkSize, overlap, chunkConsumer);
+        }
+    },
+
+    /**
+     * 句子与结构感知分块：边界对齐到句末标点和章节标题
+     */
+    SENTENCE {
+        @Override
+        public TextChunker create(int chunkSize, int overlap, int boundaryTolerance, Consumer<String> chunkConsumer) {
+            return new SentenceAwareChunker(chunkSize, overlap, boundaryTolerance, chunkConsumer);
+        }
+    },
+
+    /**
+     * 基于内容的分块：边界由内容决定，文档修改后未变化的片段保持不变（不使用重叠）
+     */
+    CONTENT_DEFINED {
+        @Override
+        public TextChunker create(int chunkSize, int overlap, int boundaryTolerance, Consumer<String> chunkConsumer) {
+            return new ContentDefinedChunker(chunkSize, chunkConsumer);
+        }
+    };
+
+    /**
+     * 创建分块器
+     *
+     * @param chunkSize         片段大小（字符数）
+     * @param overlap           片段之间的重叠大小（字符数）
+     * @param boundaryTolerance 边界对齐时向前寻找的最大距离（字符数）
+     * @param chunkConsumer     片段接收者
+     * @return 分块器
+     */
+    public abstract TextChunker create(int chunkSize, int overlap, int boundaryTolerance, Consumer<String> chunkConsumer);
+}
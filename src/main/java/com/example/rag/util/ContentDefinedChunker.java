@@ -0,0 +1,111 @@
+package com.example.rag.util;
+
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+
+/**
+ * 基于内容的分块器（Gear 滚动哈希）
+ * 片段边界由边界附近的文本内容决定，而不是由距文档开头的字符偏移决定：
+ * 文档中间插入或删除一段文字后，只有附近的一两个片段发生变化，
+ * 其余片段的内容（及其哈希）保持不变，可用于文档更新时的增量向量化
+ *
+ * 规则：
+ * - 片段长度达到最小长度后，滚动哈希的高位全为 0 时切分
+ * - 片段长度达到最大长度时强制切分
+ * - 片段之间不重叠，避免一个片段的修改影响相邻片段的内容
+ */
+public class ContentDefinedChunker implements TextChunker {
+
+    /**
+     * Gear 哈希表，使用固定种子生成，保证不同进程、不同版本之间的切分结果一致
+     */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6A09E667F3BCC908L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int maxSize;
+    private final long mask;
+    private final Consumer<String> chunkConsumer;
+
+    private final StringBuilder window;
+    private long hash;
+    private int chunkCount;
+
+    /**
+     * 以目标片段大小构造：最小长度为目标的 1/4，最大长度为目标的 2 倍
+     *
+     * @param chunkSize     目标片段大小（字符数）
+     * @param chunkConsumer 片段接收者
+     */
+    public ContentDefinedChunker(int chunkSize, Consumer<String> chunkConsumer) {
+        this(Math.max(1, chunkSize / 4), chunkSize, chunkSize * 2, chunkConsumer);
+    }
+
+    /**
+     * @param minSize       最小片段长度（字符数）
+     * @param avgSize       平均片段长度（字符数）
+     * @param maxSize       最大片段长度（字符数）
+     * @param chunkConsumer 片段接收者
+     */
+    public ContentDefinedChunker(int minSize, int avgSize, int maxSize, Consumer<String> chunkConsumer) {
+        if (minSize <= 0) {
+            throw new IllegalArgumentException("片段大小必须大于 0");
+        }
+        if (avgSize <= minSize || maxSize < avgSize) {
+            throw new IllegalArgumentException("片段大小参数必须满足 最小长度 < 平均长度 <= 最大长度");
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        // 超过最小长度后每个位置以 1/(avg-min) 的概率切分，期望长度约为 avg
+        int bits = Math.max(1, (int) Math.round(Math.log(avgSize - minSize) / Math.log(2)));
+        this.mask = -1L << (64 - bits);
+        this.chunkConsumer = chunkConsumer;
+        this.window = new StringBuilder(avgSize);
+    }
+
+    @Override
+    public void append(char[] chars, int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            char c = chars[i];
+            window.append(c);
+            hash = (hash << 1) + GEAR[(c ^ (c >>> 8)) & 0xFF];
+
+            int size = window.length();
+            if (size >= maxSize || (size >= minSize && (hash & mask) == 0)) {
+                emit();
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        if (window.length() > 0) {
+            emit();
+        }
+    }
+
+    @Override
+    public void emitChunk(String chunk) {
+        flush();
+        chunkConsumer.accept(chunk);
+        chunkCount++;
+    }
+
+    @Override
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    private void emit() {
+        chunkConsumer.accept(window.toString());
+        chunkCount++;
+        window.setLength(0);
+        hash = 0;
+    }
+}
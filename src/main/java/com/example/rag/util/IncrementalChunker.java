@@ -0,0 +1,119 @@
+package com.example.rag.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 增量式固定大小分块器
+ * 逐段接收文本，每凑满一个片段就立即交给下游，只在内存中保留不超过一个片段的字符
+ *
+ * 输出与 DocumentProcessor#splitDocument 对同一完整文本的分割结果完全一致：
+ * 片段起点依次为 0, step, 2*step, ...（step = chunkSize - overlap），
+ * 最后一个起点之后的剩余文本作为末尾片段
+ */
+public class IncrementalChunker implements TextChunker {
+
+    private final int chunkSize;
+    private final int step;
+    private final Consumer<String> chunkConsumer;
+
+    /**
+     * 当前片段起点开始的待输出字符
+     */
+    private final StringBuilder window;
+
+    private int chunkCount;
+
+    /**
+     * @param chunkSize     片段大小（字符数）
+     * @param overlap       片段之间的重叠大小（字符数）
+     * @param chunkConsumer 片段接收者
+     */
+    public IncrementalChunker(int chunkSize, int overlap, Consumer<String> chunkConsumer) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("片段大小必须大于 0");
+        }
+        if (overlap < 0) {
+            throw new IllegalArgumentException("重叠大小不能为负数");
+        }
+        if (overlap >= chunkSize) {
+            throw new IllegalArgumentException("重叠大小必须小于片段大小");
+        }
+        this.chunkSize = chunkSize;
+        this.step = chunkSize - overlap;
+        this.chunkConsumer = chunkConsumer;
+        this.window = new StringBuilder(chunkSize);
+    }
+
+    /**
+     * 追加单个字符
+     *
+     * @param c 字符
+     */
+    public void append(char c) {
+        window.append(c);
+        if (window.length() == chunkSize) {
+            emitFullChunk();
+        }
+    }
+
+    /**
+     * 追加字符数组中的一段
+     *
+     * @param chars  字符数组
+     * @param start  起始位置
+     * @param length 长度
+     */
+    @Override
+    public void append(char[] chars, int start, int length) {
+        int end = start + length;
+        int pos = start;
+        while (pos < end) {
+            int n = Math.min(end - pos, chunkSize - window.length());
+            window.append(chars, pos, n);
+            pos += n;
+            if (window.length() == chunkSize) {
+                emitFullChunk();
+            }
+        }
+    }
+
+    /**
+     * 输出剩余文本，之后的文本开始新的片段
+     */
+    @Override
+    public void flush() {
+        // 与一次性分割保持一致：每个小于文本长度的起点都输出一个（不足一个片段长度的）片段
+        while (window.length() > 0) {
+            chunkConsumer.accept(window.toString());
+            chunkCount++;
+            window.delete(0, Math.min(step, window.length()));
+        }
+    }
+
+    /**
+     * 先输出剩余文本，再把 chunk 作为一个完整片段输出
+     *
+     * @param chunk 片段文本
+     */
+    @Override
+    public void emitChunk(String chunk) {
+        flush();
+        chunkConsumer.accept(chunk);
+        chunkCount++;
+    }
+
+    /**
+     * 已输出的片段数量
+     */
+    @Override
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    private void emitFullChunk() {
+        chunkConsumer.accept(window.toString());
+        chunkCount++;
+        // 保留重叠部分作为下一个片段的开头
+        window.delete(0, step);
+    }
+}
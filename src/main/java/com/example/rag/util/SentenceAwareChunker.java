@@ -0,0 +1,271 @@
+package com.example.rag.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 句子与结构感知的分块器
+ * 窗口凑满一个片段时，在容差范围内向前寻找更合适的切分位置：
+ * 1. 章节起点（Markdown 标题、"第X章/节/条"）所在行的行首，切分后不带重叠
+ * 2. 句末标点（。！？；.!?）及其后的右引号、右括号之后
+ * 3. 都没有时退回到固定长度切分
+ * 重叠部分同样从句子起点开始，避免片段以半句话开头
+ *
+ * 边界判断直接在窗口（CharSequence）上按下标扫描，不创建中间子串，
+ * 每个片段只在输出时复制一次
+ */
+public class SentenceAwareChunker implements TextChunker {
+
+    private static final String SENTENCE_ENDINGS = "。！？；.!?";
+
+    private static final String CLOSING_MARKS = "”’」』）)】》\"'";
+
+    private static final String SECTION_NUMERALS = "零一二三四五六七八九十百千〇0123456789";
+
+    private static final String SECTION_UNITS = "编章节条";
+
+    /**
+     * "第" 与章节单位之间最多允许的数字个数
+     */
+    private static final int MAX_SECTION_NUMERALS = 8;
+
+    private final int chunkSize;
+    private final int overlap;
+    private final int tolerance;
+    private final Consumer<String> chunkConsumer;
+
+    private final StringBuilder window;
+
+    /**
+     * 窗口内各行行首的下标（升序）
+     */
+    private int[] lineStarts = new int[16];
+    private int lineStartCount;
+
+    /**
+     * 窗口开头从上一个片段带过来的重叠字符数
+     */
+    private int carried;
+
+    private int chunkCount;
+
+    /**
+     * @param chunkSize     片段大小上限（字符数）
+     * @param overlap       片段之间的重叠大小上限（字符数）
+     * @param tolerance     向前寻找切分位置的最大距离（字符数），不超过 (chunkSize - overlap) / 2
+     * @param chunkConsumer 片段接收者
+     */
+    public SentenceAwareChunker(int chunkSize, int overlap, int tolerance, Consumer<String> chunkConsumer) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("片段大小必须大于 0");
+        }
+        if (overlap < 0) {
+            throw new IllegalArgumentException("重叠大小不能为负数");
+        }
+        if (overlap >= chunkSize) {
+            throw new IllegalArgumentException("重叠大小必须小于片段大小");
+        }
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("边界容差不能为负数");
+        }
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+        this.tolerance = Math.min(tolerance, (chunkSize - overlap) / 2);
+        this.chunkConsumer = chunkConsumer;
+        this.window = new StringBuilder(chunkSize);
+    }
+
+    @Override
+    public void append(char[] chars, int start, int length) {
+        int end = start + length;
+        int pos = start;
+        while (pos < end) {
+            int n = Math.min(end - pos, chunkSize - window.length());
+            window.append(chars, pos, n);
+            pos += n;
+            if (window.length() == chunkSize) {
+                cut();
+            }
+        }
+    }
+
+    @Override
+    public void lineBreak() {
+        int position = window.length();
+        if (lineStartCount > 0 && lineStarts[lineStartCount - 1] == position) {
+            return;
+        }
+        if (lineStartCount == lineStarts.length) {
+            int[] grown = new int[lineStarts.length * 2];
+            System.arraycopy(lineStarts, 0, grown, 0, lineStartCount);
+            lineStarts = grown;
+        }
+        lineStarts[lineStartCount++] = position;
+    }
+
+    @Override
+    public void flush() {
+        // 只剩上一个片段的重叠部分时不再输出
+        if (window.length() > carried) {
+            chunkConsumer.accept(window.toString());
+            chunkCount++;
+        }
+        window.setLength(0);
+        lineStartCount = 0;
+        carried = 0;
+    }
+
+    @Override
+    public void emitChunk(String chunk) {
+        flush();
+        chunkConsumer.accept(chunk);
+        chunkCount++;
+    }
+
+    @Override
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    private void cut() {
+        int limit = window.length();
+        int floor = Math.max(carried + 1, limit - tolerance);
+
+        int cut = findSectionStart(floor, limit);
+        boolean atSection = cut > 0;
+        if (!atSection) {
+            cut = findSentenceEnd(floor, limit);
+        }
+        if (cut <= 0) {
+            cut = limit;
+        }
+
+        chunkConsumer.accept(window.substring(0, cut));
+        chunkCount++;
+
+        int keepFrom = atSection ? cut : overlapStart(cut);
+        window.delete(0, keepFrom);
+        carried = cut - keepFrom;
+        shiftLineStarts(keepFrom);
+    }
+
+    /**
+     * 在 [floor, limit) 内寻找最靠后的章节起点，紧邻的多个章节起点取最前一个
+     *
+     * @return 章节起点下标，没有时返回 -1
+     */
+    private int findSectionStart(int floor, int limit) {
+        for (int i = lineStartCount - 1; i >= 0; i--) {
+            int position = lineStarts[i];
+            if (position >= limit) {
+                continue;
+            }
+            if (position < floor) {
+                break;
+            }
+            if (isSectionStart(window, position)) {
+                // 连续的章节起点（如章标题后紧跟条文）保留在同一片段中
+                while (i > 0 && lineStarts[i - 1] >= floor && isSectionStart(window, lineStarts[i - 1])) {
+                    i--;
+                }
+                return lineStarts[i];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在 [floor, limit] 内寻找最靠后的句子结束位置
+     *
+     * @return 句末标点（及其后的右引号、右括号）之后的下标，没有时返回 -1
+     */
+    private int findSentenceEnd(int floor, int limit) {
+        for (int i = limit - 1; i >= floor - 1 && i >= 0; i--) {
+            if (isSentenceEnd(window, i)) {
+                return skipClosingMarks(i + 1, limit);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 下一个片段的起点：重叠范围内第一个句子的起点，没有时取 cut - overlap
+     */
+    private int overlapStart(int cut) {
+        int from = Math.max(0, cut - overlap);
+        for (int i = from; i < cut - 1; i++) {
+            if (isSentenceEnd(window, i)) {
+                int start = skipClosingMarks(i + 1, cut);
+                return start < cut ? start : from;
+            }
+        }
+        return from;
+    }
+
+    private int skipClosingMarks(int position, int limit) {
+        while (position < limit && isClosingMark(window.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private void shiftLineStarts(int removed) {
+        int kept = 0;
+        for (int i = 0; i < lineStartCount; i++) {
+            int shifted = lineStarts[i] - removed;
+            if (shifted >= 0) {
+                lineStarts[kept++] = shifted;
+            }
+        }
+        lineStartCount = kept;
+    }
+
+    /**
+     * 判断下标处的字符是否为句末标点
+     * 两侧都是数字的 "." 视为小数点
+     */
+    static boolean isSentenceEnd(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (SENTENCE_ENDINGS.indexOf(c) < 0) {
+            return false;
+        }
+        if (c == '.' && index > 0 && Character.isDigit(text.charAt(index - 1))) {
+            return index + 1 < text.length() && !Character.isDigit(text.charAt(index + 1));
+        }
+        return true;
+    }
+
+    /**
+     * 判断 end 之前是否为一个句子的结尾（句末标点及其后的右引号、右括号）
+     */
+    static boolean endsSentence(CharSequence text, int end) {
+        int i = end - 1;
+        while (i >= 0 && isClosingMark(text.charAt(i))) {
+            i--;
+        }
+        return i >= 0 && isSentenceEnd(text, i);
+    }
+
+    static boolean isClosingMark(char c) {
+        return CLOSING_MARKS.indexOf(c) >= 0;
+    }
+
+    /**
+     * 判断行首是否为章节起点：Markdown 标题或 "第X编/章/节/条"
+     */
+    static boolean isSectionStart(CharSequence text, int index) {
+        char c = text.charAt(index);
+        if (c == '#') {
+            return true;
+        }
+        if (c != '第') {
+            return false;
+        }
+
+        int end = Math.min(text.length(), index + 1 + MAX_SECTION_NUMERALS);
+        int i = index + 1;
+        while (i < end && SECTION_NUMERALS.indexOf(text.charAt(i)) >= 0) {
+            i++;
+        }
+        return i > index + 1 && i < text.length() && SECTION_UNITS.indexOf(text.charAt(i)) >= 0;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.rag.util;
+
+/**
+ * 增量分块器
+ * 逐段接收文本，凑满一个片段就交给下游，输入结束时调用 finish 输出剩余文本
+ */
+public interface TextChunker {
+
+    /**
+     * 追加字符数组中的一段
+     *
+     * @param chars  字符数组
+     * @param start  起始位置
+     * @param length 长度
+     */
+    void append(char[] chars, int start, int length);
+
+    /**
+     * 通知分块器此处为换行（换行符本身不写入片段），用于识别行首的章节标题
+     * 不关心文档结构的分块器忽略即可
+     */
+    default void lineBreak() {
+    }
+
+    /**
+     * 在此处结束当前片段：输出缓冲中尚未输出的文本，分块器回到初始状态，
+     * 之后追加的文本开始新的片段，不带上一个片段的重叠。可以在输入中途多次调用
+     */
+    void flush();
+
+    /**
+     * 输出一个由调用方划定边界的完整片段（如表格的一组行），不与前后文本合并，也不带重叠
+     * 之前追加但尚未输出的文本先按 flush 的规则输出
+     *
+     * @param chunk 片段文本
+     */
+    void emitChunk(String chunk);
+
+    /**
+     * 输入结束，输出剩余文本（与 flush 相同，调用后不再追加文本）
+     */
+    default void finish() {
+        flush();
+    }
+
+    /**
+     * 已输出的片段数量
+     */
+    int getChunkCount();
+}
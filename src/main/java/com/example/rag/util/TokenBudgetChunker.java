@@ -0,0 +1,323 @@
+package com.example.rag.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+/**
+ * 按 token 预算分块的分块器
+ * 片段大小、重叠大小和边界容差均以 token 计，token 数由 BpeTokenizer 计算
+ *
+ * 文本按预分词规则切成小段后逐段计数，片段只在小段之间切分；
+ * 切分位置的选择与 SentenceAwareChunker 相同：容差范围内优先章节起点，其次句子结尾，
+ * 容差为 0 时直接在预算用满处切分
+ *
+ * 句末标点会与后一个词合成一个小段（如 "。第二句"），计数前先把这类标点拆成单独的小段，
+ * 超过单个片段预算的小段按字符拆开；因此片段的计数可能比整段编码多出个别 token，不会少
+ */
+public class TokenBudgetChunker implements TextChunker {
+
+    private final BpeTokenizer tokenizer;
+    private final int chunkSize;
+    private final int overlap;
+    private final int tolerance;
+    private final int maxPieceTokens;
+    private final Consumer<String> chunkConsumer;
+
+    private final StringBuilder window = new StringBuilder();
+    private final Matcher matcher;
+
+    /**
+     * 窗口内已计数的小段：pieceEnds[k] 为第 k 段的结束下标，tokenTotals[k] 为前 k+1 段的 token 总数
+     */
+    private int[] pieceEnds = new int[64];
+    private int[] tokenTotals = new int[64];
+    private int pieceCount;
+
+    /**
+     * 窗口中已切成小段的字符数，之后的字符要等后续输入才能确定小段边界
+     */
+    private int settled;
+
+    /**
+     * 窗口开头从上一个片段带过来的小段数
+     */
+    private int carriedPieces;
+
+    private int[] lineStarts = new int[16];
+    private int lineStartCount;
+
+    private int chunkCount;
+
+    /**
+     * @param tokenizer     分词器
+     * @param chunkSize     片段大小上限（token 数）
+     * @param overlap       片段之间的重叠大小上限（token 数）
+     * @param tolerance     向前寻找切分位置的最大距离（token 数），不超过 (chunkSize - overlap) / 2
+     * @param chunkConsumer 片段接收者
+     */
+    public TokenBudgetChunker(BpeTokenizer tokenizer, int chunkSize, int overlap, int tolerance,
+                              Consumer<String> chunkConsumer) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("片段大小必须大于 0");
+        }
+        if (overlap < 0) {
+            throw new IllegalArgumentException("重叠大小不能为负数");
+        }
+        if (overlap >= chunkSize) {
+            throw new IllegalArgumentException("重叠大小必须小于片段大小");
+        }
+        if (tolerance < 0) {
+            throw new IllegalArgumentException("边界容差不能为负数");
+        }
+        this.tokenizer = tokenizer;
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+        this.tolerance = Math.min(tolerance, (chunkSize - overlap) / 2);
+        // 保证带着重叠部分的窗口至少还能放下一个完整的小段
+        this.maxPieceTokens = chunkSize - overlap;
+        this.chunkConsumer = chunkConsumer;
+        this.matcher = tokenizer.pattern().matcher(window);
+    }
+
+    @Override
+    public void append(char[] chars, int start, int length) {
+        window.append(chars, start, length);
+        settle(false);
+    }
+
+    @Override
+    public void lineBreak() {
+        int position = window.length();
+        if (lineStartCount > 0 && lineStarts[lineStartCount - 1] == position) {
+            return;
+        }
+        if (lineStartCount == lineStarts.length) {
+            lineStarts = Arrays.copyOf(lineStarts, lineStarts.length * 2);
+        }
+        lineStarts[lineStartCount++] = position;
+    }
+
+    @Override
+    public void flush() {
+        settle(true);
+        if (pieceCount > carriedPieces) {
+            chunkConsumer.accept(window.toString());
+            chunkCount++;
+        }
+        window.setLength(0);
+        pieceCount = 0;
+        settled = 0;
+        carriedPieces = 0;
+        lineStartCount = 0;
+    }
+
+    @Override
+    public void emitChunk(String chunk) {
+        flush();
+        chunkConsumer.accept(chunk);
+        chunkCount++;
+    }
+
+    @Override
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * 把窗口中新增的文本切成小段并计数，超出预算时切分
+     *
+     * @param last 是否已无后续输入；否则以窗口末尾结束的小段可能还会变长，暂不计数
+     */
+    private void settle(boolean last) {
+        while (true) {
+            matcher.region(settled, window.length());
+            if (!matcher.find()) {
+                return;
+            }
+            int start = matcher.start();
+            int end = matcher.end();
+            if (!last && end == window.length()) {
+                return;
+            }
+            // 原文中换行处本就是小段边界，去除空白后要在行首处截断
+            addPiece(start, Math.min(end, nextLineStart(start)));
+            while (totalTokens() > chunkSize) {
+                cut();
+            }
+        }
+    }
+
+    private void addPiece(int start, int end) {
+        // 句末标点与后面的词合成一段时拆开，使句子结尾成为可切分的位置
+        char first = window.charAt(start);
+        if (end - start > 1 && !Character.isLetterOrDigit(first)
+                && (SentenceAwareChunker.isSentenceEnd(window, start) || SentenceAwareChunker.isClosingMark(first))) {
+            pushPiece(start + 1, tokenizer.countTokens(window, start, start + 1));
+            start++;
+        }
+
+        int tokens = tokenizer.countTokens(window, start, end);
+        while (tokens > maxPieceTokens) {
+            // 单个小段超出预算：按字符二分查找不超过预算的最长前缀
+            int low = start + 1;
+            int high = end - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (tokenizer.countTokens(window, start, mid) <= maxPieceTokens) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            if (Character.isHighSurrogate(window.charAt(low - 1)) && low - 1 > start) {
+                low--;
+            }
+            pushPiece(low, tokenizer.countTokens(window, start, low));
+            start = low;
+            tokens = tokenizer.countTokens(window, start, end);
+        }
+        pushPiece(end, tokens);
+        settled = end;
+    }
+
+    private void pushPiece(int end, int tokens) {
+        if (pieceCount == pieceEnds.length) {
+            pieceEnds = Arrays.copyOf(pieceEnds, pieceCount * 2);
+            tokenTotals = Arrays.copyOf(tokenTotals, pieceCount * 2);
+        }
+        pieceEnds[pieceCount] = end;
+        tokenTotals[pieceCount] = totalTokens() + tokens;
+        pieceCount++;
+    }
+
+    private int totalTokens() {
+        return pieceCount == 0 ? 0 : tokenTotals[pieceCount - 1];
+    }
+
+    private void cut() {
+        // 预算内的最后一个小段
+        int limit = pieceCount - 1;
+        while (limit >= 0 && tokenTotals[limit] > chunkSize) {
+            limit--;
+        }
+        // 单个字符就超出预算时只能输出超出预算的片段
+        limit = Math.max(limit, carriedPieces);
+        int floor = tokenTotals[limit] - tolerance;
+
+        int last = findSectionEnd(floor, limit);
+        boolean atSection = last >= 0;
+        if (!atSection) {
+            last = findSentenceEnd(floor, limit);
+        }
+        if (last < 0) {
+            last = limit;
+        }
+
+        int cut = pieceEnds[last];
+        chunkConsumer.accept(window.substring(0, cut));
+        chunkCount++;
+
+        int keep = atSection ? last + 1 : overlapStart(last);
+        int removedChars = pieceEnds[keep - 1];
+        int removedTokens = tokenTotals[keep - 1];
+        window.delete(0, removedChars);
+        for (int k = keep; k < pieceCount; k++) {
+            pieceEnds[k - keep] = pieceEnds[k] - removedChars;
+            tokenTotals[k - keep] = tokenTotals[k] - removedTokens;
+        }
+        pieceCount -= keep;
+        settled -= removedChars;
+        carriedPieces = last + 1 - keep;
+        shiftLineStarts(removedChars);
+    }
+
+    /**
+     * 在容差范围内寻找最靠后的、下一段为章节起点的小段，紧邻的多个章节起点取最前一个
+     *
+     * @return 小段下标，没有时返回 -1
+     */
+    private int findSectionEnd(int floor, int limit) {
+        for (int k = limit; k >= carriedPieces; k--) {
+            if (tokenTotals[k] < floor) {
+                break;
+            }
+            if (k + 1 < pieceCount && isLineStart(pieceEnds[k])
+                    && SentenceAwareChunker.isSectionStart(window, pieceEnds[k])) {
+                // 连续的章节起点（如章标题后紧跟条文）保留在同一片段中
+                while (k > carriedPieces && tokenTotals[k - 1] >= floor && isLineStart(pieceEnds[k - 1])
+                        && SentenceAwareChunker.isSectionStart(window, pieceEnds[k - 1])) {
+                    k--;
+                }
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 在容差范围内寻找最靠后的、以句子结尾结束的小段
+     *
+     * @return 小段下标，没有时返回 -1
+     */
+    private int findSentenceEnd(int floor, int limit) {
+        for (int k = limit; k >= carriedPieces; k--) {
+            if (tokenTotals[k] < floor) {
+                break;
+            }
+            if (SentenceAwareChunker.endsSentence(window, pieceEnds[k])) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 下一个片段的第一个小段：重叠预算内第一个句子的起点
+     */
+    private int overlapStart(int last) {
+        int keep = last + 1;
+        while (keep > 1 && tokenTotals[last] - tokenTotals[keep - 2] <= overlap) {
+            keep--;
+        }
+        for (int k = keep; k <= last; k++) {
+            if (SentenceAwareChunker.endsSentence(window, pieceEnds[k - 1])) {
+                return k;
+            }
+        }
+        // 已在句末切分时，不带半句话作为重叠
+        return SentenceAwareChunker.endsSentence(window, pieceEnds[last]) ? last + 1 : keep;
+    }
+
+    private int nextLineStart(int position) {
+        for (int i = 0; i < lineStartCount; i++) {
+            if (lineStarts[i] > position) {
+                return lineStarts[i];
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
+
+    private boolean isLineStart(int position) {
+        for (int i = lineStartCount - 1; i >= 0; i--) {
+            if (lineStarts[i] == position) {
+                return true;
+            }
+            if (lineStarts[i] < position) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void shiftLineStarts(int removed) {
+        int kept = 0;
+        for (int i = 0; i < lineStartCount; i++) {
+            int shifted = lineStarts[i] - removed;
+            if (shifted >= 0) {
+                lineStarts[kept++] = shifted;
+            }
+        }
+        lineStartCount = kept;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.rag.util;
+
+/**
+ * Token 数估算工具
+ * 在不加载分词词表的情况下快速估算文本的 token 数，用于向量化请求的分批
+ *
+ * 估算规则：
+ * - 中日韩文字按每字 1 个 token 计
+ * - 其他字符按每 4 个字符 1 个 token 计（向上取整）
+ */
+public final class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的 token 数
+     *
+     * @param text 文本内容
+     * @return 估算的 token 数，空文本返回 0
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+
+        int cjkChars = 0;
+        int otherChars = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (isCjk(text.charAt(i))) {
+                cjkChars++;
+            } else {
+                otherChars++;
+            }
+        }
+        return cjkChars + (otherChars + 3) / 4;
+    }
+
+    private static boolean isCjk(char c) {
+        Character.UnicodeBlock block = Character.UnicodeBlock.of(c);
+        return block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_UNIFIED_IDEOGRAPHS_EXTENSION_A
+                || block == Character.UnicodeBlock.CJK_COMPATIBILITY_IDEOGRAPHS
+                || block == Character.UnicodeBlock.CJK_SYMBOLS_AND_PUNCTUATION
+                || block == Character.UnicodeBlock.HALFWIDTH_AND_FULLWIDTH_FORMS
+                || block == Character.UnicodeBlock.HIRAGANA
+                || block == Character.UnicodeBlock.KATAKANA
+                || block == Character.UnicodeBlock.HANGUL_SYLLABLES;
+    }
+}
@@ -26,6 +26,11 @@ public class ChunkVO {
      */
     private Integer charCount;
     
+    /**
+     * 起始页码（只有按页提取的 PDF 有）
+     */
+    private Integer pageNumber;
+    
     // Constructors
     
     public ChunkVO() {
@@ -71,4 +76,12 @@ public class ChunkVO {
     public void setCharCount(Integer charCount) {
         this.charCount = charCount;
     }
+    
+    public Integer getPageNumber() {
+        return pageNumber;
+    }
+    
+    public void setPageNumber(Integer pageNumber) {
+        this.pageNumber = pageNumber;
+    }
 }
@@ -0,0 +1,143 @@
+package com.example.rag.vo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 压缩包导入批次视图对象
+ * 汇总批次内各文档的处理状态，客户端轮询此对象即可得知整体进度
+ */
+public class IngestionBatchVO {
+
+    /**
+     * 批次ID
+     */
+    private Long batchId;
+
+    /**
+     * 压缩包文件名
+     */
+    private String fileName;
+
+    /**
+     * 批次状态：PROCESSING-处理中, COMPLETED-全部完成, COMPLETED_WITH_ERRORS-已结束但有文档处理失败
+     */
+    private String status;
+
+    /**
+     * 批次内的文档数
+     */
+    private Integer totalCount;
+
+    /**
+     * 处理中的文档数
+     */
+    private Integer processingCount;
+
+    /**
+     * 处理完成的文档数
+     */
+    private Integer completedCount;
+
+    /**
+     * 处理失败的文档数
+     */
+    private Integer failedCount;
+
+    /**
+     * 跳过的文件数
+     */
+    private Integer skippedCount;
+
+    /**
+     * 跳过的文件及原因，形如 "a/b.exe: 不支持的文件格式"
+     */
+    private List<String> skippedEntries;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    // Getters and Setters
+
+    public Long getBatchId() {
+        return batchId;
+    }
+
+    public void setBatchId(Long batchId) {
+        this.batchId = batchId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(Integer totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public Integer getProcessingCount() {
+        return processingCount;
+    }
+
+    public void setProcessingCount(Integer processingCount) {
+        this.processingCount = processingCount;
+    }
+
+    public Integer getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(Integer completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public Integer getFailedCount() {
+        return failedCount;
+    }
+
+    public void setFailedCount(Integer failedCount) {
+        this.failedCount = failedCount;
+    }
+
+    public Integer getSkippedCount() {
+        return skippedCount;
+    }
+
+    public void setSkippedCount(Integer skippedCount) {
+        this.skippedCount = skippedCount;
+    }
+
+    public List<String> getSkippedEntries() {
+        return skippedEntries;
+    }
+
+    public void setSkippedEntries(List<String> skippedEntries) {
+        this.skippedEntries = skippedEntries;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.rag.vo;
+
+/**
+ * 文档处理进度视图对象
+ * 通过 SSE 推送给订阅的客户端，片段计数包含从检查点沿用的片段
+ */
+public class IngestionProgressVO {
+
+    /**
+     * 文档ID
+     */
+    private Long documentId;
+
+    /**
+     * 处理状态：PROCESSING-处理中, RETRYING-处理失败等待重试, COMPLETED-已完成, FAILED-失败
+     */
+    private String status;
+
+    /**
+     * 已提取的片段数
+     */
+    private Integer chunksExtracted;
+
+    /**
+     * 已向量化的片段数
+     */
+    private Integer chunksEmbedded;
+
+    /**
+     * 已保存的片段数
+     */
+    private Integer chunksStored;
+
+    /**
+     * 文本提取是否已结束，结束后 chunksExtracted 即为文档的片段总数
+     */
+    private Boolean extractionFinished;
+
+    /**
+     * 错误信息（失败或等待重试时）
+     */
+    private String errorMessage;
+
+    // Getters and Setters
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Integer getChunksExtracted() {
+        return chunksExtracted;
+    }
+
+    public void setChunksExtracted(Integer chunksExtracted) {
+        this.chunksExtracted = chunksExtracted;
+    }
+
+    public Integer getChunksEmbedded() {
+        return chunksEmbedded;
+    }
+
+    public void setChunksEmbedded(Integer chunksEmbedded) {
+        this.chunksEmbedded = chunksEmbedded;
+    }
+
+    public Integer getChunksStored() {
+        return chunksStored;
+    }
+
+    public void setChunksStored(Integer chunksStored) {
+        this.chunksStored = chunksStored;
+    }
+
+    public Boolean getExtractionFinished() {
+        return extractionFinished;
+    }
+
+    public void setExtractionFinished(Boolean extractionFinished) {
+        this.extractionFinished = extractionFinished;
+    }
+
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+}
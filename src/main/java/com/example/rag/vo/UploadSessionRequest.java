@@ -0,0 +1,59 @@
+package com.example.rag.vo;
+
+/**
+ * 创建分片上传会话的请求数据对象
+ */
+public class UploadSessionRequest {
+
+    /**
+     * 原始文件名（必填）
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节，必填）
+     */
+    private Long fileSize;
+
+    /**
+     * 文件类型（MIME类型，可选）
+     */
+    private String fileType;
+
+    // Constructors
+
+    public UploadSessionRequest() {
+    }
+
+    public UploadSessionRequest(String fileName, Long fileSize, String fileType) {
+        this.fileName = fileName;
+        this.fileSize = fileSize;
+        this.fileType = fileType;
+    }
+
+    // Getters and Setters
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getFileType() {
+        return fileType;
+    }
+
+    public void setFileType(String fileType) {
+        this.fileType = fileType;
+    }
+}
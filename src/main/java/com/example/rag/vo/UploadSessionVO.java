@@ -0,0 +1,103 @@
+package com.example.rag.vo;
+
+import java.util.List;
+
+/**
+ * 分片上传会话视图对象
+ * 客户端据此得知哪些字节区间已经到达，中断后只需重传缺失的区间
+ */
+public class UploadSessionVO {
+
+    /**
+     * 上传会话ID
+     */
+    private String sessionId;
+
+    /**
+     * 原始文件名
+     */
+    private String fileName;
+
+    /**
+     * 文件大小（字节）
+     */
+    private Long fileSize;
+
+    /**
+     * 会话状态：UPLOADING-上传中, COMPLETING-正在完成, COMPLETED-已完成
+     */
+    private String status;
+
+    /**
+     * 已接收的字节数（重叠区间只计一次）
+     */
+    private Long receivedBytes;
+
+    /**
+     * 已接收的字节区间，每项为 [起始偏移量, 结束偏移量)，按起始偏移量排序且互不相邻
+     */
+    private List<long[]> receivedRanges;
+
+    /**
+     * 完成后生成的文档ID
+     */
+    private Long documentId;
+
+    // Getters and Setters
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public Long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(Long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    public void setReceivedBytes(Long receivedBytes) {
+        this.receivedBytes = receivedBytes;
+    }
+
+    public List<long[]> getReceivedRanges() {
+        return receivedRanges;
+    }
+
+    public void setReceivedRanges(List<long[]> receivedRanges) {
+        this.receivedRanges = receivedRanges;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public void setDocumentId(Long documentId) {
+        this.documentId = documentId;
+    }
+}
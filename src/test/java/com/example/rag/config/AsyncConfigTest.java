@@ -1,12 +1,19 @@
 package com.example.rag.config;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
 
 /**
  * 异步线程池配置测试
@@ -30,8 +37,9 @@ class AsyncConfigTest {
     void testThreadPoolConfiguration() {
         ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) asyncConfig.getAsyncExecutor();
 
-        assertEquals(2, executor.getCorePoolSize(), "Core pool size should be 2");
+        assertEquals(5, executor.getCorePoolSize(), "Core pool size should be 5");
         assertEquals(5, executor.getMaxPoolSize(), "Max pool size should be 5");
+        assertEquals(Integer.MAX_VALUE, executor.getQueueCapacity(), "Queue should be unbounded");
         assertEquals("doc-process-", executor.getThreadNamePrefix(),
                 "Thread name prefix should be 'doc-process-'");
     }
@@ -40,10 +48,78 @@ class AsyncConfigTest {
     void testRejectedExecutionPolicy() {
         ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) asyncConfig.getAsyncExecutor();
 
-        // CallerRunsPolicy ensures tasks are not lost when queue is full
-        assertInstanceOf(ThreadPoolExecutor.CallerRunsPolicy.class,
-                executor.getThreadPoolExecutor().getRejectedExecutionHandler(),
-                "Rejected execution handler should be CallerRunsPolicy");
+        // Tasks must never run on the submitting (request) thread
+        assertFalse(executor.getThreadPoolExecutor().getRejectedExecutionHandler()
+                        instanceof ThreadPoolExecutor.CallerRunsPolicy,
+                "Rejected execution handler should not be CallerRunsPolicy");
+
+        executor.shutdown();
+    }
+
+    @Test
+    void testBurstOfTasksNeverRunsOnCallerThread() throws Exception {
+        ThreadPoolTaskExecutor executor = (ThreadPoolTaskExecutor) asyncConfig.getAsyncExecutor();
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(40);
+        AtomicInteger callerRuns = new AtomicInteger();
+        Thread caller = Thread.currentThread();
+
+        // More tasks than the old pool (5 threads + 20 queued) could hold
+        for (int i = 0; i < 40; i++) {
+            executor.execute(() -> {
+                if (Thread.currentThread() == caller) {
+                    callerRuns.incrementAndGet();
+                }
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, callerRuns.get());
+        executor.shutdown();
+    }
+
+    @Test
+    void testVirtualModeRunsEachTaskOnItsOwnThread() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "Virtual threads require JDK 21+");
+        RagAsyncProperties properties = new RagAsyncProperties();
+        properties.setMode(RagAsyncProperties.ExecutorMode.VIRTUAL);
+        ReflectionTestUtils.setField(asyncConfig, "asyncProperties", properties);
+
+        Executor executor = asyncConfig.getAsyncExecutor();
+        assertInstanceOf(SimpleAsyncTaskExecutor.class, executor);
+
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(() -> {
+            worker.set(Thread.currentThread());
+            done.countDown();
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), worker.get());
+    }
+
+    @Test
+    void testVirtualModeFallsBackToThreadPoolBeforeJdk21() {
+        assumeTrue(Runtime.version().feature() < 21, "Only applies below JDK 21");
+        RagAsyncProperties properties = new RagAsyncProperties();
+        properties.setMode(RagAsyncProperties.ExecutorMode.VIRTUAL);
+        properties.setPoolSize(3);
+        ReflectionTestUtils.setField(asyncConfig, "asyncProperties", properties);
+
+        Executor executor = asyncConfig.getAsyncExecutor();
+
+        // Bounded like pool mode instead of an unbounded thread-per-task executor
+        ThreadPoolTaskExecutor pool = assertInstanceOf(ThreadPoolTaskExecutor.class, executor);
+        assertEquals(3, pool.getMaxPoolSize());
+        pool.shutdown();
     }
 
     @Test
@@ -0,0 +1,291 @@
+package com.example.rag.config;
+
+import com.example.rag.config.OpenRouterRateLimiter.Traffic;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * OpenRouterRateLimiter 单元测试
+ * 下游由测试控制：每个发出的请求挂起，直到测试给出响应；调用方与 WebClient 一样在收到响应后读取响应体
+ */
+class OpenRouterRateLimiterTest {
+
+    private final List<Sinks.One<ClientResponse>> exchanges = new CopyOnWriteArrayList<>();
+
+    private final ExchangeFunction downstream = request -> {
+        Sinks.One<ClientResponse> sink = Sinks.one();
+        exchanges.add(sink);
+        return sink.asMono();
+    };
+
+    /**
+     * 测试超出并发上限的请求排队等待，交互流量和批量流量互不占用配额
+     */
+    @Test
+    void testFilter_QueuesBeyondLimitWithSeparateBudgets() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(2);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        for (int i = 0; i < 5; i++) {
+            exchange(limiter, Traffic.BULK);
+        }
+        assertEquals(2, exchanges.size());
+        assertEquals(2, limiter.inFlight(Traffic.BULK));
+
+        // 批量请求排队时交互请求仍可立即发出
+        exchange(limiter, Traffic.INTERACTIVE);
+        assertEquals(3, exchanges.size());
+
+        // 批量请求完成后放行下一个
+        respond(0, HttpStatus.OK);
+        assertEquals(4, exchanges.size());
+        assertEquals(2, limiter.inFlight(Traffic.BULK));
+    }
+
+    /**
+     * 测试正常响应时并发上限加性增长，且不超过最大值
+     */
+    @Test
+    void testFilter_AdditiveIncreaseOnSuccess() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(2);
+        properties.setBulkMaxConcurrency(3);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        // 2 -> 2.5 -> 2.9 -> 3（上限）
+        for (int i = 0; i < 3; i++) {
+            exchange(limiter, Traffic.BULK);
+            respond(i, HttpStatus.OK);
+        }
+        assertEquals(3, limiter.currentLimit(Traffic.BULK));
+
+        for (int i = 3; i < 6; i++) {
+            exchange(limiter, Traffic.BULK);
+            respond(i, HttpStatus.OK);
+        }
+        assertEquals(3, limiter.currentLimit(Traffic.BULK));
+        assertEquals(0, limiter.inFlight(Traffic.BULK));
+    }
+
+    /**
+     * 测试同一轮并发请求返回的多个 429 只让并发上限减半一次
+     */
+    @Test
+    void testFilter_MultiplicativeDecreaseOncePerRound() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(8);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        for (int i = 0; i < 4; i++) {
+            exchange(limiter, Traffic.BULK);
+        }
+        for (int i = 0; i < 4; i++) {
+            respond(i, HttpStatus.TOO_MANY_REQUESTS);
+        }
+
+        assertEquals(4, limiter.currentLimit(Traffic.BULK));
+        assertEquals(0, limiter.inFlight(Traffic.BULK));
+    }
+
+    /**
+     * 测试交互流量被限流时批量流量让出配额，批量流量被限流不影响交互流量
+     */
+    @Test
+    void testFilter_InteractiveThrottleAlsoReducesBulk() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setInteractiveInitialConcurrency(4);
+        properties.setBulkInitialConcurrency(4);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        exchange(limiter, Traffic.BULK);
+        respond(0, HttpStatus.TOO_MANY_REQUESTS);
+        assertEquals(2, limiter.currentLimit(Traffic.BULK));
+        assertEquals(4, limiter.currentLimit(Traffic.INTERACTIVE));
+
+        exchange(limiter, Traffic.INTERACTIVE);
+        respond(1, HttpStatus.SERVICE_UNAVAILABLE);
+        assertEquals(2, limiter.currentLimit(Traffic.INTERACTIVE));
+        assertEquals(1, limiter.currentLimit(Traffic.BULK));
+    }
+
+    /**
+     * 测试响应超过延迟阈值时按拥塞处理
+     */
+    @Test
+    void testFilter_SlowResponseDecreasesLimit() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(4);
+        properties.setLimiterLatencyThresholdMs(-1L);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        exchange(limiter, Traffic.BULK);
+        respond(0, HttpStatus.OK);
+
+        assertEquals(2, limiter.currentLimit(Traffic.BULK));
+    }
+
+    /**
+     * 测试 Retry-After 期间不发出新请求，暂停结束后自动放行
+     */
+    @Test
+    void testFilter_RetryAfterPausesNewRequests() throws Exception {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        exchange(limiter, Traffic.BULK);
+        exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build());
+
+        CountDownLatch started = new CountDownLatch(1);
+        long pausedAt = System.nanoTime();
+        limiter.filter(request(Traffic.BULK), request -> {
+            started.countDown();
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        }).subscribe();
+
+        assertEquals(1, started.getCount());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pausedAt) >= 900);
+    }
+
+    /**
+     * 测试排队中被取消的请求不会占用许可
+     */
+    @Test
+    void testFilter_CancelledWaiterDoesNotLeakPermit() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(1);
+        properties.setBulkMaxConcurrency(1);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        exchange(limiter, Traffic.BULK);
+        Disposable waiting = exchange(limiter, Traffic.BULK);
+        waiting.dispose();
+        respond(0, HttpStatus.OK);
+
+        assertEquals(1, exchanges.size());
+        assertEquals(0, limiter.inFlight(Traffic.BULK));
+
+        exchange(limiter, Traffic.BULK);
+        assertEquals(2, exchanges.size());
+    }
+
+    /**
+     * 测试许可在响应体读取结束时才归还，收到响应头时仍计入并发
+     */
+    @Test
+    void testFilter_PermitHeldUntilBodyConsumed() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(1);
+        properties.setBulkMaxConcurrency(1);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        limiter.filter(request(Traffic.BULK), downstream)
+                .flatMap(response -> response.bodyToMono(String.class))
+                .subscribe(bodies::add);
+        exchange(limiter, Traffic.BULK);
+        Sinks.Many<DataBuffer> body = Sinks.many().unicast().onBackpressureBuffer();
+        exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.OK).body(body.asFlux()).build());
+
+        // 响应头已到达，响应体仍在传输
+        assertEquals(1, limiter.inFlight(Traffic.BULK));
+        assertEquals(1, exchanges.size());
+
+        body.tryEmitNext(DefaultDataBufferFactory.sharedInstance.wrap("{\"data\":[]}".getBytes(StandardCharsets.UTF_8)));
+        body.tryEmitComplete();
+
+        assertEquals(List.of("{\"data\":[]}"), bodies);
+        assertEquals(2, exchanges.size());
+        assertEquals(1, limiter.inFlight(Traffic.BULK));
+    }
+
+    /**
+     * 测试读取响应体时取消或下游出错都会归还许可，且只归还一次
+     */
+    @Test
+    void testFilter_PermitReleasedOnceOnCancelOrError() {
+        OpenRouterProperties properties = new OpenRouterProperties();
+        properties.setBulkInitialConcurrency(2);
+        properties.setBulkMaxConcurrency(2);
+        OpenRouterRateLimiter limiter = new OpenRouterRateLimiter(properties);
+
+        Disposable reading = limiter.filter(request(Traffic.BULK), downstream)
+                .flatMap(response -> response.bodyToMono(String.class))
+                .subscribe();
+        exchange(limiter, Traffic.BULK);
+        exchanges.get(0).tryEmitValue(ClientResponse.create(HttpStatus.OK).body(Flux.never()).build());
+        exchanges.get(1).tryEmitError(new IllegalStateException("connection reset"));
+        assertEquals(1, limiter.inFlight(Traffic.BULK));
+
+        reading.dispose();
+        assertEquals(0, limiter.inFlight(Traffic.BULK));
+
+        exchange(limiter, Traffic.BULK);
+        exchange(limiter, Traffic.BULK);
+        assertEquals(2, limiter.inFlight(Traffic.BULK));
+    }
+
+    /**
+     * 测试 Retry-After 的秒数和 HTTP 日期两种格式
+     */
+    @Test
+    void testRetryAfterMillis_SecondsAndHttpDate() {
+        HttpHeaders seconds = new HttpHeaders();
+        seconds.set(HttpHeaders.RETRY_AFTER, "3");
+        assertEquals(3000, OpenRouterRateLimiter.retryAfterMillis(seconds));
+
+        HttpHeaders date = new HttpHeaders();
+        date.set(HttpHeaders.RETRY_AFTER, DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now().plusSeconds(30)));
+        long millis = OpenRouterRateLimiter.retryAfterMillis(date);
+        assertTrue(millis > 25000 && millis <= 30000);
+
+        HttpHeaders invalid = new HttpHeaders();
+        invalid.set(HttpHeaders.RETRY_AFTER, "soon");
+        assertEquals(0, OpenRouterRateLimiter.retryAfterMillis(invalid));
+        assertEquals(0, OpenRouterRateLimiter.retryAfterMillis(new HttpHeaders()));
+    }
+
+    /**
+     * 发出请求，收到响应后读取（释放）响应体
+     */
+    private Disposable exchange(OpenRouterRateLimiter limiter, Traffic traffic) {
+        return limiter.filter(request(traffic), downstream)
+                .flatMap(ClientResponse::releaseBody)
+                .subscribe(null, e -> { });
+    }
+
+    private void respond(int index, HttpStatus status) {
+        exchanges.get(index).tryEmitValue(ClientResponse.create(status).build());
+    }
+
+    private static ClientRequest request(Traffic traffic) {
+        return ClientRequest.create(HttpMethod.POST, URI.create("https://openrouter.ai/api/v1/embeddings"))
+                .attribute(OpenRouterRateLimiter.TRAFFIC_ATTRIBUTE, traffic)
+                .build();
+    }
+}
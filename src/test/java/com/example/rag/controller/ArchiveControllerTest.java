@@ -0,0 +1,90 @@
+package com.example.rag.controller;
+
+import com.example.rag.exception.BusinessException;
+import com.example.rag.service.ArchiveIngestionService;
+import com.example.rag.vo.IngestionBatchVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * ArchiveController 单元测试
+ * 测试压缩包导入API接口
+ */
+@WebMvcTest(ArchiveController.class)
+class ArchiveControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ArchiveIngestionService archiveIngestionService;
+
+    /**
+     * 测试上传压缩包返回批次ID
+     */
+    @Test
+    void testUploadArchive_Success() throws Exception {
+        when(archiveIngestionService.ingestArchive(any())).thenReturn(batch("PROCESSING", 3, 0));
+
+        MockMultipartFile file = new MockMultipartFile("file", "docs.zip", "application/zip", new byte[]{1, 2, 3});
+        mockMvc.perform(multipart("/api/documents/archives").file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.batchId").value(7))
+                .andExpect(jsonPath("$.data.status").value("PROCESSING"))
+                .andExpect(jsonPath("$.data.totalCount").value(3));
+    }
+
+    /**
+     * 测试压缩包无效时返回 400
+     */
+    @Test
+    void testUploadArchive_Invalid() throws Exception {
+        when(archiveIngestionService.ingestArchive(any()))
+                .thenThrow(new BusinessException(400, "只支持 ZIP 格式的压缩包"));
+
+        MockMultipartFile file = new MockMultipartFile("file", "docs.rar", "application/octet-stream", new byte[]{1});
+        mockMvc.perform(multipart("/api/documents/archives").file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(400));
+    }
+
+    /**
+     * 测试查询批次进度
+     */
+    @Test
+    void testGetBatch_Success() throws Exception {
+        when(archiveIngestionService.getBatch(7L)).thenReturn(batch("COMPLETED_WITH_ERRORS", 2, 1));
+
+        mockMvc.perform(get("/api/documents/archives/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.status").value("COMPLETED_WITH_ERRORS"))
+                .andExpect(jsonPath("$.data.completedCount").value(2))
+                .andExpect(jsonPath("$.data.failedCount").value(1));
+    }
+
+    private IngestionBatchVO batch(String status, int completed, int failed) {
+        IngestionBatchVO vo = new IngestionBatchVO();
+        vo.setBatchId(7L);
+        vo.setFileName("docs.zip");
+        vo.setStatus(status);
+        vo.setTotalCount(3);
+        vo.setProcessingCount(3 - completed - failed);
+        vo.setCompletedCount(completed);
+        vo.setFailedCount(failed);
+        vo.setSkippedCount(0);
+        vo.setSkippedEntries(List.of());
+        return vo;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.rag.controller;
 
 import com.example.rag.service.DocumentService;
+import com.example.rag.service.IngestionProgressService;
 import com.example.rag.vo.ChunkVO;
 import com.example.rag.vo.DocumentDetailVO;
 import com.example.rag.vo.DocumentVO;
@@ -10,9 +11,11 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -20,6 +23,7 @@ import java.util.List;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -37,6 +41,9 @@ class DocumentControllerTest {
     @MockBean
     private DocumentService documentService;
     
+    @MockBean
+    private IngestionProgressService ingestionProgressService;
+    
     private DocumentVO mockDocumentVO;
     private DocumentDetailVO mockDocumentDetailVO;
     private PageResult<DocumentVO> mockPageResult;
@@ -95,7 +102,7 @@ class DocumentControllerTest {
         );
         
         // Mock service 行为
-        when(documentService.uploadDocument(any())).thenReturn(mockDocumentVO);
+        when(documentService.uploadDocument(any(), any())).thenReturn(mockDocumentVO);
         
         // 执行请求并验证响应
         mockMvc.perform(multipart("/api/documents")
@@ -108,6 +115,84 @@ class DocumentControllerTest {
                 .andExpect(jsonPath("$.data.status").value("PROCESSING"));
     }
     
+    /**
+     * 测试上传文档 - 指定处理优先级
+     */
+    @Test
+    void testUploadDocument_WithPriority() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "memo.pdf",
+                "application/pdf",
+                "memo".getBytes()
+        );
+        when(documentService.uploadDocument(any(), eq("high"))).thenReturn(mockDocumentVO);
+        
+        mockMvc.perform(multipart("/api/documents")
+                        .file(file)
+                        .param("priority", "high"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200));
+        
+        verify(documentService).uploadDocument(any(), eq("high"));
+    }
+    
+    /**
+     * 测试替换文档 - 成功场景
+     */
+    @Test
+    void testReplaceDocument_Success() throws Exception {
+        // 准备测试文件
+        MockMultipartFile file = new MockMultipartFile(
+                "file",
+                "test-v2.pdf",
+                "application/pdf",
+                "new content".getBytes()
+        );
+        mockDocumentVO.setFileName("test-v2.pdf");
+        
+        // Mock service 行为
+        when(documentService.replaceDocument(eq(1L), any())).thenReturn(mockDocumentVO);
+        
+        // 执行请求并验证响应
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/documents/1")
+                        .file(file))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.id").value(1))
+                .andExpect(jsonPath("$.data.fileName").value("test-v2.pdf"))
+                .andExpect(jsonPath("$.data.status").value("PROCESSING"));
+    }
+    
+    /**
+     * 测试替换文档 - 无效ID
+     */
+    @Test
+    void testReplaceDocument_InvalidId() throws Exception {
+        MockMultipartFile file = new MockMultipartFile(
+                "file", "test.pdf", "application/pdf", "content".getBytes());
+        
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/documents/0")
+                        .file(file))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(400))
+                .andExpect(jsonPath("$.message").value("文档ID无效"));
+    }
+    
+    /**
+     * 测试重试失败的文档 - 成功场景
+     */
+    @Test
+    void testRetryDocument_Success() throws Exception {
+        when(documentService.retryDocument(1L)).thenReturn(mockDocumentVO);
+        
+        mockMvc.perform(post("/api/documents/1/retry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.id").value(1))
+                .andExpect(jsonPath("$.data.status").value("PROCESSING"));
+    }
+    
     /**
      * 测试获取文档列表 - 成功场景
      */
@@ -212,4 +297,43 @@ class DocumentControllerTest {
                 .andExpect(jsonPath("$.data.chunks[1].id").value(2))
                 .andExpect(jsonPath("$.data.chunks[1].chunkIndex").value(1));
     }
+    
+    /**
+     * 测试订阅文档处理进度 - 返回 SSE 连接
+     */
+    @Test
+    void testStreamProgress_Success() throws Exception {
+        when(ingestionProgressService.subscribe(1L)).thenReturn(new SseEmitter());
+        
+        mockMvc.perform(get("/api/documents/1/progress"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+        
+        verify(ingestionProgressService).subscribe(1L);
+    }
+    
+    /**
+     * 测试订阅文档处理进度 - 无效ID
+     */
+    @Test
+    void testStreamProgress_InvalidId() throws Exception {
+        mockMvc.perform(get("/api/documents/0/progress"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(400))
+                .andExpect(jsonPath("$.message").value("文档ID无效"));
+    }
+    
+    /**
+     * 测试订阅所有文档的处理进度，不与文档详情路径冲突
+     */
+    @Test
+    void testStreamAllProgress_Success() throws Exception {
+        when(ingestionProgressService.subscribeAll()).thenReturn(new SseEmitter());
+        
+        mockMvc.perform(get("/api/documents/progress"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+        
+        verify(ingestionProgressService).subscribeAll();
+    }
 }
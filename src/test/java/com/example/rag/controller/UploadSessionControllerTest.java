@@ -0,0 +1,108 @@
+package com.example.rag.controller;
+
+import com.example.rag.exception.BusinessException;
+import com.example.rag.service.UploadSessionService;
+import com.example.rag.vo.DocumentVO;
+import com.example.rag.vo.UploadSessionVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.InputStream;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * UploadSessionController 单元测试
+ * 测试分片上传API接口
+ */
+@WebMvcTest(UploadSessionController.class)
+class UploadSessionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private UploadSessionService uploadSessionService;
+
+    /**
+     * 测试创建上传会话
+     */
+    @Test
+    void testCreateSession_Success() throws Exception {
+        when(uploadSessionService.createSession(any())).thenReturn(session(0L, List.of()));
+
+        mockMvc.perform(post("/api/documents/uploads")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"fileName\":\"law.pdf\",\"fileSize\":1000,\"fileType\":\"application/pdf\"}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.code").value(200))
+                .andExpect(jsonPath("$.data.sessionId").value("s-1"))
+                .andExpect(jsonPath("$.data.receivedBytes").value(0));
+    }
+
+    /**
+     * 测试上传分片，请求体作为原始字节传给服务层
+     */
+    @Test
+    void testUploadPart_Success() throws Exception {
+        when(uploadSessionService.writePart(eq("s-1"), eq(500L), any(InputStream.class)))
+                .thenReturn(session(500L, List.of(new long[]{500, 1000})));
+
+        mockMvc.perform(put("/api/documents/uploads/s-1/parts")
+                        .param("offset", "500")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(new byte[500]))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.receivedBytes").value(500))
+                .andExpect(jsonPath("$.data.receivedRanges[0][0]").value(500))
+                .andExpect(jsonPath("$.data.receivedRanges[0][1]").value(1000));
+    }
+
+    /**
+     * 测试完成上传返回文档信息
+     */
+    @Test
+    void testCompleteSession_Success() throws Exception {
+        DocumentVO documentVO = new DocumentVO();
+        documentVO.setId(42L);
+        documentVO.setStatus("PROCESSING");
+        when(uploadSessionService.completeSession("s-1")).thenReturn(documentVO);
+
+        mockMvc.perform(post("/api/documents/uploads/s-1/complete"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.data.id").value(42))
+                .andExpect(jsonPath("$.data.status").value("PROCESSING"));
+    }
+
+    /**
+     * 测试分片未到齐时完成上传返回 409
+     */
+    @Test
+    void testCompleteSession_Incomplete() throws Exception {
+        when(uploadSessionService.completeSession("s-1"))
+                .thenThrow(new BusinessException(409, "文件尚未上传完整，已接收 500 / 1000 字节"));
+
+        mockMvc.perform(post("/api/documents/uploads/s-1/complete"))
+                .andExpect(jsonPath("$.code").value(409))
+                .andExpect(jsonPath("$.message").value("文件尚未上传完整，已接收 500 / 1000 字节"));
+    }
+
+    private UploadSessionVO session(long receivedBytes, List<long[]> ranges) {
+        UploadSessionVO vo = new UploadSessionVO();
+        vo.setSessionId("s-1");
+        vo.setFileName("law.pdf");
+        vo.setFileSize(1000L);
+        vo.setStatus("UPLOADING");
+        vo.setReceivedBytes(receivedBytes);
+        vo.setReceivedRanges(ranges);
+        return vo;
+    }
+}
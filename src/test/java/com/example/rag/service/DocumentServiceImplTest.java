@@ -1,26 +1,40 @@
 package com.example.rag.service;
 
+import cn.hutool.crypto.digest.DigestUtil;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.example.rag.config.QdrantProperties;
+import com.example.rag.config.RagDocumentProperties;
 import com.example.rag.entity.Document;
+import com.example.rag.entity.IngestionJob;
 import com.example.rag.exception.BusinessException;
 import com.example.rag.mapper.DocumentMapper;
 import com.example.rag.service.DocumentProcessingService;
 import com.example.rag.service.impl.DocumentServiceImpl;
+import com.example.rag.service.impl.ExtractedTextCache;
+import com.example.rag.service.impl.UploadStorage;
 import com.example.rag.vo.DocumentVO;
 import com.example.rag.vo.PageResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -45,6 +59,21 @@ class DocumentServiceImplTest {
     @Mock
     private DocumentProcessingService documentProcessingService;
     
+    @Mock
+    private RagDocumentProperties ragDocumentProperties;
+    
+    @Mock
+    private IngestionJobService ingestionJobService;
+    
+    @Mock
+    private ExtractedTextCache extractedTextCache;
+    
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    
+    @TempDir
+    Path uploadDir;
+    
     @InjectMocks
     private DocumentServiceImpl documentService;
     
@@ -54,6 +83,7 @@ class DocumentServiceImplTest {
     
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(documentService, "uploadStorage", new UploadStorage(ragDocumentProperties));
         // 准备测试数据
         document1 = createDocument(1L, "test1.pdf", "COMPLETED", 
             LocalDateTime.of(2024, 1, 15, 10, 30));
@@ -235,6 +265,34 @@ class DocumentServiceImplTest {
         verify(documentMapper, times(1)).deleteById(documentId);
     }
     
+    @Test
+    void testDeleteDocument_EvictsExtractedTextCache() {
+        Document document = createDocument(1L, "test.pdf", "COMPLETED", LocalDateTime.now());
+        document.setContentHash("hash-1");
+        when(documentMapper.selectById(1L)).thenReturn(document);
+        when(qdrantProperties.getCollectionName()).thenReturn("document_chunks");
+        when(documentMapper.deleteById(1L)).thenReturn(1);
+        when(documentMapper.selectCount(any(QueryWrapper.class))).thenReturn(0L);
+        
+        documentService.deleteDocument(1L);
+        
+        verify(extractedTextCache).evict("hash-1");
+    }
+    
+    @Test
+    void testDeleteDocument_KeepsCacheSharedWithOtherDocument() {
+        Document document = createDocument(1L, "test.pdf", "COMPLETED", LocalDateTime.now());
+        document.setContentHash("hash-1");
+        when(documentMapper.selectById(1L)).thenReturn(document);
+        when(qdrantProperties.getCollectionName()).thenReturn("document_chunks");
+        when(documentMapper.deleteById(1L)).thenReturn(1);
+        when(documentMapper.selectCount(any(QueryWrapper.class))).thenReturn(1L);
+        
+        documentService.deleteDocument(1L);
+        
+        verify(extractedTextCache, never()).evict(anyString());
+    }
+    
     @Test
     void testDeleteDocument_DocumentNotFound() {
         // 准备测试数据
@@ -325,4 +383,333 @@ class DocumentServiceImplTest {
         verify(qdrantClient, times(1)).deletePointsByDocumentId("document_chunks", documentId);
         verify(documentMapper, times(1)).deleteById(documentId);
     }
+    
+    // ==================== uploadDocument Tests ====================
+    
+    @Test
+    void testUploadDocument_NewContentTriggersProcessing() throws Exception {
+        // 准备测试数据
+        MockMultipartFile file = new MockMultipartFile("file", "law.txt", "text/plain",
+            "第一条 为了保护民事主体的合法权益".getBytes(StandardCharsets.UTF_8));
+        mockUploadSettings();
+        when(documentMapper.insert(any(Document.class))).thenAnswer(invocation -> {
+            invocation.<Document>getArgument(0).setId(10L);
+            return 1;
+        });
+        when(documentMapper.selectOne(any())).thenReturn(null);
+        
+        // 执行测试
+        DocumentVO vo = documentService.uploadDocument(file, null);
+        
+        // 验证结果：没有重复文档时以普通优先级触发完整处理
+        assertEquals(10L, vo.getId());
+        assertEquals("PROCESSING", vo.getStatus());
+        verify(ingestionJobService).enqueue(10L, IngestionJob.TYPE_PROCESS, IngestionJob.PRIORITY_NORMAL);
+        verify(documentProcessingService, never()).cloneDocument(any(), any());
+        
+        // 验证文件已保存且内容哈希已记录
+        try (var files = Files.list(uploadDir)) {
+            Path saved = files.findFirst().orElseThrow();
+            assertArrayEquals(file.getBytes(), Files.readAllBytes(saved));
+        }
+        String expectedHash = DigestUtil.sha256Hex(file.getBytes());
+        verify(documentMapper).insert(argThat((Document d) -> expectedHash.equals(d.getContentHash())));
+    }
+    
+    @Test
+    void testUploadDocument_DuplicateContentIsCloned() throws Exception {
+        // 准备测试数据
+        byte[] content = "第一条 为了保护民事主体的合法权益".getBytes(StandardCharsets.UTF_8);
+        MockMultipartFile file = new MockMultipartFile("file", "law-copy.txt", "text/plain", content);
+        mockUploadSettings();
+        when(documentMapper.insert(any(Document.class))).thenAnswer(invocation -> {
+            invocation.<Document>getArgument(0).setId(11L);
+            return 1;
+        });
+        when(documentMapper.selectOne(any())).thenReturn(document1);
+        when(documentProcessingService.cloneDocument(eq(document1), any(Document.class))).thenAnswer(invocation -> {
+            Document target = invocation.getArgument(1);
+            target.setStatus("COMPLETED");
+            target.setChunkCount(5);
+            return true;
+        });
+        
+        // 执行测试
+        DocumentVO vo = documentService.uploadDocument(file, null);
+        
+        // 验证结果：直接复用已有处理结果，不再触发完整处理
+        assertEquals("COMPLETED", vo.getStatus());
+        assertEquals(5, vo.getChunkCount());
+        verify(ingestionJobService, never()).enqueue(anyLong(), anyString(), anyInt());
+        verify(documentProcessingService).cloneDocument(eq(document1), argThat((Document d) ->
+            d.getId() == 11L && DigestUtil.sha256Hex(content).equals(d.getContentHash())));
+    }
+    
+    @Test
+    void testUploadDocument_CloneFailsFallsBackToProcessing() throws Exception {
+        // 准备测试数据
+        MockMultipartFile file = new MockMultipartFile("file", "law.txt", "text/plain",
+            "第一条".getBytes(StandardCharsets.UTF_8));
+        mockUploadSettings();
+        when(documentMapper.insert(any(Document.class))).thenAnswer(invocation -> {
+            invocation.<Document>getArgument(0).setId(12L);
+            return 1;
+        });
+        when(documentMapper.selectOne(any())).thenReturn(document1);
+        when(documentProcessingService.cloneDocument(eq(document1), any(Document.class))).thenReturn(false);
+        
+        // 执行测试
+        DocumentVO vo = documentService.uploadDocument(file, null);
+        
+        // 验证结果：复制失败时改为完整处理
+        assertEquals("PROCESSING", vo.getStatus());
+        verify(ingestionJobService).enqueue(12L, IngestionJob.TYPE_PROCESS, IngestionJob.PRIORITY_NORMAL);
+    }
+    
+    @Test
+    void testUploadDocument_PriorityPassedToJob() throws Exception {
+        // 准备测试数据
+        MockMultipartFile file = new MockMultipartFile("file", "memo.txt", "text/plain",
+            "备忘录".getBytes(StandardCharsets.UTF_8));
+        mockUploadSettings();
+        when(documentMapper.insert(any(Document.class))).thenAnswer(invocation -> {
+            invocation.<Document>getArgument(0).setId(13L);
+            return 1;
+        });
+        when(documentMapper.selectOne(any())).thenReturn(null);
+        
+        // 执行测试：优先级不区分大小写
+        documentService.uploadDocument(file, "HIGH");
+        
+        // 验证结果
+        verify(ingestionJobService).enqueue(13L, IngestionJob.TYPE_PROCESS, IngestionJob.PRIORITY_HIGH);
+    }
+    
+    @Test
+    void testUploadDocument_InvalidPriorityRejected() throws Exception {
+        // 准备测试数据
+        MockMultipartFile file = new MockMultipartFile("file", "memo.txt", "text/plain",
+            "备忘录".getBytes(StandardCharsets.UTF_8));
+        when(ragDocumentProperties.isSupportedFormat("txt")).thenReturn(true);
+        when(ragDocumentProperties.getMaxFileSize()).thenReturn(50L * 1024 * 1024);
+        
+        // 执行测试并验证：保存文件之前拒绝
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.uploadDocument(file, "urgent"));
+        assertEquals(400, exception.getCode());
+        verify(documentMapper, never()).insert(any(Document.class));
+        try (var files = Files.list(uploadDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+    
+    // ==================== createDocuments Tests ====================
+    
+    @Test
+    void testCreateDocuments_BatchInsertsAndEnqueuesAll() {
+        // 准备测试数据：b.txt 与已完成的 document1 内容相同
+        Document a = newDocument("a.txt", "hash-a");
+        Document b = newDocument("b.txt", "hash-b");
+        Document c = newDocument("c.txt", "hash-c");
+        document1.setContentHash("hash-b");
+        when(documentMapper.insertBatch(anyList())).thenAnswer(invocation -> {
+            List<Document> slice = invocation.getArgument(0);
+            long id = 20L;
+            for (Document d : slice) {
+                d.setId(id++);
+            }
+            return slice.size();
+        });
+        when(documentMapper.selectList(any())).thenReturn(List.of(document1));
+        when(documentProcessingService.cloneDocument(document1, b)).thenReturn(true);
+        runInTransaction(() -> {
+            // 事务内只插入文档记录，复用和提交任务在事务提交之后
+            verifyNoInteractions(documentProcessingService, ingestionJobService);
+            verify(documentMapper, never()).selectList(any());
+        });
+        
+        // 执行测试
+        documentService.createDocuments(List.of(a, b, c));
+        
+        // 验证结果：一次批量插入，重复文档复用处理结果，其余一次批量提交
+        verify(transactionTemplate, times(1)).executeWithoutResult(any());
+        verify(documentMapper, times(1)).insertBatch(anyList());
+        verify(documentMapper, never()).insert(any(Document.class));
+        assertEquals("PROCESSING", a.getStatus());
+        assertNotNull(a.getUploadTime());
+        assertEquals(0, a.getChunkCount());
+        verify(ingestionJobService).enqueueAll(List.of(20L, 22L), IngestionJob.TYPE_PROCESS);
+        verify(ingestionJobService, never()).enqueue(anyLong(), anyString());
+    }
+    
+    @Test
+    void testCreateDocuments_InsertFails() {
+        // 准备测试数据
+        when(documentMapper.insertBatch(anyList())).thenReturn(0);
+        runInTransaction(() -> { });
+        
+        // 执行测试并验证异常
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.createDocuments(List.of(newDocument("a.txt", "hash-a"))));
+        assertEquals(500, exception.getCode());
+        verifyNoInteractions(ingestionJobService, documentProcessingService);
+    }
+    
+    /**
+     * 模拟事务模板：执行回调，回调正常返回（即将提交）时执行 beforeCommit 中的检查
+     */
+    private void runInTransaction(Runnable beforeCommit) {
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            beforeCommit.run();
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+    
+    private Document newDocument(String fileName, String contentHash) {
+        Document document = new Document();
+        document.setFileName(fileName);
+        document.setFileSize(10L);
+        document.setFileType("text/plain");
+        document.setFilePath(uploadDir.resolve(fileName).toString());
+        document.setContentHash(contentHash);
+        return document;
+    }
+    
+    // ==================== replaceDocument Tests ====================
+    
+    @Test
+    void testReplaceDocument_TriggersIncrementalProcessing() throws Exception {
+        // 准备测试数据
+        Path oldFile = Files.writeString(uploadDir.resolve("old_law.txt"), "旧版本");
+        document1.setFilePath(oldFile.toString());
+        document1.setContentHash("old-hash");
+        MockMultipartFile file = new MockMultipartFile("file", "law-v2.txt", "text/plain",
+            "新版本".getBytes(StandardCharsets.UTF_8));
+        mockUploadSettings();
+        when(documentMapper.selectById(1L)).thenReturn(document1);
+        when(documentMapper.updateById(any(Document.class))).thenReturn(1);
+        
+        // 执行测试
+        DocumentVO vo = documentService.replaceDocument(1L, file);
+        
+        // 验证结果
+        assertEquals("PROCESSING", vo.getStatus());
+        assertEquals("law-v2.txt", vo.getFileName());
+        assertEquals(DigestUtil.sha256Hex("新版本"), document1.getContentHash());
+        assertFalse(Files.exists(oldFile), "旧版本文件应被删除");
+        assertTrue(Files.exists(Path.of(document1.getFilePath())));
+        verify(ingestionJobService).enqueue(1L, IngestionJob.TYPE_REPROCESS);
+        verify(ingestionJobService, never()).enqueue(anyLong(), eq(IngestionJob.TYPE_PROCESS));
+        // 旧版本内容不再被任何文档使用，删除其提取文本缓存
+        verify(extractedTextCache).evict("old-hash");
+    }
+    
+    @Test
+    void testReplaceDocument_SameContentIsNoOp() throws Exception {
+        // 准备测试数据
+        MockMultipartFile file = new MockMultipartFile("file", "law.txt", "text/plain",
+            "同样的内容".getBytes(StandardCharsets.UTF_8));
+        document1.setContentHash(DigestUtil.sha256Hex("同样的内容"));
+        mockUploadSettings();
+        when(documentMapper.selectById(1L)).thenReturn(document1);
+        
+        // 执行测试
+        DocumentVO vo = documentService.replaceDocument(1L, file);
+        
+        // 验证结果：不更新记录、不触发处理，新保存的文件被删除
+        assertEquals("COMPLETED", vo.getStatus());
+        verify(documentMapper, never()).updateById(any(Document.class));
+        verify(ingestionJobService, never()).enqueue(anyLong(), anyString());
+        try (var files = Files.list(uploadDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+    
+    @Test
+    void testReplaceDocument_ProcessingDocumentRejected() {
+        // 准备测试数据
+        MockMultipartFile file = new MockMultipartFile("file", "law.txt", "text/plain",
+            "内容".getBytes(StandardCharsets.UTF_8));
+        when(documentMapper.selectById(2L)).thenReturn(document2);
+        
+        // 执行测试并验证异常
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.replaceDocument(2L, file));
+        
+        assertEquals(409, exception.getCode());
+        verify(ingestionJobService, never()).enqueue(anyLong(), anyString());
+    }
+    
+    @Test
+    void testReplaceDocument_DocumentNotFound() {
+        MockMultipartFile file = new MockMultipartFile("file", "law.txt", "text/plain",
+            "内容".getBytes(StandardCharsets.UTF_8));
+        when(documentMapper.selectById(999L)).thenReturn(null);
+        
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.replaceDocument(999L, file));
+        
+        assertEquals(404, exception.getCode());
+        assertEquals("文档不存在", exception.getMessage());
+    }
+    
+    @Test
+    void testReplaceDocumentFile_ProcessingDocumentRejectedDeletesFile() throws Exception {
+        // 准备测试数据：已保存到上传目录的新版本文件
+        Path stored = Files.writeString(uploadDir.resolve("new_law.txt"), "新版本");
+        when(documentMapper.selectById(2L)).thenReturn(document2);
+        
+        // 执行测试并验证异常
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.replaceDocumentFile(2L, "law.txt", 9L, "text/plain", stored.toString(), "hash"));
+        
+        assertEquals(409, exception.getCode());
+        assertFalse(Files.exists(stored));
+        verify(documentMapper, never()).updateById(any(Document.class));
+    }
+    
+    @Test
+    void testRetryDocument_FailedDocumentResubmitted() {
+        // 准备测试数据
+        document1.setStatus("FAILED");
+        document1.setErrorMessage("OpenRouter 返回 502");
+        when(documentMapper.selectById(1L)).thenReturn(document1);
+        when(documentMapper.update(isNull(), any())).thenReturn(1);
+        
+        // 执行测试
+        DocumentVO vo = documentService.retryDocument(1L);
+        
+        // 验证结果
+        assertEquals("PROCESSING", vo.getStatus());
+        verify(ingestionJobService).enqueue(1L, IngestionJob.TYPE_PROCESS);
+    }
+    
+    @Test
+    void testRetryDocument_NotFailedRejected() {
+        when(documentMapper.selectById(1L)).thenReturn(document1);
+        
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.retryDocument(1L));
+        
+        assertEquals(409, exception.getCode());
+        verify(documentMapper, never()).update(any(), any());
+        verify(ingestionJobService, never()).enqueue(anyLong(), anyString());
+    }
+    
+    @Test
+    void testRetryDocument_DocumentNotFound() {
+        when(documentMapper.selectById(999L)).thenReturn(null);
+        
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> documentService.retryDocument(999L));
+        
+        assertEquals(404, exception.getCode());
+    }
+    
+    private void mockUploadSettings() {
+        when(ragDocumentProperties.isSupportedFormat("txt")).thenReturn(true);
+        when(ragDocumentProperties.getMaxFileSize()).thenReturn(50L * 1024 * 1024);
+        when(ragDocumentProperties.getUploadDir()).thenReturn(uploadDir.toString());
+    }
 }
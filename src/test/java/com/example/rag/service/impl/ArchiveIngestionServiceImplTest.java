@@ -0,0 +1,260 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.IngestionBatch;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.IngestionBatchMapper;
+import com.example.rag.service.DocumentService;
+import com.example.rag.vo.IngestionBatchVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * ArchiveIngestionServiceImpl 单元测试
+ * 压缩包在内存中生成，包内文件写入临时目录
+ */
+@ExtendWith(MockitoExtension.class)
+class ArchiveIngestionServiceImplTest {
+
+    @Mock
+    private DocumentService documentService;
+
+    @Mock
+    private DocumentMapper documentMapper;
+
+    @Mock
+    private IngestionBatchMapper ingestionBatchMapper;
+
+    @Spy
+    private RagDocumentProperties ragDocumentProperties = new RagDocumentProperties();
+
+    @InjectMocks
+    private ArchiveIngestionServiceImpl archiveIngestionService;
+
+    @TempDir
+    Path uploadDir;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(archiveIngestionService, "uploadStorage", new UploadStorage(ragDocumentProperties));
+        ragDocumentProperties.setUploadDir(uploadDir.toString());
+    }
+
+    /**
+     * 测试受支持的条目写入上传目录并批量创建文档，其他条目跳过并记录原因
+     */
+    @Test
+    void testIngestArchive_CreatesDocumentsInOneBatch() throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("docs/", null);
+        entries.put("docs/合同.txt", "第一条 合同内容");
+        entries.put("docs/notes.md", "# 标题\n正文");
+        entries.put("docs/setup.exe", "binary");
+        entries.put("__MACOSX/docs/._notes.md", "resource fork");
+        entries.put("docs/.DS_Store", "finder");
+        entries.put("../../etc/evil.txt", "escaped");
+        mockBatchInsert(7L);
+
+        IngestionBatchVO vo = archiveIngestionService.ingestArchive(zip("docs.zip", entries));
+
+        ArgumentCaptor<List<Document>> captor = documentListCaptor();
+        verify(documentService).createDocuments(captor.capture());
+        List<Document> documents = captor.getValue();
+        assertEquals(List.of("合同.txt", "notes.md", "evil.txt"),
+            documents.stream().map(Document::getFileName).toList());
+        for (Document document : documents) {
+            assertEquals(7L, document.getBatchId());
+            File stored = new File(document.getFilePath());
+            // 条目名中的 ../ 不影响写入位置
+            assertEquals(uploadDir.toFile().getAbsoluteFile(), stored.getParentFile());
+            assertEquals(DigestUtil.sha256Hex(Files.readAllBytes(stored.toPath())), document.getContentHash());
+            assertEquals(stored.length(), document.getFileSize());
+        }
+        assertEquals("第一条 合同内容", Files.readString(Path.of(documents.get(0).getFilePath())));
+
+        assertEquals(7L, vo.getBatchId());
+        assertEquals("PROCESSING", vo.getStatus());
+        assertEquals(3, vo.getTotalCount());
+        assertEquals(3, vo.getProcessingCount());
+        assertEquals(1, vo.getSkippedCount());
+        assertEquals(List.of("docs/setup.exe: 不支持的文件格式"), vo.getSkippedEntries());
+    }
+
+    /**
+     * 测试超过单文件上限和内容为空的条目被跳过，已写入的部分被删除
+     */
+    @Test
+    void testIngestArchive_SkipsOversizedAndEmptyEntries() throws Exception {
+        ragDocumentProperties.setMaxFileSize(16L);
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("big.txt", "x".repeat(100));
+        entries.put("empty.txt", "");
+        entries.put("small.txt", "ok");
+        mockBatchInsert(1L);
+
+        IngestionBatchVO vo = archiveIngestionService.ingestArchive(zip("docs.zip", entries));
+
+        assertEquals(1, vo.getTotalCount());
+        assertEquals(2, vo.getSkippedCount());
+        assertTrue(vo.getSkippedEntries().get(0).startsWith("big.txt: 文件过大"));
+        assertEquals("empty.txt: 文件为空", vo.getSkippedEntries().get(1));
+        assertEquals(1, uploadDir.toFile().listFiles().length);
+    }
+
+    /**
+     * 测试压缩包内没有可导入的文件时返回 400，不创建批次
+     */
+    @Test
+    void testIngestArchive_NothingToImport() throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("setup.exe", "binary");
+
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> archiveIngestionService.ingestArchive(zip("docs.zip", entries)));
+
+        assertEquals(400, exception.getCode());
+        verifyNoInteractions(ingestionBatchMapper, documentService);
+    }
+
+    /**
+     * 测试文件数超过上限时返回 400，已写入的文件被清理
+     */
+    @Test
+    void testIngestArchive_TooManyEntries() throws Exception {
+        ragDocumentProperties.setMaxArchiveEntries(2);
+        Map<String, String> entries = new LinkedHashMap<>();
+        for (int i = 0; i < 3; i++) {
+            entries.put("doc" + i + ".txt", "content " + i);
+        }
+
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> archiveIngestionService.ingestArchive(zip("docs.zip", entries)));
+
+        assertEquals(400, exception.getCode());
+        assertEquals(0, uploadDir.toFile().listFiles().length);
+        verifyNoInteractions(ingestionBatchMapper, documentService);
+    }
+
+    /**
+     * 测试非 ZIP 文件被拒绝
+     */
+    @Test
+    void testIngestArchive_RejectsNonZip() {
+        MockMultipartFile file = new MockMultipartFile("file", "docs.rar", "application/octet-stream", new byte[]{1, 2, 3});
+
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> archiveIngestionService.ingestArchive(file));
+
+        assertEquals(400, exception.getCode());
+    }
+
+    /**
+     * 测试批量创建文档失败时删除批次和已写入的文件
+     */
+    @Test
+    void testIngestArchive_CreateDocumentsFailsCleansUp() throws Exception {
+        Map<String, String> entries = new LinkedHashMap<>();
+        entries.put("a.txt", "a");
+        mockBatchInsert(3L);
+        doThrow(new BusinessException(500, "文档记录保存失败")).when(documentService).createDocuments(anyList());
+
+        assertThrows(BusinessException.class,
+            () -> archiveIngestionService.ingestArchive(zip("docs.zip", entries)));
+
+        verify(ingestionBatchMapper).deleteById(3L);
+        assertEquals(0, uploadDir.toFile().listFiles().length);
+    }
+
+    /**
+     * 测试批次进度按文档状态汇总
+     */
+    @Test
+    void testGetBatch_AggregatesDocumentStatus() {
+        IngestionBatch batch = new IngestionBatch();
+        batch.setId(5L);
+        batch.setFileName("docs.zip");
+        batch.setTotalCount(4);
+        batch.setSkippedCount(0);
+        batch.setSkippedEntries("[]");
+        when(ingestionBatchMapper.selectById(5L)).thenReturn(batch);
+        when(documentMapper.selectMaps(any())).thenReturn(List.of(
+            Map.of("status", "COMPLETED", "count", 3L),
+            Map.of("status", "FAILED", "count", 1L)));
+
+        IngestionBatchVO vo = archiveIngestionService.getBatch(5L);
+
+        assertEquals("COMPLETED_WITH_ERRORS", vo.getStatus());
+        assertEquals(3, vo.getCompletedCount());
+        assertEquals(1, vo.getFailedCount());
+        assertEquals(0, vo.getProcessingCount());
+    }
+
+    /**
+     * 测试批次不存在时返回 404
+     */
+    @Test
+    void testGetBatch_NotFound() {
+        when(ingestionBatchMapper.selectById(9L)).thenReturn(null);
+
+        BusinessException exception = assertThrows(BusinessException.class,
+            () -> archiveIngestionService.getBatch(9L));
+
+        assertEquals(404, exception.getCode());
+    }
+
+    private void mockBatchInsert(Long batchId) {
+        when(ingestionBatchMapper.insert(any(IngestionBatch.class))).thenAnswer(invocation -> {
+            invocation.<IngestionBatch>getArgument(0).setId(batchId);
+            return 1;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArgumentCaptor<List<Document>> documentListCaptor() {
+        return ArgumentCaptor.forClass(List.class);
+    }
+
+    /**
+     * 生成压缩包，内容为 null 的条目作为目录
+     */
+    private static MockMultipartFile zip(String name, Map<String, String> entries) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream out = new ZipOutputStream(bytes, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                out.putNextEntry(new ZipEntry(entry.getKey()));
+                if (entry.getValue() != null) {
+                    out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                }
+                out.closeEntry();
+            }
+        }
+        return new MockMultipartFile("file", name, "application/zip", bytes.toByteArray());
+    }
+}
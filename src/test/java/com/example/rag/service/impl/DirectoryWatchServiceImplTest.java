@@ -0,0 +1,226 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.WatchedFile;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.WatchedFileMapper;
+import com.example.rag.service.DocumentService;
+import com.example.rag.vo.DocumentVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * DirectoryWatchServiceImpl 单元测试
+ * 不启动后台线程，直接调用对账扫描和去抖检查，时间由测试传入
+ */
+@ExtendWith(MockitoExtension.class)
+class DirectoryWatchServiceImplTest {
+
+    private static final long SETTLE_MS = 5000L;
+
+    @Mock
+    private DocumentService documentService;
+
+    @Mock
+    private DocumentMapper documentMapper;
+
+    @Mock
+    private WatchedFileMapper watchedFileMapper;
+
+    @Spy
+    private RagDocumentProperties ragDocumentProperties = new RagDocumentProperties();
+
+    @InjectMocks
+    private DirectoryWatchServiceImpl directoryWatchService;
+
+    @TempDir
+    Path tempDir;
+
+    private Path inbox;
+    private Path uploads;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(directoryWatchService, "uploadStorage", new UploadStorage(ragDocumentProperties));
+        inbox = Files.createDirectories(tempDir.resolve("inbox"));
+        uploads = tempDir.resolve("uploads");
+        ragDocumentProperties.setWatchDir(inbox.toString());
+        ragDocumentProperties.setUploadDir(uploads.toString());
+        ragDocumentProperties.setWatchSettleMs(SETTLE_MS);
+    }
+
+    /**
+     * 测试对账扫描发现的新文件在稳定后导入，隐藏文件、锁文件和不支持的格式被忽略
+     */
+    @Test
+    void testReconcile_IngestsNewFileAfterSettling() throws Exception {
+        Path file = write(inbox.resolve("sub/合同.txt"), "第一条 合同内容");
+        write(inbox.resolve("sub/.合同.txt.swp"), "swap");
+        write(inbox.resolve("~$报告.docx"), "lock");
+        write(inbox.resolve("setup.exe"), "binary");
+        when(documentMapper.selectCount(any())).thenReturn(0L);
+        when(documentService.createDocument(anyString(), anyLong(), anyString(), anyString(), anyString()))
+            .thenReturn(documentVO(5L));
+
+        assertEquals(1, directoryWatchService.reconcile());
+
+        // 第一次检查只记录大小和修改时间，稳定时间不足时不导入
+        directoryWatchService.processSettled(1000L);
+        directoryWatchService.processSettled(1000L + SETTLE_MS - 1);
+        verifyNoInteractions(documentService);
+
+        directoryWatchService.processSettled(1000L + SETTLE_MS);
+
+        String hash = DigestUtil.sha256Hex(Files.readAllBytes(file));
+        verify(documentService).createDocument(eq("合同.txt"), eq(Files.size(file)), anyString(),
+            argThat(path -> path.startsWith(uploads.toAbsolutePath().toString())), eq(hash));
+        verify(watchedFileMapper).upsert(argThat((WatchedFile w) ->
+            w.getPath().equals(file.toString()) && hash.equals(w.getContentHash()) && w.getDocumentId() == 5L));
+
+        // 指纹未变化的文件不再加入队列
+        assertEquals(0, directoryWatchService.reconcile());
+    }
+
+    /**
+     * 测试仍在写入的文件在大小稳定之前不会导入
+     */
+    @Test
+    void testProcessSettled_WaitsWhileFileIsBeingWritten() throws Exception {
+        Path file = write(inbox.resolve("report.md"), "# 标题");
+        when(documentMapper.selectCount(any())).thenReturn(0L);
+        when(documentService.createDocument(anyString(), anyLong(), anyString(), anyString(), anyString()))
+            .thenReturn(documentVO(6L));
+        directoryWatchService.reconcile();
+        directoryWatchService.processSettled(0L);
+
+        Files.writeString(file, "\n正文继续写入", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        directoryWatchService.processSettled(SETTLE_MS);
+        verifyNoInteractions(documentService);
+
+        directoryWatchService.processSettled(2 * SETTLE_MS);
+        verify(documentService).createDocument(eq("report.md"), eq(Files.size(file)), anyString(), anyString(),
+            eq(DigestUtil.sha256Hex(Files.readAllBytes(file))));
+    }
+
+    /**
+     * 测试内容哈希已入库的文件被跳过，不复制到上传目录
+     */
+    @Test
+    void testProcessSettled_SkipsAlreadyIndexedContent() throws Exception {
+        Path file = write(inbox.resolve("copy.txt"), "已入库的内容");
+        when(documentMapper.selectCount(any())).thenReturn(1L);
+        directoryWatchService.reconcile();
+
+        settle();
+
+        verifyNoInteractions(documentService);
+        assertFalse(Files.exists(uploads));
+        verify(watchedFileMapper).upsert(argThat((WatchedFile w) ->
+            w.getPath().equals(file.toString()) && w.getContentHash() != null && w.getDocumentId() == null));
+    }
+
+    /**
+     * 测试只改了修改时间、内容未变的文件只更新指纹，不复制也不重新导入
+     */
+    @Test
+    void testProcessSettled_TouchedFileNotCopied() throws Exception {
+        Path file = write(inbox.resolve("touched.txt"), "内容不变");
+        when(documentMapper.selectCount(any())).thenReturn(0L);
+        when(documentService.createDocument(anyString(), anyLong(), anyString(), anyString(), anyString()))
+            .thenReturn(documentVO(8L));
+        directoryWatchService.reconcile();
+        settle();
+        try (var files = Files.list(uploads)) {
+            assertEquals(1, files.count());
+        }
+
+        long touchedAt = Files.getLastModifiedTime(file).toMillis() + 2000;
+        Files.setLastModifiedTime(file, FileTime.fromMillis(touchedAt));
+        assertEquals(1, directoryWatchService.reconcile());
+        settle();
+
+        verify(documentService, times(1)).createDocument(anyString(), anyLong(), anyString(), anyString(), anyString());
+        verify(documentMapper, never()).selectById(any());
+        try (var files = Files.list(uploads)) {
+            assertEquals(1, files.count());
+        }
+        verify(watchedFileMapper).upsert(argThat((WatchedFile w) ->
+            w.getLastModified() == touchedAt && w.getDocumentId() == 8L));
+    }
+
+    /**
+     * 测试同一路径的文件被修改后替换此前导入的文档
+     */
+    @Test
+    void testProcessSettled_ChangedFileReplacesDocument() throws Exception {
+        Path file = write(inbox.resolve("law.txt"), "第一版");
+        when(documentMapper.selectCount(any())).thenReturn(0L);
+        when(documentService.createDocument(anyString(), anyLong(), anyString(), anyString(), anyString()))
+            .thenReturn(documentVO(7L));
+        directoryWatchService.reconcile();
+        settle();
+
+        Files.writeString(file, "第二版，内容有修改", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+        when(documentMapper.selectById(7L)).thenReturn(new Document());
+        assertEquals(1, directoryWatchService.reconcile());
+        settle();
+
+        verify(documentService).replaceDocumentFile(eq(7L), eq("law.txt"), eq(Files.size(file)), anyString(),
+            anyString(), eq(DigestUtil.sha256Hex(Files.readAllBytes(file))));
+        verify(documentService, times(1)).createDocument(anyString(), anyLong(), anyString(), anyString(), anyString());
+    }
+
+    /**
+     * 测试超过大小上限的文件不读取内容，只记录指纹，之后不再重复检查
+     */
+    @Test
+    void testProcessSettled_OversizedFileRecordedWithoutReading() throws Exception {
+        ragDocumentProperties.setMaxFileSize(4L);
+        Path file = write(inbox.resolve("big.pdf"), "超过上限的文件内容");
+        directoryWatchService.reconcile();
+
+        settle();
+
+        verifyNoInteractions(documentService, documentMapper);
+        assertFalse(Files.exists(uploads));
+        verify(watchedFileMapper).upsert(argThat((WatchedFile w) ->
+            w.getPath().equals(file.toString()) && w.getContentHash() == null));
+        assertEquals(0, directoryWatchService.reconcile());
+    }
+
+    private void settle() {
+        directoryWatchService.processSettled(0L);
+        directoryWatchService.processSettled(SETTLE_MS);
+    }
+
+    private static Path write(Path path, String content) throws Exception {
+        Files.createDirectories(path.getParent());
+        return Files.writeString(path, content, StandardCharsets.UTF_8);
+    }
+
+    private static DocumentVO documentVO(Long id) {
+        DocumentVO vo = new DocumentVO();
+        vo.setId(id);
+        return vo;
+    }
+}
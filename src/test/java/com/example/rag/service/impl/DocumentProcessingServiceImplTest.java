@@ -1,13 +1,23 @@
 package com.example.rag.service.impl;
 
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.OpenRouterProperties;
+import com.example.rag.config.RagAsyncProperties;
 import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.config.RagIngestionProperties;
 import com.example.rag.entity.Document;
 import com.example.rag.entity.DocumentChunk;
 import com.example.rag.mapper.DocumentChunkMapper;
 import com.example.rag.mapper.DocumentMapper;
 import com.example.rag.service.DocumentProcessor;
 import com.example.rag.service.EmbeddingService;
+import com.example.rag.service.IngestionProgressService;
 import com.example.rag.service.VectorStoreService;
+import com.example.rag.util.ChunkSizeUnit;
+import com.example.rag.util.ChunkingStrategy;
+import com.example.rag.util.ContentDefinedChunker;
+import com.example.rag.util.TextChunker;
+import com.example.rag.util.TokenEstimator;
 import com.example.rag.vo.VectorPoint;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,13 +26,19 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntConsumer;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -51,7 +67,19 @@ class DocumentProcessingServiceImplTest {
     private VectorStoreService vectorStoreService;
 
     @Mock
-    private RagDocumentProperties ragDocumentProperties;
+    private IngestionProgressService ingestionProgressService;
+
+    @Spy
+    private RagDocumentProperties ragDocumentProperties = new RagDocumentProperties();
+
+    @Spy
+    private RagIngestionProperties ragIngestionProperties = new RagIngestionProperties();
+
+    @Spy
+    private OpenRouterProperties openRouterProperties = new OpenRouterProperties();
+
+    @Spy
+    private DownstreamLimiter downstreamLimiter = new DownstreamLimiter(new RagAsyncProperties());
 
     @InjectMocks
     private DocumentProcessingServiceImpl documentProcessingService;
@@ -60,7 +88,7 @@ class DocumentProcessingServiceImplTest {
     private ArgumentCaptor<Document> documentCaptor;
 
     @Captor
-    private ArgumentCaptor<DocumentChunk> chunkCaptor;
+    private ArgumentCaptor<List<DocumentChunk>> chunkCaptor;
 
     @Captor
     private ArgumentCaptor<List<VectorPoint>> vectorPointsCaptor;
@@ -78,6 +106,15 @@ class DocumentProcessingServiceImplTest {
         testDocument.setStatus("PROCESSING");
         testDocument.setUploadTime(LocalDateTime.now());
         testDocument.setChunkCount(0);
+
+        // 默认走一次性提取 + 固定长度分割，流式与其他分块策略在单独的用例中覆盖
+        ragDocumentProperties.setStreamingExtraction(false);
+        ragDocumentProperties.setChunkingStrategy(ChunkingStrategy.FIXED);
+
+        // 跨文档合并向量化在 IngestionEmbeddingBatcherTest 中覆盖，这里每个批次单独发送
+        ragIngestionProperties.setSharedEmbeddingBatchEnabled(false);
+        ReflectionTestUtils.setField(documentProcessingService, "ingestionEmbeddingBatcher",
+                new IngestionEmbeddingBatcher(embeddingService, openRouterProperties, ragIngestionProperties, downstreamLimiter));
     }
 
     @Test
@@ -92,8 +129,7 @@ class DocumentProcessingServiceImplTest {
         when(ragDocumentProperties.getChunkSize()).thenReturn(800);
         when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
         when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
-        when(embeddingService.embed(anyString())).thenReturn(mockVector);
-        when(documentChunkMapper.insert(any(DocumentChunk.class))).thenReturn(1);
+        when(embeddingService.embedAll(chunks)).thenReturn(vectors(3, mockVector));
         when(documentMapper.updateById(any(Document.class))).thenReturn(1);
 
         // Act
@@ -105,11 +141,9 @@ class DocumentProcessingServiceImplTest {
         // Assert - verify text splitting
         verify(documentProcessor).splitDocument(extractedText, 800, 150);
 
-        // Assert - verify embedding called for each chunk
-        verify(embeddingService, times(3)).embed(anyString());
-        verify(embeddingService).embed("chunk1 content");
-        verify(embeddingService).embed("chunk2 content");
-        verify(embeddingService).embed("chunk3 content");
+        // Assert - verify all chunks embedded through one batched call, never one by one
+        verify(embeddingService).embedAll(chunks);
+        verify(embeddingService, never()).embed(anyString());
 
         // Assert - verify vector batch storage
         verify(vectorStoreService).storeVectorBatch(vectorPointsCaptor.capture());
@@ -128,7 +162,7 @@ class DocumentProcessingServiceImplTest {
         }
 
         // Assert - verify chunk records saved to DB
-        verify(documentChunkMapper, times(3)).insert(any(DocumentChunk.class));
+        verify(documentChunkMapper).insertBatch(argThat(rows -> rows.size() == 3));
 
         // Assert - verify document status updated to COMPLETED
         verify(documentMapper).updateById(documentCaptor.capture());
@@ -136,6 +170,223 @@ class DocumentProcessingServiceImplTest {
         assertEquals("COMPLETED", updatedDocument.getStatus());
         assertEquals(3, updatedDocument.getChunkCount());
         assertNotNull(updatedDocument.getProcessTime());
+
+        // Assert - verify progress counters reported for every stage
+        verify(ingestionProgressService).start(1L);
+        verify(ingestionProgressService, times(3)).chunksExtracted(1L, 1);
+        verify(ingestionProgressService).extractionFinished(1L);
+        verify(ingestionProgressService).chunksEmbedded(1L, 3);
+        verify(ingestionProgressService).chunksStored(1L, 3);
+        verify(ingestionProgressService).finish(1L, IngestionProgressService.STATUS_COMPLETED, null);
+    }
+
+    @Test
+    void testProcessDocument_StreamingExtraction() throws Exception {
+        // Arrange - 流式提取，使用句子感知分块
+        String text = "第一句话的内容比较长。第二句话也有一些内容。第三句话在这里结束。第四句。";
+        ragDocumentProperties.setStreamingExtraction(true);
+        ragDocumentProperties.setChunkingStrategy(ChunkingStrategy.SENTENCE);
+        ragDocumentProperties.setBoundaryTolerance(10);
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(24);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(0);
+        when(documentProcessor.extractChunks(any(File.class), any(), any(TextChunker.class), any(IntConsumer.class)))
+                .thenAnswer(invocation -> {
+                    TextChunker chunker = invocation.getArgument(2);
+                    chunker.append(text.toCharArray(), 0, text.length());
+                    chunker.finish();
+                    return chunker.getChunkCount();
+                });
+        when(embeddingService.embedAll(anyList()))
+                .thenAnswer(invocation -> vectors(((List<?>) invocation.getArgument(0)).size(), new float[]{0.1f}));
+        when(documentMapper.updateById(any(Document.class))).thenReturn(1);
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - full text is never materialised, chunks end on sentence boundaries
+        verify(documentProcessor, never()).extractText(any(File.class));
+        verify(documentProcessor, never()).splitDocument(anyString(), anyInt(), anyInt());
+        verify(embeddingService).embedAll(Arrays.asList(
+                "第一句话的内容比较长。第二句话也有一些内容。", "第三句话在这里结束。第四句。"));
+        verify(documentChunkMapper).insertBatch(argThat(rows -> rows.size() == 2));
+
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("COMPLETED", documentCaptor.getValue().getStatus());
+        assertEquals(2, documentCaptor.getValue().getChunkCount());
+    }
+
+    @Test
+    void testProcessDocument_RecordsChunkStartPage() throws Exception {
+        // Arrange - 提取器逐页报告页码，第二个片段从第 1 页末尾开始、跨到第 2 页
+        ragDocumentProperties.setStreamingExtraction(true);
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(10);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(0);
+        when(documentProcessor.extractChunks(any(File.class), any(), any(TextChunker.class), any(IntConsumer.class)))
+                .thenAnswer(invocation -> {
+                    TextChunker chunker = invocation.getArgument(2);
+                    IntConsumer pageListener = invocation.getArgument(3);
+                    char[] page1 = "aaaaaaaaaaaaaaa".toCharArray();
+                    char[] page2 = "bbbbbbbbbbbbbbb".toCharArray();
+                    pageListener.accept(1);
+                    chunker.append(page1, 0, page1.length);
+                    pageListener.accept(2);
+                    chunker.append(page2, 0, page2.length);
+                    chunker.finish();
+                    return chunker.getChunkCount();
+                });
+        when(embeddingService.embedAll(anyList()))
+                .thenAnswer(invocation -> vectors(((List<?>) invocation.getArgument(0)).size(), new float[]{0.1f}));
+        when(documentMapper.updateById(any(Document.class))).thenReturn(1);
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - 页码写入片段记录和向量 payload
+        verify(documentChunkMapper).insertBatch(chunkCaptor.capture());
+        assertEquals(Arrays.asList(1, 1, 2), chunkCaptor.getValue().stream().map(DocumentChunk::getPageNumber).toList());
+        verify(vectorStoreService).storeVectorBatch(vectorPointsCaptor.capture());
+        assertEquals(Arrays.asList(1, 1, 2), vectorPointsCaptor.getValue().stream()
+                .map(point -> point.getMetadata().get("page_number")).toList());
+    }
+
+    @Test
+    void testProcessDocument_MultipleBatchesFlowThroughAllStages() throws Exception {
+        // Arrange - batch size 2 splits 5 chunks into 3 batches
+        openRouterProperties.setEmbeddingBatchSize(2);
+        ragIngestionProperties.setQueueCapacity(1);
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("c0", "c1", "c2", "c3", "c4");
+        float[] mockVector = new float[]{0.1f};
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(anyList()))
+                .thenAnswer(invocation -> vectors(((List<?>) invocation.getArgument(0)).size(), mockVector));
+        when(documentMapper.updateById(any(Document.class))).thenReturn(1);
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - one embedding request and one upsert per batch
+        verify(embeddingService, times(3)).embedAll(anyList());
+        verify(vectorStoreService, times(3)).storeVectorBatch(vectorPointsCaptor.capture());
+        List<Integer> storedIndexes = vectorPointsCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(point -> (Integer) point.getMetadata().get("chunk_index"))
+                .sorted()
+                .toList();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), storedIndexes);
+        verify(documentChunkMapper).insertBatch(argThat(rows -> rows.size() == 5));
+
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("COMPLETED", documentCaptor.getValue().getStatus());
+        assertEquals(5, documentCaptor.getValue().getChunkCount());
+    }
+
+    @Test
+    void testProcessDocument_ChunkRecordsInsertedInBulk() throws Exception {
+        // Arrange - 2 embedding batches of 3, insert batch size 4
+        openRouterProperties.setEmbeddingBatchSize(3);
+        ragIngestionProperties.setChunkInsertBatchSize(4);
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("c0", "c1", "c2", "c3", "c4", "c5");
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(anyList()))
+                .thenAnswer(invocation -> vectors(((List<?>) invocation.getArgument(0)).size(), new float[]{0.1f}));
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - rows are buffered across batches and written at most 4 per statement, never one by one
+        verify(documentChunkMapper, never()).insert(any(DocumentChunk.class));
+        verify(documentChunkMapper, times(2)).insertBatch(chunkCaptor.capture());
+        List<Integer> sizes = chunkCaptor.getAllValues().stream().map(List::size).toList();
+        assertEquals(Arrays.asList(4, 2), sizes);
+        List<Integer> insertedIndexes = chunkCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(DocumentChunk::getChunkIndex)
+                .sorted()
+                .toList();
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), insertedIndexes);
+    }
+
+    @Test
+    void testProcessDocument_LaterBatchEmbeddingFails() throws Exception {
+        // Arrange - second batch fails after the first one has been embedded
+        openRouterProperties.setEmbeddingBatchSize(1);
+        ragIngestionProperties.setEmbeddingConcurrency(1);
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("c0", "c1", "c2");
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(anyList()))
+                .thenReturn(vectors(1, new float[]{0.1f}))
+                .thenThrow(new RuntimeException("Embedding 502"));
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - failure surfaces and the document is marked FAILED
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("FAILED", documentCaptor.getValue().getStatus());
+        assertEquals("Embedding 502", documentCaptor.getValue().getErrorMessage());
+        verify(embeddingService, atMost(2)).embedAll(anyList());
+    }
+
+    @Test
+    void testProcessDocument_FailureSavesBufferedChunksForRetry() throws Exception {
+        // Arrange - 默认批量插入条数远大于已处理的片段，第三个批次向量化失败
+        openRouterProperties.setEmbeddingBatchSize(1);
+        ragIngestionProperties.setEmbeddingConcurrency(1);
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("c0", "c1", "c2", "c3");
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(anyList()))
+                .thenReturn(vectors(1, new float[]{0.1f}))
+                .thenReturn(vectors(1, new float[]{0.1f}))
+                .thenThrow(new RuntimeException("Embedding 502"))
+                .thenReturn(vectors(1, new float[]{0.1f}));
+
+        // Act - 第一次处理失败
+        documentProcessingService.processDocument(1L);
+
+        // Assert - 已写入 Qdrant 的片段记录在中止前保存
+        verify(documentChunkMapper).insertBatch(chunkCaptor.capture());
+        List<DocumentChunk> saved = new ArrayList<>(chunkCaptor.getValue());
+        assertEquals(List.of(0, 1), saved.stream().map(DocumentChunk::getChunkIndex).sorted().toList());
+
+        // Act - 重新处理时从保存的片段记录继续
+        when(documentChunkMapper.selectList(any())).thenReturn(saved);
+        documentProcessingService.processDocument(1L);
+
+        // Assert - 只有失败批次及之后的片段被重新向量化
+        verify(embeddingService, times(5)).embedAll(anyList());
+        verify(embeddingService, times(2)).embedAll(List.of("c2"));
+        verify(embeddingService).embedAll(List.of("c3"));
+        verify(ingestionProgressService, times(2)).chunksResumed(1L, 1);
+        verify(documentMapper, times(2)).updateById(documentCaptor.capture());
+        assertEquals("COMPLETED", documentCaptor.getValue().getStatus());
+        assertEquals(4, documentCaptor.getValue().getChunkCount());
     }
 
     @Test
@@ -187,8 +438,7 @@ class DocumentProcessingServiceImplTest {
         when(ragDocumentProperties.getChunkSize()).thenReturn(800);
         when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
         when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
-        when(embeddingService.embed("chunk1")).thenReturn(new float[]{0.1f});
-        when(embeddingService.embed("chunk2")).thenThrow(new RuntimeException("Embedding API error"));
+        when(embeddingService.embedAll(chunks)).thenThrow(new RuntimeException("Embedding API error"));
 
         // Act
         documentProcessingService.processDocument(1L);
@@ -201,6 +451,9 @@ class DocumentProcessingServiceImplTest {
 
         // Vector storage should not happen since embedding failed
         verifyNoInteractions(vectorStoreService);
+
+        // 失败的最终状态由入库任务决定（可能重试），这里不结束进度
+        verify(ingestionProgressService, never()).finish(anyLong(), anyString(), any());
     }
 
     @Test
@@ -215,7 +468,7 @@ class DocumentProcessingServiceImplTest {
         when(ragDocumentProperties.getChunkSize()).thenReturn(800);
         when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
         when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
-        when(embeddingService.embed(anyString())).thenReturn(mockVector);
+        when(embeddingService.embedAll(chunks)).thenReturn(vectors(chunks.size(), mockVector));
         doThrow(new RuntimeException("Qdrant storage error"))
                 .when(vectorStoreService).storeVectorBatch(anyList());
 
@@ -241,16 +494,17 @@ class DocumentProcessingServiceImplTest {
         when(ragDocumentProperties.getChunkSize()).thenReturn(800);
         when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
         when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
-        when(embeddingService.embed(anyString())).thenReturn(mockVector);
-        when(documentChunkMapper.insert(any(DocumentChunk.class))).thenReturn(1);
+        when(embeddingService.embedAll(chunks)).thenReturn(vectors(chunks.size(), mockVector));
         when(documentMapper.updateById(any(Document.class))).thenReturn(1);
 
         // Act
         documentProcessingService.processDocument(1L);
 
         // Assert - verify chunk records
-        verify(documentChunkMapper, times(2)).insert(chunkCaptor.capture());
-        List<DocumentChunk> savedChunks = chunkCaptor.getAllValues();
+        verify(documentChunkMapper).insertBatch(chunkCaptor.capture());
+        verify(documentChunkMapper, never()).insert(any(DocumentChunk.class));
+        List<DocumentChunk> savedChunks = chunkCaptor.getValue();
+        assertEquals(2, savedChunks.size());
 
         // First chunk
         DocumentChunk chunk0 = savedChunks.get(0);
@@ -259,6 +513,7 @@ class DocumentProcessingServiceImplTest {
         assertEquals("first chunk content", chunk0.getContent());
         assertNotNull(chunk0.getVectorId());
         assertEquals("first chunk content".length(), chunk0.getCharCount());
+        assertEquals(DigestUtil.sha256Hex("first chunk content"), chunk0.getContentHash());
 
         // Second chunk
         DocumentChunk chunk1 = savedChunks.get(1);
@@ -284,8 +539,7 @@ class DocumentProcessingServiceImplTest {
         when(ragDocumentProperties.getChunkSize()).thenReturn(800);
         when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
         when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
-        when(embeddingService.embed(anyString())).thenReturn(mockVector);
-        when(documentChunkMapper.insert(any(DocumentChunk.class))).thenReturn(1);
+        when(embeddingService.embedAll(chunks)).thenReturn(vectors(chunks.size(), mockVector));
         when(documentMapper.updateById(any(Document.class))).thenReturn(1);
 
         // Act
@@ -298,6 +552,103 @@ class DocumentProcessingServiceImplTest {
         assertEquals(4, uniqueIds, "All vector IDs should be unique");
     }
 
+    @Test
+    void testProcessDocument_ResumesFromCheckpoint() throws Exception {
+        // Arrange - 上次处理在保存前两个片段后中断，另有一条超出新片段数量的记录
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("chunk1", "chunk2", "chunk3", "chunk4");
+        float[] mockVector = new float[]{0.1f};
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentChunkMapper.selectList(any())).thenReturn(Arrays.asList(
+                savedChunk(11L, 0, "chunk1"), savedChunk(12L, 1, "chunk2"), savedChunk(16L, 5, "old chunk")));
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(chunks.subList(2, 4))).thenReturn(vectors(2, mockVector));
+        when(documentMapper.updateById(any(Document.class))).thenReturn(1);
+        testDocument.setChunkingSignature(ReflectionTestUtils.invokeMethod(documentProcessingService, "chunkingSignature"));
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - 只有检查点之后的片段被向量化和写入
+        verify(embeddingService).embedAll(chunks.subList(2, 4));
+        verify(vectorStoreService).storeVectorBatch(vectorPointsCaptor.capture());
+        assertEquals(List.of(2, 3), vectorPointsCaptor.getValue().stream()
+                .map(point -> point.getMetadata().get("chunk_index")).toList());
+        verify(documentChunkMapper).insertBatch(argThat(rows -> rows.size() == 2));
+
+        // 不再对应任何片段的记录被删除，检查点未被清空
+        verify(vectorStoreService).deleteVectors(List.of("vector-16"));
+        verify(documentChunkMapper).deleteByIds(List.of(16L));
+        verify(vectorStoreService, never()).deleteByDocumentId(anyLong());
+        verify(documentMapper, never()).update(any(), any());
+
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("COMPLETED", documentCaptor.getValue().getStatus());
+        assertEquals(4, documentCaptor.getValue().getChunkCount());
+
+        // 沿用的片段同时计入已向量化和已保存
+        verify(ingestionProgressService, times(4)).chunksExtracted(1L, 1);
+        verify(ingestionProgressService, times(2)).chunksResumed(1L, 1);
+        verify(ingestionProgressService).chunksEmbedded(1L, 2);
+        verify(ingestionProgressService).chunksStored(1L, 2);
+    }
+
+    @Test
+    void testProcessDocument_ChunkingChangedStartsOver() throws Exception {
+        // Arrange - 已保存的片段按其他分块配置生成
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("chunk1", "chunk2");
+        testDocument.setChunkingSignature("SENTENCE|CHARACTERS|500|50|160|streaming|old-model");
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentChunkMapper.selectList(any())).thenReturn(List.of(savedChunk(11L, 0, "chunk1")));
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(chunks)).thenReturn(vectors(2, new float[]{0.1f}));
+        when(documentMapper.updateById(any(Document.class))).thenReturn(1);
+
+        // Act
+        documentProcessingService.processDocument(1L);
+
+        // Assert - 清空后全部重新处理，并记录新的分块配置
+        verify(vectorStoreService).deleteByDocumentId(1L);
+        verify(documentChunkMapper).delete(any());
+        verify(embeddingService).embedAll(chunks);
+        verify(documentMapper).update(isNull(), any());
+        assertNotEquals("SENTENCE|CHARACTERS|500|50|160|streaming|old-model", testDocument.getChunkingSignature());
+    }
+
+    @Test
+    void testProcessDocument_VectorIdsStableAcrossRuns() throws Exception {
+        // Arrange
+        String extractedText = "Test text";
+        List<String> chunks = Arrays.asList("chunk1", "chunk2");
+
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentProcessor.extractText(any(File.class))).thenReturn(extractedText);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(800);
+        when(ragDocumentProperties.getChunkOverlap()).thenReturn(150);
+        when(documentProcessor.splitDocument(extractedText, 800, 150)).thenReturn(chunks);
+        when(embeddingService.embedAll(chunks)).thenReturn(vectors(2, new float[]{0.1f}));
+
+        // Act - 中断后重新处理时，未持久化的向量以相同的ID被覆盖
+        documentProcessingService.processDocument(1L);
+        documentProcessingService.processDocument(1L);
+
+        // Assert
+        verify(vectorStoreService, times(2)).storeVectorBatch(vectorPointsCaptor.capture());
+        List<List<VectorPoint>> runs = vectorPointsCaptor.getAllValues();
+        assertEquals(runs.get(0).stream().map(VectorPoint::getId).toList(),
+                runs.get(1).stream().map(VectorPoint::getId).toList());
+        assertNotEquals(runs.get(0).get(0).getId(), runs.get(0).get(1).getId());
+    }
+
     @Test
     void testProcessDocument_EmptyChunks() throws Exception {
         // Arrange
@@ -317,7 +668,7 @@ class DocumentProcessingServiceImplTest {
         // Assert - no embedding or vector storage should happen
         verifyNoInteractions(embeddingService);
         verify(vectorStoreService, never()).storeVectorBatch(anyList());
-        verify(documentChunkMapper, never()).insert(any(DocumentChunk.class));
+        verify(documentChunkMapper, never()).insertBatch(anyList());
 
         // Document should still be marked as COMPLETED with 0 chunks
         verify(documentMapper).updateById(documentCaptor.capture());
@@ -341,4 +692,229 @@ class DocumentProcessingServiceImplTest {
         // Assert - updateById should not be called since document is null in error handler
         verify(documentMapper, never()).updateById(any(Document.class));
     }
+
+    @Test
+    void testCloneDocument_CopiesChunksAndVectors() throws Exception {
+        // Arrange
+        Document source = new Document();
+        source.setId(9L);
+        source.setFileName("source.pdf");
+        source.setStatus("COMPLETED");
+        source.setChunkCount(2);
+        source.setChunkingSignature("source-signature");
+
+        DocumentChunk chunk0 = sourceChunk(0, "第一段内容", "src-0");
+        DocumentChunk chunk1 = sourceChunk(1, "第二段内容", "src-1");
+        when(documentChunkMapper.selectList(any())).thenReturn(Arrays.asList(chunk0, chunk1));
+        when(vectorStoreService.getVectors(Arrays.asList("src-0", "src-1"))).thenReturn(Map.of(
+                "src-0", new float[]{0.1f}, "src-1", new float[]{0.2f}));
+
+        // Act
+        boolean cloned = documentProcessingService.cloneDocument(source, testDocument);
+
+        // Assert
+        assertTrue(cloned);
+        verify(embeddingService, never()).embedAll(anyList());
+        verify(documentProcessor, never()).extractText(any(File.class));
+
+        verify(vectorStoreService).storeVectorBatch(vectorPointsCaptor.capture());
+        List<VectorPoint> points = vectorPointsCaptor.getValue();
+        assertEquals(2, points.size());
+        assertArrayEquals(new float[]{0.2f}, points.get(1).getVector());
+        assertEquals(1L, points.get(0).getMetadata().get("document_id"));
+        assertEquals("test.pdf", points.get(0).getMetadata().get("document_name"));
+        assertEquals("第二段内容", points.get(1).getMetadata().get("content"));
+        assertNotEquals("src-0", points.get(0).getId());
+
+        verify(documentChunkMapper).insertBatch(chunkCaptor.capture());
+        List<DocumentChunk> inserted = chunkCaptor.getValue();
+        assertEquals(1L, inserted.get(0).getDocumentId());
+        assertEquals(points.get(0).getId(), inserted.get(0).getVectorId());
+        assertEquals(1, inserted.get(1).getChunkIndex());
+
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("COMPLETED", documentCaptor.getValue().getStatus());
+        assertEquals(2, documentCaptor.getValue().getChunkCount());
+        assertEquals("source-signature", documentCaptor.getValue().getChunkingSignature());
+    }
+
+    @Test
+    void testCloneDocument_MissingVectorFallsBack() {
+        // Arrange - 源文档的向量已不在 Qdrant 中
+        Document source = new Document();
+        source.setId(9L);
+        source.setStatus("COMPLETED");
+        source.setChunkCount(1);
+
+        when(documentChunkMapper.selectList(any())).thenReturn(List.of(sourceChunk(0, "内容", "src-0")));
+        when(vectorStoreService.getVectors(List.of("src-0"))).thenReturn(Collections.emptyMap());
+
+        // Act
+        boolean cloned = documentProcessingService.cloneDocument(source, testDocument);
+
+        // Assert - 返回 false 并清理已写入的数据，不更新文档状态
+        assertFalse(cloned);
+        verify(vectorStoreService, never()).storeVectorBatch(anyList());
+        verify(vectorStoreService).deleteByDocumentId(1L);
+        verify(documentChunkMapper).delete(any());
+        verify(documentMapper, never()).updateById(any(Document.class));
+    }
+
+    @Test
+    void testReprocessDocument_OnlyChangedChunksAreEmbedded() throws Exception {
+        // Arrange - 旧版本按基于内容的分块写入，新版本在中间修改了一段
+        String head = randomText(1, 3000);
+        String tail = randomText(2, 3000);
+        String oldText = head + randomText(3, 300) + tail;
+        String newText = head + randomText(4, 320) + tail;
+
+        List<String> oldChunks = contentDefinedChunks(oldText);
+        List<DocumentChunk> existingRows = new ArrayList<>();
+        for (int i = 0; i < oldChunks.size(); i++) {
+            DocumentChunk row = sourceChunk(i, oldChunks.get(i), "old-" + i);
+            row.setId(100L + i);
+            row.setDocumentId(1L);
+            row.setContentHash(DigestUtil.sha256Hex(oldChunks.get(i)));
+            existingRows.add(row);
+        }
+        List<String> newChunks = contentDefinedChunks(newText);
+        List<String> addedChunks = newChunks.stream().filter(c -> !oldChunks.contains(c)).toList();
+        List<String> removedChunks = oldChunks.stream().filter(c -> !newChunks.contains(c)).toList();
+
+        testDocument.setStatus("PROCESSING");
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentChunkMapper.selectList(any())).thenReturn(existingRows);
+        when(ragDocumentProperties.getChunkSize()).thenReturn(200);
+        when(documentProcessor.extractChunks(any(File.class), any(), any(TextChunker.class), any(IntConsumer.class)))
+                .thenAnswer(invocation -> {
+                    TextChunker chunker = invocation.getArgument(2);
+                    chunker.append(newText.toCharArray(), 0, newText.length());
+                    chunker.finish();
+                    return chunker.getChunkCount();
+                });
+        when(embeddingService.embedAll(anyList()))
+                .thenAnswer(invocation -> vectors(invocation.<List<String>>getArgument(0).size(), new float[]{0.1f}));
+
+        // Act
+        documentProcessingService.reprocessDocument(1L);
+
+        // Assert - 只有变化的片段被向量化，且远少于全部片段
+        assertFalse(addedChunks.isEmpty());
+        assertTrue(addedChunks.size() * 4 < newChunks.size(),
+                "修改一段只应影响附近的少数片段，新增 " + addedChunks.size() + " / " + newChunks.size());
+        verify(embeddingService).embedAll(addedChunks);
+        verify(documentChunkMapper).insertBatch(argThat(rows -> rows.size() == addedChunks.size()));
+
+        // 不再存在的片段被删除
+        List<String> removedVectorIds = new ArrayList<>();
+        for (int i = 0; i < oldChunks.size(); i++) {
+            if (removedChunks.contains(oldChunks.get(i))) {
+                removedVectorIds.add("old-" + i);
+            }
+        }
+        verify(vectorStoreService).deleteVectors(removedVectorIds);
+
+        // 沿用的片段只更新索引和 payload
+        verify(documentChunkMapper).update(isNull(), any());
+        verify(documentChunkMapper).updateById(anyCollection());
+        verify(vectorStoreService).updatePayloads(argThat(payloads ->
+                payloads.size() == newChunks.size() - addedChunks.size()));
+
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("COMPLETED", documentCaptor.getValue().getStatus());
+        assertEquals(newChunks.size(), documentCaptor.getValue().getChunkCount());
+    }
+
+    @Test
+    void testReprocessDocument_TokenUnitBoundsChunkTokens() throws Exception {
+        // Arrange - 按 token 计量时，chunk-size 作为基于内容分块的最大长度
+        String text = randomText(5, 3000);
+        ragDocumentProperties.setChunkSizeUnit(ChunkSizeUnit.TOKENS);
+        ragDocumentProperties.setChunkSize(200);
+
+        testDocument.setStatus("PROCESSING");
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentChunkMapper.selectList(any())).thenReturn(Collections.emptyList());
+        when(documentProcessor.extractChunks(any(File.class), any(), any(TextChunker.class), any(IntConsumer.class)))
+                .thenAnswer(invocation -> {
+                    TextChunker chunker = invocation.getArgument(2);
+                    chunker.append(text.toCharArray(), 0, text.length());
+                    chunker.finish();
+                    return chunker.getChunkCount();
+                });
+        when(embeddingService.embedAll(anyList()))
+                .thenAnswer(invocation -> vectors(invocation.<List<String>>getArgument(0).size(), new float[]{0.1f}));
+
+        // Act
+        documentProcessingService.reprocessDocument(1L);
+
+        // Assert - 每个片段的估算 token 数都不超过 chunk-size
+        verify(vectorStoreService, atLeastOnce()).storeVectorBatch(vectorPointsCaptor.capture());
+        List<String> contents = vectorPointsCaptor.getAllValues().stream()
+                .flatMap(List::stream)
+                .map(point -> (String) point.getMetadata().get("content"))
+                .toList();
+        assertTrue(contents.size() > 3000 / 200);
+        assertTrue(contents.stream().allMatch(content -> TokenEstimator.estimate(content) <= 200));
+        assertEquals(text.length(), contents.stream().mapToInt(String::length).sum());
+    }
+
+    @Test
+    void testReprocessDocument_ExtractionFailsMarksFailed() throws Exception {
+        // Arrange
+        when(documentMapper.selectById(1L)).thenReturn(testDocument);
+        when(documentChunkMapper.selectList(any())).thenReturn(Collections.emptyList());
+        when(ragDocumentProperties.getChunkSize()).thenReturn(200);
+        when(documentProcessor.extractChunks(any(File.class), any(), any(TextChunker.class), any(IntConsumer.class)))
+                .thenThrow(new Exception("文本提取失败: corrupt"));
+
+        // Act
+        documentProcessingService.reprocessDocument(1L);
+
+        // Assert
+        verify(embeddingService, never()).embedAll(anyList());
+        verify(documentMapper).updateById(documentCaptor.capture());
+        assertEquals("FAILED", documentCaptor.getValue().getStatus());
+        assertEquals("文本提取失败: corrupt", documentCaptor.getValue().getErrorMessage());
+    }
+
+    private List<String> contentDefinedChunks(String text) {
+        List<String> chunks = new ArrayList<>();
+        ContentDefinedChunker chunker = new ContentDefinedChunker(200, chunks::add);
+        chunker.append(text.toCharArray(), 0, text.length());
+        chunker.finish();
+        return chunks;
+    }
+
+    private String randomText(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) (0x4E00 + random.nextInt(2000)));
+        }
+        return sb.toString();
+    }
+
+    private DocumentChunk sourceChunk(int chunkIndex, String content, String vectorId) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setDocumentId(9L);
+        chunk.setChunkIndex(chunkIndex);
+        chunk.setContent(content);
+        chunk.setVectorId(vectorId);
+        chunk.setCharCount(content.length());
+        return chunk;
+    }
+
+    private DocumentChunk savedChunk(Long id, int chunkIndex, String content) {
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setId(id);
+        chunk.setChunkIndex(chunkIndex);
+        chunk.setVectorId("vector-" + id);
+        chunk.setContentHash(DigestUtil.sha256Hex(content));
+        return chunk;
+    }
+
+    private List<float[]> vectors(int count, float[] vector) {
+        return Collections.nCopies(count, vector);
+    }
 }
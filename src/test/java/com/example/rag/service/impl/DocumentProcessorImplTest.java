@@ -1,15 +1,32 @@
 package com.example.rag.service.impl;
 
+import com.example.rag.config.RagDocumentProperties;
 import com.example.rag.service.DocumentProcessor;
+import com.example.rag.util.ContentDefinedChunker;
+import com.example.rag.util.IncrementalChunker;
+import com.example.rag.util.SentenceAwareChunker;
+import com.example.rag.util.TextChunker;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,6 +44,13 @@ class DocumentProcessorImplTest {
     @BeforeEach
     void setUp() {
         documentProcessor = new DocumentProcessorImpl();
+        RagDocumentProperties properties = new RagDocumentProperties();
+        ReflectionTestUtils.setField(documentProcessor, "plainTextExtractor", new PlainTextExtractor(properties));
+        ReflectionTestUtils.setField(documentProcessor, "pdfPageExtractor", new PdfPageExtractor(properties));
+        ReflectionTestUtils.setField(documentProcessor, "spreadsheetExtractor", new SpreadsheetExtractor(properties));
+        ReflectionTestUtils.setField(documentProcessor, "forkedTikaParser", new ForkedTikaParser(properties));
+        properties.setTextCacheDir(tempDir.resolve("text-cache").toString());
+        ReflectionTestUtils.setField(documentProcessor, "extractedTextCache", new ExtractedTextCache(properties));
     }
     
     /**
@@ -228,6 +252,349 @@ class DocumentProcessorImplTest {
         }
     }
     
+    /**
+     * 测试流式提取的分块结果与一次性提取再分割一致
+     */
+    @Test
+    void testExtractChunks_MatchesExtractThenSplit() throws Exception {
+        File testFile = tempDir.resolve("stream.txt").toFile();
+        try (FileWriter writer = new FileWriter(testFile)) {
+            for (int i = 0; i < 50; i++) {
+                writer.write("第 " + i + " 条 测试内容，包含 空白\t与换行。\n");
+            }
+        }
+        
+        for (int[] params : new int[][]{{40, 10}, {17, 0}, {10, 8}}) {
+            List<String> expected = documentProcessor.splitDocument(
+                    documentProcessor.extractText(testFile), params[0], params[1]);
+            
+            List<String> actual = new ArrayList<>();
+            int count = documentProcessor.extractChunks(testFile, params[0], params[1], actual::add);
+            
+            assertEquals(expected, actual);
+            assertEquals(expected.size(), count);
+        }
+    }
+    
+    /**
+     * 测试流式提取不受 Tika 字符串写入上限限制
+     */
+    @Test
+    void testExtractChunks_LargeFileNotTruncated() throws Exception {
+        File testFile = tempDir.resolve("large.txt").toFile();
+        try (FileWriter writer = new FileWriter(testFile)) {
+            for (int i = 0; i < 30000; i++) {
+                writer.write("abcde ");
+            }
+        }
+        
+        long[] totalChars = {0};
+        documentProcessor.extractChunks(testFile, 1000, 0, chunk -> totalChars[0] += chunk.length());
+        
+        assertEquals(150000, totalChars[0]);
+    }
+    
+    /**
+     * 测试同一内容哈希再次提取时从缓存读取，不再解析原文件
+     */
+    @Test
+    void testExtractChunks_ReplaysFromTextCache() throws Exception {
+        File testFile = tempDir.resolve("cached.html").toFile();
+        Files.writeString(testFile.toPath(),
+                "<html><body><h1>第一章</h1><p>缓存中的文本。</p></body></html>", StandardCharsets.UTF_8);
+        
+        List<String> first = new ArrayList<>();
+        documentProcessor.extractChunks(testFile, "a1b2c3", new SentenceAwareChunker(60, 0, 10, first::add), page -> { });
+        
+        // 原文件内容变化（哈希不变）时仍读取缓存，说明没有重新解析
+        Files.writeString(testFile.toPath(), "<html><body><p>另一段内容。</p></body></html>",
+                StandardCharsets.UTF_8);
+        List<String> replayed = new ArrayList<>();
+        int count = documentProcessor.extractChunks(testFile, "a1b2c3",
+                new SentenceAwareChunker(60, 0, 10, replayed::add), page -> { });
+        
+        assertEquals(first, replayed);
+        assertEquals(replayed.size(), count);
+        
+        // 没有内容哈希时不使用缓存
+        List<String> uncached = new ArrayList<>();
+        documentProcessor.extractChunks(testFile, null, new SentenceAwareChunker(60, 0, 10, uncached::add), page -> { });
+        assertEquals(List.of("另一段内容。"), uncached);
+    }
+    
+    /**
+     * 测试缓存文件损坏时在同一次提取中改为解析原文件并重建缓存，片段不重复、不缺失
+     */
+    @Test
+    void testExtractChunks_CorruptTextCacheFallsBackToExtraction() throws Exception {
+        File testFile = tempDir.resolve("corrupt.html").toFile();
+        Files.writeString(testFile.toPath(),
+                "<html><body><h1>第一章</h1><p>第一句。第二句。第三句。</p></body></html>", StandardCharsets.UTF_8);
+        List<String> first = new ArrayList<>();
+        documentProcessor.extractChunks(testFile, "c0ffee", new SentenceAwareChunker(20, 0, 10, first::add), page -> { });
+        
+        Path cacheFile;
+        try (Stream<Path> files = Files.walk(tempDir.resolve("text-cache"))) {
+            cacheFile = files.filter(Files::isRegularFile).findFirst().orElseThrow();
+        }
+        byte[] bytes = Files.readAllBytes(cacheFile);
+        Files.write(cacheFile, Arrays.copyOf(bytes, bytes.length - 4));
+        
+        List<String> chunks = new ArrayList<>();
+        int count = documentProcessor.extractChunks(testFile, "c0ffee",
+                new SentenceAwareChunker(20, 0, 10, chunks::add), page -> { });
+        
+        assertEquals(first, chunks);
+        assertEquals(chunks.size(), count);
+        assertArrayEquals(bytes, Files.readAllBytes(cacheFile));
+    }
+    
+    /**
+     * 测试开启子进程解析：完整文本和流式分块都由子进程中的 Tika 解析
+     */
+    @Test
+    void testForkedExtraction() throws Exception {
+        RagDocumentProperties properties = new RagDocumentProperties();
+        properties.setForkedExtraction(true);
+        properties.setForkPoolSize(1);
+        ForkedTikaParser forkedTikaParser = new ForkedTikaParser(properties);
+        DocumentProcessorImpl forkedProcessor = new DocumentProcessorImpl();
+        ReflectionTestUtils.setField(forkedProcessor, "plainTextExtractor", new PlainTextExtractor(properties));
+        ReflectionTestUtils.setField(forkedProcessor, "pdfPageExtractor", new PdfPageExtractor(properties));
+        ReflectionTestUtils.setField(forkedProcessor, "spreadsheetExtractor", new SpreadsheetExtractor(properties));
+        ReflectionTestUtils.setField(forkedProcessor, "forkedTikaParser", forkedTikaParser);
+        File testFile = tempDir.resolve("forked.html").toFile();
+        Files.writeString(testFile.toPath(),
+                "<html><body><p>子进程中提取的文本。</p><p>第二行。</p></body></html>", StandardCharsets.UTF_8);
+        
+        try {
+            assertEquals("子进程中提取的文本。第二行。", forkedProcessor.extractText(testFile));
+            
+            List<String> chunks = new ArrayList<>();
+            forkedProcessor.extractChunks(testFile, 1000, 0, chunks::add);
+            assertEquals(1, chunks.size());
+            assertTrue(chunks.get(0).contains("子进程中提取的文本"));
+        } finally {
+            forkedTikaParser.shutdown();
+        }
+    }
+    
+    /**
+     * 测试 PDF 按页提取：页文本按顺序进入分块器，跳过空白页，写入每页前报告页码
+     */
+    @Test
+    void testExtractChunks_PdfReportsPages() throws Exception {
+        File testFile = tempDir.resolve("pages.pdf").toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= 3; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                if (i == 2) {
+                    continue;
+                }
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + i);
+                    content.endText();
+                }
+            }
+            document.save(testFile);
+        }
+        
+        List<String> chunks = new ArrayList<>();
+        List<Integer> pages = new ArrayList<>();
+        int count = documentProcessor.extractChunks(testFile,
+                new IncrementalChunker(1000, 0, chunks::add), pages::add);
+        
+        assertEquals(1, count);
+        assertEquals(Arrays.asList(1, 3), pages);
+        assertEquals("Page1Page3", chunks.get(0).replaceAll("\\s", ""));
+    }
+    
+    /**
+     * 测试句子感知分块：片段在章节标题处开始，在句末标点处结束
+     */
+    @Test
+    void testExtractChunks_SentenceAwareBoundaries() throws Exception {
+        File testFile = tempDir.resolve("law.md").toFile();
+        Files.writeString(testFile.toPath(), String.join("\n",
+                "# 第一章 总则",
+                "第一条 为了保护民事主体的合法权益，调整民事关系，维护社会和经济秩序，制定本法。",
+                "第二条 民法调整平等主体的自然人、法人和非法人组织之间的人身关系和财产关系。",
+                "# 第二章 自然人",
+                "第十三条 自然人从出生时起到死亡时止，具有民事权利能力，依法享有民事权利，承担民事义务。"),
+                StandardCharsets.UTF_8);
+        
+        List<String> chunks = new ArrayList<>();
+        int count = documentProcessor.extractChunks(testFile,
+                new SentenceAwareChunker(60, 10, 25, chunks::add));
+        
+        assertEquals(chunks.size(), count);
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 60);
+            char last = chunk.charAt(chunk.length() - 1);
+            assertTrue(last == '。' || chunk.startsWith("#"), "片段应在句末结束：" + chunk);
+        }
+        // 第二章标题开启新片段，且不带上一章的重叠内容
+        assertTrue(chunks.stream().anyMatch(chunk -> chunk.startsWith("#第二章自然人")),
+                "章节标题应作为片段开头：" + chunks);
+    }
+    
+    /**
+     * 测试句子感知分块在相同重叠预算下比固定长度分块产生更完整的片段，
+     * 且较小的重叠即可减少片段数量
+     */
+    @Test
+    void testSentenceAwareChunker_FewerChunksWithSmallerOverlap() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            text.append("第").append(i).append("句话描述了一项具体的法律规定和适用条件。");
+        }
+        char[] chars = text.toString().toCharArray();
+        
+        List<String> fixed = new ArrayList<>();
+        IncrementalChunker fixedChunker = new IncrementalChunker(800, 150, fixed::add);
+        fixedChunker.append(chars, 0, chars.length);
+        fixedChunker.finish();
+        
+        List<String> sentence = new ArrayList<>();
+        SentenceAwareChunker sentenceChunker = new SentenceAwareChunker(800, 50, 160, sentence::add);
+        sentenceChunker.append(chars, 0, chars.length);
+        sentenceChunker.finish();
+        
+        assertTrue(sentence.size() * 100 <= fixed.size() * 87,
+                "片段数量应减少约 15%：fixed=" + fixed.size() + ", sentence=" + sentence.size());
+        for (int i = 0; i < sentence.size(); i++) {
+            String chunk = sentence.get(i);
+            assertTrue(chunk.endsWith("。"), "片段应在句末结束：" + chunk);
+            if (i > 0) {
+                assertTrue(chunk.startsWith("第"), "重叠应从句子起点开始：" + chunk);
+            }
+        }
+        // 拼接去重叠后覆盖全部文本
+        assertTrue(sentence.get(sentence.size() - 1).endsWith("第399句话描述了一项具体的法律规定和适用条件。"));
+    }
+    
+    /**
+     * 测试小数点不被视为句末
+     */
+    @Test
+    void testSentenceAwareChunker_DecimalPointIsNotSentenceEnd() {
+        List<String> chunks = new ArrayList<>();
+        SentenceAwareChunker chunker = new SentenceAwareChunker(20, 0, 10, chunks::add);
+        char[] chars = "利率为3.85个百分点按年计算。其余部分".toCharArray();
+        chunker.append(chars, 0, chars.length);
+        chunker.finish();
+        
+        assertEquals(Arrays.asList("利率为3.85个百分点按年计算。", "其余部分"), chunks);
+    }
+    
+    /**
+     * 测试 emitChunk 先按 finish 的规则输出缓冲中的文本，再原样输出完整片段，之后的文本不带重叠
+     */
+    @Test
+    void testEmitChunk_FlushesPendingTextWithoutOverlap() {
+        List<String> fixed = new ArrayList<>();
+        IncrementalChunker fixedChunker = new IncrementalChunker(10, 3, fixed::add);
+        append(fixedChunker, "第一条规定。");
+        fixedChunker.emitChunk("表头\n第一行");
+        append(fixedChunker, "尾部");
+        fixedChunker.finish();
+        assertEquals(Arrays.asList("第一条规定。", "表头\n第一行", "尾部"), fixed);
+        assertEquals(3, fixedChunker.getChunkCount());
+        
+        List<String> sentence = new ArrayList<>();
+        SentenceAwareChunker sentenceChunker = new SentenceAwareChunker(10, 3, 4, sentence::add);
+        append(sentenceChunker, "第一句。第二句。第三句。");
+        sentenceChunker.emitChunk("表头\n第一行");
+        sentenceChunker.finish();
+        assertEquals("表头\n第一行", sentence.get(sentence.size() - 1));
+        assertEquals(sentence.size(), sentenceChunker.getChunkCount());
+        
+        List<String> defined = new ArrayList<>();
+        ContentDefinedChunker definedChunker = new ContentDefinedChunker(64, defined::add);
+        definedChunker.emitChunk("表头\n第一行");
+        definedChunker.emitChunk("表头\n第二行");
+        definedChunker.finish();
+        assertEquals(Arrays.asList("表头\n第一行", "表头\n第二行"), defined);
+    }
+    
+    /**
+     * 测试输入中途 flush：前后两段文本的片段与分别单独分块的结果相同（不带重叠），
+     * 之后再调用 finish 不会重复输出
+     */
+    @Test
+    void testFlush_MidStreamBoundary() {
+        String first = "第一条 为了保护民事主体的合法权益，调整民事关系。第二条 民法调整平等主体之间的人身关系和财产关系。";
+        String second = "第三条 民事主体的人身权利、财产权利以及其他合法权益受法律保护。";
+        List<Function<Consumer<String>, TextChunker>> factories = Arrays.asList(
+                sink -> new IncrementalChunker(20, 5, sink),
+                sink -> new SentenceAwareChunker(20, 5, 8, sink),
+                sink -> new ContentDefinedChunker(16, sink));
+        
+        for (Function<Consumer<String>, TextChunker> factory : factories) {
+            List<String> expected = new ArrayList<>();
+            for (String text : Arrays.asList(first, second)) {
+                TextChunker separate = factory.apply(expected::add);
+                append(separate, text);
+                separate.finish();
+            }
+            
+            List<String> chunks = new ArrayList<>();
+            TextChunker chunker = factory.apply(chunks::add);
+            append(chunker, first);
+            chunker.flush();
+            chunker.flush();
+            append(chunker, second);
+            chunker.finish();
+            chunker.finish();
+            
+            assertEquals(expected, chunks, chunker.getClass().getSimpleName());
+            assertEquals(expected.size(), chunker.getChunkCount());
+        }
+    }
+    
+    /**
+     * 测试 CSV 按行分组提取：每个片段以表头开头，不写入提取文本缓存
+     */
+    @Test
+    void testExtractChunks_CsvRowGroups() throws Exception {
+        File csv = tempDir.resolve("register.csv").toFile();
+        StringBuilder content = new StringBuilder("案号,当事人,立案日期\n");
+        for (int i = 1; i <= 60; i++) {
+            content.append("(2024)京0105民初").append(i).append("号,张").append(i).append(",2024-01-15\n");
+        }
+        Files.writeString(csv.toPath(), content.toString());
+        
+        List<String> chunks = new ArrayList<>();
+        int count = documentProcessor.extractChunks(csv, "ab12cd", new IncrementalChunker(800, 50, chunks::add),
+                page -> { });
+        
+        assertEquals(chunks.size(), count);
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk.startsWith("案号 | 当事人 | 立案日期\n"), "片段应以表头开头：" + chunk);
+            assertTrue(chunk.length() <= 800);
+        }
+        assertTrue(chunks.get(chunks.size() - 1).endsWith("(2024)京0105民初60号 | 张60 | 2024-01-15"));
+        assertFalse(Files.exists(tempDir.resolve("text-cache")));
+    }
+    
+    /**
+     * 测试流式提取不存在的文件
+     */
+    @Test
+    void testExtractChunks_NonExistentFile_ThrowsException() {
+        File nonExistentFile = new File(tempDir.toFile(), "missing.txt");
+        
+        assertThrows(IllegalArgumentException.class, () -> {
+            documentProcessor.extractChunks(nonExistentFile, 100, 10, chunk -> { });
+        });
+    }
+    
     /**
      * 测试支持的 MIME 类型 - PDF
      */
@@ -260,6 +627,15 @@ class DocumentProcessorImplTest {
         assertTrue(documentProcessor.isSupported("application/vnd.openxmlformats-officedocument.wordprocessingml.document"));
     }
     
+    /**
+     * 测试支持的 MIME 类型 - XLSX / CSV
+     */
+    @Test
+    void testIsSupported_Spreadsheet_ReturnsTrue() {
+        assertTrue(documentProcessor.isSupported("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+        assertTrue(documentProcessor.isSupported("text/csv"));
+    }
+    
     /**
      * 测试不支持的 MIME 类型
      */
@@ -288,4 +664,8 @@ class DocumentProcessorImplTest {
         assertTrue(documentProcessor.isSupported("Text/Plain"));
         assertTrue(documentProcessor.isSupported("TEXT/MARKDOWN"));
     }
+    
+    private static void append(TextChunker chunker, String text) {
+        chunker.append(text.toCharArray(), 0, text.length());
+    }
 }
@@ -0,0 +1,81 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagAsyncProperties;
+import com.example.rag.service.impl.DownstreamLimiter.Downstream;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DownstreamLimiter 单元测试
+ */
+class DownstreamLimiterTest {
+
+    /**
+     * 测试同时进行的调用数不超过对应下游的许可数，且各下游互不影响
+     */
+    @Test
+    void testCall_ConcurrencyBoundedPerDownstream() throws Exception {
+        RagAsyncProperties properties = new RagAsyncProperties();
+        properties.setOpenRouterConcurrency(2);
+        properties.setQdrantConcurrency(3);
+        DownstreamLimiter limiter = new DownstreamLimiter(properties);
+
+        AtomicInteger openRouterActive = new AtomicInteger();
+        AtomicInteger openRouterPeak = new AtomicInteger();
+        AtomicInteger qdrantActive = new AtomicInteger();
+        AtomicInteger qdrantPeak = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                boolean openRouter = i % 2 == 0;
+                futures.add(executor.submit(() -> limiter.call(
+                        openRouter ? Downstream.OPENROUTER : Downstream.QDRANT, () -> {
+                            AtomicInteger active = openRouter ? openRouterActive : qdrantActive;
+                            AtomicInteger peak = openRouter ? openRouterPeak : qdrantPeak;
+                            peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                            Thread.sleep(10);
+                            active.decrementAndGet();
+                            return null;
+                        })));
+            }
+            for (Future<?> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(openRouterPeak.get() <= 2);
+        assertTrue(qdrantPeak.get() <= 3);
+        assertEquals(2, limiter.availablePermits(Downstream.OPENROUTER));
+        assertEquals(3, limiter.availablePermits(Downstream.QDRANT));
+    }
+
+    /**
+     * 测试调用失败时释放许可并抛出原异常
+     */
+    @Test
+    void testCall_ReleasesPermitOnFailure() {
+        DownstreamLimiter limiter = new DownstreamLimiter(new RagAsyncProperties());
+        int permits = limiter.availablePermits(Downstream.POSTGRES);
+
+        RuntimeException thrown = assertThrows(RuntimeException.class, () ->
+                limiter.run(Downstream.POSTGRES, () -> {
+                    throw new RuntimeException("insert failed");
+                }));
+
+        assertEquals("insert failed", thrown.getMessage());
+        assertEquals(permits, limiter.availablePermits(Downstream.POSTGRES));
+    }
+}
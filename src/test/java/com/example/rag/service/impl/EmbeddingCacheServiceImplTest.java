@@ -0,0 +1,114 @@
+package com.example.rag.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.EmbeddingCache;
+import com.example.rag.mapper.EmbeddingCacheMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * EmbeddingCacheServiceImpl 单元测试
+ */
+@ExtendWith(MockitoExtension.class)
+class EmbeddingCacheServiceImplTest {
+
+    @Mock
+    private EmbeddingCacheMapper embeddingCacheMapper;
+
+    private RagIngestionProperties ragIngestionProperties;
+
+    private EmbeddingCacheServiceImpl embeddingCacheService;
+
+    @BeforeEach
+    void setUp() {
+        ragIngestionProperties = new RagIngestionProperties();
+        embeddingCacheService = new EmbeddingCacheServiceImpl(embeddingCacheMapper, ragIngestionProperties);
+    }
+
+    @Test
+    void testVectorEncodingRoundTrip() {
+        float[] vector = new float[]{0.5f, -1.25f, 3.0e-5f, Float.MAX_VALUE};
+
+        float[] decoded = EmbeddingCacheServiceImpl.toFloats(EmbeddingCacheServiceImpl.toBytes(vector));
+
+        assertArrayEquals(vector, decoded);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetAll_ReturnsHits() {
+        EmbeddingCache entry = new EmbeddingCache();
+        entry.setContentHash("hash-1");
+        entry.setEmbedding(EmbeddingCacheServiceImpl.toBytes(new float[]{1f, 2f}));
+        when(embeddingCacheMapper.selectList(any(QueryWrapper.class))).thenReturn(List.of(entry));
+
+        Map<String, float[]> result = embeddingCacheService.getAll("model", List.of("hash-1", "hash-2"));
+
+        assertEquals(1, result.size());
+        assertArrayEquals(new float[]{1f, 2f}, result.get("hash-1"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testGetAll_LookupFailureTreatedAsMiss() {
+        when(embeddingCacheMapper.selectList(any(QueryWrapper.class)))
+                .thenThrow(new RuntimeException("connection refused"));
+
+        Map<String, float[]> result = embeddingCacheService.getAll("model", List.of("hash-1"));
+
+        assertTrue(result.isEmpty());
+    }
+
+    @Test
+    void testGetAll_EmptyKeysSkipsQuery() {
+        assertTrue(embeddingCacheService.getAll("model", Collections.emptyList()).isEmpty());
+        verifyNoInteractions(embeddingCacheMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testPutAll_WritesInSqlSizedSlices() {
+        Map<String, float[]> embeddings = new LinkedHashMap<>();
+        for (int i = 0; i < 1200; i++) {
+            embeddings.put("hash-" + i, new float[]{i});
+        }
+        List<Integer> sliceSizes = new ArrayList<>();
+        when(embeddingCacheMapper.insertBatchIgnoreExisting(anyList())).thenAnswer(invocation -> {
+            List<EmbeddingCache> slice = invocation.getArgument(0);
+            sliceSizes.add(slice.size());
+            return slice.size();
+        });
+
+        embeddingCacheService.putAll("model", embeddings);
+
+        assertEquals(List.of(500, 500, 200), sliceSizes);
+        ArgumentCaptor<List<EmbeddingCache>> captor = ArgumentCaptor.forClass(List.class);
+        verify(embeddingCacheMapper, times(3)).insertBatchIgnoreExisting(captor.capture());
+        EmbeddingCache first = captor.getAllValues().get(0).get(0);
+        assertEquals("model", first.getModel());
+        assertEquals("hash-0", first.getContentHash());
+        assertEquals(1, first.getDimension());
+    }
+
+    @Test
+    void testIsEnabled_FollowsProperty() {
+        assertTrue(embeddingCacheService.isEnabled());
+        ragIngestionProperties.setEmbeddingCacheEnabled(false);
+        assertFalse(embeddingCacheService.isEnabled());
+    }
+}
@@ -1,7 +1,9 @@
-﻿package com.example.rag.service.impl;
+package com.example.rag.service.impl;
 
+import cn.hutool.crypto.digest.DigestUtil;
 import com.example.rag.config.OpenRouterProperties;
 import com.example.rag.exception.BusinessException;
+import com.example.rag.service.EmbeddingCacheService;
 import com.example.rag.service.EmbeddingService;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
@@ -15,9 +17,13 @@ import org.springframework.web.reactive.function.client.WebClient;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
 
 /**
  * EmbeddingService 单元测试
@@ -110,9 +116,12 @@ class EmbeddingServiceImplTest {
     
     @Test
     void testEmbed_ApiError() {
-        mockWebServer.enqueue(new MockResponse()
-                .setResponseCode(500)
-                .setBody("Internal Server Error"));
+        // 首次请求 + 3 次重试均返回 500
+        for (int i = 0; i <= properties.getMaxRetries(); i++) {
+            mockWebServer.enqueue(new MockResponse()
+                    .setResponseCode(500)
+                    .setBody("Internal Server Error"));
+        }
         
         BusinessException exception = assertThrows(BusinessException.class, () -> {
             embeddingService.embed("测试文本");
@@ -228,6 +237,32 @@ class EmbeddingServiceImplTest {
         assertTrue(exception.getMessage().contains("文本列表不能为空"));
     }
     
+    @Test
+    void testEmbedQueries_SendsOneRequest() throws Exception {
+        String responseBody = """
+                {
+                    "object": "list",
+                    "data": [
+                        {"object": "embedding", "embedding": %s, "index": 0},
+                        {"object": "embedding", "embedding": %s, "index": 1}
+                    ],
+                    "model": "openai/text-embedding-3-small"
+                }
+                """.formatted(generateMockEmbedding(1536), generateMockEmbedding(1536));
+        
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(responseBody));
+        
+        List<float[]> results = embeddingService.embedQueries(Arrays.asList("查询1", "查询2"));
+        
+        assertEquals(2, results.size());
+        assertEquals(1, mockWebServer.getRequestCount());
+        String requestBody = mockWebServer.takeRequest().getBody().readUtf8();
+        assertTrue(requestBody.contains("查询1") && requestBody.contains("查询2"));
+    }
+    
     @Test
     void testEmbedBatch_CountMismatch() {
         String responseBody = """
@@ -287,11 +322,156 @@ class EmbeddingServiceImplTest {
         assertEquals(3, mockWebServer.getRequestCount());
     }
     
+    @Test
+    void testEmbed_ClientErrorNotRetried() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400).setBody("Bad Request"));
+        
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            embeddingService.embed("测试文本");
+        });
+        assertEquals(502, exception.getCode());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+    
+    @Test
+    void testEmbedAll_PacksByBatchSize() throws Exception {
+        properties.setEmbeddingBatchSize(2);
+        mockWebServer.enqueue(embeddingResponse(2));
+        mockWebServer.enqueue(embeddingResponse(1));
+        
+        List<float[]> results = embeddingService.embedAll(Arrays.asList("文本1", "文本2", "文本3"));
+        
+        assertEquals(3, results.size());
+        assertEquals(2, mockWebServer.getRequestCount());
+        assertTrue(mockWebServer.takeRequest().getBody().readUtf8().contains("文本2"));
+        assertTrue(mockWebServer.takeRequest().getBody().readUtf8().contains("文本3"));
+    }
+    
+    @Test
+    void testEmbedAll_PacksByTokenBudget() throws Exception {
+        properties.setEmbeddingBatchMaxTokens(5);
+        mockWebServer.enqueue(embeddingResponse(1));
+        mockWebServer.enqueue(embeddingResponse(1));
+        
+        // 每条文本约 4 个 token，两条合计超过预算
+        List<float[]> results = embeddingService.embedAll(Arrays.asList("一二三四", "五六七八"));
+        
+        assertEquals(2, results.size());
+        assertEquals(2, mockWebServer.getRequestCount());
+    }
+    
+    @Test
+    void testEmbedAll_SplitsOversizedBatch() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(413).setBody("Payload Too Large"));
+        mockWebServer.enqueue(embeddingResponse(1));
+        mockWebServer.enqueue(embeddingResponse(1));
+        
+        List<float[]> results = embeddingService.embedAll(Arrays.asList("文本1", "文本2"));
+        
+        assertEquals(2, results.size());
+        assertEquals(3, mockWebServer.getRequestCount());
+    }
+    
+    @Test
+    void testEmbedAll_SplitsOnContextLengthError() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400)
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"error\":{\"message\":\"This model's maximum context length is 8192 tokens\",\"code\":\"context_length_exceeded\"}}"));
+        mockWebServer.enqueue(embeddingResponse(1));
+        mockWebServer.enqueue(embeddingResponse(1));
+        
+        List<float[]> results = embeddingService.embedAll(Arrays.asList("文本1", "文本2"));
+        
+        assertEquals(2, results.size());
+        assertEquals(3, mockWebServer.getRequestCount());
+    }
+    
+    @Test
+    void testEmbedAll_PlainBadRequestFailsWithoutSplitting() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(400)
+                .setHeader("Content-Type", "application/json")
+                .setBody("{\"error\":{\"message\":\"invalid model ID\"}}"));
+        
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            embeddingService.embedAll(Arrays.asList("文本1", "文本2"));
+        });
+        assertEquals(502, exception.getCode());
+        assertEquals(1, mockWebServer.getRequestCount());
+    }
+    
+    @Test
+    void testEmbedAll_EmptyList() {
+        BusinessException exception = assertThrows(BusinessException.class, () -> {
+            embeddingService.embedAll(Arrays.asList());
+        });
+        assertEquals(400, exception.getCode());
+    }
+    
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEmbedAll_UsesCacheForHitsAndStoresMisses() throws Exception {
+        EmbeddingCacheService cache = mock(EmbeddingCacheService.class);
+        float[] cachedVector = new float[1536];
+        Map<String, float[]> hits = new HashMap<>();
+        hits.put(DigestUtil.sha256Hex("缓存文本"), cachedVector);
+        when(cache.isEnabled()).thenReturn(true);
+        when(cache.getAll(eq(properties.getEmbeddingModel()), anyCollection())).thenReturn(hits);
+        
+        EmbeddingService cachingService = new EmbeddingServiceImpl(
+                WebClient.builder().baseUrl(properties.getBaseUrl()).build(), properties, cache);
+        mockWebServer.enqueue(embeddingResponse(1));
+        
+        // 重复的未命中文本只请求一次
+        List<float[]> results = cachingService.embedAll(Arrays.asList("新文本", "缓存文本", "新文本"));
+        
+        assertEquals(3, results.size());
+        assertSame(cachedVector, results.get(1));
+        assertSame(results.get(0), results.get(2));
+        assertEquals(1, mockWebServer.getRequestCount());
+        String requestBody = mockWebServer.takeRequest().getBody().readUtf8();
+        assertFalse(requestBody.contains("缓存文本"));
+        
+        verify(cache).putAll(eq(properties.getEmbeddingModel()), argThat((Map<String, float[]> stored) ->
+                stored.size() == 1 && stored.containsKey(DigestUtil.sha256Hex("新文本"))));
+    }
+    
+    @Test
+    void testEmbedAll_AllCachedSkipsApi() throws Exception {
+        EmbeddingCacheService cache = mock(EmbeddingCacheService.class);
+        Map<String, float[]> hits = new HashMap<>();
+        hits.put(DigestUtil.sha256Hex("文本1"), new float[1536]);
+        when(cache.isEnabled()).thenReturn(true);
+        when(cache.getAll(anyString(), anyCollection())).thenReturn(hits);
+        
+        EmbeddingService cachingService = new EmbeddingServiceImpl(
+                WebClient.builder().baseUrl(properties.getBaseUrl()).build(), properties, cache);
+        
+        List<float[]> results = cachingService.embedAll(Arrays.asList("文本1"));
+        
+        assertEquals(1, results.size());
+        assertEquals(0, mockWebServer.getRequestCount());
+        verify(cache, never()).putAll(anyString(), anyMap());
+    }
+    
     @Test
     void testGetDimension() {
         assertEquals(1536, embeddingService.getDimension());
     }
     
+    private MockResponse embeddingResponse(int count) {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) data.append(",");
+            data.append("{\"object\": \"embedding\", \"embedding\": ")
+                    .append(generateMockEmbedding(1536))
+                    .append(", \"index\": ").append(i).append("}");
+        }
+        return new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"object\": \"list\", \"data\": [" + data + "], \"model\": \"openai/text-embedding-3-small\"}");
+    }
+    
     private String generateMockEmbedding(int dimension) {
         StringBuilder sb = new StringBuilder("[");
         for (int i = 0; i < dimension; i++) {
@@ -0,0 +1,221 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.util.TextChunker;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ExtractedTextCache 单元测试
+ * 分块器替换为记录调用序列的 EventChunker，回放结果应与首次提取时写入分块器的内容一致
+ */
+class ExtractedTextCacheTest {
+
+    private static final String HASH = "ab34cd";
+
+    private ExtractedTextCache cache;
+
+    @TempDir
+    Path cacheDir;
+
+    @BeforeEach
+    void setUp() {
+        RagDocumentProperties properties = new RagDocumentProperties();
+        properties.setTextCacheDir(cacheDir.toString());
+        cache = new ExtractedTextCache(properties);
+    }
+
+    /**
+     * 测试回放的文本、换行和页码与首次提取一致，页码标记跨越读取缓冲区时也能正确解析
+     */
+    @Test
+    void testRecordThenReplay_SameEvents() throws Exception {
+        String longLine = "长".repeat(8190);
+        EventChunker first = new EventChunker();
+        cache.record(HASH, "pdf-pages", first, first::page, (chunker, pages) -> {
+            pages.accept(1);
+            append(chunker, "第一页标题");
+            chunker.lineBreak();
+            append(chunker, longLine);
+            pages.accept(12);
+            append(chunker, "第十二页");
+            chunker.lineBreak();
+            chunker.finish();
+        });
+
+        EventChunker replayed = new EventChunker();
+        assertTrue(cache.replay(HASH, "pdf-pages", replayed, replayed::page));
+
+        assertEquals(first.text(), replayed.text());
+        assertEquals(List.of(1, 12), replayed.pages);
+        assertEquals(2, replayed.lineBreaks);
+        assertEquals(first.pagePositions, replayed.pagePositions);
+        // 回放不调用 finish，由调用方决定
+        assertFalse(replayed.finished);
+    }
+
+    /**
+     * 测试不同提取方式分别缓存，未缓存时返回 false
+     */
+    @Test
+    void testReplay_MissForOtherVariant() throws Exception {
+        EventChunker first = new EventChunker();
+        cache.record(HASH, "tika", first, first::page, (chunker, pages) -> append(chunker, "正文"));
+
+        assertFalse(cache.replay(HASH, "pdf-pages", new EventChunker(), page -> { }));
+        assertFalse(cache.replay("ff00", "tika", new EventChunker(), page -> { }));
+    }
+
+    /**
+     * 测试提取失败时不留下缓存文件
+     */
+    @Test
+    void testRecord_FailedExtractionNotCached() throws Exception {
+        EventChunker first = new EventChunker();
+        assertThrows(IllegalStateException.class, () -> cache.record(HASH, "tika", first, first::page,
+                (chunker, pages) -> {
+                    append(chunker, "部分文本");
+                    throw new IllegalStateException("解析失败");
+                }));
+
+        assertEquals("部分文本", first.text());
+        assertFalse(cache.replay(HASH, "tika", new EventChunker(), page -> { }));
+        assertEquals(0, countFiles());
+    }
+
+    /**
+     * 测试损坏的缓存文件被删除并按未命中处理
+     */
+    @Test
+    void testReplay_CorruptFileDeleted() throws Exception {
+        EventChunker first = new EventChunker();
+        cache.record(HASH, "tika", first, first::page, (chunker, pages) -> append(chunker, "正文"));
+        Path file = listFiles().get(0);
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        assertFalse(cache.replay(HASH, "tika", new EventChunker(), page -> { }));
+        assertFalse(Files.exists(file));
+    }
+
+    /**
+     * 测试后半部分损坏（截断、内容校验和不符）的缓存文件在写入分块器之前被发现，分块器和页码接收者收不到任何内容
+     */
+    @Test
+    void testReplay_DamagedTailEmitsNothing() throws Exception {
+        EventChunker first = new EventChunker();
+        cache.record(HASH, "pdf-pages", first, first::page, (chunker, pages) -> {
+            for (int page = 1; page <= 50; page++) {
+                pages.accept(page);
+                append(chunker, "第" + page + "页的正文内容，" + "各页内容不同".repeat(page));
+                chunker.lineBreak();
+            }
+        });
+        Path file = listFiles().get(0);
+        byte[] bytes = Files.readAllBytes(file);
+
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 16));
+        EventChunker truncated = new EventChunker();
+        assertFalse(cache.replay(HASH, "pdf-pages", truncated, truncated::page));
+        assertEquals("", truncated.text());
+        assertTrue(truncated.pages.isEmpty());
+        assertFalse(Files.exists(file));
+
+        bytes[bytes.length - 2] ^= 0x5A;
+        Files.write(file, bytes);
+        EventChunker tampered = new EventChunker();
+        assertFalse(cache.replay(HASH, "pdf-pages", tampered, tampered::page));
+        assertEquals("", tampered.text());
+        assertFalse(Files.exists(file));
+    }
+
+    /**
+     * 测试删除某个内容哈希的全部缓存
+     */
+    @Test
+    void testEvict_RemovesAllVariants() throws Exception {
+        EventChunker chunker = new EventChunker();
+        cache.record(HASH, "tika", chunker, chunker::page, (c, pages) -> append(c, "正文"));
+        cache.record(HASH, "pdf-pages", chunker, chunker::page, (c, pages) -> append(c, "正文"));
+        cache.record("ab99", "tika", chunker, chunker::page, (c, pages) -> append(c, "其他文档"));
+        assertEquals(3, countFiles());
+
+        cache.evict(HASH);
+
+        assertEquals(1, countFiles());
+        assertTrue(cache.replay("ab99", "tika", new EventChunker(), page -> { }));
+    }
+
+    private static void append(TextChunker chunker, String text) {
+        chunker.append(text.toCharArray(), 0, text.length());
+    }
+
+    private long countFiles() throws IOException {
+        return listFiles().size();
+    }
+
+    private List<Path> listFiles() throws IOException {
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+
+    /**
+     * 记录写入的文本、换行次数，以及每个页码出现时已写入的字符数
+     */
+    private static class EventChunker implements TextChunker {
+        private final StringBuilder text = new StringBuilder();
+        private final List<Integer> pages = new ArrayList<>();
+        private final List<Integer> pagePositions = new ArrayList<>();
+        private int lineBreaks;
+        private boolean finished;
+
+        @Override
+        public void append(char[] chars, int start, int length) {
+            text.append(chars, start, length);
+        }
+
+        @Override
+        public void lineBreak() {
+            lineBreaks++;
+        }
+
+        @Override
+        public void emitChunk(String chunk) {
+            text.append(chunk);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        void page(int pageNumber) {
+            pages.add(pageNumber);
+            pagePositions.add(text.length());
+        }
+
+        @Override
+        public void finish() {
+            finished = true;
+        }
+
+        @Override
+        public int getChunkCount() {
+            return 0;
+        }
+
+        String text() {
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagDocumentProperties;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.sax.BodyContentHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ForkedTikaParser 单元测试
+ * 真实 fork 子进程解析，每次启动子进程需要数秒
+ */
+class ForkedTikaParserTest {
+
+    private RagDocumentProperties properties;
+
+    private ForkedTikaParser parser;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RagDocumentProperties();
+        properties.setForkedExtraction(true);
+        properties.setForkPoolSize(1);
+        parser = new ForkedTikaParser(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        parser.shutdown();
+    }
+
+    /**
+     * 测试在子进程中解析，且子进程解析 forkMaxDocumentsPerProcess 个文档后被替换
+     */
+    @Test
+    void testParse_RecyclesChildAfterMaxDocuments() throws Exception {
+        properties.setForkMaxDocumentsPerProcess(1);
+        File file = createTextFile("子进程中解析的文本");
+
+        PidRecordingHandler first = new PidRecordingHandler();
+        parser.parse(file, first);
+        PidRecordingHandler second = new PidRecordingHandler();
+        parser.parse(file, second);
+
+        assertTrue(first.toString().contains("子进程中解析的文本"));
+        assertTrue(second.toString().contains("子进程中解析的文本"));
+        assertEquals(1, first.children.size());
+        assertEquals(1, second.children.size());
+        assertNotEquals(first.children, second.children);
+    }
+
+    /**
+     * 测试解析超时后子进程退出、该文档解析失败，下一个文档使用新的子进程
+     */
+    @Test
+    void testParse_TimeoutKillsChild() throws Exception {
+        properties.setForkParseTimeoutMs(500L);
+        File file = createTextFile("解析超时的文本");
+
+        PidRecordingHandler slow = new PidRecordingHandler() {
+            private boolean slept;
+
+            @Override
+            public void characters(char[] ch, int start, int length) throws SAXException {
+                // 主进程处理第一个事件时阻塞，子进程中的解析超过时限
+                if (!slept) {
+                    slept = true;
+                    try {
+                        Thread.sleep(3000);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.characters(ch, start, length);
+            }
+        };
+        assertThrows(TikaException.class, () -> parser.parse(file, slow));
+
+        PidRecordingHandler next = new PidRecordingHandler();
+        parser.parse(file, next);
+        assertTrue(next.toString().contains("解析超时的文本"));
+        assertNotEquals(slow.children, next.children);
+    }
+
+    /**
+     * 测试子进程的堆内存上限和内存耗尽时退出
+     */
+    @Test
+    void testJavaCommand_LimitsHeap() {
+        properties.setForkMaxHeapMb(256);
+
+        List<String> command = parser.javaCommand();
+
+        assertTrue(command.get(0).endsWith("java"));
+        assertTrue(command.contains("-Xmx256m"));
+        assertTrue(command.contains("-XX:+ExitOnOutOfMemoryError"));
+    }
+
+    /**
+     * 测试默认不开启子进程解析
+     */
+    @Test
+    void testIsEnabled_DefaultOff() {
+        assertFalse(new ForkedTikaParser(new RagDocumentProperties()).isEnabled());
+        assertTrue(parser.isEnabled());
+    }
+
+    private File createTextFile(String content) throws Exception {
+        File file = tempDir.resolve("forked.txt").toFile();
+        Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * 记录接收事件时存活的子进程
+     */
+    private static class PidRecordingHandler extends BodyContentHandler {
+        private Set<Long> children = Set.of();
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (children.isEmpty()) {
+                children = ProcessHandle.current().children()
+                        .filter(ProcessHandle::isAlive)
+                        .map(ProcessHandle::pid)
+                        .collect(Collectors.toSet());
+            }
+            super.characters(ch, start, length);
+        }
+    }
+}
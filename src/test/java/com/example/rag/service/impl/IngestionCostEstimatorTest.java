@@ -0,0 +1,114 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.entity.Document;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * IngestionCostEstimator 单元测试
+ */
+class IngestionCostEstimatorTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final IngestionCostEstimator estimator = new IngestionCostEstimator();
+
+    /**
+     * 测试文本文件按文件大小估算
+     */
+    @Test
+    void testEstimate_TextBySize() {
+        Document document = document("memo.txt", "text/plain", 3000L, null);
+
+        assertEquals(3000L, estimator.estimate(document));
+    }
+
+    /**
+     * 测试 PDF 按页数估算，与文件大小无关
+     */
+    @Test
+    void testEstimate_PdfByPageCount() throws Exception {
+        Path file = tempDir.resolve("report.pdf");
+        try (PDDocument pdf = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                pdf.addPage(new PDPage());
+            }
+            pdf.save(file.toFile());
+        }
+        Document document = document("report.pdf", "application/octet-stream", 40L * 1024 * 1024, file.toString());
+
+        assertEquals(3 * IngestionCostEstimator.CHARS_PER_PDF_PAGE, estimator.estimate(document));
+    }
+
+    /**
+     * 测试只读取文档目录和页面树根节点：页面对象无法解析时仍能得到页数
+     */
+    @Test
+    void testEstimate_PdfReadsOnlyPageTreeRoot() throws Exception {
+        Path file = tempDir.resolve("pages.pdf");
+        try (PDDocument pdf = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                pdf.addPage(new PDPage());
+            }
+            pdf.save(file.toFile());
+        }
+        // 等长替换，交叉引用表中的偏移保持有效
+        String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        String damaged = content.replace("/MediaBox [0.0 0.0 612.0 792.0]", "/MediaBox <<<<<<<<<<<<<<<<<<<<<");
+        Files.write(file, damaged.getBytes(StandardCharsets.ISO_8859_1));
+        Document document = document("pages.pdf", "application/pdf", 1_000_000L, file.toString());
+
+        assertEquals(3 * IngestionCostEstimator.CHARS_PER_PDF_PAGE, estimator.estimate(document));
+    }
+
+    /**
+     * 测试无法读取页数的 PDF 按文件大小折算
+     */
+    @Test
+    void testEstimate_UnreadablePdfFallsBackToSize() throws Exception {
+        Path file = tempDir.resolve("broken.pdf");
+        Files.writeString(file, "not a pdf");
+        Document document = document("broken.pdf", "application/pdf", 1_000_000L, file.toString());
+
+        assertEquals(1_000_000L / IngestionCostEstimator.PDF_BYTES_PER_CHAR, estimator.estimate(document));
+    }
+
+    /**
+     * 测试交叉引用表损坏时不扫描整个文件重建，直接按文件大小折算
+     */
+    @Test
+    void testEstimate_BrokenXrefFallsBackToSize() throws Exception {
+        Path file = tempDir.resolve("damaged.pdf");
+        try (PDDocument pdf = new PDDocument()) {
+            for (int i = 0; i < 3; i++) {
+                pdf.addPage(new PDPage());
+            }
+            pdf.save(file.toFile());
+        }
+        String content = new String(Files.readAllBytes(file), StandardCharsets.ISO_8859_1);
+        int startxref = content.lastIndexOf("startxref");
+        String damaged = content.substring(0, startxref) + "startxref\n9\n%%EOF\n";
+        Files.write(file, damaged.getBytes(StandardCharsets.ISO_8859_1));
+        Document document = document("damaged.pdf", "application/pdf", 1_000_000L, file.toString());
+
+        assertEquals(1_000_000L / IngestionCostEstimator.PDF_BYTES_PER_CHAR, estimator.estimate(document));
+    }
+
+    private static Document document(String fileName, String fileType, Long fileSize, String filePath) {
+        Document document = new Document();
+        document.setFileName(fileName);
+        document.setFileType(fileType);
+        document.setFileSize(fileSize);
+        document.setFilePath(filePath);
+        return document;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.OpenRouterProperties;
+import com.example.rag.config.RagAsyncProperties;
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.service.EmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IngestionEmbeddingBatcher 单元测试
+ * 模拟的向量以片段内容的哈希值为第一个分量，用于检查向量是否送回了对应文档的对应片段
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestionEmbeddingBatcherTest {
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    private OpenRouterProperties openRouterProperties;
+
+    private RagIngestionProperties ingestionProperties;
+
+    private IngestionEmbeddingBatcher batcher;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        openRouterProperties = new OpenRouterProperties();
+        ingestionProperties = new RagIngestionProperties();
+        ingestionProperties.setSharedEmbeddingBatchLingerMs(300L);
+        batcher = new IngestionEmbeddingBatcher(embeddingService, openRouterProperties, ingestionProperties,
+                new DownstreamLimiter(new RagAsyncProperties()));
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 测试多个文档的片段合并成一个满批次，向量按文档和片段位置送回
+     */
+    @Test
+    void testEmbed_PacksChunksFromDifferentDocuments() throws Exception {
+        openRouterProperties.setEmbeddingBatchSize(6);
+        when(embeddingService.embedAll(anyList())).thenAnswer(invocation -> vectorsOf(invocation.getArgument(0)));
+
+        List<List<String>> documents = List.of(
+                List.of("文档1片段0", "文档1片段1"),
+                List.of("文档2片段0", "文档2片段1"),
+                List.of("文档3片段0", "文档3片段1"));
+        List<Future<List<float[]>>> results = submitAll(documents);
+
+        for (int d = 0; d < documents.size(); d++) {
+            assertVectorsMatch(documents.get(d), results.get(d).get(5, TimeUnit.SECONDS));
+        }
+        verify(embeddingService, times(1)).embedAll(argThat(texts -> texts.size() == 6));
+    }
+
+    /**
+     * 测试凑不满一批时等待滞留时间后按现有片段发送
+     */
+    @Test
+    void testEmbed_FlushesPartialBatchAfterLinger() throws Exception {
+        ingestionProperties.setSharedEmbeddingBatchLingerMs(20L);
+        List<String> texts = List.of("片段0", "片段1");
+        when(embeddingService.embedAll(texts)).thenAnswer(invocation -> vectorsOf(invocation.getArgument(0)));
+
+        assertVectorsMatch(texts, batcher.embed(1L, texts));
+        verify(embeddingService, times(1)).embedAll(anyList());
+    }
+
+    /**
+     * 测试按 token 上限拆分批次
+     */
+    @Test
+    void testEmbed_SplitsAtTokenBudget() throws Exception {
+        // 每个片段估算 4 个 token
+        openRouterProperties.setEmbeddingBatchMaxTokens(8);
+        List<String> texts = List.of("一二三四", "五六七八", "甲乙丙丁", "戊己庚辛");
+        when(embeddingService.embedAll(anyList())).thenAnswer(invocation -> vectorsOf(invocation.getArgument(0)));
+
+        assertVectorsMatch(texts, batcher.embed(1L, texts));
+        verify(embeddingService).embedAll(List.of("一二三四", "五六七八"));
+        verify(embeddingService).embedAll(List.of("甲乙丙丁", "戊己庚辛"));
+    }
+
+    /**
+     * 测试一批失败时批内各文档都收到该异常
+     */
+    @Test
+    void testEmbed_FailurePropagatesToEveryDocumentInBatch() throws Exception {
+        openRouterProperties.setEmbeddingBatchSize(2);
+        BusinessException failure = new BusinessException(502, "向量化服务调用失败");
+        when(embeddingService.embedAll(anyList())).thenThrow(failure);
+
+        List<Future<List<float[]>>> results = submitAll(List.of(List.of("文档1片段0"), List.of("文档2片段0")));
+
+        for (Future<List<float[]>> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    /**
+     * 测试关闭合并时每个文档的批次单独发送
+     */
+    @Test
+    void testEmbed_DisabledSendsEachSubmission() throws Exception {
+        ingestionProperties.setSharedEmbeddingBatchEnabled(false);
+        List<String> texts = List.of("片段0");
+        when(embeddingService.embedAll(texts)).thenAnswer(invocation -> vectorsOf(invocation.getArgument(0)));
+
+        long start = System.nanoTime();
+        assertVectorsMatch(texts, batcher.embed(1L, texts));
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 300);
+    }
+
+    private List<Future<List<float[]>>> submitAll(List<List<String>> documents) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<float[]>>> results = new ArrayList<>();
+        for (int d = 0; d < documents.size(); d++) {
+            long documentId = d + 1;
+            List<String> texts = documents.get(d);
+            results.add(executor.submit(() -> {
+                start.await();
+                return batcher.embed(documentId, texts);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private static void assertVectorsMatch(List<String> texts, List<float[]> vectors) {
+        assertEquals(texts.size(), vectors.size());
+        for (int i = 0; i < texts.size(); i++) {
+            assertEquals((float) texts.get(i).hashCode(), vectors.get(i)[0]);
+        }
+    }
+
+    private static List<float[]> vectorsOf(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>();
+        for (String text : texts) {
+            vectors.add(new float[]{text.hashCode()});
+        }
+        return vectors;
+    }
+}
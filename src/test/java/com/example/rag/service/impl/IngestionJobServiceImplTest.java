@@ -0,0 +1,295 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.entity.IngestionJob;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.IngestionJobMapper;
+import com.example.rag.service.DocumentProcessingService;
+import com.example.rag.service.IngestionProgressService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * IngestionJobServiceImpl 单元测试
+ * 线程池替换为在调用线程中直接执行，认领的任务在 pollJobs 返回前执行完毕
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestionJobServiceImplTest {
+
+    @Mock
+    private IngestionJobMapper ingestionJobMapper;
+
+    @Mock
+    private DocumentMapper documentMapper;
+
+    @Mock
+    private DocumentProcessingService documentProcessingService;
+
+    @Mock
+    private IngestionCostEstimator ingestionCostEstimator;
+
+    @Mock
+    private IngestionProgressService ingestionProgressService;
+
+    @Spy
+    private RagIngestionProperties ragIngestionProperties = new RagIngestionProperties();
+
+    @InjectMocks
+    private IngestionJobServiceImpl ingestionJobService;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(ingestionJobService, "taskExecutor", (Executor) Runnable::run);
+    }
+
+    /**
+     * 测试提交的任务以 PENDING 状态写入
+     */
+    @Test
+    void testEnqueue_InsertsPendingJob() {
+        Document document = documentWithId(7L);
+        when(documentMapper.selectById(7L)).thenReturn(document);
+        when(ingestionCostEstimator.estimate(document)).thenReturn(40000L);
+
+        LocalDateTime before = LocalDateTime.now();
+        ingestionJobService.enqueue(7L, IngestionJob.TYPE_REPROCESS);
+
+        ArgumentCaptor<IngestionJob> captor = ArgumentCaptor.forClass(IngestionJob.class);
+        verify(ingestionJobMapper).insert(captor.capture());
+        IngestionJob job = captor.getValue();
+        assertEquals(7L, job.getDocumentId());
+        assertEquals(IngestionJob.TYPE_REPROCESS, job.getJobType());
+        assertEquals(IngestionJob.STATUS_PENDING, job.getStatus());
+        assertEquals(0, job.getAttempts());
+        assertEquals(IngestionJob.PRIORITY_NORMAL, job.getPriority());
+        assertEquals(40000L, job.getEstimatedCost());
+        // 4 万字符按每秒 2 万字符推后 2 秒
+        assertFalse(job.getEffectiveAt().isBefore(before.plusSeconds(2)));
+        assertTrue(job.getEffectiveAt().isBefore(LocalDateTime.now().plusSeconds(3)));
+    }
+
+    /**
+     * 测试排队时间：成本低的任务排在同时提交的成本高的任务之前，优先级可以越过成本差
+     */
+    @Test
+    void testEnqueue_EffectiveAtOrdersBySizeAndPriority() {
+        Document memo = documentWithId(1L);
+        Document compendium = documentWithId(2L);
+        when(documentMapper.selectById(1L)).thenReturn(memo);
+        when(documentMapper.selectById(2L)).thenReturn(compendium);
+        when(ingestionCostEstimator.estimate(memo)).thenReturn(2000L);
+        when(ingestionCostEstimator.estimate(compendium)).thenReturn(20_000_000L);
+
+        ingestionJobService.enqueue(2L, IngestionJob.TYPE_PROCESS);
+        ingestionJobService.enqueue(1L, IngestionJob.TYPE_PROCESS);
+        ingestionJobService.enqueue(1L, IngestionJob.TYPE_PROCESS, IngestionJob.PRIORITY_LOW);
+        ingestionJobService.enqueue(2L, IngestionJob.TYPE_PROCESS, IngestionJob.PRIORITY_HIGH);
+
+        ArgumentCaptor<IngestionJob> captor = ArgumentCaptor.forClass(IngestionJob.class);
+        verify(ingestionJobMapper, times(4)).insert(captor.capture());
+        List<IngestionJob> jobs = captor.getAllValues();
+        // 先提交的大文档排在后提交的小文档之后（推后约 1000 秒）
+        assertTrue(jobs.get(1).getEffectiveAt().isBefore(jobs.get(0).getEffectiveAt()));
+        // 低优先级推后 1 小时，排在大文档之后；高优先级提前 1 小时，排在所有任务之前
+        assertTrue(jobs.get(2).getEffectiveAt().isAfter(jobs.get(0).getEffectiveAt()));
+        assertTrue(jobs.get(3).getEffectiveAt().isBefore(jobs.get(1).getEffectiveAt()));
+        assertEquals(IngestionJob.PRIORITY_HIGH, jobs.get(3).getPriority());
+    }
+
+    /**
+     * 测试批量提交任务时按每条语句的行数上限分批插入，每个任务带有估算成本
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEnqueueAll_InsertsInSlices() {
+        List<Long> documentIds = LongStream.rangeClosed(1, 1500).boxed().toList();
+        when(documentMapper.selectByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(IngestionJobServiceImplTest::documentWithId).toList();
+        });
+        when(ingestionCostEstimator.estimate(any(Document.class))).thenReturn(100L);
+
+        ingestionJobService.enqueueAll(documentIds, IngestionJob.TYPE_PROCESS);
+
+        ArgumentCaptor<List<IngestionJob>> captor = ArgumentCaptor.forClass(List.class);
+        verify(ingestionJobMapper, times(2)).insertBatch(captor.capture());
+        List<IngestionJob> first = captor.getAllValues().get(0);
+        List<IngestionJob> second = captor.getAllValues().get(1);
+        assertEquals(1000, first.size());
+        assertEquals(500, second.size());
+        assertEquals(1L, first.get(0).getDocumentId());
+        assertEquals(1500L, second.get(499).getDocumentId());
+        assertEquals(IngestionJob.TYPE_PROCESS, second.get(0).getJobType());
+        assertEquals(100L, second.get(0).getEstimatedCost());
+        verify(ingestionJobMapper, never()).insert(any(IngestionJob.class));
+    }
+
+    /**
+     * 测试首次认领的任务按类型处理，并在文档处理完成后结束任务
+     */
+    @Test
+    void testPollJobs_RunsClaimedJobsByType() {
+        when(ingestionJobMapper.claimJobs(anyString(), eq(300), eq(4)))
+                .thenReturn(List.of(job(1L, 10L, IngestionJob.TYPE_PROCESS, 1),
+                        job(2L, 11L, IngestionJob.TYPE_REPROCESS, 1)));
+        when(documentMapper.selectById(anyLong())).thenReturn(document("COMPLETED"));
+
+        ingestionJobService.pollJobs();
+
+        verify(documentProcessingService).processDocument(10L);
+        verify(documentProcessingService).reprocessDocument(11L);
+        verify(ingestionJobMapper).finishJob(eq(1L), anyString(), eq(IngestionJob.STATUS_DONE), isNull());
+        verify(ingestionJobMapper).finishJob(eq(2L), anyString(), eq(IngestionJob.STATUS_DONE), isNull());
+    }
+
+    /**
+     * 测试文档处理失败且未达到最大认领次数时，任务延迟后重试，文档恢复为 PROCESSING
+     */
+    @Test
+    void testPollJobs_FailedDocumentRetriedWithBackoff() {
+        when(ingestionJobMapper.claimJobs(anyString(), anyInt(), anyInt()))
+                .thenReturn(List.of(job(1L, 10L, IngestionJob.TYPE_PROCESS, 2)));
+        Document failed = document("FAILED");
+        failed.setErrorMessage("OpenRouter 返回 502");
+        when(documentMapper.selectById(10L)).thenReturn(failed);
+        when(ingestionJobMapper.retryJob(eq(1L), anyString(), anyString(), anyInt())).thenReturn(1);
+
+        ingestionJobService.pollJobs();
+
+        verify(ingestionJobMapper).retryJob(eq(1L), anyString(), eq("OpenRouter 返回 502"), eq(60));
+        verify(ingestionJobMapper, never()).finishJob(anyLong(), anyString(), anyString(), any());
+        ArgumentCaptor<Document> captor = ArgumentCaptor.forClass(Document.class);
+        verify(documentMapper).updateById(captor.capture());
+        assertEquals(10L, captor.getValue().getId());
+        assertEquals("PROCESSING", captor.getValue().getStatus());
+        verify(ingestionProgressService).retrying(10L, "OpenRouter 返回 502");
+        verify(ingestionProgressService, never()).finish(anyLong(), anyString(), any());
+    }
+
+    /**
+     * 测试最后一次认领仍然失败时任务以 FAILED 结束并记录原因
+     */
+    @Test
+    void testPollJobs_LastAttemptFailureMarksJobFailed() {
+        when(ingestionJobMapper.claimJobs(anyString(), anyInt(), anyInt()))
+                .thenReturn(List.of(job(1L, 10L, IngestionJob.TYPE_PROCESS, 3)));
+        Document failed = document("FAILED");
+        failed.setErrorMessage("文本提取失败");
+        when(documentMapper.selectById(10L)).thenReturn(failed);
+
+        ingestionJobService.pollJobs();
+
+        verify(ingestionJobMapper).finishJob(eq(1L), anyString(), eq(IngestionJob.STATUS_FAILED), eq("文本提取失败"));
+        verify(ingestionJobMapper, never()).retryJob(anyLong(), anyString(), anyString(), anyInt());
+        verify(ingestionProgressService).finish(10L, IngestionProgressService.STATUS_FAILED, "文本提取失败");
+    }
+
+    /**
+     * 测试重新认领的任务按原类型再次执行，由处理方法从已保存的进度继续
+     */
+    @Test
+    void testPollJobs_ReclaimedJobRunsSameType() {
+        when(ingestionJobMapper.claimJobs(anyString(), anyInt(), anyInt()))
+                .thenReturn(List.of(job(1L, 10L, IngestionJob.TYPE_REPROCESS, 2)));
+        when(documentMapper.selectById(10L)).thenReturn(document("COMPLETED"));
+
+        ingestionJobService.pollJobs();
+
+        verify(documentProcessingService).reprocessDocument(10L);
+        verify(documentProcessingService, never()).processDocument(anyLong());
+        verify(ingestionJobMapper).finishJob(eq(1L), anyString(), eq(IngestionJob.STATUS_DONE), isNull());
+    }
+
+    /**
+     * 测试超过最大认领次数的任务不再处理，文档和任务均标记为 FAILED
+     */
+    @Test
+    void testPollJobs_ExhaustedAttemptsMarkFailed() {
+        when(ingestionJobMapper.claimJobs(anyString(), anyInt(), anyInt()))
+                .thenReturn(List.of(job(1L, 10L, IngestionJob.TYPE_PROCESS, 4)));
+
+        ingestionJobService.pollJobs();
+
+        verifyNoInteractions(documentProcessingService);
+        ArgumentCaptor<Document> captor = ArgumentCaptor.forClass(Document.class);
+        verify(documentMapper).updateById(captor.capture());
+        assertEquals(10L, captor.getValue().getId());
+        assertEquals("FAILED", captor.getValue().getStatus());
+        verify(ingestionJobMapper).finishJob(eq(1L), anyString(), eq(IngestionJob.STATUS_FAILED), anyString());
+        verify(ingestionProgressService).finish(eq(10L), eq(IngestionProgressService.STATUS_FAILED), anyString());
+    }
+
+    /**
+     * 测试只按空闲槽位认领，执行中的任务在租约过去 1/3 后续约
+     */
+    @Test
+    void testPollJobs_RenewsLeasesOfRunningJobs() {
+        ragIngestionProperties.setJobConcurrency(2);
+        ragIngestionProperties.setJobLeaseSeconds(3);
+        ReflectionTestUtils.setField(ingestionJobService, "taskExecutor", (Executor) task -> { });
+        when(ingestionJobMapper.claimJobs(anyString(), eq(3), eq(2)))
+                .thenReturn(List.of(job(1L, 10L, IngestionJob.TYPE_PROCESS, 1)));
+        when(ingestionJobMapper.claimJobs(anyString(), eq(3), eq(1))).thenReturn(List.of());
+
+        ingestionJobService.pollJobs();
+        ReflectionTestUtils.setField(ingestionJobService, "lastRenewalMillis", System.currentTimeMillis() - 1500);
+        ingestionJobService.pollJobs();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Collection<Long>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(ingestionJobMapper).renewLeases(anyString(), captor.capture(), eq(3));
+        assertEquals(List.of(1L), List.copyOf(captor.getValue()));
+    }
+
+    /**
+     * 测试停止后不再认领任务
+     */
+    @Test
+    void testPollJobs_StoppedWorkerDoesNotClaim() {
+        ingestionJobService.stop();
+
+        ingestionJobService.pollJobs();
+
+        verifyNoInteractions(ingestionJobMapper);
+    }
+
+    private IngestionJob job(Long id, Long documentId, String type, int attempts) {
+        IngestionJob job = new IngestionJob();
+        job.setId(id);
+        job.setDocumentId(documentId);
+        job.setJobType(type);
+        job.setStatus(IngestionJob.STATUS_RUNNING);
+        job.setAttempts(attempts);
+        return job;
+    }
+
+    private Document document(String status) {
+        Document document = new Document();
+        document.setStatus(status);
+        return document;
+    }
+
+    private static Document documentWithId(Long id) {
+        Document document = new Document();
+        document.setId(id);
+        return document;
+    }
+}
@@ -0,0 +1,321 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagIngestionProperties;
+import com.example.rag.entity.Document;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.DocumentMapper;
+import com.example.rag.mapper.IngestionJobMapper;
+import com.example.rag.service.IngestionProgressService;
+import com.example.rag.vo.IngestionProgressVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * IngestionProgressServiceImpl 单元测试
+ * SSE 连接替换为记录发送内容的 RecordingEmitter，不需要真实的 HTTP 连接
+ */
+@ExtendWith(MockitoExtension.class)
+class IngestionProgressServiceImplTest {
+
+    @Mock
+    private DocumentMapper documentMapper;
+
+    @Mock
+    private IngestionJobMapper ingestionJobMapper;
+
+    private RagIngestionProperties properties;
+
+    private IngestionProgressServiceImpl progressService;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RagIngestionProperties();
+        // 发送任务在调用线程中直接执行，推送结果可以立即检查
+        progressService = new IngestionProgressServiceImpl(documentMapper, ingestionJobMapper, properties) {
+            @Override
+            SseEmitter createEmitter(long timeoutMs) {
+                return new RecordingEmitter();
+            }
+
+            @Override
+            Executor sendExecutor() {
+                return Runnable::run;
+            }
+        };
+    }
+
+    /**
+     * 测试处理中的文档：订阅时推送当前计数，提取结束和处理完成的事件总是推送，完成后关闭连接
+     */
+    @Test
+    void testSubscribe_StreamsCountersUntilCompleted() {
+        when(documentMapper.selectById(1L)).thenReturn(document(1L, "PROCESSING"));
+        progressService.start(1L);
+        progressService.chunksExtracted(1L, 1);
+        progressService.chunksExtracted(1L, 1);
+
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribe(1L);
+        progressService.chunksEmbedded(1L, 2);
+        progressService.extractionFinished(1L);
+        progressService.chunksStored(1L, 2);
+        progressService.finish(1L, IngestionProgressService.STATUS_COMPLETED, null);
+
+        IngestionProgressVO first = emitter.events.get(0);
+        assertEquals(IngestionProgressService.STATUS_PROCESSING, first.getStatus());
+        assertEquals(2, first.getChunksExtracted());
+        assertFalse(first.getExtractionFinished());
+
+        IngestionProgressVO last = emitter.events.get(emitter.events.size() - 1);
+        assertEquals(IngestionProgressService.STATUS_COMPLETED, last.getStatus());
+        assertEquals(2, last.getChunksExtracted());
+        assertEquals(2, last.getChunksEmbedded());
+        assertEquals(2, last.getChunksStored());
+        assertTrue(last.getExtractionFinished());
+        assertTrue(emitter.completed);
+
+        // 结束后不再推送
+        progressService.chunksStored(1L, 1);
+        assertEquals(IngestionProgressService.STATUS_COMPLETED,
+                emitter.events.get(emitter.events.size() - 1).getStatus());
+    }
+
+    /**
+     * 测试推送间隔内的计数变化合并到下一次推送
+     */
+    @Test
+    void testChunkCounters_ThrottledWithinInterval() {
+        properties.setProgressPublishIntervalMs(60_000L);
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribeAll();
+
+        progressService.start(1L);
+        for (int i = 0; i < 100; i++) {
+            progressService.chunksExtracted(1L, 1);
+        }
+        progressService.extractionFinished(1L);
+
+        assertEquals(2, emitter.events.size());
+        assertEquals(0, emitter.events.get(0).getChunksExtracted());
+        assertEquals(100, emitter.events.get(1).getChunksExtracted());
+    }
+
+    /**
+     * 测试沿用的片段计入已向量化和已保存
+     */
+    @Test
+    void testChunksResumed_CountsAsEmbeddedAndStored() {
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribeAll();
+
+        progressService.start(1L);
+        progressService.chunksResumed(1L, 3);
+        progressService.finish(1L, IngestionProgressService.STATUS_COMPLETED, null);
+
+        IngestionProgressVO last = emitter.events.get(emitter.events.size() - 1);
+        assertEquals(3, last.getChunksEmbedded());
+        assertEquals(3, last.getChunksStored());
+        // 订阅全部文档的连接不随单个文档结束而关闭
+        assertFalse(emitter.completed);
+    }
+
+    /**
+     * 测试等待重试的事件带有失败原因，单个文档的连接保持打开
+     */
+    @Test
+    void testRetrying_KeepsDocumentSubscriptionOpen() {
+        when(documentMapper.selectById(1L)).thenReturn(document(1L, "PROCESSING"));
+        progressService.start(1L);
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribe(1L);
+
+        progressService.retrying(1L, "OpenRouter 返回 502");
+
+        IngestionProgressVO last = emitter.events.get(emitter.events.size() - 1);
+        assertEquals(IngestionProgressService.STATUS_RETRYING, last.getStatus());
+        assertEquals("OpenRouter 返回 502", last.getErrorMessage());
+        assertFalse(emitter.completed);
+    }
+
+    /**
+     * 测试订阅已完成的文档：推送数据库中的最终状态后立即关闭连接
+     */
+    @Test
+    void testSubscribe_CompletedDocumentClosesImmediately() {
+        Document document = document(1L, "COMPLETED");
+        document.setChunkCount(7);
+        when(documentMapper.selectById(1L)).thenReturn(document);
+
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribe(1L);
+
+        assertEquals(1, emitter.events.size());
+        assertEquals(IngestionProgressService.STATUS_COMPLETED, emitter.events.get(0).getStatus());
+        assertEquals(7, emitter.events.get(0).getChunksStored());
+        assertTrue(emitter.completed);
+    }
+
+    /**
+     * 测试失败但仍有待执行任务的文档视为等待重试，不关闭连接
+     */
+    @Test
+    void testSubscribe_FailedDocumentWithPendingJobIsRetrying() {
+        when(documentMapper.selectById(1L)).thenReturn(document(1L, "FAILED"));
+        when(ingestionJobMapper.selectCount(any())).thenReturn(1L);
+
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribe(1L);
+
+        assertEquals(IngestionProgressService.STATUS_RETRYING, emitter.events.get(0).getStatus());
+        assertFalse(emitter.completed);
+    }
+
+    /**
+     * 测试订阅不存在的文档
+     */
+    @Test
+    void testSubscribe_DocumentNotFound() {
+        when(documentMapper.selectById(99L)).thenReturn(null);
+
+        BusinessException e = assertThrows(BusinessException.class, () -> progressService.subscribe(99L));
+        assertEquals(404, e.getCode());
+    }
+
+    /**
+     * 测试心跳发现文档已在其他节点处理完成时推送最终状态并关闭连接
+     */
+    @Test
+    void testHeartbeat_ClosesWhenDocumentFinishedElsewhere() {
+        Document processing = document(1L, "PROCESSING");
+        Document completed = document(1L, "COMPLETED");
+        completed.setChunkCount(5);
+        when(documentMapper.selectById(1L)).thenReturn(processing, completed);
+
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribe(1L);
+        assertFalse(emitter.completed);
+
+        progressService.heartbeat();
+
+        assertEquals(IngestionProgressService.STATUS_COMPLETED,
+                emitter.events.get(emitter.events.size() - 1).getStatus());
+        assertTrue(emitter.completed);
+    }
+
+    /**
+     * 测试推送失败（客户端已断开）的连接被移除
+     */
+    @Test
+    void testSend_DisconnectedSubscriberRemoved() {
+        RecordingEmitter emitter = (RecordingEmitter) progressService.subscribeAll();
+        emitter.broken = true;
+
+        progressService.start(1L);
+        progressService.finish(1L, IngestionProgressService.STATUS_COMPLETED, null);
+
+        assertEquals(1, emitter.attempts);
+    }
+
+    /**
+     * 测试处理线程只把事件放入队列：客户端停止接收时处理线程不被阻塞，同一文档积压的事件只发送最新的一个
+     */
+    @Test
+    void testPublish_DoesNotBlockOnStalledClient() throws Exception {
+        CountDownLatch stalled = new CountDownLatch(1);
+        RecordingEmitter emitter = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(builder);
+            }
+        };
+        IngestionProgressServiceImpl service = new IngestionProgressServiceImpl(documentMapper, ingestionJobMapper, properties) {
+            @Override
+            SseEmitter createEmitter(long timeoutMs) {
+                return emitter;
+            }
+        };
+        properties.setProgressPublishIntervalMs(0L);
+        try {
+            service.subscribeAll();
+
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+                service.start(1L);
+                for (int i = 0; i < 1000; i++) {
+                    service.chunksStored(1L, 1);
+                }
+                service.finish(1L, IngestionProgressService.STATUS_COMPLETED, null);
+            });
+
+            stalled.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!IngestionProgressService.STATUS_COMPLETED.equals(lastStatus(emitter)) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(IngestionProgressService.STATUS_COMPLETED, lastStatus(emitter));
+            assertEquals(1000, emitter.events.get(emitter.events.size() - 1).getChunksStored());
+            // 客户端停止接收期间积压的事件合并为最终状态（发送线程可能已取走第一个事件）
+            assertTrue(emitter.events.size() <= 2, "积压的事件应当合并：" + emitter.events.size());
+        } finally {
+            stalled.countDown();
+            service.shutdown();
+        }
+    }
+
+    private static String lastStatus(RecordingEmitter emitter) {
+        synchronized (emitter.events) {
+            return emitter.events.isEmpty() ? null : emitter.events.get(emitter.events.size() - 1).getStatus();
+        }
+    }
+
+    private static Document document(Long id, String status) {
+        Document document = new Document();
+        document.setId(id);
+        document.setStatus(status);
+        return document;
+    }
+
+    /**
+     * 记录推送的进度事件
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<IngestionProgressVO> events = new ArrayList<>();
+        private boolean completed;
+        private boolean broken;
+        private int attempts;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            attempts++;
+            if (broken) {
+                throw new IOException("Broken pipe");
+            }
+            for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+                if (data.getData() instanceof IngestionProgressVO progressVO) {
+                    synchronized (events) {
+                        events.add(progressVO);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
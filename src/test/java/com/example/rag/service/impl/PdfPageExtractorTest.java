@@ -0,0 +1,152 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagDocumentProperties;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PdfPageExtractor 单元测试
+ * 测试用的 PDF 由 PDFBox 现场生成，每页一行 "Page N"
+ */
+class PdfPageExtractorTest {
+
+    private RagDocumentProperties properties;
+
+    private PdfPageExtractor extractor;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RagDocumentProperties();
+        properties.setPdfPagesPerTask(2);
+        properties.setPdfExtractionParallelism(4);
+        extractor = new PdfPageExtractor(properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        extractor.shutdown();
+    }
+
+    /**
+     * 测试多个页区间并行提取后按页码顺序交出
+     */
+    @Test
+    void testExtractPages_ParallelKeepsPageOrder() throws Exception {
+        File pdf = createPdf("large.pdf", 23);
+        List<Integer> pages = new ArrayList<>();
+        List<String> texts = new ArrayList<>();
+        List<String> threads = new ArrayList<>();
+
+        int pageCount = extractor.extractPages(pdf, (page, text) -> {
+            pages.add(page);
+            texts.add(text.trim());
+            threads.add(Thread.currentThread().getName());
+        });
+
+        assertEquals(23, pageCount);
+        for (int i = 0; i < 23; i++) {
+            assertEquals(i + 1, pages.get(i));
+            assertEquals("Page " + (i + 1), texts.get(i));
+        }
+        // 页文本在调用线程中交出
+        assertTrue(threads.stream().allMatch(Thread.currentThread().getName()::equals));
+    }
+
+    /**
+     * 测试页数不超过一个页区间时在调用线程中顺序提取
+     */
+    @Test
+    void testExtractPages_SmallDocumentSequential() throws Exception {
+        File pdf = createPdf("small.pdf", 2);
+        List<String> texts = new ArrayList<>();
+
+        int pageCount = extractor.extractPages(pdf, (page, text) -> texts.add(text.trim()));
+
+        assertEquals(2, pageCount);
+        assertEquals(List.of("Page 1", "Page 2"), texts);
+    }
+
+    /**
+     * 测试接收者抛出的异常原样传给调用方，后续页不再交出
+     */
+    @Test
+    void testExtractPages_ConsumerFailurePropagates() throws Exception {
+        File pdf = createPdf("failing.pdf", 10);
+        List<Integer> pages = new ArrayList<>();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> extractor.extractPages(pdf, (page, text) -> {
+                    pages.add(page);
+                    if (page == 3) {
+                        throw new IllegalStateException("磁盘已满");
+                    }
+                }));
+
+        assertEquals("磁盘已满", e.getMessage());
+        assertEquals(List.of(1, 2, 3), pages);
+    }
+
+    /**
+     * 测试损坏的 PDF 抛出 IOException
+     */
+    @Test
+    void testExtractPages_CorruptFile() throws Exception {
+        File pdf = tempDir.resolve("corrupt.pdf").toFile();
+        Files.writeString(pdf.toPath(), "not a pdf");
+
+        assertThrows(IOException.class, () -> extractor.extractPages(pdf, (page, text) -> { }));
+    }
+
+    /**
+     * 测试只处理 pdf 扩展名，且可以通过配置关闭；开启子进程解析时 PDF 也交给子进程
+     */
+    @Test
+    void testSupports() {
+        assertTrue(extractor.supports(new File("report.PDF")));
+        assertFalse(extractor.supports(new File("notes.txt")));
+
+        properties.setForkedExtraction(true);
+        assertFalse(extractor.supports(new File("report.pdf")));
+        properties.setForkedExtraction(false);
+
+        properties.setPdfParallelExtraction(false);
+        assertFalse(extractor.supports(new File("report.pdf")));
+    }
+
+    private File createPdf(String name, int pageCount) throws IOException {
+        File file = tempDir.resolve(name).toFile();
+        try (PDDocument document = new PDDocument()) {
+            for (int i = 1; i <= pageCount; i++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 12);
+                    content.newLineAtOffset(72, 700);
+                    content.showText("Page " + i);
+                    content.endText();
+                }
+            }
+            document.save(file);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.core.util.StrUtil;
+import com.example.rag.config.RagDocumentProperties;
+import org.apache.tika.Tika;
+import org.apache.tika.exception.ZeroByteFileException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * PlainTextExtractor 单元测试
+ */
+class PlainTextExtractorTest {
+
+    private RagDocumentProperties properties;
+
+    private PlainTextExtractor extractor;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RagDocumentProperties();
+        extractor = new PlainTextExtractor(properties);
+    }
+
+    /**
+     * 测试 UTF-8 文本原样解码
+     */
+    @Test
+    void testExtract_Utf8() throws Exception {
+        File file = write("law.md", "# 第一章 总则\n第一条 为了保护民事主体的合法权益。".getBytes(StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder();
+
+        Charset charset = extractor.extract(file, text::append);
+
+        assertEquals(StandardCharsets.UTF_8, charset);
+        assertEquals("# 第一章 总则\n第一条 为了保护民事主体的合法权益。", text.toString());
+    }
+
+    /**
+     * 测试按 BOM 判断字符集，BOM 本身不输出
+     */
+    @Test
+    void testExtract_Bom() throws Exception {
+        byte[] body = "带 BOM 的文本".getBytes(StandardCharsets.UTF_16LE);
+        byte[] bytes = new byte[body.length + 2];
+        bytes[0] = (byte) 0xFF;
+        bytes[1] = (byte) 0xFE;
+        System.arraycopy(body, 0, bytes, 2, body.length);
+        StringBuilder text = new StringBuilder();
+
+        Charset charset = extractor.extract(write("utf16.txt", bytes), text::append);
+
+        assertEquals(StandardCharsets.UTF_16LE, charset);
+        assertEquals("带 BOM 的文本", text.toString());
+
+        byte[] utf8Body = "UTF-8 BOM".getBytes(StandardCharsets.UTF_8);
+        byte[] utf8Bytes = new byte[utf8Body.length + 3];
+        utf8Bytes[0] = (byte) 0xEF;
+        utf8Bytes[1] = (byte) 0xBB;
+        utf8Bytes[2] = (byte) 0xBF;
+        System.arraycopy(utf8Body, 0, utf8Bytes, 3, utf8Body.length);
+        StringBuilder utf8Text = new StringBuilder();
+        extractor.extract(write("utf8bom.txt", utf8Bytes), utf8Text::append);
+        assertEquals("UTF-8 BOM", utf8Text.toString());
+    }
+
+    /**
+     * 测试非 UTF-8 的中文文本（Windows 中文系统常见的 GBK 编码）
+     */
+    @Test
+    void testExtract_DetectsChineseEncoding() throws Exception {
+        String content = "中华人民共和国民法典。第一条 为了保护民事主体的合法权益，调整民事关系，维护社会和经济秩序。".repeat(20);
+        StringBuilder text = new StringBuilder();
+
+        Charset charset = extractor.extract(write("gbk.txt", content.getBytes("GB18030")), text::append);
+
+        assertNotEquals(StandardCharsets.UTF_8, charset);
+        assertEquals(content, text.toString());
+    }
+
+    /**
+     * 测试多字节字符跨越映射区间边界时正确解码
+     */
+    @Test
+    void testExtract_MultiByteCharacterAcrossWindows() throws Exception {
+        PlainTextExtractor smallWindows = new PlainTextExtractor(properties) {
+            @Override
+            long mapWindowBytes() {
+                return 7;
+            }
+        };
+        String content = "ab民法典第一条，调整民事关系。\nend";
+        StringBuilder text = new StringBuilder();
+
+        smallWindows.extract(write("windows.txt", content.getBytes(StandardCharsets.UTF_8)), text::append);
+
+        assertEquals(content, text.toString());
+    }
+
+    /**
+     * 测试空文件与 Tika 一样抛出 ZeroByteFileException
+     */
+    @Test
+    void testExtract_EmptyFile() throws Exception {
+        File file = write("empty.txt", new byte[0]);
+
+        assertThrows(ZeroByteFileException.class, () -> extractor.extract(file, (chars, start, length) -> { }));
+    }
+
+    /**
+     * 测试去除空白后的文本与经 Tika 提取并 cleanBlank 的结果一致
+     */
+    @Test
+    void testExtract_MatchesTikaAfterCleanBlank() throws Exception {
+        String content = "第一行\t带制表符\r\n第二行  两个空格\n\n  缩进的第三行 end";
+        File file = write("compare.txt", content.getBytes(StandardCharsets.UTF_8));
+        StringBuilder text = new StringBuilder();
+
+        extractor.extract(file, text::append);
+
+        assertEquals(StrUtil.cleanBlank(new Tika().parseToString(file)), StrUtil.cleanBlank(text.toString()));
+    }
+
+    /**
+     * 测试只处理 txt / md 扩展名，且可以通过配置关闭
+     */
+    @Test
+    void testSupports() {
+        assertTrue(extractor.supports(new File("notes.TXT")));
+        assertTrue(extractor.supports(new File("readme.md")));
+        assertFalse(extractor.supports(new File("report.pdf")));
+
+        properties.setPlainTextFastPath(false);
+        assertFalse(extractor.supports(new File("notes.txt")));
+    }
+
+    private File write(String name, byte[] bytes) throws Exception {
+        Path path = tempDir.resolve(name);
+        Files.write(path, bytes);
+        return path.toFile();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagRetrievalProperties;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.service.EmbeddingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * QueryEmbeddingBatcher 单元测试
+ * 合并窗口设得较长，保证同时发起的查询落在同一窗口内
+ */
+@ExtendWith(MockitoExtension.class)
+class QueryEmbeddingBatcherTest {
+
+    @Mock
+    private EmbeddingService embeddingService;
+
+    private RagRetrievalProperties properties;
+
+    private QueryEmbeddingBatcher batcher;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RagRetrievalProperties();
+        properties.setQueryBatchWindowMs(300L);
+        properties.setQueryBatchMaxSize(32);
+        batcher = new QueryEmbeddingBatcher(embeddingService, properties);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 测试并发的不同查询合并为一次请求，结果按文本分发回各自的调用方
+     */
+    @Test
+    void testEmbed_MergesConcurrentQueries() throws Exception {
+        properties.setQueryBatchMaxSize(3);
+        when(embeddingService.embedQueries(anyList())).thenAnswer(invocation -> vectorsOf(invocation.getArgument(0)));
+
+        List<Future<float[]>> results = submitAll(List.of("a", "bb", "ccc"));
+
+        assertEquals(1f, results.get(0).get(5, TimeUnit.SECONDS)[0]);
+        assertEquals(2f, results.get(1).get(5, TimeUnit.SECONDS)[0]);
+        assertEquals(3f, results.get(2).get(5, TimeUnit.SECONDS)[0]);
+        verify(embeddingService, times(1)).embedQueries(argThat(texts -> texts.size() == 3));
+        verify(embeddingService, never()).embed(anyString());
+    }
+
+    /**
+     * 测试相同的并发查询只向量化一次
+     */
+    @Test
+    void testEmbed_IdenticalQueriesShareOneRequest() throws Exception {
+        when(embeddingService.embed("same")).thenReturn(new float[]{4f});
+
+        List<Future<float[]>> results = submitAll(List.of("same", "same", "same"));
+
+        for (Future<float[]> result : results) {
+            assertEquals(4f, result.get(5, TimeUnit.SECONDS)[0]);
+        }
+        verify(embeddingService, times(1)).embed("same");
+        verify(embeddingService, never()).embedQueries(anyList());
+    }
+
+    /**
+     * 测试批次凑满后立即发送，超出的查询进入下一批
+     */
+    @Test
+    void testEmbed_SplitsAtMaxSize() throws Exception {
+        properties.setQueryBatchMaxSize(2);
+        when(embeddingService.embedQueries(anyList())).thenAnswer(invocation -> vectorsOf(invocation.getArgument(0)));
+
+        List<Future<float[]>> results = submitAll(List.of("a", "bb", "ccc", "dddd"));
+
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i + 1f, results.get(i).get(5, TimeUnit.SECONDS)[0]);
+        }
+        verify(embeddingService, times(2)).embedQueries(argThat(texts -> texts.size() == 2));
+    }
+
+    /**
+     * 测试合并请求失败时同批的所有查询收到相同的异常
+     */
+    @Test
+    void testEmbed_FailurePropagatesToWholeBatch() throws Exception {
+        properties.setQueryBatchMaxSize(2);
+        BusinessException failure = new BusinessException(502, "向量化服务调用失败");
+        when(embeddingService.embedQueries(anyList())).thenThrow(failure);
+
+        List<Future<float[]>> results = submitAll(List.of("a", "bb"));
+
+        for (Future<float[]> result : results) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    /**
+     * 测试关闭合并时直接调用单条向量化接口
+     */
+    @Test
+    void testEmbed_DisabledPassesThrough() throws Exception {
+        properties.setQueryBatchEnabled(false);
+        when(embeddingService.embed("q")).thenReturn(new float[]{1f});
+
+        long start = System.nanoTime();
+        assertEquals(1f, batcher.embed("q")[0]);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 300);
+        verify(embeddingService, never()).embedQueries(anyList());
+    }
+
+    private List<Future<float[]>> submitAll(List<String> texts) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<float[]>> results = new ArrayList<>();
+        for (String text : texts) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return batcher.embed(text);
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    /**
+     * 以文本长度作为向量的第一个分量，便于检查结果是否分发给了正确的调用方
+     */
+    private static List<float[]> vectorsOf(List<String> texts) {
+        List<float[]> vectors = new ArrayList<>();
+        for (String text : texts) {
+            vectors.add(new float[]{text.length()});
+        }
+        return vectors;
+    }
+}
@@ -52,9 +52,10 @@ class RetrievalServiceImplTest {
         ragRetrievalProperties = new RagRetrievalProperties();
         ragRetrievalProperties.setTopK(5);
         ragRetrievalProperties.setMinScore(0.7);
+        ragRetrievalProperties.setQueryBatchEnabled(false);
 
         retrievalService = new RetrievalServiceImpl(
-                embeddingService,
+                new QueryEmbeddingBatcher(embeddingService, ragRetrievalProperties),
                 vectorStoreService,
                 documentChunkMapper,
                 ragRetrievalProperties
@@ -0,0 +1,275 @@
+package com.example.rag.service.impl;
+
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.util.BpeTokenizer;
+import com.example.rag.util.ChunkSizeUnit;
+import com.example.rag.util.IncrementalChunker;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.tika.exception.ZeroByteFileException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SpreadsheetExtractor 单元测试
+ */
+class SpreadsheetExtractorTest {
+
+    private static final String HEADER = "案号 | 当事人 | 案由";
+
+    private RagDocumentProperties properties;
+
+    private SpreadsheetExtractor extractor;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        properties = new RagDocumentProperties();
+        properties.setChunkSize(120);
+        extractor = new SpreadsheetExtractor(properties);
+    }
+
+    /**
+     * 测试 CSV 按行分组：每个片段以表头开头、不超过片段大小，全部数据行按顺序各出现一次
+     */
+    @Test
+    void testExtract_CsvRowGroups() throws Exception {
+        StringBuilder csv = new StringBuilder("案号,当事人,案由\r\n");
+        for (int i = 1; i <= 200; i++) {
+            csv.append("(2024)京0105民初").append(i).append("号,张").append(i).append(",民间借贷纠纷\r\n");
+        }
+        List<String> chunks = new ArrayList<>();
+
+        long rows = extract(write("register.csv", csv.toString().getBytes(StandardCharsets.UTF_8)), chunks);
+
+        assertEquals(200, rows);
+        assertTrue(chunks.size() > 10);
+        List<String> lines = new ArrayList<>();
+        for (String chunk : chunks) {
+            assertTrue(chunk.startsWith(HEADER + "\n"), "片段应以表头开头：" + chunk);
+            assertTrue(chunk.length() <= 120, "片段超过大小：" + chunk);
+            lines.addAll(List.of(chunk.split("\n")).subList(1, chunk.split("\n").length));
+        }
+        assertEquals(200, lines.size());
+        assertEquals("(2024)京0105民初1号 | 张1 | 民间借贷纠纷", lines.get(0));
+        assertEquals("(2024)京0105民初200号 | 张200 | 民间借贷纠纷", lines.get(199));
+    }
+
+    /**
+     * 测试 CSV 的引号字段（含逗号、换行）、空行和单元格空白，以及 GBK 编码
+     */
+    @Test
+    void testExtract_CsvQuotingAndEncoding() throws Exception {
+        String csv = "案号,当事人,案由\n"
+                + "\"(2024)京0105民初1号\",\"张三, 李四\",\"合同纠纷\n（二审）\"\n"
+                + "\n"
+                + "  (2024)京0105民初2号 ,王五,,\n";
+        List<String> chunks = new ArrayList<>();
+
+        long rows = extract(write("gbk.csv", csv.getBytes("GB18030")), chunks);
+
+        assertEquals(2, rows);
+        assertEquals(List.of(HEADER + "\n"
+                + "(2024)京0105民初1号 | 张三, 李四 | 合同纠纷 （二审）\n"
+                + "(2024)京0105民初2号 | 王五"), chunks);
+    }
+
+    /**
+     * 测试 XLSX 逐个工作表读取：片段带工作表名称和该表的表头，缺失的单元格补空，数值和日期按单元格格式输出
+     */
+    @Test
+    void testExtract_XlsxSheets() throws Exception {
+        File file = tempDir.resolve("register.xlsx").toFile();
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = Files.newOutputStream(file.toPath())) {
+            CellStyle dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+
+            XSSFSheet civil = workbook.createSheet("民事");
+            row(civil, 0, "案号", "当事人", "标的额", "立案日期");
+            Row first = row(civil, 1, "(2024)京0105民初1号", "张三");
+            first.createCell(2).setCellValue(150000);
+            first.createCell(3).setCellValue(LocalDate.of(2024, 1, 15));
+            first.getCell(3).setCellStyle(dateStyle);
+            // 第二个单元格缺失，第 3 行为空行
+            Row second = civil.createRow(3);
+            second.createCell(0).setCellValue("(2024)京0105民初2号");
+            second.createCell(2).setCellValue(8000.5);
+
+            XSSFSheet criminal = workbook.createSheet("刑事");
+            row(criminal, 2, "案号", "被告人");
+            row(criminal, 3, "(2024)京0105刑初1号", "赵六");
+            workbook.write(out);
+        }
+        properties.setChunkSize(800);
+        List<String> chunks = new ArrayList<>();
+
+        long rows = extract(file, chunks);
+
+        assertEquals(3, rows);
+        assertEquals(List.of(
+                "工作表：民事\n案号 | 当事人 | 标的额 | 立案日期\n"
+                        + "(2024)京0105民初1号 | 张三 | 150000 | 2024-01-15\n"
+                        + "(2024)京0105民初2号 |  | 8000.5",
+                "工作表：刑事\n案号 | 被告人\n(2024)京0105刑初1号 | 赵六"), chunks);
+    }
+
+    /**
+     * 测试单独一行就超过片段大小时交给分块器切分，前后的行组不受影响
+     */
+    @Test
+    void testExtract_OversizedRowSplitByChunker() throws Exception {
+        String longCell = "判决理由".repeat(60);
+        String csv = "案号,当事人,案由\n"
+                + "(2024)京0105民初1号,张三,借款合同纠纷\n"
+                + "(2024)京0105民初2号,李四," + longCell + "\n"
+                + "(2024)京0105民初3号,王五,租赁合同纠纷\n";
+        List<String> chunks = new ArrayList<>();
+
+        extract(write("long.csv", csv.getBytes(StandardCharsets.UTF_8)), chunks);
+
+        assertEquals(HEADER + "\n(2024)京0105民初1号 | 张三 | 借款合同纠纷", chunks.get(0));
+        assertEquals(HEADER + "\n(2024)京0105民初3号 | 王五 | 租赁合同纠纷", chunks.get(chunks.size() - 1));
+        assertTrue(chunks.size() > 3);
+        for (String chunk : chunks.subList(1, chunks.size() - 1)) {
+            assertTrue(chunk.length() <= 120);
+        }
+    }
+
+    /**
+     * 测试按 token 分块时行组大小以 token 计
+     */
+    @Test
+    void testExtract_TokenBudget() throws Exception {
+        StringBuilder csv = new StringBuilder("案号,当事人,案由\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append("(2024)京0105民初").append(i).append("号,张").append(i).append(",民间借贷纠纷\n");
+        }
+        BpeTokenizer tokenizer = byteTokenizer();
+        extractor = new SpreadsheetExtractor(properties) {
+            @Override
+            BpeTokenizer tokenizer() {
+                return tokenizer;
+            }
+        };
+        properties.setChunkSizeUnit(ChunkSizeUnit.TOKENS);
+        properties.setChunkSize(300);
+        List<String> chunks = new ArrayList<>();
+
+        extract(write("tokens.csv", csv.toString().getBytes(StandardCharsets.UTF_8)), chunks);
+
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk.startsWith(HEADER + "\n"));
+            assertTrue(tokenizer.countTokens(chunk) <= 300, "片段超过 token 预算：" + chunk);
+            // 字节级词表中每个中文字符为 3 个 token，按字符计的片段大小明显小于预算
+            assertTrue(chunk.length() < 200);
+        }
+    }
+
+    /**
+     * 测试不替换分词器时使用随应用打包的 cl100k_base 词表计量行组大小
+     */
+    @Test
+    void testExtract_Cl100kBaseTokenBudget() throws Exception {
+        StringBuilder csv = new StringBuilder("案号,当事人,案由\n");
+        for (int i = 1; i <= 100; i++) {
+            csv.append("(2024)京0105民初").append(i).append("号,张").append(i).append(",民间借贷纠纷\n");
+        }
+        properties.setChunkSizeUnit(ChunkSizeUnit.TOKENS);
+        properties.setChunkSize(200);
+        List<String> chunks = new ArrayList<>();
+
+        long rows = extract(write("cl100k.csv", csv.toString().getBytes(StandardCharsets.UTF_8)), chunks);
+
+        assertEquals(100, rows);
+        assertTrue(chunks.size() > 1);
+        for (String chunk : chunks) {
+            assertTrue(chunk.startsWith(HEADER + "\n"));
+            assertTrue(BpeTokenizer.cl100kBase().countTokens(chunk) <= 200, "片段超过 token 预算：" + chunk);
+        }
+    }
+
+    /**
+     * 测试只有表头的表格输出表头，空文件与 Tika 一样抛出 ZeroByteFileException
+     */
+    @Test
+    void testExtract_HeaderOnlyAndEmpty() throws Exception {
+        List<String> chunks = new ArrayList<>();
+        extract(write("header.csv", "案号,当事人,案由\n".getBytes(StandardCharsets.UTF_8)), chunks);
+        assertEquals(List.of(HEADER), chunks);
+
+        File empty = write("empty.csv", new byte[0]);
+        assertThrows(ZeroByteFileException.class, () -> extract(empty, new ArrayList<>()));
+    }
+
+    /**
+     * 测试只处理 xlsx / csv 扩展名，关闭配置或开启子进程解析时不处理
+     */
+    @Test
+    void testSupports() {
+        assertTrue(extractor.supports(new File("register.XLSX")));
+        assertTrue(extractor.supports(new File("register.csv")));
+        assertFalse(extractor.supports(new File("register.xls")));
+        assertFalse(extractor.supports(new File("notes.txt")));
+
+        properties.setForkedExtraction(true);
+        assertFalse(extractor.supports(new File("register.csv")));
+
+        properties.setForkedExtraction(false);
+        properties.setSpreadsheetRowChunking(false);
+        assertFalse(extractor.supports(new File("register.xlsx")));
+    }
+
+    private long extract(File file, List<String> chunks) throws Exception {
+        IncrementalChunker chunker = new IncrementalChunker(properties.getChunkSize(), 10, chunks::add);
+        long rows = extractor.extract(file, chunker);
+        chunker.finish();
+        assertEquals(chunks.size(), chunker.getChunkCount());
+        return rows;
+    }
+
+    private static Row row(XSSFSheet sheet, int index, String... values) {
+        Row row = sheet.createRow(index);
+        for (int i = 0; i < values.length; i++) {
+            row.createCell(i).setCellValue(values[i]);
+        }
+        return row;
+    }
+
+    /**
+     * 只含单字节 token 的词表，token 数等于 UTF-8 字节数
+     */
+    private static BpeTokenizer byteTokenizer() throws IOException {
+        StringBuilder vocabulary = new StringBuilder();
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (int b = 0; b < 256; b++) {
+            vocabulary.append(encoder.encodeToString(new byte[]{(byte) b})).append(' ').append(b).append('\n');
+        }
+        return BpeTokenizer.load(new ByteArrayInputStream(vocabulary.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private File write(String name, byte[] bytes) throws Exception {
+        Path path = tempDir.resolve(name);
+        Files.write(path, bytes);
+        return path.toFile();
+    }
+}
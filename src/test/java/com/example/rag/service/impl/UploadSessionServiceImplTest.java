@@ -0,0 +1,268 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.entity.UploadPart;
+import com.example.rag.entity.UploadSession;
+import com.example.rag.exception.BusinessException;
+import com.example.rag.mapper.UploadPartMapper;
+import com.example.rag.mapper.UploadSessionMapper;
+import com.example.rag.service.DocumentService;
+import com.example.rag.vo.DocumentVO;
+import com.example.rag.vo.UploadSessionRequest;
+import com.example.rag.vo.UploadSessionVO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * UploadSessionServiceImpl 单元测试
+ * 会话和分片记录保存在测试内的列表中，临时文件写入临时目录
+ */
+@ExtendWith(MockitoExtension.class)
+class UploadSessionServiceImplTest {
+
+    @Mock
+    private UploadSessionMapper uploadSessionMapper;
+
+    @Mock
+    private UploadPartMapper uploadPartMapper;
+
+    @Mock
+    private DocumentService documentService;
+
+    @Spy
+    private RagDocumentProperties ragDocumentProperties = new RagDocumentProperties();
+
+    @InjectMocks
+    private UploadSessionServiceImpl uploadSessionService;
+
+    @TempDir
+    Path uploadDir;
+
+    private final List<UploadPart> parts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(uploadSessionService, "uploadStorage", new UploadStorage(ragDocumentProperties));
+        ragDocumentProperties.setUploadDir(uploadDir.toString());
+    }
+
+    /**
+     * 测试创建会话时按声明的大小预分配临时文件
+     */
+    @Test
+    void testCreateSession_PreallocatesTempFile() throws Exception {
+        UploadSessionVO vo = uploadSessionService.createSession(new UploadSessionRequest("law.pdf", 4096L, "application/pdf"));
+
+        ArgumentCaptor<UploadSession> captor = ArgumentCaptor.forClass(UploadSession.class);
+        verify(uploadSessionMapper).insert(captor.capture());
+        UploadSession session = captor.getValue();
+        assertEquals(vo.getSessionId(), session.getId());
+        assertEquals(UploadSession.STATUS_UPLOADING, session.getStatus());
+        assertEquals(4096L, Files.size(Path.of(session.getTempPath())));
+        assertEquals(0L, vo.getReceivedBytes());
+    }
+
+    /**
+     * 测试不支持的格式和超过上限的大小被拒绝
+     */
+    @Test
+    void testCreateSession_InvalidRequestRejected() {
+        BusinessException format = assertThrows(BusinessException.class, () ->
+                uploadSessionService.createSession(new UploadSessionRequest("law.exe", 10L, null)));
+        assertEquals(400, format.getCode());
+
+        BusinessException size = assertThrows(BusinessException.class, () ->
+                uploadSessionService.createSession(new UploadSessionRequest("law.pdf", 100L * 1024 * 1024, null)));
+        assertEquals(413, size.getCode());
+
+        verifyNoInteractions(uploadSessionMapper);
+    }
+
+    /**
+     * 测试分片乱序并行上传后完成会话：文件内容与哈希正确，并走普通的文档创建流程
+     */
+    @Test
+    void testCompleteSession_PartsUploadedInParallelOutOfOrder() throws Exception {
+        byte[] content = randomBytes(300_000);
+        UploadSession session = createSession(content.length);
+        recordParts(session);
+        when(uploadSessionMapper.update(isNull(), any())).thenReturn(1);
+        DocumentVO documentVO = new DocumentVO();
+        documentVO.setId(42L);
+        when(documentService.createDocument(eq("law.pdf"), eq((long) content.length), eq("application/pdf"),
+                anyString(), anyString())).thenReturn(documentVO);
+
+        int partSize = 64 * 1024;
+        List<Integer> offsets = new ArrayList<>();
+        for (int offset = 0; offset < content.length; offset += partSize) {
+            offsets.add(offset);
+        }
+        Collections.shuffle(offsets, new Random(7));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<UploadSessionVO>> futures = new ArrayList<>();
+            for (int offset : offsets) {
+                byte[] part = Arrays.copyOfRange(content, offset, Math.min(offset + partSize, content.length));
+                futures.add(executor.submit(() ->
+                        uploadSessionService.writePart(session.getId(), offset, new ByteArrayInputStream(part))));
+            }
+            for (Future<UploadSessionVO> future : futures) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        UploadSessionVO progress = uploadSessionService.getSession(session.getId());
+        assertEquals(content.length, progress.getReceivedBytes());
+        assertEquals(1, progress.getReceivedRanges().size());
+
+        DocumentVO result = uploadSessionService.completeSession(session.getId());
+
+        assertEquals(42L, result.getId());
+        ArgumentCaptor<String> pathCaptor = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<String> hashCaptor = ArgumentCaptor.forClass(String.class);
+        verify(documentService).createDocument(anyString(), anyLong(), anyString(), pathCaptor.capture(), hashCaptor.capture());
+        assertEquals(DigestUtil.sha256Hex(content), hashCaptor.getValue());
+        assertArrayEquals(content, Files.readAllBytes(Path.of(pathCaptor.getValue())));
+        assertFalse(new File(session.getTempPath()).exists());
+        assertEquals(UploadSession.STATUS_COMPLETED, session.getStatus());
+        assertEquals(42L, session.getDocumentId());
+    }
+
+    /**
+     * 测试本节点没有哈希进度时（如重启后），完成会话从临时文件补算哈希
+     */
+    @Test
+    void testCompleteSession_HashRecomputedWithoutLocalProgress() throws Exception {
+        byte[] content = randomBytes(10_000);
+        UploadSession session = createSession(content.length);
+        Files.write(Path.of(session.getTempPath()), content);
+        UploadPart part = new UploadPart();
+        part.setPartOffset(0L);
+        part.setPartLength((long) content.length);
+        when(uploadSessionMapper.selectById(session.getId())).thenReturn(session);
+        when(uploadPartMapper.selectList(any())).thenReturn(List.of(part));
+        when(uploadSessionMapper.update(isNull(), any())).thenReturn(1);
+        when(documentService.createDocument(anyString(), anyLong(), anyString(), anyString(), anyString()))
+                .thenReturn(new DocumentVO());
+
+        uploadSessionService.completeSession(session.getId());
+
+        verify(documentService).createDocument(anyString(), anyLong(), anyString(), anyString(),
+                eq(DigestUtil.sha256Hex(content)));
+    }
+
+    /**
+     * 测试仍有缺失区间时不能完成会话，已接收的区间合并返回
+     */
+    @Test
+    void testCompleteSession_MissingRangesRejected() throws Exception {
+        UploadSession session = createSession(1000);
+        recordParts(session);
+
+        uploadSessionService.writePart(session.getId(), 0, new ByteArrayInputStream(new byte[300]));
+        uploadSessionService.writePart(session.getId(), 300, new ByteArrayInputStream(new byte[200]));
+        UploadSessionVO vo = uploadSessionService.writePart(session.getId(), 700, new ByteArrayInputStream(new byte[300]));
+
+        assertEquals(800L, vo.getReceivedBytes());
+        assertArrayEquals(new long[]{0, 500}, vo.getReceivedRanges().get(0));
+        assertArrayEquals(new long[]{700, 1000}, vo.getReceivedRanges().get(1));
+
+        BusinessException exception = assertThrows(BusinessException.class,
+                () -> uploadSessionService.completeSession(session.getId()));
+        assertEquals(409, exception.getCode());
+        verifyNoInteractions(documentService);
+    }
+
+    /**
+     * 测试超出声明大小的分片被拒绝且不记录
+     */
+    @Test
+    void testWritePart_BeyondFileSizeRejected() throws Exception {
+        UploadSession session = createSession(100);
+        when(uploadSessionMapper.selectById(session.getId())).thenReturn(session);
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                uploadSessionService.writePart(session.getId(), 50, new ByteArrayInputStream(new byte[51])));
+
+        assertEquals(400, exception.getCode());
+        verify(uploadPartMapper, never()).upsertPart(anyString(), anyLong(), anyLong());
+    }
+
+    /**
+     * 测试放弃上传时删除临时文件和会话
+     */
+    @Test
+    void testAbortSession_DeletesTempFile() throws Exception {
+        UploadSession session = createSession(100);
+        when(uploadSessionMapper.selectById(session.getId())).thenReturn(session);
+
+        uploadSessionService.abortSession(session.getId());
+
+        assertFalse(new File(session.getTempPath()).exists());
+        verify(uploadSessionMapper).deleteById(session.getId());
+    }
+
+    private UploadSession createSession(int size) throws Exception {
+        uploadSessionService.createSession(new UploadSessionRequest("law.pdf", (long) size, "application/pdf"));
+        ArgumentCaptor<UploadSession> captor = ArgumentCaptor.forClass(UploadSession.class);
+        verify(uploadSessionMapper).insert(captor.capture());
+        return captor.getValue();
+    }
+
+    /**
+     * 把写入的分片记录到列表中，查询分片时返回
+     */
+    private void recordParts(UploadSession session) {
+        when(uploadSessionMapper.selectById(session.getId())).thenReturn(session);
+        when(uploadPartMapper.upsertPart(eq(session.getId()), anyLong(), anyLong())).thenAnswer(invocation -> {
+            UploadPart part = new UploadPart();
+            part.setSessionId(session.getId());
+            part.setPartOffset(invocation.getArgument(1));
+            part.setPartLength(invocation.getArgument(2));
+            synchronized (parts) {
+                parts.add(part);
+            }
+            return 1;
+        });
+        when(uploadPartMapper.selectList(any())).thenAnswer(invocation -> {
+            synchronized (parts) {
+                return new ArrayList<>(parts);
+            }
+        });
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.rag.service.impl;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.example.rag.config.RagDocumentProperties;
+import com.example.rag.service.impl.UploadStorage.StoredFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * UploadStorage 单元测试
+ */
+class UploadStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path uploadDir;
+
+    private UploadStorage uploadStorage;
+
+    @BeforeEach
+    void setUp() {
+        uploadDir = tempDir.resolve("uploads");
+        RagDocumentProperties properties = new RagDocumentProperties();
+        properties.setUploadDir(uploadDir.toString());
+        uploadStorage = new UploadStorage(properties);
+    }
+
+    /**
+     * 测试写入上传目录（不存在时创建），文件名带唯一前缀，同时得到内容哈希和大小
+     */
+    @Test
+    void testStore_WritesFileWithHash() throws Exception {
+        byte[] content = "第一条 合同内容".getBytes(StandardCharsets.UTF_8);
+
+        StoredFile first = uploadStorage.store(new ByteArrayInputStream(content), "合同.txt");
+        StoredFile second = uploadStorage.store(new ByteArrayInputStream(content), "合同.txt");
+
+        Path path = Path.of(first.getPath());
+        assertEquals(uploadDir.toAbsolutePath(), path.getParent());
+        assertTrue(path.getFileName().toString().endsWith("_合同.txt"));
+        assertNotEquals(first.getPath(), second.getPath());
+        assertArrayEquals(content, Files.readAllBytes(path));
+        assertEquals(DigestUtil.sha256Hex(content), first.getContentHash());
+        assertEquals(content.length, first.getSize());
+    }
+
+    /**
+     * 测试超过字节上限时停止写入并删除已写入的部分，恰好等于上限时正常保存
+     */
+    @Test
+    void testStore_StopsAtLimit() throws Exception {
+        byte[] content = new byte[200 * 1024];
+
+        assertNull(uploadStorage.store(new ByteArrayInputStream(content), "big.pdf", content.length - 1));
+        try (var files = Files.list(uploadDir)) {
+            assertEquals(0, files.count());
+        }
+
+        StoredFile stored = uploadStorage.store(new ByteArrayInputStream(content), "big.pdf", content.length);
+        assertNotNull(stored);
+        assertEquals(content.length, stored.getSize());
+    }
+
+    /**
+     * 测试原地计算哈希与写入时计算的一致，且不在上传目录中产生文件
+     */
+    @Test
+    void testHash_MatchesStoredHashWithoutCopying() throws Exception {
+        Path source = Files.writeString(tempDir.resolve("source.md"), "# 标题\n正文", StandardCharsets.UTF_8);
+
+        String hash = uploadStorage.hash(source);
+
+        assertEquals(DigestUtil.sha256Hex(Files.readAllBytes(source)), hash);
+        assertFalse(Files.exists(uploadDir));
+        try (var in = Files.newInputStream(source)) {
+            assertEquals(hash, uploadStorage.store(in, "source.md").getContentHash());
+        }
+    }
+}
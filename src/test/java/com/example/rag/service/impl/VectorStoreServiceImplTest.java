@@ -475,4 +475,114 @@ class VectorStoreServiceImplTest {
         assertTrue(body.contains("民法典第一条内容"), "Payload should contain content value");
         assertTrue(body.contains("民法典.pdf"), "Payload should contain document_name value");
     }
+
+    // ==================== getVectors Tests ====================
+
+    @Test
+    void testGetVectors_Success() throws InterruptedException {
+        String qdrantResponse = """
+                {
+                    "result": [
+                        {"id": "id-1", "vector": [0.1, 0.2, 0.3]},
+                        {"id": "id-2", "vector": [0.4, 0.5, 0.6]}
+                    ],
+                    "status": "ok",
+                    "time": 0.001
+                }
+                """;
+
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody(qdrantResponse));
+
+        Map<String, float[]> vectors = vectorStoreService.getVectors(List.of("id-1", "id-2", "id-3"));
+
+        assertEquals(2, vectors.size());
+        assertArrayEquals(new float[]{0.1f, 0.2f, 0.3f}, vectors.get("id-1"));
+        assertArrayEquals(new float[]{0.4f, 0.5f, 0.6f}, vectors.get("id-2"));
+        assertFalse(vectors.containsKey("id-3"));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/collections/document_chunks/points", request.getPath());
+
+        String body = request.getBody().readUtf8();
+        assertTrue(body.contains("\"with_vector\":true"));
+        assertTrue(body.contains("id-3"));
+    }
+
+    @Test
+    void testGetVectors_EmptyIds() {
+        assertTrue(vectorStoreService.getVectors(Collections.emptyList()).isEmpty());
+        assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testGetVectors_QdrantError() {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(500)
+                .setBody("{\"status\": {\"error\": \"Internal error\"}}"));
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                vectorStoreService.getVectors(List.of("id-1")));
+        assertEquals(500, exception.getCode());
+        assertTrue(exception.getMessage().contains("向量读取失败"));
+    }
+
+    // ==================== deleteVectors / updatePayloads Tests ====================
+
+    @Test
+    void testDeleteVectors_Success() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"result\": {\"operation_id\": 4, \"status\": \"completed\"}, \"status\": \"ok\"}"));
+
+        assertDoesNotThrow(() -> vectorStoreService.deleteVectors(List.of("id-1", "id-2")));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/collections/document_chunks/points/delete", request.getPath());
+        String body = request.getBody().readUtf8();
+        assertTrue(body.contains("id-1"));
+        assertTrue(body.contains("id-2"));
+    }
+
+    @Test
+    void testDeleteVectors_EmptyIds() {
+        vectorStoreService.deleteVectors(Collections.emptyList());
+        assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    @Test
+    void testUpdatePayloads_Success() throws InterruptedException {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .setBody("{\"result\": [{\"operation_id\": 5, \"status\": \"completed\"}], \"status\": \"ok\"}"));
+
+        Map<String, Map<String, Object>> payloads = new LinkedHashMap<>();
+        payloads.put("id-1", Map.of("chunk_index", 3));
+        payloads.put("id-2", Map.of("chunk_index", 4));
+
+        assertDoesNotThrow(() -> vectorStoreService.updatePayloads(payloads));
+
+        RecordedRequest request = mockWebServer.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/collections/document_chunks/points/batch", request.getPath());
+        String body = request.getBody().readUtf8();
+        assertTrue(body.contains("set_payload"));
+        assertTrue(body.contains("\"chunk_index\":4"));
+        assertTrue(body.contains("id-2"));
+    }
+
+    @Test
+    void testUpdatePayloads_QdrantError() {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(500));
+
+        BusinessException exception = assertThrows(BusinessException.class, () ->
+                vectorStoreService.updatePayloads(Map.of("id-1", Map.of("chunk_index", 1))));
+        assertTrue(exception.getMessage().contains("向量元数据更新失败"));
+    }
 }
@@ -0,0 +1,313 @@
+package com.example.rag.util;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BpeTokenizer 与 TokenBudgetChunker 单元测试
+ * 使用小型 tiktoken 格式词表：单字节 token 的 rank 等于字节值，另有少量合并规则
+ */
+class BpeTokenizerTest {
+
+    private static final int AB = 256;
+    private static final int ABC = 257;
+    private static final int ZHONG = 259;
+
+    private List<byte[]> merges;
+
+    private BpeTokenizer tokenizer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        merges = Arrays.asList(
+                "ab".getBytes(StandardCharsets.UTF_8),
+                "abc".getBytes(StandardCharsets.UTF_8),
+                Arrays.copyOf("中".getBytes(StandardCharsets.UTF_8), 2),
+                "中".getBytes(StandardCharsets.UTF_8));
+        tokenizer = load(merges);
+    }
+
+    /**
+     * 测试按 rank 顺序合并并与解码互逆
+     */
+    @Test
+    void testEncode_MergesByRankAndRoundTrips() {
+        int[] tokens = tokenizer.encode("abcab");
+
+        assertArrayEquals(new int[]{ABC, AB}, tokens);
+        assertEquals("abcab", tokenizer.decode(tokens));
+    }
+
+    /**
+     * 测试 rank 更小的字节对优先合并，rank 相同时左侧优先
+     */
+    @Test
+    void testEncode_LowestRankFirstAndLeftmostOnTies() throws IOException {
+        BpeTokenizer bcFirst = load(Arrays.asList(
+                "bc".getBytes(StandardCharsets.UTF_8),
+                "ab".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new int[]{'a', 256}, bcFirst.encode("abc"));
+
+        BpeTokenizer pairs = load(List.of("aa".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new int[]{256, 'a'}, pairs.encode("aaa"));
+    }
+
+    /**
+     * 测试预分词：空格归入后一个词，中文按 UTF-8 字节合并，标点单独成段
+     */
+    @Test
+    void testEncode_PreTokenizesLikeCl100kBase() {
+        assertArrayEquals(new int[]{AB, ' ', AB}, tokenizer.encode("ab ab"));
+
+        int[] tokens = tokenizer.encode("中文。");
+        byte[] wen = "文".getBytes(StandardCharsets.UTF_8);
+        byte[] period = "。".getBytes(StandardCharsets.UTF_8);
+        assertArrayEquals(new int[]{ZHONG, wen[0] & 0xFF, wen[1] & 0xFF, wen[2] & 0xFF,
+                period[0] & 0xFF, period[1] & 0xFF, period[2] & 0xFF}, tokens);
+        assertEquals(7, tokenizer.countTokens("中文。"));
+        assertEquals("中文。", tokenizer.decode(tokens));
+    }
+
+    /**
+     * 测试短片段与长片段的合并结果均与逐步合并的参考实现一致
+     */
+    @Test
+    void testEncode_MatchesReferenceMergeOnLongPieces() {
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            StringBuilder text = new StringBuilder();
+            int length = 1 + random.nextInt(round < 10 ? 80 : 3000);
+            for (int i = 0; i < length; i++) {
+                text.append("abc中".charAt(random.nextInt(4)));
+            }
+
+            int[] tokens = tokenizer.encode(text);
+            assertArrayEquals(referenceEncode(text.toString()), tokens);
+            assertEquals(tokens.length, tokenizer.countTokens(text));
+            assertEquals(text.toString(), tokenizer.decode(tokens));
+        }
+    }
+
+    /**
+     * 测试词表缺少单字节 token 时拒绝加载
+     */
+    @Test
+    void testLoad_MissingSingleByteToken_ThrowsException() {
+        String vocabulary = Base64.getEncoder().encodeToString(new byte[]{'a'}) + " 0\n";
+
+        assertThrows(IllegalArgumentException.class, () ->
+                BpeTokenizer.load(new ByteArrayInputStream(vocabulary.getBytes(StandardCharsets.US_ASCII))));
+    }
+
+    /**
+     * 测试随应用打包的 cl100k_base 词表与 tiktoken 发布的文件一致（SHA-256 与 tiktoken 校验的哈希相同）
+     */
+    @Test
+    void testCl100kBase_VocabularyChecksum() throws Exception {
+        try (InputStream in = BpeTokenizer.class.getClassLoader()
+                .getResourceAsStream(BpeTokenizer.CL100K_BASE_RESOURCE)) {
+            assertNotNull(in, "词表文件应随应用打包");
+            assertEquals("223921b76ee99bde995b7ff738513eef100fb51d18c93597a113bcffe865b2a7", DigestUtil.sha256Hex(in));
+        }
+    }
+
+    /**
+     * 测试 cl100k_base 编码结果与 tiktoken 给出的 token id 一致
+     */
+    @Test
+    void testCl100kBase_MatchesTiktokenIds() {
+        BpeTokenizer cl100k = BpeTokenizer.cl100kBase();
+
+        assertArrayEquals(new int[]{15339, 1917}, cl100k.encode("hello world"));
+        assertArrayEquals(new int[]{83, 1609, 5963, 374, 2294, 0}, cl100k.encode("tiktoken is great!"));
+        assertArrayEquals(new int[]{57668, 53901}, cl100k.encode("你好"));
+        assertArrayEquals(new int[]{30537, 15120, 40089, 220, 18184, 35287, 33563, 24326, 97, 70821, 30926, 36668,
+                33014, 9554, 40862, 25333, 42081, 16555, 232, 3922, 48972, 64531, 70821, 30926, 30356, 39276, 1811},
+                cl100k.encode("第一条 为了保护民事主体的合法权益，调整民事关系。"));
+        assertArrayEquals(new int[]{220, 1280, 16243, 271, 220, 2082, 2120, 8, 284, 220, 4513, 1774, 26},
+                cl100k.encode("  indented\n\n  code(x) = 12345;"));
+        assertArrayEquals(new int[]{8161, 956, 22743, 44603, 596, 220, 2366, 19, 0},
+                cl100k.encode("Don't panic—it's 2024!"));
+        assertEquals(27, cl100k.countTokens("第一条 为了保护民事主体的合法权益，调整民事关系。"));
+        assertEquals("第一条 为了保护民事主体的合法权益，调整民事关系。",
+                cl100k.decode(cl100k.encode("第一条 为了保护民事主体的合法权益，调整民事关系。")));
+    }
+
+    /**
+     * 测试按 token 预算分块：不超预算、在句末切分、无重叠时可还原原文
+     */
+    @Test
+    void testTokenBudgetChunker_RespectsBudgetAndSentenceEnds() {
+        String text = "abcab中。ab中中。abc。中ab中abc。ab。中中中abab。abc中。ab";
+        List<String> chunks = new ArrayList<>();
+        TokenBudgetChunker chunker = new TokenBudgetChunker(tokenizer, 12, 0, 6, chunks::add);
+        append(chunker, text);
+        chunker.finish();
+
+        assertTrue(chunks.size() > 2);
+        assertEquals(text, String.join("", chunks));
+        for (int i = 0; i < chunks.size(); i++) {
+            assertTrue(tokenizer.countTokens(chunks.get(i)) <= 12, chunks.get(i));
+            if (i < chunks.size() - 1) {
+                assertTrue(chunks.get(i).endsWith("。"), chunks.get(i));
+            }
+        }
+        assertEquals(chunks.size(), chunker.getChunkCount());
+    }
+
+    /**
+     * 测试重叠部分从句子起点开始且不超过重叠预算
+     */
+    @Test
+    void testTokenBudgetChunker_OverlapStartsAtSentence() {
+        String text = "ab中。abc。中ab。abab。中中。abc。ab中。abc中。";
+        List<String> chunks = new ArrayList<>();
+        TokenBudgetChunker chunker = new TokenBudgetChunker(tokenizer, 12, 4, 4, chunks::add);
+        append(chunker, text);
+        chunker.finish();
+
+        assertTrue(chunks.size() > 2);
+        for (int i = 1; i < chunks.size(); i++) {
+            String chunk = chunks.get(i);
+            assertTrue(tokenizer.countTokens(chunk) <= 12, chunk);
+            int start = text.indexOf(chunk);
+            assertTrue(start > 0 && text.charAt(start - 1) == '。', chunk);
+        }
+        assertTrue(text.endsWith(chunks.get(chunks.size() - 1)));
+    }
+
+    /**
+     * 测试输入中途 flush：前后两段文本分别分块、不带重叠，之后再调用 finish 不会重复输出
+     */
+    @Test
+    void testTokenBudgetChunker_FlushMidStream() {
+        String first = "ab中。abc。中ab。abab。中中。";
+        String second = "abc。ab中。abc中。";
+        List<String> expected = new ArrayList<>();
+        for (String text : Arrays.asList(first, second)) {
+            TokenBudgetChunker separate = new TokenBudgetChunker(tokenizer, 12, 4, 4, expected::add);
+            append(separate, text);
+            separate.finish();
+        }
+
+        List<String> chunks = new ArrayList<>();
+        TokenBudgetChunker chunker = new TokenBudgetChunker(tokenizer, 12, 4, 4, chunks::add);
+        append(chunker, first);
+        chunker.flush();
+        append(chunker, second);
+        chunker.finish();
+        chunker.finish();
+
+        assertEquals(expected, chunks);
+        assertEquals(expected.size(), chunker.getChunkCount());
+    }
+
+    /**
+     * 测试没有标点的超长片段按字符拆开
+     */
+    @Test
+    void testTokenBudgetChunker_SplitsOversizedPiece() {
+        String text = "中".repeat(25);
+        List<String> chunks = new ArrayList<>();
+        TokenBudgetChunker chunker = new TokenBudgetChunker(tokenizer, 10, 0, 0, chunks::add);
+        append(chunker, text);
+        chunker.finish();
+
+        assertEquals(Arrays.asList("中".repeat(10), "中".repeat(10), "中".repeat(5)), chunks);
+    }
+
+    /**
+     * 测试在章节起点切分
+     */
+    @Test
+    void testTokenBudgetChunker_CutsAtSectionStart() {
+        List<String> chunks = new ArrayList<>();
+        TokenBudgetChunker chunker = new TokenBudgetChunker(tokenizer, 16, 4, 8, chunks::add);
+        append(chunker, "ab中中。ab中中，ab");
+        chunker.lineBreak();
+        append(chunker, "第二章");
+        chunker.lineBreak();
+        append(chunker, "ab中中。ab中。");
+        chunker.finish();
+
+        assertEquals("ab中中。ab中中，ab", chunks.get(0));
+        assertTrue(chunks.get(1).startsWith("第二章"), chunks.get(1));
+    }
+
+    private static void append(TextChunker chunker, String text) {
+        char[] chars = text.toCharArray();
+        // 分多次写入，覆盖小段跨越写入边界的情况
+        for (int start = 0; start < chars.length; start += 3) {
+            chunker.append(chars, start, Math.min(3, chars.length - start));
+        }
+    }
+
+    private static BpeTokenizer load(List<byte[]> merges) throws IOException {
+        StringBuilder vocabulary = new StringBuilder();
+        Base64.Encoder encoder = Base64.getEncoder();
+        for (int b = 0; b < 256; b++) {
+            vocabulary.append(encoder.encodeToString(new byte[]{(byte) b})).append(' ').append(b).append('\n');
+        }
+        for (int i = 0; i < merges.size(); i++) {
+            vocabulary.append(encoder.encodeToString(merges.get(i))).append(' ').append(256 + i).append('\n');
+        }
+        return BpeTokenizer.load(new ByteArrayInputStream(vocabulary.toString().getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * 参考实现：每轮扫描全部相邻 token，合并 rank 最小（相同时最左侧）的一对
+     */
+    private int[] referenceEncode(String piece) {
+        List<byte[]> parts = new ArrayList<>();
+        for (byte b : piece.getBytes(StandardCharsets.UTF_8)) {
+            parts.add(new byte[]{b});
+        }
+        while (parts.size() > 1) {
+            int best = -1;
+            int bestRank = Integer.MAX_VALUE;
+            for (int i = 0; i + 1 < parts.size(); i++) {
+                int rank = rankOf(concat(parts.get(i), parts.get(i + 1)));
+                if (rank >= 0 && rank < bestRank) {
+                    best = i;
+                    bestRank = rank;
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            parts.set(best, concat(parts.get(best), parts.remove(best + 1)));
+        }
+        return parts.stream().mapToInt(this::rankOf).toArray();
+    }
+
+    private int rankOf(byte[] bytes) {
+        if (bytes.length == 1) {
+            return bytes[0] & 0xFF;
+        }
+        for (int i = 0; i < merges.size(); i++) {
+            if (Arrays.equals(bytes, merges.get(i))) {
+                return 256 + i;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] concat(byte[] left, byte[] right) {
+        byte[] bytes = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, bytes, left.length, right.length);
+        return bytes;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.rag.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ContentDefinedChunker 单元测试
+ */
+class ContentDefinedChunkerTest {
+
+    /**
+     * 测试中间插入一段文字后，插入点之前和之后的片段保持不变
+     */
+    @Test
+    void testChunk_InsertKeepsPrefixAndSuffixChunks() {
+        String head = randomText(1, 3000);
+        String tail = randomText(2, 3000);
+        List<String> original = chunk(head + tail, 200);
+        List<String> edited = chunk(head + randomText(3, 150) + tail, 200);
+
+        assertUnchangedAroundEdit(original, edited);
+    }
+
+    /**
+     * 测试中间删除一段文字后，删除点之前和之后的片段保持不变
+     */
+    @Test
+    void testChunk_DeleteKeepsPrefixAndSuffixChunks() {
+        String head = randomText(1, 3000);
+        String middle = randomText(3, 150);
+        String tail = randomText(2, 3000);
+        List<String> original = chunk(head + middle + tail, 200);
+        List<String> edited = chunk(head + tail, 200);
+
+        assertUnchangedAroundEdit(original, edited);
+    }
+
+    /**
+     * 测试除最后一个片段外，片段长度都在最小长度和最大长度之间，且拼接后等于原文
+     */
+    @Test
+    void testChunk_RespectsMinAndMaxSize() {
+        String text = randomText(4, 20000);
+        List<String> chunks = new ArrayList<>();
+        ContentDefinedChunker chunker = new ContentDefinedChunker(50, 200, 400, chunks::add);
+        chunker.append(text.toCharArray(), 0, text.length());
+        chunker.finish();
+
+        assertEquals(text, String.join("", chunks));
+        assertEquals(chunks.size(), chunker.getChunkCount());
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            int length = chunks.get(i).length();
+            assertTrue(length >= 50 && length <= 400, "片段 " + i + " 长度 " + length);
+        }
+        assertTrue(chunks.get(chunks.size() - 1).length() <= 400);
+        // 平均长度接近目标长度
+        double average = (double) text.length() / chunks.size();
+        assertTrue(average > 100 && average < 300, "平均长度 " + average);
+    }
+
+    /**
+     * 测试没有内容边界时（重复字符的滚动哈希不变）在最大长度处强制切分
+     */
+    @Test
+    void testChunk_ForcesCutAtMaxSize() {
+        char[] text = new char[1000];
+        Arrays.fill(text, 'a');
+        List<String> chunks = new ArrayList<>();
+        ContentDefinedChunker chunker = new ContentDefinedChunker(200, 300, 300, chunks::add);
+        chunker.append(text, 0, text.length);
+        chunker.finish();
+
+        assertEquals(Arrays.asList(300, 300, 300, 100), chunks.stream().map(String::length).toList());
+    }
+
+    /**
+     * 测试切分结果由固定种子的 Gear 表决定，不随进程和版本变化
+     * 修改 Gear 表或切分规则会使已入库文档的增量处理全部失效，需要同时更新此用例
+     */
+    @Test
+    void testChunk_StableAcrossRuns() {
+        List<String> chunks = chunk(randomText(42, 2000), 200);
+
+        assertEquals(Arrays.asList(108, 275, 171, 113, 52, 130, 147, 175, 247, 347, 235),
+                chunks.stream().map(String::length).toList());
+    }
+
+    /**
+     * 测试分多次追加与一次追加的结果一致
+     */
+    @Test
+    void testChunk_IndependentOfAppendBoundaries() {
+        String text = randomText(6, 5000);
+        List<String> chunks = new ArrayList<>();
+        ContentDefinedChunker chunker = new ContentDefinedChunker(200, chunks::add);
+        char[] chars = text.toCharArray();
+        for (int start = 0; start < chars.length; start += 37) {
+            chunker.append(chars, start, Math.min(37, chars.length - start));
+        }
+        chunker.finish();
+
+        assertEquals(chunk(text, 200), chunks);
+    }
+
+    /**
+     * 测试非法的长度参数
+     */
+    @Test
+    void testConstructor_RejectsInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(0, 100, 200, chunk -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(100, 100, 200, chunk -> { }));
+        assertThrows(IllegalArgumentException.class, () -> new ContentDefinedChunker(50, 200, 100, chunk -> { }));
+    }
+
+    private static void assertUnchangedAroundEdit(List<String> original, List<String> edited) {
+        int prefix = 0;
+        while (prefix < original.size() && prefix < edited.size() && original.get(prefix).equals(edited.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < original.size() - prefix && suffix < edited.size() - prefix
+                && original.get(original.size() - 1 - suffix).equals(edited.get(edited.size() - 1 - suffix))) {
+            suffix++;
+        }
+
+        // 编辑只影响附近的少数片段
+        assertTrue(original.size() - prefix - suffix <= 3,
+                "变化的片段 " + (original.size() - prefix - suffix) + " / " + original.size());
+        assertTrue(edited.size() - prefix - suffix <= 3,
+                "变化的片段 " + (edited.size() - prefix - suffix) + " / " + edited.size());
+        assertTrue(prefix > 0 && suffix > 0);
+    }
+
+    private static List<String> chunk(String text, int chunkSize) {
+        List<String> chunks = new ArrayList<>();
+        ContentDefinedChunker chunker = new ContentDefinedChunker(chunkSize, chunks::add);
+        chunker.append(text.toCharArray(), 0, text.length());
+        chunker.finish();
+        return chunks;
+    }
+
+    private static String randomText(long seed, int length) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) (0x4E00 + random.nextInt(2000)));
+        }
+        return sb.toString();
+    }
+}